@@ -0,0 +1,36 @@
+package Constants;
+
+/**
+ * Header of the directory-checkpoint file:
+ *     Magic Value                 -       4 bytes                                 || Starting Index: 0
+ *     Generation                  -       8 bytes                                 || Starting Index: 4
+ *     Encrypted Payload           -       variable                                || Starting Index: 12
+ *
+ * Header of the payload (after decryption and inflation):
+ *     Magic Value                 -       4 bytes                                 || Starting Index: 0
+ *     Generation                  -       8 bytes                                 || Starting Index: 4
+ *     Node Count                  -       4 bytes                                 || Starting Index: 12
+ *     Node Records                -       variable                                || Starting Index: 16
+ *
+ * Each node record:
+ *     Parent Record Number        -       4 bytes                                 || Starting Index: 0
+ *     DirectoryStore Index        -       8 bytes                                 || Starting Index: 4
+ *     iNode                       -       8 bytes                                 || Starting Index: 12
+ *     flags                       -       1 byte                                  || Starting Index: 20
+ *     Name Length                 -       2 bytes                                 || Starting Index: 21
+ *     name (UTF-8)                -       Name Length bytes                       || Starting Index: 23
+ */
+public abstract class CHECKPOINT_FRAME {
+    public static final String FILE_NAME = "directory-checkpoint";
+    public static final int MAGIC_VALUE_INDEX = 0;
+    public static final int GENERATION_INDEX = 4;
+    public static final int PAYLOAD_INDEX = 12;
+    public static final int NODE_COUNT_INDEX = 12;
+    public static final int FIRST_RECORD_INDEX = 16;
+    public static final int RECORD_PARENT_INDEX = 0;
+    public static final int RECORD_INDEX_INDEX = 4;
+    public static final int RECORD_INODE_INDEX = 12;
+    public static final int RECORD_FLAGS_INDEX = 20;
+    public static final int RECORD_NAME_LENGTH_INDEX = 21;
+    public static final int RECORD_NAME_INDEX = 23;
+}
@@ -1,5 +1,13 @@
 package Constants;
 
+/**
+ *     MD5 Hash                    -       16 bytes                                || Starting Index: 0
+ *     Bytes Occupied              -       2 bytes                                 || Starting Index: 16
+ *     Bitmap                      -       450 bytes (1 bit per data byte)         || Starting Index: 18
+ *     Data                        -       3600 bytes                              || Starting Index: 468
+ * The constants describe the frame of the default block size of 4096 bytes, IV and TAG included. The block size of
+ * the data-store is chosen when the FileSystem is created, and the frame of any block size is described by a Layout.
+ */
 public abstract class DATA_STORE_BLOCK_FRAME {
     public static final int SIZE = 4068;
     public static final int FULL_SIZE = 4096;
@@ -9,4 +17,63 @@ public abstract class DATA_STORE_BLOCK_FRAME {
     public static final int BYTES_OCCUPIED_INDEX = 16;
     public static final int BITMAP_INDEX = 18;
     public static final int FIRST_DATA_BYTE_INDEX = 468;
+    public static final int DEFAULT_BLOCK_SIZE = FULL_SIZE;
+    public static final int MIN_BLOCK_SIZE = 4096;
+    public static final int MAX_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * The frame of a block size, which is a power of two between MIN_BLOCK_SIZE and MAX_BLOCK_SIZE. The frame has the
+     * same fields as the default frame. The Bytes Occupied field is 2 bytes wide while the number of data bytes fits in
+     * an unsigned short and 4 bytes wide otherwise. The rest of the frame is split between the bitmap and the data bytes,
+     * with one bit of the bitmap per data byte. The Layout of the default block size matches the constants.
+     */
+    public static final class Layout {
+        public static final Layout DEFAULT = of(DEFAULT_BLOCK_SIZE);
+        /**
+         * Size of a block on disk, IV and TAG included.
+         */
+        public final int fullSize;
+        /**
+         * Size of a decrypted block.
+         */
+        public final int size;
+        public final int bytesOccupiedSize;
+        public final int bitmapIndex;
+        public final int firstDataByteIndex;
+        public final int dataSize;
+
+        private Layout(int fullSize){
+            this.fullSize = fullSize;
+            this.size = fullSize - VALUES.IV_SIZE - VALUES.TAG_SIZE;
+            this.bytesOccupiedSize = fullSize <= 64 * 1024 ? 2 : 4;
+            this.bitmapIndex = BYTES_OCCUPIED_INDEX + bytesOccupiedSize;
+            // Every 8 data bytes take 9 bytes of the frame.
+            this.dataSize = (size - bitmapIndex) / 9 * 8;
+            this.firstDataByteIndex = bitmapIndex + dataSize / 8;
+        }
+
+        /**
+         * @param blockSize Size of a block on disk
+         * @return The frame of the block size
+         * @throws IllegalArgumentException If the block size is not a power of two between MIN_BLOCK_SIZE and
+         * MAX_BLOCK_SIZE
+         */
+        public static Layout of(int blockSize){
+            if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE || Integer.bitCount(blockSize) != 1)
+                throw new IllegalArgumentException("Invalid Block Size: " + blockSize + ". The block size must be a power of two between "
+                        + MIN_BLOCK_SIZE + " and " + MAX_BLOCK_SIZE + " bytes.");
+            return new Layout(blockSize);
+        }
+
+        /**
+         * @param size Size of a decrypted block
+         * @return The frame whose decrypted blocks have the size
+         * @throws IllegalArgumentException If no block size has decrypted blocks of the size
+         */
+        public static Layout ofDecryptedSize(int size){
+            if (size == DEFAULT.size)
+                return DEFAULT;
+            return of(size + VALUES.IV_SIZE + VALUES.TAG_SIZE);
+        }
+    }
 }
@@ -0,0 +1,39 @@
+package Constants;
+
+/**
+ *     Magic Value                 -       4 bytes                                 || Starting Index: 0
+ *     Page Index                  -       8 bytes                                 || Starting Index: 4
+ *     Directory Index             -       8 bytes                                 || Starting Index: 12
+ *     Next Page Index             -       8 bytes                                 || Starting Index: 20
+ *     Entry Count                 -       2 bytes                                 || Starting Index: 28
+ *     Entries                     -       variable                                || Starting Index: 30
+ *
+ *     Each entry within a page:
+ *     index                       -       8 bytes                                 || Starting Index: 0
+ *     iNode                       -       8 bytes                                 || Starting Index: 8
+ *     flags                       -       1 byte                                  || Starting Index: 16
+ *     Name Length                 -       2 bytes                                 || Starting Index: 17
+ *     name (UTF-8)                -       Name Length bytes                       || Starting Index: 19
+ *
+ *     Hash index pages share the header. Each entry within a hash index page:
+ *     Lower Hash Bound            -       4 bytes                                 || Starting Index: 0
+ *     Page Index                  -       8 bytes                                 || Starting Index: 4
+ */
+public abstract class DIRECTORY_PAGE_FRAME {
+    public static final int SIZE = 4068;
+    public static final int FULL_SIZE = SIZE + VALUES.IV_SIZE + VALUES.TAG_SIZE;
+    public static final int MAGIC_VALUE_INDEX = 0;
+    public static final int PAGE_INDEX_INDEX = 4;
+    public static final int DIRECTORY_INDEX_INDEX = 12;
+    public static final int NEXT_PAGE_INDEX = 20;
+    public static final int ENTRY_COUNT_INDEX = 28;
+    public static final int FIRST_ENTRY_INDEX = 30;
+    public static final int ENTRY_INDEX_INDEX = 0;
+    public static final int ENTRY_INODE_INDEX = 8;
+    public static final int ENTRY_FLAGS_INDEX = 16;
+    public static final int ENTRY_NAME_LENGTH_INDEX = 17;
+    public static final int ENTRY_NAME_INDEX = 19;
+    public static final int INDEX_ENTRY_HASH_INDEX = 0;
+    public static final int INDEX_ENTRY_PAGE_INDEX = 4;
+    public static final int INDEX_ENTRY_SIZE = 12;
+}
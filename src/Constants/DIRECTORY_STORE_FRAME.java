@@ -10,6 +10,18 @@ public abstract class DIRECTORY_STORE_FRAME {
     public static final int CHILD_INDEX = 36;
     public static final int INODE_INDEX = 44;
     public static final int PARENT_INODE_INDEX = 52;
+    /**
+     * Paged directories do not have INodes. They store the index of their first DirectoryPage in the iNode field and
+     * the number of DirectoryPages in the parentINode field.
+     */
+    public static final int FIRST_PAGE_INDEX = INODE_INDEX;
+    public static final int PAGE_COUNT_INDEX = PARENT_INODE_INDEX;
+    /**
+     * Hash indexed directories store the index of their first hash index page in the child field and the number of
+     * hash index pages in the previousSibling field.
+     */
+    public static final int HASH_INDEX_PAGE_INDEX = CHILD_INDEX;
+    public static final int HASH_INDEX_PAGE_COUNT_INDEX = PREVIOUS_SIBLING_INDEX;
     public static final int FLAGS_INDEX = 60;
     public static final int MAGIC_VALUE_2_INDEX = 61;
     public static final int NAME_INDEX = 65;
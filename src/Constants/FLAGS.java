@@ -7,6 +7,7 @@ public abstract class FLAGS {
     public static final byte DEFAULT_NODE_FILE = (byte) 0b00000000;
     public static final byte DEFAULT_INODE = (byte) 0b00000000;
     public static final byte INODE_THUMBNAIL = (byte) 0b10000000;
+    public static final byte INODE_INLINE = (byte) 0b01000000;
     public static final byte DEFAULT_DATA_STORE_HEADER =(byte) 0b00000000;
     public static final byte DEFAULT_THUMBNAIL_STORE_HEADER = (byte) 0b00000000;
     public static final byte DEFAULT_SUPER_BLOCK = (byte) 0b00000000;
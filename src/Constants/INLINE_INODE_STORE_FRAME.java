@@ -0,0 +1,18 @@
+package Constants;
+/**
+ *     INode Frame                 -       73 bytes                                || Starting Index: 0
+ *     Inline Data                 -       951 bytes                               || Starting Index: 73
+ * A frame of the inline-inode-store holds an INODE_STORE_FRAME followed by the contents of the file if the file is
+ * small enough to be stored within its INode.
+ */
+public abstract class INLINE_INODE_STORE_FRAME {
+    public static final int SIZE = 1024;
+    public static final int FULL_SIZE = SIZE + VALUES.IV_SIZE + VALUES.TAG_SIZE;
+    public static final int DATA_INDEX = INODE_STORE_FRAME.SIZE;
+    public static final int DATA_SIZE = SIZE - DATA_INDEX;
+    /**
+     * Set in the iNodeAddress of an INode that is stored in the inline-inode-store. The other bits hold the index of
+     * its frame.
+     */
+    public static final long ADDRESS_FLAG = 1L << 62;
+}
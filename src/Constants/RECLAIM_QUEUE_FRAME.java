@@ -0,0 +1,22 @@
+package Constants;
+
+/**
+ * Header of the reclaim-queue file:
+ *     Magic Value                 -       4 bytes                                 || Starting Index: 0
+ *     Head                        -       8 bytes                                 || Starting Index: 4
+ *     Entries In Progress         -       4 bytes                                 || Starting Index: 12
+ *     Records                     -       variable                                || Starting Index: 16
+ *
+ * Each record is encrypted separately and holds the iNode address of a file that has been removed from the directory
+ * tree but whose INode, extents and data have not been freed yet. Head is the number of records that have already been
+ * reclaimed. Entries In Progress is the number of records after Head that are being reclaimed.
+ */
+public abstract class RECLAIM_QUEUE_FRAME {
+    public static final String FILE_NAME = "reclaim-queue";
+    public static final int MAGIC_VALUE_INDEX = 0;
+    public static final int HEAD_INDEX = 4;
+    public static final int IN_PROGRESS_INDEX = 12;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 8;
+    public static final int RECORD_FULL_SIZE = RECORD_SIZE + VALUES.IV_SIZE + VALUES.TAG_SIZE;
+}
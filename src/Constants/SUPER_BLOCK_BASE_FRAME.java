@@ -6,7 +6,7 @@ public abstract class SUPER_BLOCK_BASE_FRAME {
     /**
      * Size of a SuperBlock excluding the arrays (thumbnailStores and dataStores)
      */
-    public static final int SIZE = 333; // Size excluding IV and TAG.
+    public static final int SIZE = 345; // Size excluding IV and TAG.
     public static final int MAGIC_VALUE_1_INDEX = 0;
     public static final int FLAGS_INDEX = 4;
     public static final int FILE_SYSTEM_NAME_INDEX = 5;
@@ -19,4 +19,14 @@ public abstract class SUPER_BLOCK_BASE_FRAME {
     public static final int ATTRIBUTE_STORES_INDEX = 305;
     public static final int SALT_VALUE_INDEX = 313;
     public static final int MAGIC_VALUE_3_INDEX = 329;
+    /**
+     * Added after the last Magic Value so that SuperBlocks written before it existed can still be read. Such
+     * SuperBlocks have a size of 333 bytes and a generation of 0.
+     */
+    public static final int GENERATION_INDEX = 333;
+    /**
+     * Added after the generation. SuperBlocks written before it existed have a size of 341 bytes and the default block
+     * size.
+     */
+    public static final int BLOCK_SIZE_INDEX = 341;
 }
@@ -14,10 +14,12 @@ package Constants;
  *  *     Total AttributeStores       -       8 bytes                                 || Starting Index: 317
  *  *     SALT Value                  -       16 bytes                                || Starting Index: 325
  *  *     Magic Value                 -       4 bytes                                 || Starting Index: 341
- *  *     TAG                         -       16 bytes                                || Starting Index: 345
+ *  *     Generation                  -       8 bytes                                 || Starting Index: 345
+ *  *     Block Size                  -       4 bytes                                 || Starting Index: 353
+ *  *     TAG                         -       16 bytes                                || Starting Index: 357
  */
 public abstract class SUPER_BLOCK_FULL_FRAME {
-        public static final int SIZE = 361;
+        public static final int SIZE = 373;
     public static final int IV_INDEX = 0;
     public static final int MAGIC_VALUE_1_INDEX = 12;
     public static final int FLAGS_INDEX = 16;
@@ -31,5 +33,7 @@ public abstract class SUPER_BLOCK_FULL_FRAME {
     public static final int ATTRIBUTE_STORES_INDEX = 317;
     public static final int SALT_VALUE_INDEX = 325;
     public static final int MAGIC_VALUE_3_INDEX = 341;
-    public static final int TAG_INDEX = 345;
+    public static final int GENERATION_INDEX = 345;
+    public static final int BLOCK_SIZE_INDEX = 353;
+    public static final int TAG_INDEX = 357;
 }
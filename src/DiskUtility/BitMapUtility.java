@@ -6,20 +6,74 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This class handles all the interactions between the filesystem and the bitmap files.
+ * The class is thread safe. Each bitmap is divided into segments of STRIPE_SIZE bytes and each segment is guarded by
+ * one of STRIPE_COUNT locks, so that threads changing different parts of a bitmap do not contend. Growing a bitmap
+ * excludes every other operation on it.
+ * The indices returned by the getFreeIndex methods are claimed, so that they are not returned to another thread before
+ * they have been set. Indices of singular bitmaps are released once they are set. Blocks of half bitmaps are released
+ * with releaseIndex once their contents have been written.
+ * Free indices are found without locking. A claim is taken with compare-and-set and the bitmap is checked again once
+ * the index has been claimed, as the thread that held the claim before may have occupied it in the meantime.
+ * Writers of a half bitmap take their blocks from an AllocationRegion, a range of REGION_SIZE blocks that no other
+ * writer allocates from until it is returned, so that concurrent writers do not compete for the same blocks.
  */
 public class BitMapUtility {
+    static final int STRIPE_COUNT = 16;
+    static final int STRIPE_SIZE = 64;
+    /**
+     * Number of blocks of an AllocationRegion. A region covers one segment of a half bitmap, so writers of different
+     * regions also update the bitmap under different locks.
+     */
+    static final int REGION_SIZE = STRIPE_SIZE * 2;
+    /**
+     * The locks and claimed indices of a bitmap.
+     */
+    private static class BitmapLock {
+        final ReentrantReadWriteLock resizeLock = new ReentrantReadWriteLock();
+        final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+        final ClaimTable claims = new ClaimTable();
+        /**
+         * The AllocationRegions that are held by writers, by region index.
+         */
+        final ClaimTable regions = new ClaimTable();
+        BitmapLock(){
+            for (int i = 0; i < STRIPE_COUNT; i++)
+                stripes[i] = new ReentrantLock();
+        }
+        ReentrantLock getStripe(int byteIndex){
+            return stripes[(byteIndex / STRIPE_SIZE) % STRIPE_COUNT];
+        }
+    }
     private final File baseFile;
-    private byte[] directoryStoreBitMap;
-    private byte[] extentStoreBitMap;
-    private byte[] iNodeStoreBitMap;
-    private byte[] dataStoreBitMap;
-    private byte[] thumbnailStoreBitMap;
-    BitMapUtility(File baseFile, boolean initialize) throws Exception{
+    private volatile byte[] directoryStoreBitMap;
+    private volatile byte[] directoryPageStoreBitMap;
+    private volatile byte[] extentStoreBitMap;
+    private volatile byte[] iNodeStoreBitMap;
+    private volatile byte[] inlineINodeStoreBitMap;
+    private volatile byte[] dataStoreBitMap;
+    private volatile byte[] thumbnailStoreBitMap;
+    private final EnumMap<Store, BitmapLock> locks = new EnumMap<Store, BitmapLock>(Store.class);
+    /**
+     * Number of data bytes of a block of the data-store. The occupancy levels of the half bitmap are fractions of it.
+     * The blocks of the thumbnail-store always have DATA_STORE_BLOCK_FRAME.DATA_SIZE data bytes.
+     */
+    private final int dataStoreDataSize;
+    BitMapUtility(File baseFile, boolean initialize, int dataStoreDataSize) throws Exception{
         this.baseFile = baseFile;
+        this.dataStoreDataSize = dataStoreDataSize;
+        for (Store store: Store.values())
+            locks.put(store, new BitmapLock());
         if (initialize){
             __createBitmaps();
         }else{
@@ -30,8 +84,10 @@ public class BitMapUtility {
     private long getLastAllocatedBlockIndex(String storeName) {
         byte[] bitmap = switch(storeName){
             case "DIRECTORY_STORE" -> directoryStoreBitMap;
+            case "DIRECTORY_PAGE_STORE" -> directoryPageStoreBitMap;
             case "EXTENT_STORE" -> extentStoreBitMap;
             case "INODE_STORE" -> iNodeStoreBitMap;
+            case "INLINE_INODE_STORE" -> inlineINodeStoreBitMap;
             case "DATA_STORE" -> dataStoreBitMap;
             case "THUMBNAIL_STORE" -> thumbnailStoreBitMap;
             default -> throw new RuntimeException("Invalid Store Name");
@@ -61,12 +117,17 @@ public class BitMapUtility {
     };
 
     ;
+    BitMapUtility(File baseFile, boolean initialize) throws Exception{
+        this(baseFile, initialize, DATA_STORE_BLOCK_FRAME.DATA_SIZE);
+    }
     BitMapUtility(File baseFile) throws Exception{
         this(baseFile, false);
     };
     /**
      * This byte denotes whether a particular bitmap is dirty i.e. different from the version on disk.
-     * 0x000TDIED
+     * 0x0LPTDIED
+     * L -> InlineINodeStore
+     * P -> DirectoryPageStore
      * T -> ThumbnailStore
      * D -> DataStore
      * I -> INodeStore
@@ -81,8 +142,10 @@ public class BitMapUtility {
     private void __createBitmaps() throws Exception{
         // Initializing Singular Bitmaps
         directoryStoreBitMap = __getEmptySingularBitmapBytes();
+        directoryPageStoreBitMap = __getEmptySingularBitmapBytes();
         extentStoreBitMap = __getEmptySingularBitmapBytes();
         iNodeStoreBitMap = __getEmptySingularBitmapBytes();
+        inlineINodeStoreBitMap = __getEmptySingularBitmapBytes();
         // Initializing Half Bitmaps
         dataStoreBitMap = __getEmptyHalfBitmap();
         thumbnailStoreBitMap = __getEmptyHalfBitmap();
@@ -126,6 +189,13 @@ public class BitMapUtility {
             byte[] array;
             File bitmapFile;
             try{
+                if ((store == Store.DirectoryPageStore || store == Store.InlineINodeStore) && !new File(baseFile, bitmapName).isFile()){
+                    // FileSystems created before DirectoryPages or inline INodes were introduced do not have this bitmap.
+                    bitmapFile = Gateway.createFileInBaseDirectory(baseFile, bitmapName);
+                    FileOutputStream fout = new FileOutputStream(bitmapFile);
+                    fout.write(__getEmptySingularBitmapBytes());
+                    fout.close();
+                }
                 bitmapFile = Gateway.getFileInBaseDirectory(baseFile, bitmapName);
                 array = Gateway.readAllBytes(bitmapFile);
             } catch (Exception e){
@@ -138,6 +208,9 @@ public class BitMapUtility {
                 case Store.DirectoryStore -> {
                     directoryStoreBitMap = array;
                 }
+                case Store.DirectoryPageStore -> {
+                    directoryPageStoreBitMap = array;
+                }
                 case Store.ExtentStore -> {
                     extentStoreBitMap = array;
                 }
@@ -147,6 +220,9 @@ public class BitMapUtility {
                 case Store.ThumbnailStore -> {
                     thumbnailStoreBitMap = array;
                 }
+                case Store.InlineINodeStore -> {
+                    inlineINodeStoreBitMap = array;
+                }
             }
         }
     }
@@ -157,69 +233,188 @@ public class BitMapUtility {
     // Singular Bitmaps are single bit bitmaps. 1 bit represents a block/frame.
     // The following stores rely on Singular Bitmaps
     //  -> DIRECTORY_STORE
+    //  -> DIRECTORY_PAGE_STORE
     //  -> EXTENT_STORE
     //  -> INODE_STORE
     //
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Returns a free index of a singular bitmap and claims it until it is set. The bitmap is grown if every index is
+     * occupied.
+     * @param store Target Store
+     * @return The free index
+     */
     protected long getFreeIndexSingularBitmap(Store store) throws Exception{
+        BitmapLock lock = locks.get(store);
+        lock.resizeLock.readLock().lock();
+        try {
+            long index = __claimFreeIndexSingularBitmap(store, lock);
+            if (index != -1)
+                return index;
+        } finally {
+            lock.resizeLock.readLock().unlock();
+        }
+        lock.resizeLock.writeLock().lock();
+        try {
+            // Another thread may have grown the bitmap in the meantime.
+            long index = __claimFreeIndexSingularBitmap(store, lock);
+            if (index != -1)
+                return index;
+            // In case no free index exists, allocate more indices to the bitmap and return the first index in the
+            // newly allocated indices.
+            byte[] bitmap = _getByteArray(store);
+            int length = bitmap.length;
+            byte[] arr = new byte[length + 1024];
+            System.arraycopy(bitmap, 0, arr, 0, length);
+            switch (store) {
+                case Store.DirectoryStore -> directoryStoreBitMap = arr;
+                case Store.DirectoryPageStore -> directoryPageStoreBitMap = arr;
+                case Store.ExtentStore -> extentStoreBitMap = arr;
+                case Store.INodeStore -> iNodeStoreBitMap = arr;
+                case Store.InlineINodeStore -> inlineINodeStoreBitMap = arr;
+                default -> throw new RuntimeException("THIS CODE SHOULD NOT EXECUTE");
+            };
+            setDirtyFlag(store);
+            writeToFile(store);
+            lock.claims.tryClaim(length * 8L);
+            return length * 8L;
+        } finally {
+            lock.resizeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Claims the first index of a singular bitmap that is neither occupied nor claimed.
+     * @return The index, or -1 if there is none.
+     */
+    private long __claimFreeIndexSingularBitmap(Store store, BitmapLock lock){
         byte[] bitmap = switch (store) {
             case Store.DirectoryStore -> directoryStoreBitMap;
+            case Store.DirectoryPageStore -> directoryPageStoreBitMap;
             case Store.ExtentStore -> extentStoreBitMap;
             case Store.INodeStore -> iNodeStoreBitMap;
+            case Store.InlineINodeStore -> inlineINodeStoreBitMap;
             default -> throw new RuntimeException("Invalid Store Name for Singular Bitmap");
         };
         for (int i = 0; i < bitmap.length; i++){
             // All indices are allocated
             if (bitmap[i] == -1)
                 continue;
-            else {
-                int bitIndex;
-                for (int j = 7; j > -1; j--) {
-                    if (((bitmap[i] >> j) & 1) == 0) {
-                        bitIndex = 7 - j;
-                        return (i * 8) + bitIndex;
-                    }
-                }
+            for (int j = 7; j > -1; j--) {
+                long index = (i * 8L) + (7 - j);
+                if (((bitmap[i] >> j) & 1) != 0 || !lock.claims.tryClaim(index))
+                    continue;
+                // The index may have been set by the thread that held the claim before.
+                if (((bitmap[i] >> j) & 1) == 0)
+                    return index;
+                lock.claims.release(index);
             }
         }
-        // In case no free index exists, allocate more indices to the bitmap and return the first index in the newly
-        // allocated indices.
-        int length = bitmap.length;
-        byte[] arr = new byte[length + 1024];
-        System.arraycopy(bitmap, 0, arr, 0, length);
-        switch (store) {
-            case Store.DirectoryStore -> directoryStoreBitMap = arr;
-            case Store.ExtentStore -> extentStoreBitMap = arr;
-            case Store.INodeStore -> iNodeStoreBitMap = arr;
-            default -> throw new RuntimeException("THIS CODE SHOULD NOT EXECUTE");
-        };
-        setDirtyFlag(store);
-        writeToFile(store);
-        return length * 8L;
+        return -1;
     }
 
     protected void setIndexSingularBitmap(Store store, long index, boolean value) throws Exception{
         byte[] bitmap = switch (store) {
             case Store.DirectoryStore -> directoryStoreBitMap;
+            case Store.DirectoryPageStore -> directoryPageStoreBitMap;
             case Store.ExtentStore -> extentStoreBitMap;
             case Store.INodeStore -> iNodeStoreBitMap;
+            case Store.InlineINodeStore -> inlineINodeStoreBitMap;
             default -> throw new RuntimeException("Invalid Store Name for Singular Bitmap");
         };
-        if (index > bitmap.length)
+        if (index < 0 || index / 8L >= bitmap.length)
             throw new IndexOutOfBoundsException("Invalid Index For Bitmap");
+        BitmapLock lock = locks.get(store);
         int byteIndex = (int)(index / 8L);
         int bitIndex = (int)(index % 8L);
-        byte targetByte = bitmap[byteIndex];
-        if (value)
-            targetByte = (byte)(targetByte | (0x01 << 7 - bitIndex));
-        else
-            targetByte = (byte)(targetByte & ~(0x01 << 7 - bitIndex));
-        bitmap[byteIndex] = targetByte;
-        setDirtyFlag(store);
-        try{
-            writeToFile(store, byteIndex);
-        } catch (Exception e){
-            throw new Exception("Unable to Set Index: " + e.getMessage());
+        lock.resizeLock.readLock().lock();
+        ReentrantLock stripe = lock.getStripe(byteIndex);
+        stripe.lock();
+        try {
+            // The bitmap may have been grown since it was read.
+            bitmap = _getByteArray(store);
+            byte targetByte = bitmap[byteIndex];
+            if (value)
+                targetByte = (byte)(targetByte | (0x01 << 7 - bitIndex));
+            else
+                targetByte = (byte)(targetByte & ~(0x01 << 7 - bitIndex));
+            bitmap[byteIndex] = targetByte;
+            setDirtyFlag(store);
+            try{
+                writeToFile(store, byteIndex);
+            } catch (Exception e){
+                throw new Exception("Unable to Set Index: " + e.getMessage());
+            }
+        } finally {
+            stripe.unlock();
+            lock.resizeLock.readLock().unlock();
+        }
+        releaseIndex(store, index);
+    }
+
+    /**
+     * Checks whether an index of a Singular Bitmap is occupied. Indices beyond the end of the bitmap are reported as
+     * occupied as they cannot be set without growing the bitmap first.
+     * @param store Target Store
+     * @param index Target Index
+     * @return true if the index is occupied or does not exist within the bitmap.
+     */
+    protected boolean isIndexOccupiedSingularBitmap(Store store, long index){
+        byte[] bitmap = switch (store) {
+            case Store.DirectoryStore -> directoryStoreBitMap;
+            case Store.DirectoryPageStore -> directoryPageStoreBitMap;
+            case Store.ExtentStore -> extentStoreBitMap;
+            case Store.INodeStore -> iNodeStoreBitMap;
+            case Store.InlineINodeStore -> inlineINodeStoreBitMap;
+            default -> throw new RuntimeException("Invalid Store Name for Singular Bitmap");
+        };
+        if (index < 0 || index / 8L >= bitmap.length)
+            return true;
+        int byteIndex = (int)(index / 8L);
+        int bitIndex = (int)(index % 8L);
+        return ((bitmap[byteIndex] >> (7 - bitIndex)) & 1) == 1;
+    }
+
+    /**
+     * Frees several indices of a singular bitmap. The bitmap is updated in memory and the bitmap file is then written
+     * with a single write per run of consecutive changed bytes.
+     * @param store Target Store
+     * @param indices The indices to be freed. May contain duplicates.
+     */
+    protected void clearIndicesSingularBitmap(Store store, long[] indices) throws Exception{
+        byte[] bitmap = switch (store) {
+            case Store.DirectoryStore -> directoryStoreBitMap;
+            case Store.DirectoryPageStore -> directoryPageStoreBitMap;
+            case Store.ExtentStore -> extentStoreBitMap;
+            case Store.INodeStore -> iNodeStoreBitMap;
+            case Store.InlineINodeStore -> inlineINodeStoreBitMap;
+            default -> throw new RuntimeException("Invalid Store Name for Singular Bitmap");
+        };
+        TreeSet<Integer> changedBytes = new TreeSet<Integer>();
+        for (long index: indices){
+            if (index < 0 || index / 8L >= bitmap.length)
+                throw new IndexOutOfBoundsException("Invalid Index For Bitmap");
+            changedBytes.add((int)(index / 8L));
+        }
+        BitmapLock lock = locks.get(store);
+        lock.resizeLock.readLock().lock();
+        TreeSet<Integer> stripes = __lockStripes(lock, changedBytes);
+        try {
+            bitmap = _getByteArray(store);
+            for (long index: indices){
+                int byteIndex = (int)(index / 8L);
+                int bitIndex = (int)(index % 8L);
+                bitmap[byteIndex] = (byte)(bitmap[byteIndex] & ~(0x01 << 7 - bitIndex));
+            }
+            setDirtyFlag(store);
+            try{
+                writeToFile(store, changedBytes);
+            } catch (Exception e){
+                throw new Exception("Unable to Clear Indices: " + e.getMessage());
+            }
+        } finally {
+            __unlockStripes(lock, stripes);
+            lock.resizeLock.readLock().unlock();
         }
     }
 
@@ -254,36 +449,205 @@ public class BitMapUtility {
             can be larger than the current blocks allocated and hence would require the allocation of more blocks.
             Ideally should return the smallest block available to satisfy the fileSize needs.
          */
+        BitmapLock lock = locks.get(store);
+        lock.resizeLock.readLock().lock();
+        try {
+            long index = __claimFreeIndexHalfBitmap(store, lock);
+            if (index != -1)
+                return index;
+        } finally {
+            lock.resizeLock.readLock().unlock();
+        }
+        lock.resizeLock.writeLock().lock();
+        try {
+            long freeIndex = __claimFreeIndexHalfBitmap(store, lock);
+            if (freeIndex != -1)
+                return freeIndex;
+            // If the code reaches this point then new blocks need to be allocated.
+            byte[] bitmap = _getByteArray(store);
+            int index = bitmap.length;
+            byte[] arr = new byte[index + 2046];
+            System.arraycopy(bitmap, 0, arr, 0, index);
+            for (int i = index; i < arr.length; i++)
+                arr[i] = (byte)0b10001000;
+            switch (store) {
+                case Store.DataStore -> dataStoreBitMap = arr;
+                case Store.ThumbnailStore -> thumbnailStoreBitMap = arr;
+                default -> throw new RuntimeException("THIS CODE SHOULD NOT EXECUTE");
+            };
+            setDirtyFlag(store);
+            writeToFile(store);
+            lock.claims.tryClaim(index * 2L);
+            return index * 2L;
+        } finally {
+            lock.resizeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Claims the first block of a half bitmap that is neither full nor claimed.
+     * @return The index of the block, or -1 if there is none.
+     */
+    private long __claimFreeIndexHalfBitmap(Store store, BitmapLock lock){
         byte[] bitmap = switch (store) {
             case Store.DataStore -> dataStoreBitMap;
             case Store.ThumbnailStore -> thumbnailStoreBitMap;
             default -> throw new RuntimeException("Invalid Store Name for Half Bitmap");
         };
-        for (int i = 0; i < bitmap.length; i++){
-            byte dataStoreByte = bitmap[i];
-            if (dataStoreByte == -1) {
+        return __claimFreeIndexHalfBitmap(bitmap, lock, 0, bitmap.length * 2L);
+    }
+
+    /**
+     * Claims the first block within a range of a half bitmap that is neither full nor claimed.
+     * @param start The first block of the range
+     * @param end The block after the last block of the range
+     * @return The index of the block, or -1 if there is none.
+     */
+    private static long __claimFreeIndexHalfBitmap(byte[] bitmap, BitmapLock lock, long start, long end){
+        for (long index = start; index < end; index++){
+            if (__isFullHalfBitmap(bitmap, index) || !lock.claims.tryClaim(index))
                 continue;
-            }
-            if ((dataStoreByte & 0b11110000) != 0b11110000) {
-                return (long)i * 2L;
-            } else {
-                return (i * 2L) + 1;
+            // The block may have been filled by the thread that held the claim before.
+            if (!__isFullHalfBitmap(bitmap, index))
+                return index;
+            lock.claims.release(index);
+        }
+        return -1;
+    }
+
+    private static boolean __isFullHalfBitmap(byte[] bitmap, long index){
+        byte dataStoreByte = bitmap[(int)(index / 2L)];
+        if (index % 2L == 0)
+            return (dataStoreByte & 0b11110000) == 0b11110000;
+        return (dataStoreByte & 0b00001111) == 0b00001111;
+    }
+
+    /**
+     * Opens an AllocationRegion of a half bitmap. No region is reserved until the first block is requested.
+     * @param store DataStore or ThumbnailStore
+     * @return The AllocationRegion, which must be closed once the blocks have been written.
+     */
+    protected AllocationRegion openRegion(Store store){
+        if (store.bitmapType != BitmapType.Half)
+            throw new IllegalArgumentException("Invalid Store. Regions are only valid for Half Bitmaps");
+        return new AllocationRegion(store);
+    }
+
+    /**
+     * A range of REGION_SIZE blocks of a half bitmap that is reserved by a single writer. The blocks of the region are
+     * claimed one by one, like the blocks returned by getFreeIndexHalfBitmap. Once every block of the region is full
+     * the region is returned and the next region with a free block is reserved. The region that is held when the
+     * writer closes the AllocationRegion is returned along with its remaining free blocks.
+     * An AllocationRegion is used by one thread only.
+     */
+    protected class AllocationRegion implements AutoCloseable {
+        private final Store store;
+        private final BitmapLock lock;
+        private long region = -1;
+        /**
+         * The block within the region after the last block returned. The blocks before it were full or claimed.
+         */
+        private long nextIndex;
+
+        private AllocationRegion(Store store){
+            this.store = store;
+            this.lock = locks.get(store);
+        }
+
+        /**
+         * Claims a block that is not full. The block is released with releaseIndex once it has been written.
+         * @return The index of the block
+         */
+        long getFreeIndex() throws Exception{
+            while (true){
+                if (region != -1){
+                    lock.resizeLock.readLock().lock();
+                    try {
+                        byte[] bitmap = _getByteArray(store);
+                        long end = Math.min((region + 1) * REGION_SIZE, bitmap.length * 2L);
+                        long index = __claimFreeIndexHalfBitmap(bitmap, lock, nextIndex, end);
+                        if (index != -1){
+                            nextIndex = index + 1;
+                            return index;
+                        }
+                    } finally {
+                        lock.resizeLock.readLock().unlock();
+                    }
+                    lock.regions.release(region);
+                }
+                region = __reserveRegion(store, lock);
+                nextIndex = region * REGION_SIZE;
             }
         }
-        // If the code reaches this point then new blocks need to be allocated.
-        int index = bitmap.length;
-        byte[] arr = new byte[index + 2046];
-        System.arraycopy(bitmap, 0, arr, 0, index);
-        for (int i = index; i < arr.length; i++)
-            arr[i] = (byte)0b10001000;
-        switch (store) {
-            case Store.DataStore -> dataStoreBitMap = arr;
-            case Store.ThumbnailStore -> thumbnailStoreBitMap = arr;
-            default -> throw new RuntimeException("THIS CODE SHOULD NOT EXECUTE");
-        };
-        setDirtyFlag(store);
-        writeToFile(store);
-        return index * 2L;
+
+        /**
+         * Returns the region that is held, if any.
+         */
+        @Override
+        public void close(){
+            if (region != -1)
+                lock.regions.release(region);
+            region = -1;
+        }
+    }
+
+    /**
+     * Reserves the first region of a half bitmap that has a block that is not full and is not held by another writer.
+     * The bitmap is grown if there is none.
+     * @return The index of the region
+     */
+    private long __reserveRegion(Store store, BitmapLock lock) throws Exception{
+        lock.resizeLock.readLock().lock();
+        try {
+            long region = __reserveFreeRegion(_getByteArray(store), lock);
+            if (region != -1)
+                return region;
+        } finally {
+            lock.resizeLock.readLock().unlock();
+        }
+        lock.resizeLock.writeLock().lock();
+        try {
+            // Another thread may have grown the bitmap in the meantime.
+            long region = __reserveFreeRegion(_getByteArray(store), lock);
+            if (region != -1)
+                return region;
+            byte[] bitmap = _getByteArray(store);
+            int index = bitmap.length;
+            byte[] arr = new byte[index + 2046];
+            System.arraycopy(bitmap, 0, arr, 0, index);
+            for (int i = index; i < arr.length; i++)
+                arr[i] = (byte)0b10001000;
+            switch (store) {
+                case Store.DataStore -> dataStoreBitMap = arr;
+                case Store.ThumbnailStore -> thumbnailStoreBitMap = arr;
+                default -> throw new RuntimeException("THIS CODE SHOULD NOT EXECUTE");
+            };
+            setDirtyFlag(store);
+            writeToFile(store);
+            // The first new block may belong to a region that is held by another writer.
+            region = __reserveFreeRegion(arr, lock);
+            if (region == -1)
+                throw new RuntimeException("THIS CODE SHOULD NOT EXECUTE");
+            return region;
+        } finally {
+            lock.resizeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The index of the reserved region, or -1 if every region is full or held.
+     */
+    private static long __reserveFreeRegion(byte[] bitmap, BitmapLock lock){
+        long blockCount = bitmap.length * 2L;
+        for (long region = 0; region * REGION_SIZE < blockCount; region++){
+            long end = Math.min((region + 1) * REGION_SIZE, blockCount);
+            boolean hasFreeBlock = false;
+            for (long index = region * REGION_SIZE; index < end && !hasFreeBlock; index++)
+                hasFreeBlock = !__isFullHalfBitmap(bitmap, index) && !lock.claims.isClaimed(index);
+            if (hasFreeBlock && lock.regions.tryClaim(region))
+                return region;
+        }
+        return -1;
     }
 
     /**
@@ -291,14 +655,81 @@ public class BitMapUtility {
      * @param index index of the bitmap needed to be updated
      * @param bytesOccupied Number of bytes occupied by the index
      */
-    protected void setIndexHalfBitmap(Store store, long index, short bytesOccupied) throws Exception{
+    protected void setIndexHalfBitmap(Store store, long index, int bytesOccupied) throws Exception{
         byte[] bitmap = switch (store) {
             case Store.DataStore -> dataStoreBitMap;
             case Store.ThumbnailStore -> thumbnailStoreBitMap;
             default -> throw new RuntimeException("Invalid Store Name for Half Bitmap");
         };
+        BitmapLock lock = locks.get(store);
+        int byteIndex = (int) (index / 2L);
+        lock.resizeLock.readLock().lock();
+        ReentrantLock stripe = lock.getStripe(byteIndex);
+        stripe.lock();
+        try {
+            // The bitmap may have been grown since it was read.
+            bitmap = _getByteArray(store);
+            __updateHalfBitmap(bitmap, index, bytesOccupied, __getDataSize(store));
+            setDirtyFlag(store);
+            try{
+                writeToFile(store, byteIndex);
+            } catch (Exception e){
+                throw new Exception("Unable to Set Index: " + e.getMessage());
+            }
+        } finally {
+            stripe.unlock();
+            lock.resizeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Updates several indices of a half bitmap. The bitmap is updated in memory and the bitmap file is then written
+     * with a single write per run of consecutive changed bytes.
+     * @param store DataStore or ThumbnailStore
+     * @param bytesOccupied The number of bytes occupied by each index, keyed by index
+     */
+    protected void setIndicesHalfBitmap(Store store, TreeMap<Long, Integer> bytesOccupied) throws Exception{
+        byte[] bitmap = switch (store) {
+            case Store.DataStore -> dataStoreBitMap;
+            case Store.ThumbnailStore -> thumbnailStoreBitMap;
+            default -> throw new RuntimeException("Invalid Store Name for Half Bitmap");
+        };
+        TreeSet<Integer> changedBytes = new TreeSet<Integer>();
+        for (long index: bytesOccupied.keySet())
+            changedBytes.add((int) (index / 2L));
+        BitmapLock lock = locks.get(store);
+        lock.resizeLock.readLock().lock();
+        TreeSet<Integer> stripes = __lockStripes(lock, changedBytes);
+        try {
+            bitmap = _getByteArray(store);
+            for (Map.Entry<Long, Integer> entry: bytesOccupied.entrySet())
+                __updateHalfBitmap(bitmap, entry.getKey(), entry.getValue(), __getDataSize(store));
+            setDirtyFlag(store);
+            try{
+                writeToFile(store, changedBytes);
+            } catch (Exception e){
+                throw new Exception("Unable to Set Indices: " + e.getMessage());
+            }
+        } finally {
+            __unlockStripes(lock, stripes);
+            lock.resizeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of data bytes of a block of a store with a half bitmap
+     */
+    private int __getDataSize(Store store){
+        return store == Store.DataStore ? dataStoreDataSize : DATA_STORE_BLOCK_FRAME.DATA_SIZE;
+    }
+
+    /**
+     * Sets the half of the bitmap that belongs to the index according to the number of bytes occupied.
+     * @param totalBytes Number of data bytes of a block of the store
+     * @return The index of the changed byte within the bitmap
+     */
+    private static int __updateHalfBitmap(byte[] bitmap, long index, int bytesOccupied, int totalBytes){
         byte newBitmap;
-        int totalBytes = DATA_STORE_BLOCK_FRAME.DATA_SIZE;
         if (bytesOccupied == 0){
             newBitmap = (byte)0b00001000;
         } else if (bytesOccupied < totalBytes / 4){
@@ -321,12 +752,7 @@ public class BitMapUtility {
         else
             targetByte = (byte)((targetByte & (byte)0b00001111) | ((newBitmap & (byte)0b00001111) << 4));
         bitmap[byteIndex] = targetByte;
-        setDirtyFlag(store);
-        try{
-            writeToFile(store, byteIndex);
-        } catch (Exception e){
-            throw new Exception("Unable to Set Index: " + e.getMessage());
-        }
+        return byteIndex;
     }
 
     protected boolean isIndexOccupiedHalfBitmap(Store store, long index){
@@ -343,6 +769,47 @@ public class BitMapUtility {
         else
             return !(((byte)(requiredByte & (byte)0b00001111)) == (byte)0b00001000);
     }
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // CLAIMS AND LOCKS
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Claims an index, waiting for the thread that has claimed it to release it. Used by threads that change a block
+     * that is already occupied, so that no other thread writes to the block in the meantime.
+     * @param store Target Store
+     * @param index Target Index
+     */
+    protected void claimIndex(Store store, long index) throws InterruptedException{
+        locks.get(store).claims.claim(index);
+    }
+
+    /**
+     * Releases an index claimed by getFreeIndex or claimIndex.
+     * @param store Target Store
+     * @param index Target Index
+     */
+    protected void releaseIndex(Store store, long index){
+        locks.get(store).claims.release(index);
+    }
+
+    /**
+     * Locks the stripes that guard the provided bytes, in stripe order.
+     * @return The locked stripes
+     */
+    private static TreeSet<Integer> __lockStripes(BitmapLock lock, TreeSet<Integer> byteIndices){
+        TreeSet<Integer> stripes = new TreeSet<Integer>();
+        for (int byteIndex: byteIndices)
+            stripes.add((byteIndex / STRIPE_SIZE) % STRIPE_COUNT);
+        for (int stripe: stripes)
+            lock.stripes[stripe].lock();
+        return stripes;
+    }
+
+    private static void __unlockStripes(BitmapLock lock, TreeSet<Integer> stripes){
+        for (int stripe: stripes.descendingSet())
+            lock.stripes[stripe].unlock();
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // AUXILIARY METHODS
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -370,7 +837,7 @@ public class BitMapUtility {
         }
     }
 
-    protected void setIndex(Store store, long index, short bytesOccupied) throws Exception{
+    protected void setIndex(Store store, long index, int bytesOccupied) throws Exception{
         if (store.bitmapType == BitmapType.Half){
             setIndexHalfBitmap(store, index, bytesOccupied);
         } else {
@@ -395,6 +862,38 @@ public class BitMapUtility {
         setIndexSingularBitmap(Store.DirectoryStore, index, value);
     }
 
+    protected boolean isIndexOccupiedDirectoryStore(long index){
+        return isIndexOccupiedSingularBitmap(Store.DirectoryStore, index);
+    }
+
+    protected void clearIndicesDirectoryStore(long[] indices) throws Exception{
+        clearIndicesSingularBitmap(Store.DirectoryStore, indices);
+    }
+
+    protected void clearIndicesDirectoryPageStore(long[] indices) throws Exception{
+        clearIndicesSingularBitmap(Store.DirectoryPageStore, indices);
+    }
+
+    protected void clearIndicesExtentStore(long[] indices) throws Exception{
+        clearIndicesSingularBitmap(Store.ExtentStore, indices);
+    }
+
+    protected void clearIndicesINodeStore(long[] indices) throws Exception{
+        clearIndicesSingularBitmap(Store.INodeStore, indices);
+    }
+
+    protected long getFreeIndexDirectoryPageStore() throws Exception{
+        return getFreeIndexSingularBitmap(Store.DirectoryPageStore);
+    }
+
+    protected void setIndexDirectoryPageStore(long index, boolean value) throws Exception {
+        setIndexSingularBitmap(Store.DirectoryPageStore, index, value);
+    }
+
+    protected boolean isIndexOccupiedDirectoryPageStore(long index){
+        return isIndexOccupiedSingularBitmap(Store.DirectoryPageStore, index);
+    }
+
     protected long getFreeIndexExtentStore() throws Exception{
         return getFreeIndexSingularBitmap(Store.ExtentStore);
     }
@@ -410,10 +909,14 @@ public class BitMapUtility {
     protected void setIndexINodeStore(long index, boolean value) throws Exception{
         setIndexSingularBitmap(Store.INodeStore, index, value);
     }
+
+    protected void clearIndicesInlineINodeStore(long[] indices) throws Exception{
+        clearIndicesSingularBitmap(Store.InlineINodeStore, indices);
+    }
     protected long getFreeIndexDataStore(long bytesToWrite) throws Exception{
         return getFreeIndexHalfBitmap(Store.DataStore, bytesToWrite);
     }
-    protected void setIndexDataStore(long index, short bytesOccupied) throws Exception{
+    protected void setIndexDataStore(long index, int bytesOccupied) throws Exception{
         setIndexHalfBitmap(Store.DataStore, index, bytesOccupied);
     }
 
@@ -423,7 +926,7 @@ public class BitMapUtility {
     protected long getFreeIndexThumbnailStore(long bytesToWrite) throws Exception{
         return getFreeIndexHalfBitmap(Store.ThumbnailStore, bytesToWrite);
     }
-    protected void setIndexThumbnailStore(long index, short bytesOccupied) throws Exception{
+    protected void setIndexThumbnailStore(long index, int bytesOccupied) throws Exception{
         setIndexHalfBitmap(Store.ThumbnailStore, index, bytesOccupied);
     }
     protected boolean isIndexOccupiedThumbnailStore(long index){
@@ -461,6 +964,41 @@ public class BitMapUtility {
         resetDirtyFlag(store);
     }
 
+    /**
+     * Writes the provided bytes of a bitmap to its file with a single write per run of consecutive bytes.
+     * @param store Target Store
+     * @param byteIndices The indices of the changed bytes within the bitmap
+     */
+    private void writeToFile(Store store, TreeSet<Integer> byteIndices) throws Exception {
+        if (byteIndices.isEmpty())
+            return;
+        byte[] byteArr = _getByteArray(store);
+        String bitmapName = store.fileName + ".bitmap";
+        try {
+            File bitmapFile = Gateway.getFileInBaseDirectory(baseFile, bitmapName);
+            try (RandomAccessFile fout = new RandomAccessFile(bitmapFile, "rw")){
+                Iterator<Integer> iterator = byteIndices.iterator();
+                int runStart = iterator.next();
+                int runEnd = runStart;
+                while (true){
+                    Integer next = iterator.hasNext() ? iterator.next() : null;
+                    if (next != null && next == runEnd + 1){
+                        runEnd = next;
+                        continue;
+                    }
+                    fout.seek(runStart);
+                    fout.write(byteArr, runStart, runEnd - runStart + 1);
+                    if (next == null)
+                        break;
+                    runStart = runEnd = next;
+                }
+            }
+        } catch (Exception e){
+            throw new Exception("Unable To Write to Bitmap File: " + bitmapName + " || " + e.getMessage());
+        }
+        resetDirtyFlag(store);
+    }
+
     private byte[] _getByteArray(Store store) throws Exception{
         switch (store){
             case Store.DataStore -> {
@@ -469,6 +1007,9 @@ public class BitMapUtility {
             case Store.DirectoryStore -> {
                 return directoryStoreBitMap;
             }
+            case Store.DirectoryPageStore -> {
+                return directoryPageStoreBitMap;
+            }
             case Store.ExtentStore -> {
                 return extentStoreBitMap;
             }
@@ -478,6 +1019,9 @@ public class BitMapUtility {
             case Store.ThumbnailStore -> {
                 return thumbnailStoreBitMap;
             }
+            case Store.InlineINodeStore -> {
+                return inlineINodeStoreBitMap;
+            }
             default -> {
                 throw new Exception("Invalid Store");
             }
@@ -490,11 +1034,11 @@ public class BitMapUtility {
     /**
      * This method resets the dirtyFlags (sets them to 0)
      */
-    private void resetDirtyFlags(){
+    private synchronized void resetDirtyFlags(){
         dirtyFlags = 0;
     }
 
-    private void setDirtyFlag(Store store){
+    private synchronized void setDirtyFlag(Store store){
         switch (store){
             case Store.DirectoryStore:
                 dirtyFlags = (byte)(dirtyFlags | 0b00000001);
@@ -511,12 +1055,18 @@ public class BitMapUtility {
             case Store.ThumbnailStore:
                 dirtyFlags = (byte)(dirtyFlags | 0b00010000);
                 break;
+            case Store.DirectoryPageStore:
+                dirtyFlags = (byte)(dirtyFlags | 0b00100000);
+                break;
+            case Store.InlineINodeStore:
+                dirtyFlags = (byte)(dirtyFlags | 0b01000000);
+                break;
             default:
                 throw new RuntimeException("Invalid Store Name");
         }
     }
 
-    private void resetDirtyFlag(Store store){
+    private synchronized void resetDirtyFlag(Store store){
         switch (store){
             case Store.DirectoryStore:
                 dirtyFlags = (byte)(dirtyFlags & ~0b00000001);
@@ -533,17 +1083,25 @@ public class BitMapUtility {
             case Store.ThumbnailStore:
                 dirtyFlags = (byte)(dirtyFlags & ~0b00010000);
                 break;
+            case Store.DirectoryPageStore:
+                dirtyFlags = (byte)(dirtyFlags & ~0b00100000);
+                break;
+            case Store.InlineINodeStore:
+                dirtyFlags = (byte)(dirtyFlags & ~0b01000000);
+                break;
             default:
                 throw new RuntimeException("Invalid Store Name");
         }
     }
-    private boolean getDirtyFlag(Store store) {
+    private synchronized boolean getDirtyFlag(Store store) {
         return switch (store) {
             case Store.DirectoryStore -> (dirtyFlags & 0b00000001) != 0;
             case Store.ExtentStore -> (dirtyFlags & 0b00000010) != 0;
             case Store.INodeStore -> (dirtyFlags & 0b00000100) != 0;
             case Store.DataStore -> (dirtyFlags & 0b00001000) != 0;
             case Store.ThumbnailStore -> (dirtyFlags & 0b00010000) != 0;
+            case Store.DirectoryPageStore -> (dirtyFlags & 0b00100000) != 0;
+            case Store.InlineINodeStore -> (dirtyFlags & 0b01000000) != 0;
             default -> throw new RuntimeException("Invalid Store Name");
         };
     }
@@ -0,0 +1,107 @@
+package DiskUtility;
+
+import Constants.DATA_STORE_BLOCK_FRAME;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BitMapUtilityTests {
+    private static final int THREADS = 8;
+
+    @Test
+    @DisplayName("getFreeIndex -> Concurrent threads never receive the same index, including while the bitmap grows")
+    public void concurrentSingularIndices() throws Exception{
+        Path base = Files.createTempDirectory("bitmap");
+        try {
+            BitMapUtility bitMapUtility = new BitMapUtility(base.toFile(), true);
+            List<Long> indices = __runConcurrently(() -> {
+                ArrayList<Long> claimed = new ArrayList<Long>();
+                for (int i = 0; i < 1500; i++){
+                    long index = bitMapUtility.getFreeIndexINodeStore();
+                    bitMapUtility.setIndexINodeStore(index, true);
+                    claimed.add(index);
+                }
+                return claimed;
+            });
+            Assertions.assertEquals(THREADS * 1500, indices.size());
+            Assertions.assertEquals(indices.size(), new HashSet<Long>(indices).size());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("AllocationRegion -> Open regions do not share blocks and a closed region is reused")
+    public void allocationRegions() throws Exception{
+        Path base = Files.createTempDirectory("bitmap");
+        try {
+            BitMapUtility bitMapUtility = new BitMapUtility(base.toFile(), true);
+            long first;
+            try (BitMapUtility.AllocationRegion region1 = bitMapUtility.openRegion(Store.DataStore);
+                 BitMapUtility.AllocationRegion region2 = bitMapUtility.openRegion(Store.DataStore)){
+                first = region1.getFreeIndex();
+                long second = region2.getFreeIndex();
+                Assertions.assertEquals(0, first);
+                Assertions.assertEquals(BitMapUtility.REGION_SIZE, second);
+                bitMapUtility.releaseIndex(Store.DataStore, first);
+                bitMapUtility.releaseIndex(Store.DataStore, second);
+            }
+            try (BitMapUtility.AllocationRegion region = bitMapUtility.openRegion(Store.DataStore)){
+                Assertions.assertEquals(first, region.getFreeIndex());
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("AllocationRegion -> Concurrent writers fill distinct blocks, including while the bitmap grows")
+    public void concurrentRegions() throws Exception{
+        Path base = Files.createTempDirectory("bitmap");
+        try {
+            BitMapUtility bitMapUtility = new BitMapUtility(base.toFile(), true);
+            List<Long> indices = __runConcurrently(() -> {
+                ArrayList<Long> claimed = new ArrayList<Long>();
+                try (BitMapUtility.AllocationRegion region = bitMapUtility.openRegion(Store.DataStore)){
+                    for (int i = 0; i < 700; i++){
+                        long index = region.getFreeIndex();
+                        bitMapUtility.setIndexDataStore(index, (short) DATA_STORE_BLOCK_FRAME.DATA_SIZE);
+                        bitMapUtility.releaseIndex(Store.DataStore, index);
+                        claimed.add(index);
+                    }
+                }
+                return claimed;
+            });
+            Assertions.assertEquals(THREADS * 700, indices.size());
+            Assertions.assertEquals(indices.size(), new HashSet<Long>(indices).size());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static List<Long> __runConcurrently(Callable<List<Long>> task) throws Exception{
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            ArrayList<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+            for (int i = 0; i < THREADS; i++)
+                futures.add(executor.submit(task));
+            ArrayList<Long> indices = new ArrayList<Long>();
+            for (Future<List<Long>> future: futures)
+                indices.addAll(future.get());
+            return indices;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package DiskUtility;
+
+import Constants.CHECKPOINT_FRAME;
+import Constants.VALUES;
+import FileSystem.Node;
+import FileSystem.NodeTree;
+import Utilities.BinaryUtilities;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class reads and writes checkpoints of the NodeTree. A checkpoint is a compact image of every Node that is held
+ * in memory (name, index, iNode address and flags) that allows the NodeTree to be mounted with a single sequential
+ * read instead of reading the DirectoryStore one directory at a time.
+ * Directories whose children had not been read when the checkpoint was written keep their CNR flag and are read lazily
+ * after mounting, as usual.
+ * A checkpoint is only valid for the generation of the SuperBlock it was written with. Gateway increments the
+ * generation before the first change to the directory tree after a checkpoint.
+ */
+public class CheckpointGateway {
+    private final File baseFile;
+    private final SecretKey key;
+
+    public CheckpointGateway(File baseFile, SecretKey key){
+        this.baseFile = baseFile;
+        this.key = key;
+    }
+
+    /**
+     * Writes a checkpoint of the NodeTree. The checkpoint is first written to a temporary file which then replaces the
+     * existing checkpoint.
+     * @param tree The NodeTree. All the nodes must have been written to the DirectoryStore.
+     * @param generation The generation the checkpoint is valid for
+     */
+    public void writeCheckpoint(NodeTree tree, long generation) throws Exception{
+        byte[] payload = deflate(getBytes(tree, generation));
+        payload = Crypto.encryptBlock(payload, key, payload.length);
+        byte[] byteArray = new byte[CHECKPOINT_FRAME.PAYLOAD_INDEX + payload.length];
+        System.arraycopy(VALUES.MAGIC_VALUE_BYTES, 0, byteArray, CHECKPOINT_FRAME.MAGIC_VALUE_INDEX, 4);
+        System.arraycopy(BinaryUtilities.convertLongToBytes(generation), 0, byteArray, CHECKPOINT_FRAME.GENERATION_INDEX, 8);
+        System.arraycopy(payload, 0, byteArray, CHECKPOINT_FRAME.PAYLOAD_INDEX, payload.length);
+        File file = new File(baseFile, CHECKPOINT_FRAME.FILE_NAME);
+        File temporaryFile = new File(baseFile, CHECKPOINT_FRAME.FILE_NAME + ".tmp");
+        try {
+            Files.write(temporaryFile.toPath(), byteArray);
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            throw new Exception("Unable to Write Checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the checkpoint of the NodeTree with a single read.
+     * @param generation The current generation of the SuperBlock
+     * @return The NodeTree, or null if there is no checkpoint, the checkpoint belongs to another generation or the
+     * checkpoint cannot be read.
+     */
+    public NodeTree readCheckpoint(long generation){
+        File file = new File(baseFile, CHECKPOINT_FRAME.FILE_NAME);
+        if (!file.isFile())
+            return null;
+        try {
+            byte[] byteArray = Files.readAllBytes(file.toPath());
+            if (byteArray.length < CHECKPOINT_FRAME.PAYLOAD_INDEX ||
+                    BinaryUtilities.convertBytesToInt(byteArray, CHECKPOINT_FRAME.MAGIC_VALUE_INDEX) != VALUES.MAGIC_VALUE ||
+                    BinaryUtilities.convertBytesToLong(byteArray, CHECKPOINT_FRAME.GENERATION_INDEX) != generation)
+                return null;
+            byte[] payload = Arrays.copyOfRange(byteArray, CHECKPOINT_FRAME.PAYLOAD_INDEX, byteArray.length);
+            payload = Crypto.decryptBlock(payload, key, payload.length - VALUES.IV_SIZE - VALUES.TAG_SIZE);
+            return fromBytes(inflate(payload), generation);
+        } catch (Exception e){
+            return null;
+        }
+    }
+
+    /**
+     * Returns the payload of a checkpoint of the NodeTree. Nodes are written in pre-order so that the record of a
+     * parent always precedes the records of its children.
+     * @param tree The NodeTree
+     * @param generation The generation the checkpoint is valid for
+     * @return byte array containing the payload
+     */
+    static byte[] getBytes(NodeTree tree, long generation) throws IOException{
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(byteArrayOutputStream);
+        outputStream.write(VALUES.MAGIC_VALUE_BYTES);
+        outputStream.writeLong(generation);
+        // Node Count. Replaced once all the nodes have been written.
+        outputStream.writeInt(0);
+        int nodeCount = 0;
+        ArrayDeque<Node> nodes = new ArrayDeque<Node>();
+        ArrayDeque<Integer> parentRecords = new ArrayDeque<Integer>();
+        nodes.push(tree.getRoot());
+        parentRecords.push(-1);
+        while (!nodes.isEmpty()){
+            Node node = nodes.pop();
+            int parentRecord = parentRecords.pop();
+            if (node.getIndex() == -1)
+                throw new IllegalStateException("Unable to write checkpoint: Node " + node.getPath() + " has not been written.");
+            byte[] nameBytes = node.getName().getBytes(StandardCharsets.UTF_8);
+            outputStream.writeInt(parentRecord);
+            outputStream.writeLong(node.getIndex());
+            outputStream.writeLong(node.getiNodeAddress());
+            outputStream.writeByte(node.getFlags());
+            outputStream.writeShort(nameBytes.length);
+            outputStream.write(nameBytes);
+            if (node.isDirectory()){
+                for (Node childNode: node.getChildNodes()){
+                    nodes.push(childNode);
+                    parentRecords.push(nodeCount);
+                }
+            }
+            nodeCount++;
+        }
+        outputStream.flush();
+        byte[] byteArray = byteArrayOutputStream.toByteArray();
+        System.arraycopy(BinaryUtilities.convertIntToBytes(nodeCount), 0, byteArray, CHECKPOINT_FRAME.NODE_COUNT_INDEX, 4);
+        return byteArray;
+    }
+
+    /**
+     * Creates a NodeTree from the payload of a checkpoint.
+     * @param byteArray The payload
+     * @param generation The expected generation
+     * @return The NodeTree
+     * @throws IllegalArgumentException If the payload is invalid or belongs to another generation.
+     */
+    static NodeTree fromBytes(byte[] byteArray, long generation){
+        if (byteArray.length < CHECKPOINT_FRAME.FIRST_RECORD_INDEX ||
+                BinaryUtilities.convertBytesToInt(byteArray, CHECKPOINT_FRAME.MAGIC_VALUE_INDEX) != VALUES.MAGIC_VALUE)
+            throw new IllegalArgumentException("Invalid Checkpoint. Magic Value does not match.");
+        if (BinaryUtilities.convertBytesToLong(byteArray, CHECKPOINT_FRAME.GENERATION_INDEX) != generation)
+            throw new IllegalArgumentException("Invalid Checkpoint. Generation does not match.");
+        int nodeCount = BinaryUtilities.convertBytesToInt(byteArray, CHECKPOINT_FRAME.NODE_COUNT_INDEX);
+        ArrayList<Node> nodes = new ArrayList<Node>(nodeCount);
+        int position = CHECKPOINT_FRAME.FIRST_RECORD_INDEX;
+        for (int i = 0; i < nodeCount; i++){
+            int parentRecord = BinaryUtilities.convertBytesToInt(byteArray, position + CHECKPOINT_FRAME.RECORD_PARENT_INDEX);
+            long index = BinaryUtilities.convertBytesToLong(byteArray, position + CHECKPOINT_FRAME.RECORD_INDEX_INDEX);
+            long iNodeAddress = BinaryUtilities.convertBytesToLong(byteArray, position + CHECKPOINT_FRAME.RECORD_INODE_INDEX);
+            byte flags = byteArray[position + CHECKPOINT_FRAME.RECORD_FLAGS_INDEX];
+            int nameLength = BinaryUtilities.convertBytesToShort(byteArray, position + CHECKPOINT_FRAME.RECORD_NAME_LENGTH_INDEX) & 0xFFFF;
+            String name = new String(byteArray, position + CHECKPOINT_FRAME.RECORD_NAME_INDEX, nameLength, StandardCharsets.UTF_8);
+            position += CHECKPOINT_FRAME.RECORD_NAME_INDEX + nameLength;
+            if ((i == 0) != (parentRecord == -1) || parentRecord >= i)
+                throw new IllegalArgumentException("Invalid Checkpoint. Invalid parent record.");
+            Node parentNode = (parentRecord == -1) ? null : nodes.get(parentRecord);
+            Node node = new Node(name, parentNode, iNodeAddress, flags);
+            node.setIndex(index);
+            if (parentNode != null)
+                parentNode.addChild(node);
+            nodes.add(node);
+        }
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("Invalid Checkpoint. Root does not exist.");
+        NodeTree tree = new NodeTree(true);
+        tree.setRoot(nodes.getFirst());
+        return tree;
+    }
+
+    private static byte[] deflate(byte[] byteArray) throws IOException{
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(byteArray.length / 2);
+        try (DeflaterOutputStream outputStream = new DeflaterOutputStream(byteArrayOutputStream)){
+            outputStream.write(byteArray);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] byteArray) throws IOException{
+        try (InflaterInputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(byteArray))){
+            return inputStream.readAllBytes();
+        }
+    }
+}
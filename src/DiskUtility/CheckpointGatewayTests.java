@@ -0,0 +1,163 @@
+package DiskUtility;
+
+import Constants.CHECKPOINT_FRAME;
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+import FileSystem.Node;
+import FileSystem.NodeTree;
+import Utilities.BinaryUtilities;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class CheckpointGatewayTests {
+    private static NodeTree createTree(){
+        NodeTree tree = new NodeTree(true);
+        Node root = new Node("root", null);
+        root.setIndex(0);
+        Node files = new Node("files", root);
+        files.setIndex(1);
+        root.addChild(files);
+        Node unread = new Node("unread", root, -1, (byte) (Node.DIRECTORY_FLAG_MASK | Node.CNR_FLAG_MASK));
+        unread.setIndex(2);
+        root.addChild(unread);
+        Node file = new Node("img-été.jpeg", files, 42, Node.HAS_THUMBNAIL_FLAG_MASK);
+        file.setIndex(3);
+        files.addChild(file);
+        tree.setRoot(root);
+        return tree;
+    }
+
+    @Test
+    @DisplayName("getBytes and fromBytes round trip")
+    public void checkpointRoundTrip() throws Exception{
+        NodeTree result = CheckpointGateway.fromBytes(CheckpointGateway.getBytes(createTree(), 5), 5);
+        Node root = result.getRoot();
+        Assertions.assertEquals(0, root.getIndex());
+        Assertions.assertEquals(2, root.getChildNodes().size());
+        Node files = root.getChildNode("files");
+        Assertions.assertEquals(1, files.getIndex());
+        Assertions.assertSame(root, files.getParentNode());
+        Assertions.assertFalse(files.childrenNotRead());
+        Node unread = root.getChildNode("unread");
+        Assertions.assertTrue(unread.isDirectory());
+        Assertions.assertTrue(unread.childrenNotRead());
+        Node file = files.getChildNode("img-été.jpeg");
+        Assertions.assertEquals(3, file.getIndex());
+        Assertions.assertEquals(42, file.getiNodeAddress());
+        Assertions.assertTrue(file.hasThumbnail());
+        Assertions.assertEquals("/files/img-été.jpeg", file.getPath());
+    }
+
+    @Test
+    @DisplayName("fromBytes rejects a checkpoint of another generation")
+    public void checkpointGenerationMismatch() throws Exception{
+        byte[] byteArray = CheckpointGateway.getBytes(createTree(), 5);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CheckpointGateway.fromBytes(byteArray, 6));
+    }
+
+    @Test
+    @DisplayName("getBytes rejects nodes that have not been written")
+    public void checkpointUnwrittenNode(){
+        NodeTree tree = createTree();
+        tree.getRoot().addChild(new Node("new", tree.getRoot()));
+        Assertions.assertThrows(IllegalStateException.class, () -> CheckpointGateway.getBytes(tree, 5));
+    }
+
+    @Test
+    @DisplayName("mount -> The NodeTree is read from a checkpoint of the current generation")
+    public void mountFromCheckpoint() throws Exception{
+        Path base = Files.createTempDirectory("checkpoint");
+        try {
+            __createFileSystem(base).unmount();
+            Assertions.assertTrue(Files.isRegularFile(base.resolve("fs").resolve(CHECKPOINT_FRAME.FILE_NAME)));
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            // A lazy mount of the directory-store only reads the children of the root.
+            Node a = mounted.getDir().getRoot().getChildNode("a");
+            Assertions.assertFalse(a.childrenNotRead());
+            Assertions.assertFalse(a.getChildNode("b").childrenNotRead());
+            __assertTree(mounted);
+            mounted.unmount();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("mount -> A checkpoint of an older generation is ignored and the directory-store is mounted")
+    public void mountStaleCheckpoint() throws Exception{
+        Path base = Files.createTempDirectory("checkpoint");
+        try {
+            __createFileSystem(base).unmount();
+            Path checkpoint = base.resolve("fs").resolve(CHECKPOINT_FRAME.FILE_NAME);
+            long generation = __getGeneration(checkpoint);
+            FileSystem fs = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            fs.createDirectory("/a", "new");
+            // Closed without a new checkpoint, so the checkpoint on disk belongs to the previous generation.
+            fs.getGateway().close();
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            Assertions.assertTrue(mounted.getDir().getRoot().getChildNode("a").childrenNotRead());
+            __assertTree(mounted);
+            Assertions.assertTrue(mounted.getNode("/a/new").isDirectory());
+            mounted.unmount();
+            // The unmount replaces the stale checkpoint with one of a later generation.
+            Assertions.assertTrue(__getGeneration(checkpoint) > generation);
+            mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            __assertTree(mounted);
+            Assertions.assertTrue(mounted.getNode("/a/new").isDirectory());
+            mounted.unmount();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("mount -> A checkpoint that cannot be decrypted is ignored and the directory-store is mounted")
+    public void mountCorruptCheckpoint() throws Exception{
+        Path base = Files.createTempDirectory("checkpoint");
+        try {
+            __createFileSystem(base).unmount();
+            Path checkpoint = base.resolve("fs").resolve(CHECKPOINT_FRAME.FILE_NAME);
+            byte[] byteArray = Files.readAllBytes(checkpoint);
+            byteArray[byteArray.length - 1] ^= 1;
+            Files.write(checkpoint, byteArray);
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            Assertions.assertTrue(mounted.getDir().getRoot().getChildNode("a").childrenNotRead());
+            __assertTree(mounted);
+            mounted.unmount();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static FileSystem __createFileSystem(Path base) throws Exception{
+        FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+        for (int i = 0; i < 20; i++){
+            byte[] contents = TestUtilities.getContents(3000 + i * 500, i);
+            String parentPath = i % 2 == 0 ? "/a" : "/a/b";
+            fs.addFile(new InputFile("f" + i, parentPath, contents.length, 0, 0, new ByteArrayInputStream(contents)));
+        }
+        fs.createDirectory("/", "c");
+        return fs;
+    }
+
+    private static long __getGeneration(Path checkpoint) throws Exception{
+        return BinaryUtilities.convertBytesToLong(Files.readAllBytes(checkpoint), CHECKPOINT_FRAME.GENERATION_INDEX);
+    }
+
+    private static void __assertTree(FileSystem fs) throws Exception{
+        Assertions.assertEquals(2, fs.openDirectory("/").size());
+        Assertions.assertEquals(0, fs.openDirectory("/c").size());
+        for (int i = 0; i < 20; i++){
+            String path = (i % 2 == 0 ? "/a" : "/a/b") + "/f" + i;
+            try (CustomInputStream inputStream = fs.openFile(path)){
+                Assertions.assertArrayEquals(TestUtilities.getContents(3000 + i * 500, i), inputStream.readAllBytes(), path);
+            }
+        }
+    }
+}
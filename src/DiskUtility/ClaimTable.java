@@ -0,0 +1,101 @@
+package DiskUtility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class holds a set of claimed indices that is changed with compare-and-set instead of locks. Every index is a
+ * single bit. The bits are kept in pages of PAGE_SIZE indices that are created the first time one of their indices is
+ * claimed, so the table never has to be copied when a bitmap grows.
+ */
+class ClaimTable {
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_COUNT = 1 << 12;
+    /**
+     * Number of failed attempts after which a thread waiting for an index parks instead of spinning.
+     */
+    private static final int SPIN_ATTEMPTS = 64;
+    private static final long PARK_NANOS = 50_000;
+    private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<AtomicLongArray>(PAGE_COUNT);
+
+    /**
+     * Claims an index if it is not claimed already.
+     * @param index Target Index
+     * @return true if the index has been claimed by this call.
+     */
+    boolean tryClaim(long index){
+        AtomicLongArray page = __getPage(index);
+        int word = __getWord(index);
+        long mask = __getMask(index);
+        while (true){
+            long value = page.get(word);
+            if ((value & mask) != 0)
+                return false;
+            if (page.compareAndSet(word, value, value | mask))
+                return true;
+        }
+    }
+
+    /**
+     * Claims an index, waiting for the thread that has claimed it to release it. Indices are only held while a block
+     * is written, so the thread spins for a while before it parks.
+     * @param index Target Index
+     */
+    void claim(long index) throws InterruptedException{
+        for (int attempt = 0; !tryClaim(index); attempt++){
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (attempt < SPIN_ATTEMPTS)
+                Thread.onSpinWait();
+            else
+                LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Releases an index. Releasing an index that is not claimed has no effect.
+     * @param index Target Index
+     */
+    void release(long index){
+        AtomicLongArray page = __getPage(index);
+        int word = __getWord(index);
+        long mask = __getMask(index);
+        while (true){
+            long value = page.get(word);
+            if ((value & mask) == 0 || page.compareAndSet(word, value, value & ~mask))
+                return;
+        }
+    }
+
+    boolean isClaimed(long index){
+        AtomicLongArray page = pages.get(__getPageIndex(index));
+        return page != null && (page.get(__getWord(index)) & __getMask(index)) != 0;
+    }
+
+    private AtomicLongArray __getPage(long index){
+        int pageIndex = __getPageIndex(index);
+        AtomicLongArray page = pages.get(pageIndex);
+        if (page == null){
+            // Another thread may create the page at the same time. Only one of the pages is installed.
+            pages.compareAndSet(pageIndex, null, new AtomicLongArray(PAGE_SIZE / 64));
+            page = pages.get(pageIndex);
+        }
+        return page;
+    }
+
+    private static int __getPageIndex(long index){
+        if (index < 0 || (index >>> PAGE_SHIFT) >= PAGE_COUNT)
+            throw new IndexOutOfBoundsException("Invalid Index For Claim: " + index);
+        return (int)(index >>> PAGE_SHIFT);
+    }
+
+    private static int __getWord(long index){
+        return (int)((index & (PAGE_SIZE - 1)) >>> 6);
+    }
+
+    private static long __getMask(long index){
+        return 1L << (index & 63);
+    }
+}
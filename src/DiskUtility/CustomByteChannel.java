@@ -0,0 +1,190 @@
+package DiskUtility;
+
+import Constants.DATA_STORE_BLOCK_FRAME;
+import FileSystem.INode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class provides random access to the contents of a file. The channel is read-only.
+ * A position within the file is mapped to its extent with a binary search over the offsets at which the extents
+ * start, and from there to a data block and an index within it. Only the blocks that hold the requested bytes are read
+ * and decrypted.
+ * Positional reads do not use the position of the channel, so several threads may read the same channel at once. The
+ * last decrypted block is kept so that small sequential reads do not decrypt a block more than once.
+ * The bytes of the holes of a sparse file are zeros that are not read from the data-store.
+ * The contents of an inline file are kept as that block, described by a single extent, so they are never read from the
+ * data-store.
+ */
+public class CustomByteChannel implements SeekableByteChannel {
+    private final DataStoreGateway dataStore;
+    private final DATA_STORE_BLOCK_FRAME.Layout frame;
+    private final long length;
+    private final ExtentStoreGateway.ExtentFrame[] extentFrames;
+    /**
+     * Index of the first byte of every extent within the file.
+     */
+    private final long[] extentStarts;
+    private long position;
+    private volatile boolean open = true;
+    private volatile CachedBlock cachedBlock;
+    private static final byte[] ZERO_BYTES = new byte[DATA_STORE_BLOCK_FRAME.DATA_SIZE];
+
+    private static class CachedBlock {
+        final long index;
+        final byte[] dataBlock;
+        CachedBlock(long index, byte[] dataBlock){
+            this.index = index;
+            this.dataBlock = dataBlock;
+        }
+    }
+
+    public CustomByteChannel(Gateway gateway, INode iNode) throws Exception{
+        this.dataStore = gateway.getDataStoreGateway();
+        this.frame = dataStore.getFrame();
+        this.length = iNode.getiNodeSize();
+        List<ExtentStoreGateway.ExtentFrame> frames = gateway.__getINodeDetails(iNode).extentFrames;
+        if (iNode.isInline()){
+            frames = List.of(new ExtentStoreGateway.ExtentFrame(0, 0, length));
+            byte[] dataBlock = new byte[frame.firstDataByteIndex + (int) length];
+            System.arraycopy(iNode.getInlineData(), 0, dataBlock, frame.firstDataByteIndex, (int) length);
+            this.cachedBlock = new CachedBlock(0, dataBlock);
+        }
+        this.extentFrames = frames.toArray(new ExtentStoreGateway.ExtentFrame[0]);
+        this.extentStarts = new long[extentFrames.length];
+        long start = 0;
+        for (int i = 0; i < extentFrames.length; i++){
+            extentStarts[i] = start;
+            start += extentFrames[i].length;
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        int bytesRead = read(dst, position);
+        if (bytesRead > 0)
+            position += bytesRead;
+        return bytesRead;
+    }
+
+    /**
+     * Reads bytes starting at the given position of the file. The position of the channel is not changed.
+     * @param dst The buffer the bytes are placed in
+     * @param position Index of the first byte within the file
+     * @return Number of bytes read, or -1 if the position is at or after the end of the file.
+     */
+    public int read(ByteBuffer dst, long position) throws IOException {
+        __ensureOpen();
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        if (position >= length)
+            return -1;
+        int bytesRead = 0;
+        int extent = __findExtent(position);
+        while (dst.hasRemaining() && position < length){
+            ExtentStoreGateway.ExtentFrame extentFrame = extentFrames[extent];
+            long extentIndex = position - extentStarts[extent];
+            if (extentIndex == extentFrame.length){
+                extent++;
+                continue;
+            }
+            if (extentFrame.isHole()){
+                int count = (int) Math.min(Math.min(extentFrame.length - extentIndex, ZERO_BYTES.length), dst.remaining());
+                dst.put(ZERO_BYTES, 0, count);
+                position += count;
+                bytesRead += count;
+                continue;
+            }
+            long byteIndex = extentFrame.offset + extentIndex;
+            long blockIndex = extentFrame.dataStoreIndex + byteIndex / frame.dataSize;
+            int blockByteIndex = (int) (byteIndex % frame.dataSize);
+            long bytesInBlock = Math.min(frame.dataSize - blockByteIndex, extentFrame.length - extentIndex);
+            int count = (int) Math.min(bytesInBlock, dst.remaining());
+            dst.put(__getDataBlock(blockIndex), frame.firstDataByteIndex + blockByteIndex, count);
+            position += count;
+            bytesRead += count;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * @return Index of the extent that holds the byte at the position
+     */
+    private int __findExtent(long position){
+        int index = Arrays.binarySearch(extentStarts, position);
+        if (index >= 0)
+            return index;
+        // The insertion point is the first extent that starts after the position.
+        return -index - 2;
+    }
+
+    private byte[] __getDataBlock(long blockIndex) throws IOException {
+        CachedBlock block = cachedBlock;
+        if (block != null && block.index == blockIndex)
+            return block.dataBlock;
+        byte[] dataBlock;
+        try {
+            dataBlock = dataStore.__getDataBlock(blockIndex);
+        } catch (Exception e){
+            throw new IOException("Unable to get bytes from the dataBlock: " + e.getMessage());
+        }
+        cachedBlock = new CachedBlock(blockIndex, dataBlock);
+        return dataBlock;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        __ensureOpen();
+        return position;
+    }
+
+    /**
+     * Sets the position of the channel. A position after the end of the file is allowed, and reads from it return -1.
+     */
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        __ensureOpen();
+        if (newPosition < 0)
+            throw new IllegalArgumentException("Negative position");
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        __ensureOpen();
+        return length;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        cachedBlock = null;
+    }
+
+    private void __ensureOpen() throws ClosedChannelException {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+}
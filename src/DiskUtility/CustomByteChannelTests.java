@@ -0,0 +1,86 @@
+package DiskUtility;
+
+import FileSystem.FileSystem;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CustomByteChannelTests {
+    private static final int SIZE = 50000;
+
+    @Test
+    @DisplayName("position -> Reads continue from any position, including backwards")
+    public void seek() throws Exception{
+        Path base = Files.createTempDirectory("channel");
+        try {
+            byte[] contents = TestUtilities.getContents(SIZE, 0);
+            FileSystem fs = TestUtilities.createFragmentedFileSystem(base, contents);
+            try (CustomByteChannel channel = fs.openChannel("/file")){
+                Assertions.assertEquals(SIZE, channel.size());
+                ByteBuffer buffer = ByteBuffer.allocate(5000);
+                for (long position: new long[]{40000, 3599, 0, 12345, SIZE - 10}){
+                    channel.position(position);
+                    buffer.clear();
+                    int count = channel.read(buffer);
+                    Assertions.assertEquals(Math.min(5000, SIZE - position), count);
+                    Assertions.assertEquals(position + count, channel.position());
+                    Assertions.assertArrayEquals(Arrays.copyOfRange(contents, (int) position, (int) position + count),
+                            Arrays.copyOf(buffer.array(), count), "position " + position);
+                }
+                Assertions.assertEquals(-1, channel.read(buffer));
+                channel.position(SIZE + 100);
+                Assertions.assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+                Assertions.assertThrows(NonWritableChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("read -> Positional reads from several threads share one channel")
+    public void concurrentReads() throws Exception{
+        Path base = Files.createTempDirectory("channel");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            byte[] contents = TestUtilities.getContents(SIZE, 0);
+            FileSystem fs = TestUtilities.createFragmentedFileSystem(base, contents);
+            CustomByteChannel channel = fs.openChannel("/file");
+            ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 4; t++){
+                Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++){
+                        int position = random.nextInt(SIZE);
+                        ByteBuffer buffer = ByteBuffer.allocate(1 + random.nextInt(8000));
+                        int count = channel.read(buffer, position);
+                        Assertions.assertEquals(Math.min(buffer.capacity(), SIZE - position), count);
+                        Assertions.assertArrayEquals(Arrays.copyOfRange(contents, position, position + count),
+                                Arrays.copyOf(buffer.array(), count));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future: futures)
+                future.get();
+            channel.close();
+            Assertions.assertThrows(ClosedChannelException.class, () -> channel.read(ByteBuffer.allocate(1), 0));
+        } finally {
+            executor.shutdownNow();
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+}
@@ -1,35 +1,79 @@
 package DiskUtility;
 import Constants.DATA_STORE_BLOCK_FRAME;
 import FileSystem.INode;
-import FileSystem.Node;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedList;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
 
+/**
+ * This class reads the contents of a file from the data-store or the thumbnail-store.
+ * The stream keeps the last data block it has decrypted. Reads copy directly out of that block, so a block is only read
+ * and decrypted once however the stream is read. The position within the file is kept as an extent and an index within
+ * it, so skipped bytes are passed over without reading their blocks.
+ * While the stream is read sequentially, the following blocks are read and decrypted in the background by a ReadAhead,
+ * whose window grows as long as the stream stays sequential. Skipping past the current block shrinks the window.
+ * Holes of sparse files are read out of a block of zeros that is shared by every stream, without any reads or
+ * decryption.
+ * The contents of an inline file are read along with its INode. They are placed in a block of their own, which is
+ * described by a single extent, so the stream reads them like any other block without touching the data-store.
+ */
 public class CustomInputStream extends InputStream{
     private Gateway gateway;
-    private byte[] buffer;
     private long pointer;
-    private int bufferPointer;
     private long length;
     private Gateway.NodeEntry nodeEntry;
-    private int currentExtent; // Index of the current extentFrame within the LinkedList of extentFrames.
-    private long runningExtentPointer;
+    private ArrayList<ExtentStoreGateway.ExtentFrame> extentFrames;
+    private int currentExtent; // Index of the current extentFrame within extentFrames.
+    private long runningExtentPointer; // Index of the next byte within the current extentFrame.
     private boolean isThumbnail;
     private DataStoreGateway dataStore;
+    private final DATA_STORE_BLOCK_FRAME.Layout frame;
+    /**
+     * The last decrypted data block, or null if no block has been read yet.
+     */
+    private byte[] dataBlock;
+    /**
+     * Index of the first data byte within dataBlock. The blocks of the store start with their header, while the block
+     * of zeros and the contents of an inline file do not.
+     */
+    private int dataOffset;
+    private long dataBlockIndex = -1;
+    /**
+     * Index of the next byte within the data bytes of the current block. Set by __loadBlock.
+     */
+    private int blockByteIndex;
+    /**
+     * Number of bytes of the file that follow the pointer within the current block, or 0 if the block has to be loaded.
+     */
+    private int blockBytesRemaining;
+    private final ReadAhead readAhead;
+    /**
+     * The block that the bytes of holes are read from, whatever the block size of the store. Its bytes are all zero.
+     */
+    private static final byte[] HOLE_BLOCK = new byte[DATA_STORE_BLOCK_FRAME.DATA_SIZE];
+    /**
+     * Set if the stream has been repositioned past the end of the current block since the block was loaded.
+     */
+    private boolean skipped;
+    /**
+     * Set if the contents are stored within the INode, in which case dataBlock holds them.
+     */
+    private final boolean inline;
     public CustomInputStream(Gateway gateway, INode iNode, boolean isThumbnail) throws Exception{
         this.gateway = gateway;
-        this.buffer = new byte[DATA_STORE_BLOCK_FRAME.FULL_SIZE];
         try{
             this.nodeEntry = gateway.__getINodeDetails(iNode);
         } catch (Exception e){
             System.out.println("Unable to create InputStream. Unable to get NodeEntry. " + e.getMessage());
         }
         this.length = this.nodeEntry.iNode.getiNodeSize();
+        this.extentFrames = new ArrayList<ExtentStoreGateway.ExtentFrame>(this.nodeEntry.extentFrames);
         this.currentExtent = 0;
         this.pointer = 0;
-        this.bufferPointer = 0;
         this.runningExtentPointer = 0;
         this.isThumbnail = isThumbnail;
         if (isThumbnail){
@@ -37,6 +81,15 @@ public class CustomInputStream extends InputStream{
         } else {
             dataStore = gateway.getDataStoreGateway();
         }
+        this.frame = dataStore.getFrame();
+        this.readAhead = new ReadAhead(dataStore);
+        this.inline = iNode.isInline();
+        if (inline){
+            extentFrames.add(new ExtentStoreGateway.ExtentFrame(0, 0, length));
+            dataBlock = Arrays.copyOf(iNode.getInlineData(), (int) length);
+            dataOffset = 0;
+            dataBlockIndex = 0;
+        }
     }
     public CustomInputStream(Gateway gateway, INode iNode) throws Exception{
         this(gateway, iNode, false);
@@ -44,51 +97,190 @@ public class CustomInputStream extends InputStream{
 
     @Override
     public int read() throws IOException {
-        int value;
         if (pointer == length){
             return -1;
         }
-        // Populate the buffer. Get the next byte from the buffer.
-        // Repopulate the buffer when at the end of the buffer.
-        if (pointer == 0 || bufferPointer == buffer.length) {
-            try {
-                __populateBuffer();
-            } catch (Exception e){
-                throw new IOException("Unable to get bytes from the dataBlock: " + e.getMessage());
-            }
-        }
-        value = buffer[bufferPointer] & 0xFF; // BIT AND to ensure that value is between 0 and 255
-        __incrementPointers();
+        if (blockBytesRemaining == 0)
+            __loadBlock();
+        int value = dataBlock[dataOffset + blockByteIndex] & 0xFF; // BIT AND to ensure that value is between 0 and 255
+        __advance(1);
         return value;
     }
 
     /**
-     * This method populates/repopulates the buffer (grabs the next bytes starting from the pointer index)
-     * Sets the bufferPointer to 0.
-     */
-    private void __populateBuffer() throws Exception{
-        ExtentStoreGateway.ExtentFrame extentFrame = nodeEntry.extentFrames.get(currentExtent);
-        // Number of bytes populated at a given time. If the bytesPopulated is not the same as `buffer.length` and all
-        // the bytes of an extent have been read, get another extent. Continue the loop till
-        // `bytesPopulated` == `buffer.length`;
-        int bytesPopulated = 0;
-        while ((bytesPopulated + pointer) < length && bytesPopulated != buffer.length){
-            // Check if there are any bytes left in the current extentFrame. If not, get the next extentFrame.
-            if (runningExtentPointer == extentFrame.length){
-                // The data in the runningExtent has run out. Get a new Extent
-                currentExtent++;
-                extentFrame = nodeEntry.extentFrames.get(currentExtent);
-                runningExtentPointer = 0;
+     * Reads up to len bytes. The bytes are copied out of the decrypted blocks, one block at a time.
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0)
+            return 0;
+        if (pointer == length)
+            return -1;
+        int bytesRead = 0;
+        while (bytesRead < len && pointer < length){
+            if (blockBytesRemaining == 0)
+                __loadBlock();
+            int count = Math.min(blockBytesRemaining, len - bytesRead);
+            System.arraycopy(dataBlock, dataOffset + blockByteIndex, b, off + bytesRead, count);
+            __advance(count);
+            bytesRead += count;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Skips bytes by moving the position within the extents. The skipped blocks are not read.
+     */
+    @Override
+    public long skip(long n) {
+        if (n <= 0)
+            return 0;
+        long count = Math.min(n, length - pointer);
+        if (count >= blockBytesRemaining)
+            skipped = true;
+        __advance(count);
+        return count;
+    }
+
+    /**
+     * @return The number of bytes remaining in the file, as the contents are always available to be read.
+     */
+    @Override
+    public int available() {
+        return (int) Math.min(length - pointer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes the remaining bytes to the output stream directly out of the decrypted blocks.
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "out");
+        long transferred = 0;
+        while (pointer < length){
+            if (blockBytesRemaining == 0)
+                __loadBlock();
+            int count = blockBytesRemaining;
+            out.write(dataBlock, dataOffset + blockByteIndex, count);
+            __advance(count);
+            transferred += count;
+        }
+        return transferred;
+    }
+
+    @Override
+    public void close(){
+        readAhead.close();
+        blockBytesRemaining = 0;
+        if (inline)
+            return;
+        dataBlock = null;
+        dataBlockIndex = -1;
+    }
+
+    /**
+     * @return Number of blocks currently read ahead of the stream
+     */
+    public int getReadAheadWindow(){
+        return readAhead.getWindow();
+    }
+
+    /**
+     * @return Number of blocks that had been read ahead by the time the stream reached them
+     */
+    public long getReadAheadHits(){
+        return readAhead.getHits();
+    }
+
+    /**
+     * @return Number of blocks that the stream had to read itself
+     */
+    public long getReadAheadMisses(){
+        return readAhead.getMisses();
+    }
+
+    /**
+     * Makes the block that holds the byte at the pointer the current block, reading and decrypting it if it is not the
+     * block that was read last. Sets blockByteIndex and blockBytesRemaining.
+     */
+    private void __loadBlock() throws IOException {
+        ExtentStoreGateway.ExtentFrame extentFrame = extentFrames.get(currentExtent);
+        // Empty extents are passed over by __advance, but the first extent may be empty.
+        while (runningExtentPointer == extentFrame.length){
+            currentExtent++;
+            runningExtentPointer = 0;
+            extentFrame = extentFrames.get(currentExtent);
+        }
+        if (extentFrame.isHole()){
+            blockByteIndex = 0;
+            blockBytesRemaining = (int) Math.min(Math.min(HOLE_BLOCK.length, extentFrame.length - runningExtentPointer), length - pointer);
+            // The hole is not a block of the store, so the block read last is loaded again after it.
+            dataBlock = HOLE_BLOCK;
+            dataOffset = 0;
+            dataBlockIndex = -1;
+            return;
+        }
+        long extentIndex = extentFrame.offset + runningExtentPointer;
+        long blockIndex = extentFrame.dataStoreIndex + extentIndex / frame.dataSize;
+        blockByteIndex = (int) (extentIndex % frame.dataSize);
+        if (blockIndex != dataBlockIndex){
+            dataBlock = readAhead.getBlock(blockIndex, !skipped, count -> __getNextBlocks(blockIndex, count));
+            dataOffset = frame.firstDataByteIndex;
+            dataBlockIndex = blockIndex;
+        }
+        skipped = false;
+        long bytesInBlock = Math.min(frame.dataSize - blockByteIndex, extentFrame.length - runningExtentPointer);
+        blockBytesRemaining = (int) Math.min(bytesInBlock, length - pointer);
+    }
+
+    /**
+     * Returns the blocks that follow the current block in the order of the file.
+     * @param blockIndex Index of the current block, which is within the current extent
+     * @param count Maximum number of blocks
+     */
+    private long[] __getNextBlocks(long blockIndex, int count){
+        long[] blocks = new long[count];
+        int n = 0;
+        long previousBlock = blockIndex;
+        for (int i = currentExtent; i < extentFrames.size() && n < count; i++){
+            ExtentStoreGateway.ExtentFrame extentFrame = extentFrames.get(i);
+            if (extentFrame.length == 0 || extentFrame.isHole())
+                continue;
+            long firstBlock = (i == currentExtent) ? blockIndex + 1 : extentFrame.dataStoreIndex + extentFrame.offset / frame.dataSize;
+            long lastBlock = extentFrame.dataStoreIndex + (extentFrame.offset + extentFrame.length - 1) / frame.dataSize;
+            for (long block = firstBlock; block <= lastBlock && n < count; block++){
+                // The next extent may continue within the last block of the previous one.
+                if (block == previousBlock)
+                    continue;
+                blocks[n++] = block;
+                previousBlock = block;
             }
-            int bytesRead = 0;
-            bytesRead =  dataStore.populateBufferFromExtent(buffer, nodeEntry.extentFrames.get(currentExtent), bytesPopulated ,runningExtentPointer);
-            bytesPopulated += bytesRead;
-            runningExtentPointer += bytesRead;
         }
-        bufferPointer = 0;
+        return Arrays.copyOf(blocks, n);
     }
-    private void __incrementPointers(){
-        pointer++;
-        bufferPointer++;
+
+    /**
+     * Moves the pointer forward, along with the position within the extents.
+     * @param count Number of bytes. Must not pass the end of the file.
+     */
+    private void __advance(long count){
+        pointer += count;
+        if (count < blockBytesRemaining){
+            blockByteIndex += (int) count;
+            blockBytesRemaining -= (int) count;
+        } else {
+            blockBytesRemaining = 0;
+        }
+        while (count > 0){
+            long bytesInExtent = extentFrames.get(currentExtent).length - runningExtentPointer;
+            if (count < bytesInExtent){
+                runningExtentPointer += count;
+                return;
+            }
+            count -= bytesInExtent;
+            currentExtent++;
+            runningExtentPointer = 0;
+        }
     }
 }
@@ -0,0 +1,163 @@
+package DiskUtility;
+
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class CustomInputStreamTests {
+    private static final int SIZE = 50000;
+
+    @Test
+    @DisplayName("read -> Bulk reads of any size return the contents of a fragmented file")
+    public void read() throws Exception{
+        Path base = Files.createTempDirectory("stream");
+        try {
+            byte[] contents = TestUtilities.getContents(SIZE, 0);
+            FileSystem fs = TestUtilities.createFragmentedFileSystem(base, contents);
+            for (int chunk: new int[]{1, 7, 3600, 4096, 10000, SIZE}){
+                try (CustomInputStream inputStream = fs.openFile("/file")){
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[chunk + 3];
+                    int count;
+                    while ((count = inputStream.read(buffer, 3, chunk)) != -1)
+                        outputStream.write(buffer, 3, count);
+                    Assertions.assertArrayEquals(contents, outputStream.toByteArray(), "chunk " + chunk);
+                    Assertions.assertEquals(-1, inputStream.read());
+                    Assertions.assertEquals(0, inputStream.read(buffer, 0, 0));
+                }
+            }
+            try (CustomInputStream inputStream = fs.openFile("/file")){
+                for (int i = 0; i < 5000; i++)
+                    Assertions.assertEquals(contents[i] & 0xFF, inputStream.read());
+                Assertions.assertArrayEquals(Arrays.copyOfRange(contents, 5000, SIZE), inputStream.readAllBytes());
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("skip -> Skipped bytes are passed over and the stream continues at the right position")
+    public void skip() throws Exception{
+        Path base = Files.createTempDirectory("stream");
+        try {
+            byte[] contents = TestUtilities.getContents(SIZE, 0);
+            FileSystem fs = TestUtilities.createFragmentedFileSystem(base, contents);
+            try (CustomInputStream inputStream = fs.openFile("/file")){
+                Assertions.assertEquals(SIZE, inputStream.available());
+                Assertions.assertEquals(0, inputStream.skip(-5));
+                Assertions.assertEquals(3599, inputStream.skip(3599));
+                Assertions.assertEquals(contents[3599] & 0xFF, inputStream.read());
+                Assertions.assertEquals(12345, inputStream.skip(12345));
+                byte[] buffer = new byte[100];
+                Assertions.assertEquals(100, inputStream.read(buffer));
+                Assertions.assertArrayEquals(Arrays.copyOfRange(contents, 15945, 16045), buffer);
+                Assertions.assertEquals(SIZE - 16045, inputStream.available());
+                Assertions.assertEquals(SIZE - 16045, inputStream.skip(Long.MAX_VALUE));
+                Assertions.assertEquals(0, inputStream.available());
+                Assertions.assertEquals(-1, inputStream.read());
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("transferTo -> The remaining bytes are written to the output stream")
+    public void transferTo() throws Exception{
+        Path base = Files.createTempDirectory("stream");
+        try {
+            byte[] contents = TestUtilities.getContents(SIZE, 0);
+            FileSystem fs = TestUtilities.createFragmentedFileSystem(base, contents);
+            try (CustomInputStream inputStream = fs.openFile("/file")){
+                Assertions.assertEquals(1000, inputStream.skip(1000));
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                Assertions.assertEquals(SIZE - 1000, inputStream.transferTo(outputStream));
+                Assertions.assertArrayEquals(Arrays.copyOfRange(contents, 1000, SIZE), outputStream.toByteArray());
+                Assertions.assertEquals(0, inputStream.transferTo(outputStream));
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("ReadAhead -> The window grows while the stream is sequential and shrinks on random access")
+    public void readAhead() throws Exception{
+        Path base = Files.createTempDirectory("stream");
+        try {
+            byte[] contents = TestUtilities.getContents(SIZE, 0);
+            FileSystem fs = TestUtilities.createFragmentedFileSystem(base, contents);
+            try (CustomInputStream inputStream = fs.openFile("/file")){
+                Assertions.assertArrayEquals(contents, inputStream.readAllBytes());
+                Assertions.assertTrue(inputStream.getReadAheadHits() >= 10, "hits " + inputStream.getReadAheadHits());
+                Assertions.assertTrue(inputStream.getReadAheadMisses() <= 3, "misses " + inputStream.getReadAheadMisses());
+                Assertions.assertTrue(inputStream.getReadAheadWindow() > ReadAhead.INITIAL_WINDOW);
+            }
+            try (CustomInputStream inputStream = fs.openFile("/file")){
+                byte[] buffer = new byte[7300];
+                Assertions.assertEquals(buffer.length, inputStream.read(buffer));
+                int window = inputStream.getReadAheadWindow();
+                for (int position = buffer.length; position + 10000 < SIZE; position += 10001){
+                    Assertions.assertEquals(10000, inputStream.skip(10000));
+                    Assertions.assertEquals(contents[position + 10000] & 0xFF, inputStream.read());
+                }
+                Assertions.assertTrue(inputStream.getReadAheadWindow() < window);
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("sparse -> Zero chunks are stored as holes and read back as zeros")
+    public void sparse() throws Exception{
+        Path base = Files.createTempDirectory("stream");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            int hole = DataStoreGateway.HOLE_SIZE;
+            // Data, a hole of 20 chunks, a run of zeros shorter than a chunk, data and a hole at the end.
+            byte[] contents = new byte[hole * 40 + 1234];
+            byte[] data = TestUtilities.getContents(SIZE, 0);
+            System.arraycopy(data, 0, contents, 0, hole * 5);
+            System.arraycopy(data, 0, contents, hole * 25 + 100, hole * 10);
+            fs.addFile(new InputFile("sparse", "/", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            long dataStoreLength = Files.size(base.resolve("fs").resolve(Store.DataStore.fileName));
+            Assertions.assertTrue(dataStoreLength < hole * 20L, "data-store " + dataStoreLength);
+            try (CustomInputStream inputStream = fs.openFile("/sparse")){
+                Assertions.assertArrayEquals(contents, inputStream.readAllBytes());
+            }
+            try (CustomInputStream inputStream = fs.openFile("/sparse")){
+                Assertions.assertEquals(hole * 5L - 10, inputStream.skip(hole * 5L - 10));
+                byte[] buffer = new byte[hole * 21];
+                Assertions.assertEquals(buffer.length, inputStream.readNBytes(buffer, 0, buffer.length));
+                Assertions.assertArrayEquals(Arrays.copyOfRange(contents, hole * 5 - 10, hole * 26 - 10), buffer);
+            }
+            try (CustomByteChannel channel = fs.openChannel("/sparse")){
+                ByteBuffer buffer = ByteBuffer.allocate(hole * 3);
+                channel.read(buffer, hole * 24L);
+                Assertions.assertArrayEquals(Arrays.copyOfRange(contents, hole * 24, hole * 27), buffer.array());
+            }
+            // A range written over a hole splits it.
+            fs.writeFile("/sparse", hole * 10L, Arrays.copyOf(data, 500));
+            System.arraycopy(data, 0, contents, hole * 10, 500);
+            try (CustomInputStream inputStream = fs.openFile("/sparse")){
+                Assertions.assertArrayEquals(contents, inputStream.readAllBytes());
+            }
+            fs.removeNode("/sparse");
+            fs.reclaimAll();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package DiskUtility;
+
+import Constants.DATA_STORE_BLOCK_FRAME;
+import FileSystem.INode;
+import FileSystem.InputFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Objects;
+
+/**
+ * This class writes a new file whose size is not known in advance, e.g. an upload that arrives in chunks.
+ * The bytes are collected in a buffer of BUFFER_SIZE bytes. Every time the buffer is full, its contents are encrypted
+ * and written to blocks of the data-store, and the extents of the file are extended. The blocks are taken from an
+ * AllocationRegion that is held until the stream is closed, so the blocks of the file stay close together.
+ * The file is created when the stream is closed: its extents and INode are written and the Commit adds it to the
+ * directory tree. If the stream is aborted, or the file cannot be created, the blocks that have been written are freed.
+ * A file that ends before the buffer is first written and is within the inline threshold of the Gateway is stored within
+ * its INode instead, without using the data-store.
+ * A stream is used by a single thread.
+ */
+public class CustomOutputStream extends OutputStream {
+    public static final int BUFFER_SIZE = DATA_STORE_BLOCK_FRAME.DATA_SIZE * 16;
+    private final Gateway gateway;
+    private final DataStoreGateway dataStore;
+    private final BitMapUtility.AllocationRegion region;
+    private final LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames = new LinkedList<ExtentStoreGateway.ExtentFrame>();
+    private final String name;
+    private final String parentPath;
+    private final long creationTime;
+    private final Commit commit;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPointer;
+    private long size;
+    private boolean closed;
+
+    /**
+     * Adds a written file to the directory tree.
+     */
+    public interface Commit {
+        void commit(INode iNode) throws Exception;
+    }
+
+    /**
+     * @param gateway The Gateway of the FileSystem
+     * @param name The name of the file
+     * @param parentPath The path of the parent directory of the file
+     * @param commit Adds the file to the directory tree once it has been written
+     */
+    public CustomOutputStream(Gateway gateway, String name, String parentPath, Commit commit){
+        this.gateway = gateway;
+        this.dataStore = gateway.getDataStoreGateway();
+        this.region = dataStore.openRegion();
+        this.name = name;
+        this.parentPath = parentPath;
+        this.creationTime = System.currentTimeMillis();
+        this.commit = commit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        __ensureOpen();
+        buffer[bufferPointer++] = (byte) b;
+        size++;
+        if (bufferPointer == buffer.length)
+            __writeBuffer();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        __ensureOpen();
+        while (len > 0){
+            int count = Math.min(len, buffer.length - bufferPointer);
+            System.arraycopy(b, off, buffer, bufferPointer, count);
+            bufferPointer += count;
+            size += count;
+            off += count;
+            len -= count;
+            if (bufferPointer == buffer.length)
+                __writeBuffer();
+        }
+    }
+
+    /**
+     * Writes the remaining bytes and creates the file.
+     * @throws IOException If the file could not be created. The blocks of the file are freed in that case.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        byte[] contents = null;
+        if (extentFrames.isEmpty() && size > 0 && size <= gateway.getInlineThreshold())
+            contents = Arrays.copyOf(buffer, bufferPointer);
+        else
+            __writeBuffer();
+        closed = true;
+        region.close();
+        buffer = null;
+        INode iNode;
+        try {
+            if (size == 0)
+                throw new Exception("File is Empty.");
+            long modificationTime = System.currentTimeMillis();
+            InputFile file = new InputFile(name, parentPath, size, creationTime, modificationTime, null);
+            if (contents != null)
+                iNode = gateway.addWrittenFile(file, contents);
+            else
+                iNode = gateway.addWrittenFile(file, extentFrames);
+        } catch (Exception e){
+            __freeBlocks();
+            throw new IOException("Unable to Create File: " + e.getMessage());
+        }
+        try {
+            commit.commit(iNode);
+        } catch (Exception e){
+            try {
+                gateway.discardFiles(new long[]{iNode.getiNodeAddress()});
+            } catch (Exception discardException){
+                e.addSuppressed(discardException);
+            }
+            throw new IOException("Unable to Create File: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stops the write without creating the file. The blocks that have been written are freed.
+     */
+    public void abort() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        region.close();
+        buffer = null;
+        try {
+            __freeBlocks();
+        } catch (IOException e){
+            throw new IOException("Unable to Abort File: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Number of bytes written to the stream
+     */
+    public long getSize(){
+        return size;
+    }
+
+    public boolean isClosed(){
+        return closed;
+    }
+
+    /**
+     * Writes the buffered bytes to the data-store. The stream is aborted if they cannot be written.
+     */
+    private void __writeBuffer() throws IOException {
+        if (bufferPointer == 0)
+            return;
+        try {
+            dataStore.writeBytes(buffer, 0, bufferPointer, region, extentFrames);
+        } catch (Exception e){
+            abort();
+            throw new IOException("Unable to Write File: " + e.getMessage());
+        }
+        bufferPointer = 0;
+    }
+
+    private void __freeBlocks() throws IOException {
+        if (extentFrames.isEmpty())
+            return;
+        try {
+            dataStore.removeExtents(extentFrames);
+        } catch (Exception e){
+            throw new IOException(e.getMessage());
+        }
+        extentFrames.clear();
+    }
+
+    private void __ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream Closed");
+    }
+}
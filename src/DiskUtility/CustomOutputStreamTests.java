@@ -0,0 +1,97 @@
+package DiskUtility;
+
+import FileSystem.FileSystem;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class CustomOutputStreamTests {
+    private static final int SIZE = 200000;
+
+    @Test
+    @DisplayName("createFile -> Chunks of any size are written and the file is readable after a remount")
+    public void createFile() throws Exception{
+        Path base = Files.createTempDirectory("output");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            byte[] contents = TestUtilities.getContents(SIZE, 0);
+            try (CustomOutputStream outputStream = fs.createFile("/a/b/file")){
+                int position = 0;
+                int[] chunks = {1, 7, 3600, 4096, 60000, 100000};
+                for (int i = 0; position < SIZE; i++){
+                    int count = Math.min(chunks[i % chunks.length], SIZE - position);
+                    if (count == 1)
+                        outputStream.write(contents[position]);
+                    else
+                        outputStream.write(contents, position, count);
+                    position += count;
+                }
+                Assertions.assertEquals(SIZE, outputStream.getSize());
+            }
+            try (CustomInputStream inputStream = fs.openFile("/a/b/file")){
+                Assertions.assertArrayEquals(contents, inputStream.readAllBytes());
+            }
+            fs.unmount();
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            try (CustomInputStream inputStream = mounted.openFile("/a/b/file")){
+                Assertions.assertArrayEquals(contents, inputStream.readAllBytes());
+            }
+            Assertions.assertThrows(Exception.class, () -> mounted.createFile("/a/b/file"));
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("abort -> The blocks of an aborted or failed file are freed and the file is not added")
+    public void abort() throws Exception{
+        Path base = Files.createTempDirectory("output");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            // The blocks of the data-store are counted, so small files are not stored inline.
+            fs.setInlineThreshold(0);
+            byte[] contents = TestUtilities.getContents(SIZE, 0);
+            Path dataStore = base.resolve("fs").resolve(Store.DataStore.fileName);
+            // A multiple of the buffer, so that every byte has been written to the data-store before the stream ends.
+            int length = CustomOutputStream.BUFFER_SIZE * 3;
+            CustomOutputStream outputStream = fs.createFile("/aborted");
+            outputStream.write(contents, 0, length);
+            outputStream.abort();
+            Assertions.assertThrows(IOException.class, () -> outputStream.write(1));
+            long storeLength = Files.size(dataStore);
+            Assertions.assertTrue(storeLength >= length);
+            Assertions.assertThrows(Exception.class, () -> fs.openFile("/aborted"));
+
+            // The freed blocks are reused, so the data-store does not grow.
+            try (CustomOutputStream second = fs.createFile("/file")){
+                second.write(contents, 0, length);
+            }
+            Assertions.assertEquals(storeLength, Files.size(dataStore));
+
+            // A file that is added while the stream is open is not replaced, and the blocks of the stream are freed.
+            CustomOutputStream duplicate = fs.createFile("/duplicate");
+            duplicate.write(contents, 0, length);
+            try (CustomOutputStream first = fs.createFile("/duplicate")){
+                first.write(1);
+            }
+            Assertions.assertThrows(IOException.class, duplicate::close);
+            Assertions.assertThrows(IOException.class, () -> fs.createFile("/empty").close());
+            long grownLength = Files.size(dataStore);
+            try (CustomOutputStream third = fs.createFile("/third")){
+                third.write(contents, 0, length - CustomOutputStream.BUFFER_SIZE);
+            }
+            Assertions.assertEquals(grownLength, Files.size(dataStore));
+            try (CustomInputStream inputStream = fs.openFile("/file")){
+                Assertions.assertArrayEquals(Arrays.copyOf(contents, length), inputStream.readAllBytes());
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+}
@@ -6,35 +6,50 @@ import Utilities.BinaryUtilities;
 import javax.crypto.SecretKey;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * This class provides an interface between the DataStore files and the rest of the filesystem.
  */
 class DataStoreGateway {
     protected static class DataBlock {
+        /**
+         * @return The frame of the block, which is known from the size of the decrypted block
+         */
+        private static DATA_STORE_BLOCK_FRAME.Layout __getFrame(byte[] arr){
+            try {
+                return DATA_STORE_BLOCK_FRAME.Layout.ofDecryptedSize(arr.length);
+            } catch (IllegalArgumentException e){
+                throw new RuntimeException("Invalid Data block. " + e.getMessage());
+            }
+        }
         static String getHash(byte[] arr){
-            if (arr.length != DATA_STORE_BLOCK_FRAME.SIZE)
-                throw new RuntimeException("Invalid Data block. Array should have " + DATA_STORE_BLOCK_FRAME.SIZE + " bytes.");
+            __getFrame(arr);
             return BinaryUtilities.convertBytesToASCIIString(arr, DATA_STORE_BLOCK_FRAME.MD5_HASH_INDEX, 16);
         }
         static void setHash(byte[] arr, String hash){
-            if (arr.length != DATA_STORE_BLOCK_FRAME.SIZE)
-                throw new RuntimeException("Invalid Data block. Array should have " + DATA_STORE_BLOCK_FRAME.SIZE + " bytes.");
+            __getFrame(arr);
             if (hash.length() != 128)
                 throw new RuntimeException("Invalid Hash. Hash must be 128 bytes.");
             System.arraycopy(hash.getBytes(StandardCharsets.US_ASCII), 0, arr, DATA_STORE_BLOCK_FRAME.MD5_HASH_INDEX, 16);
         }
-        static short getBytesOccupied(byte[] arr){
-            if (arr.length != DATA_STORE_BLOCK_FRAME.SIZE)
-                throw new RuntimeException("Invalid Data block. Array should have " + DATA_STORE_BLOCK_FRAME.SIZE + " bytes.");
-            return BinaryUtilities.convertBytesToShort(arr, DATA_STORE_BLOCK_FRAME.BYTES_OCCUPIED_INDEX);
+        static int getBytesOccupied(byte[] arr){
+            DATA_STORE_BLOCK_FRAME.Layout frame = __getFrame(arr);
+            if (frame.bytesOccupiedSize == 2)
+                return BinaryUtilities.convertBytesToShort(arr, DATA_STORE_BLOCK_FRAME.BYTES_OCCUPIED_INDEX) & 0xFFFF;
+            return BinaryUtilities.convertBytesToInt(arr, DATA_STORE_BLOCK_FRAME.BYTES_OCCUPIED_INDEX);
         }
-        static void setBytesOccupied(byte[] arr, short value){
-            if (arr.length != DATA_STORE_BLOCK_FRAME.SIZE)
-                throw new RuntimeException("Invalid Data block. Array should have " + DATA_STORE_BLOCK_FRAME.SIZE + " bytes.");
-            System.arraycopy(BinaryUtilities.convertShortToBytes(value), 0, arr, DATA_STORE_BLOCK_FRAME.BYTES_OCCUPIED_INDEX, 2);
+        static void setBytesOccupied(byte[] arr, int value){
+            DATA_STORE_BLOCK_FRAME.Layout frame = __getFrame(arr);
+            if (frame.bytesOccupiedSize == 2)
+                System.arraycopy(BinaryUtilities.convertShortToBytes((short) value), 0, arr, DATA_STORE_BLOCK_FRAME.BYTES_OCCUPIED_INDEX, 2);
+            else
+                System.arraycopy(BinaryUtilities.convertIntToBytes(value), 0, arr, DATA_STORE_BLOCK_FRAME.BYTES_OCCUPIED_INDEX, 4);
         }
 
         /**
@@ -44,99 +59,61 @@ class DataStoreGateway {
          * run. The following element is the length of the run. This pair repeats itself.
          */
         static int[] getRuns(byte[] arr){
-            if (arr.length != DATA_STORE_BLOCK_FRAME.SIZE)
-                throw new RuntimeException("Invalid Data block. Array should have " + DATA_STORE_BLOCK_FRAME.SIZE + " bytes.");
+            DATA_STORE_BLOCK_FRAME.Layout frame = __getFrame(arr);
             LinkedList<Integer> runs = new LinkedList<Integer>();
-            // Control variables for run start and end.
+            // Start of the run that is being read, or -1 if the previous byte is occupied.
             int start = -1;
-            int end;
-            for (int i = DATA_STORE_BLOCK_FRAME.BITMAP_INDEX; i < DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX; i++){
-                // -> Case 1: Start has not been set yet.
-                if (start == -1) {
-                    // In case the byte has no free indices, move to the next byte.
-                    if (arr[i] == -1)
-                        continue;
-                    // If the code reaches this point then the byte does contain a possible starting index.
-                    end = -1;
-                    for (int j = 0; j < 8; j++){
-                        // If the start has not been set.
-                        if (start == -1){
-                            start = j = BinaryUtilities.getFirstFreeIndex(arr[i], j);
-                            if (start == -1)
-                                break;
-                            start = (i - DATA_STORE_BLOCK_FRAME.BITMAP_INDEX) * 8 + start;
-                        } else {
-                            // If start has been set, look for a possible end in the remaining byte
-                            end = BinaryUtilities.getFirstUsedIndex(arr[i], j);
-                            // If no end is found within the byte, exit the loop
-                            if (end == -1){
-                                // If it is the last byte, set the last index as the end and return runs.
-                                if (i == DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX - 1){
-                                    end = (i - DATA_STORE_BLOCK_FRAME.BITMAP_INDEX) * 8 + 8;
-                                    runs.add(start);
-                                    runs.add(end - start); // To convert indices into length, add 1 to account for the 0 index.
-                                    return runs.stream().mapToInt(x->x).toArray();
-                                }
-                                break;
-                            }
-                            // If end has been found, add the run to the linked list.
-                            j = end;
-                            end = (i - DATA_STORE_BLOCK_FRAME.BITMAP_INDEX) * 8 + end;
-                            runs.add(start);
-                            runs.add(end - start); // To convert indices into length, add 1 to account for the 0 index.
-                            start = -1;
-                        }
-                    }
-                } else { // -> Case 2: Start has been set.
-                    // In case the entire block is free, move to the next byte.
-                    if (arr[i] == 0) {
-                        // If it is the last byte, set the last index as the end of run and return.
-                        if (i == DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX - 1){
-                            end = (i - DATA_STORE_BLOCK_FRAME.BITMAP_INDEX) * 8 + 8;
-                            runs.add(start);
-                            runs.add(end - start); // To convert indices into length, add 1 to account for the 0 index.
-                            return runs.stream().mapToInt(x->x).toArray();
-                        }
-                        continue;
+            for (int i = frame.bitmapIndex; i < frame.firstDataByteIndex; i++){
+                int firstIndex = (i - frame.bitmapIndex) * 8;
+                // Bytes whose bits are all set or all clear either end a run or continue it as a whole.
+                if (arr[i] == -1){
+                    if (start != -1){
+                        runs.add(start);
+                        runs.add(firstIndex - start);
+                        start = -1;
                     }
-                    // If the code reaches this point then the byte does contain a possible end index.
-                    for (int j = 0; j < 8; j++){
-                        // If start has been set, look for an end
-                        if (start != -1){
-                            end = BinaryUtilities.getFirstUsedIndex(arr[i], j);
-                            if (end == -1){
-                                // If it is the last byte, set the last index as the end and return runs.
-                                if (i == DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX - 1){      /*TODO CHECK WHY THIS IS ALWAYS FALSE*/
-                                    end = (i - DATA_STORE_BLOCK_FRAME.BITMAP_INDEX) * 8 + 7;
-                                    runs.add(start);
-                                    runs.add(end + 1 - start); // To convert indices into length, add 1 to account for the 0 index.
-                                    return runs.stream().mapToInt(x->x).toArray();
-                                }
-                                break;
-                            }
-                            j = end;
-                            end = (i - DATA_STORE_BLOCK_FRAME.BITMAP_INDEX) * 8 + end;
-                            runs.add(start);
-                            runs.add(end - start); // To convert indices into length, add 1 to account for the 0 index.
-                            start = -1;
-                            end = -1;
-                        } else {
-                            // If end has been set, look for a possible start in the remaining byte
-                            start = BinaryUtilities.getFirstFreeIndex(arr[i], j);
-                            // If no start is found within the byte, exit the loop
-                            if (start == -1)
-                                break;
-                            // If start has been found, add the run to the linked list.
-                            start = (i - DATA_STORE_BLOCK_FRAME.BITMAP_INDEX) * 8 + start;
-                            // Set the counter of the loop to the end index to start from the next index.
-                            j = start;
-                        }
+                    continue;
+                }
+                if (arr[i] == 0){
+                    if (start == -1)
+                        start = firstIndex;
+                    continue;
+                }
+                // The leftmost bit is index 0.
+                for (int j = 0; j < 8; j++){
+                    boolean occupied = ((arr[i] >> (7 - j)) & 1) == 1;
+                    if (!occupied && start == -1){
+                        start = firstIndex + j;
+                    } else if (occupied && start != -1){
+                        runs.add(start);
+                        runs.add(firstIndex + j - start);
+                        start = -1;
                     }
                 }
             }
+            // The last run ends at the end of the block.
+            if (start != -1){
+                runs.add(start);
+                runs.add((frame.firstDataByteIndex - frame.bitmapIndex) * 8 - start);
+            }
             return runs.stream().mapToInt(x->x).toArray();
         }
 
+        /**
+         * Returns the number of occupied bytes within a run.
+         * @param arr The block array
+         * @param start Starting index of the run
+         * @param length length of the run
+         * @return Number of bytes within the run whose bit is set
+         */
+        static int countOccupied(byte[] arr, int start, int length){
+            DATA_STORE_BLOCK_FRAME.Layout frame = __getFrame(arr);
+            int count = 0;
+            for (int i = start; i < start + length; i++)
+                count += (arr[frame.bitmapIndex + i / 8] >> (7 - i % 8)) & 1;
+            return count;
+        }
+
         /**
          * This method sets the bitmap of the provided indices to 1 (occupied). The indices begin from the start parameter
          * and end at start + length (exclusive)
@@ -146,13 +123,12 @@ class DataStoreGateway {
          * @param value Set to true if the run is occupied. Set to false if the run is not occupied.
          */
         static void setRunOccupied(byte[] arr, int start, int length, boolean value){
-            if (arr.length != DATA_STORE_BLOCK_FRAME.SIZE)
-                throw new RuntimeException("Invalid Data block. Array should have " + DATA_STORE_BLOCK_FRAME.SIZE + " bytes.");
+            DATA_STORE_BLOCK_FRAME.Layout frame = __getFrame(arr);
             int bitValue = (value) ? 1: 0;
             // Set the bitmaps.
-            int startByteIndex = DATA_STORE_BLOCK_FRAME.BITMAP_INDEX + (start / 8);
+            int startByteIndex = frame.bitmapIndex + (start / 8);
             int startBitIndex = (start % 8);    // Subtracted from 7 to ensure that the leftmost bit is index 0
-            int endByteIndex = DATA_STORE_BLOCK_FRAME.BITMAP_INDEX +  ((start + length) / 8);
+            int endByteIndex = frame.bitmapIndex +  ((start + length) / 8);
             int endBitIndex = (start + length) % 8; // Non inclusive
             // Case 1: Both the start and end indices lie in the same byte
             if (startByteIndex == endByteIndex){
@@ -172,14 +148,29 @@ class DataStoreGateway {
         }
     }
 
+    /**
+     * Runs of zero bytes are elided from the store in chunks of HOLE_SIZE bytes, which are kept as holes in the extents
+     * of the file instead of data blocks. The size of the chunks does not depend on the block size of the store.
+     */
+    static final int HOLE_SIZE = DATA_STORE_BLOCK_FRAME.DATA_SIZE;
+    private static final byte[] ZERO_BYTES = new byte[HOLE_SIZE];
     private final File storeFile;
     private final BitMapUtility bitMapUtility;
     private final SecretKey key;
     private final Store store;
+    /**
+     * The frame of the blocks of the store.
+     */
+    private final DATA_STORE_BLOCK_FRAME.Layout frame;
+    /**
+     * The channel that blocks are read and written through while direct I/O is enabled, or null.
+     */
+    private volatile DirectBlockChannel directChannel;
 
-    DataStoreGateway(File baseFile, BitMapUtility bitMapUtility, SecretKey key, Store store) throws Exception {
+    DataStoreGateway(File baseFile, BitMapUtility bitMapUtility, SecretKey key, Store store, DATA_STORE_BLOCK_FRAME.Layout frame) throws Exception {
         File file;
         this.store = store;
+        this.frame = frame;
         this.bitMapUtility = bitMapUtility;
         try {
             file = Gateway.getFileInBaseDirectory(baseFile, store.fileName);
@@ -190,17 +181,34 @@ class DataStoreGateway {
         this.key = key;
     }
 
-    DataStoreGateway(File baseFile, BitMapUtility bitMapUtility, SecretKey key) throws Exception {
-        this(baseFile, bitMapUtility, key, Store.DataStore);
+    DataStoreGateway(File baseFile, BitMapUtility bitMapUtility, SecretKey key, DATA_STORE_BLOCK_FRAME.Layout frame) throws Exception {
+        this(baseFile, bitMapUtility, key, Store.DataStore, frame);
     }
 
+    /**
+     * @return The frame of the blocks of the store
+     */
+    DATA_STORE_BLOCK_FRAME.Layout getFrame(){
+        return frame;
+    }
 
+    /**
+     * Writes the contents of a file to the store. The blocks are taken from an AllocationRegion that is held for the
+     * duration of the write, so that files written by several threads at once are placed in different regions of the
+     * store. Chunks of HOLE_SIZE zero bytes, counted from the start of the file, are not written and become holes.
+     * @param file The file to be written
+     * @return The extents of the file
+     */
     LinkedList<ExtentStoreGateway.ExtentFrame> addNode(InputFile file) throws Exception{
+        try (BitMapUtility.AllocationRegion region = bitMapUtility.openRegion(store)){
+            return __addNode(file, region);
+        }
+    }
+
+    private LinkedList<ExtentStoreGateway.ExtentFrame> __addNode(InputFile file, BitMapUtility.AllocationRegion region) throws Exception{
         // A LinkedList of ExtentFrame that will be used in the end to create extents that span across multiple blocks.
         LinkedList<ExtentStoreGateway.ExtentFrame> extentFramesLinkedList = new LinkedList<ExtentStoreGateway.ExtentFrame>();
-        long fileSize = 0, bytesToWrite = 0, index;
-        // The bytesOccupied field of the block
-        short bytesOccupied;
+        long fileSize = 0, bytesToWrite = 0;
         // user input file.
         InputStream fileInputStream = null;
         if (store == Store.DataStore){
@@ -210,119 +218,215 @@ class DataStoreGateway {
             fileInputStream = file.thumbnailInputStream;
             bytesToWrite = fileSize = file.thumbnailSize;
         }
-        // pointer within the inputBlock
-        int pointer = 0;
-        // Contains the data of the user input file
-        byte[] inputBlock = new byte[DATA_STORE_BLOCK_FRAME.FULL_SIZE];
-        // Number of inputBlocks that have been read.
-        int inputBlocksRead = 0;
-        // Contains a data block within data-store
-        byte[] dataBlock = new byte[DATA_STORE_BLOCK_FRAME.SIZE];
         if (fileSize == 0L)
             throw new Exception("File is Empty.");
         if (fileInputStream == null){
             throw new Exception("InputStream is null");
         }
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-        // FIX THE TRY CATCH. NOT EVERYTHING SHOULD BE IN THE TRY CATCH.
-        ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-        if (fileSize >= DATA_STORE_BLOCK_FRAME.FULL_SIZE){
-            __fillInputBlock(fileInputStream, inputBlock, DATA_STORE_BLOCK_FRAME.FULL_SIZE);
-        } else {
-            __fillInputBlock(fileInputStream, inputBlock, (int)fileSize);
-        }
-        inputBlocksRead++;
-        while (bytesToWrite > 0){
-            int bytesWrittenFromRunningInputBlock = 0;
-            Arrays.fill(dataBlock, (byte)0);
-            index = bitMapUtility.getFreeIndex(store, bytesToWrite);
-            if (bitMapUtility.isIndexOccupied(store, index)){
+        // Contains the data of the user input file. A multiple of HOLE_SIZE, so that holes start at the same offsets
+        // within the file however it is read.
+        byte[] inputBlock = new byte[HOLE_SIZE * 16];
+        BlockWriter writer = new BlockWriter(region, extentFramesLinkedList);
+        try {
+            while (bytesToWrite > 0){
+                int count = (int) Math.min(inputBlock.length, bytesToWrite);
+                __fillInputBlock(fileInputStream, inputBlock, count);
+                writer.writeSparse(inputBlock, 0, count);
+                bytesToWrite -= count;
+            }
+        } finally {
+            writer.flush();
+        }
+        return ExtentStoreGateway.ExtentFrame.getCompactExtentList(extentFramesLinkedList, frame.dataSize);
+    }
+
+    /**
+     * Enables or disables direct I/O for the blocks of the store. While it is enabled, blocks are read and written
+     * through a DirectBlockChannel, which bypasses the page cache of the host. See DirectBlockChannel.
+     * @param enabled Set to enable direct I/O
+     * @throws Exception If direct I/O is not supported for the store file. Direct I/O stays disabled in that case.
+     */
+    void setDirectIO(boolean enabled) throws Exception{
+        synchronized (this){
+            if (enabled == (directChannel != null))
+                return;
+            if (enabled){
                 try {
-                        __updateDataBlockArray(dataBlock, index);
-                } catch (EOFException e){
-                    throw new Exception("Error in dataBlock file. Either the provided index: " + index + " does not exist" +
-                            "in the data-store file or the contents of the data-store file have been corrupted." + e.getMessage());
+                    directChannel = DirectBlockChannel.open(storeFile, frame.fullSize);
                 } catch (IOException e){
-                    throw new Exception("Unable to access the contents of data-store file."  + e.getMessage());
+                    throw new Exception("Unable to Enable Direct I/O for " + store.fileName + ": " + e.getMessage());
                 }
+            } else {
+                DirectBlockChannel channel = directChannel;
+                directChannel = null;
+                channel.close();
             }
-            bytesOccupied = DataBlock.getBytesOccupied(dataBlock);
-            int[] runs = DataBlock.getRuns(dataBlock);
-            if (runs.length == 0)
-                throw new Exception("Unexpected Error. Code Has a bug. This Exception should never be printed." +
-                        "The index provided by the bitmapUtility does not have a free byte." +
-                        "Possible reasons: Bug in Code, Inconsistency between writes and reads");
-            if (runs.length % 2 != 0)
-                throw new Exception("Unexpected Error. Runs should always have even number of elements. Pairs of" +
-                        "start and end indices. Currently runs has an odd number of elements.");
-            int start, length;
-            for (int i = 0; i < runs.length; i+=2){
-                start = runs[i];
-                length = runs[i+1];
-                // Calculate the number of bytes that will be written to the current RUN.
-                int bytesWritableToCurrentRun = (length < bytesToWrite) ? length: (int)bytesToWrite;
-                int bytesWrittenToCurrentRun = 0;
-                int dataBlockIndex = DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX + start;
-                while (bytesWrittenToCurrentRun < bytesWritableToCurrentRun){
-                    int localBytesWritten = 0;  // Temporary variable to maintain the number of bytes written
-                    int inputBlockLength = inputBlock.length;
-                    // CASE 1: inputBlock does not need to be refreshed.
-                    if (pointer + bytesWritableToCurrentRun <= inputBlockLength){
-                        System.arraycopy(inputBlock, pointer, dataBlock, dataBlockIndex, bytesWritableToCurrentRun);
-                        localBytesWritten += bytesWritableToCurrentRun;
-                        dataBlockIndex += localBytesWritten;
-                        bytesWrittenToCurrentRun += localBytesWritten;
-                        bytesToWrite -= localBytesWritten;
-                        pointer += localBytesWritten;
-                        // ENSURE THAT THE pointer is set to 0 when it reaches inputBlockLength
-                        if (pointer == DATA_STORE_BLOCK_FRAME.FULL_SIZE){
-                            if (bytesToWrite >= DATA_STORE_BLOCK_FRAME.FULL_SIZE)
-                                __fillInputBlock(fileInputStream, inputBlock, DATA_STORE_BLOCK_FRAME.FULL_SIZE);
-                            else
-                                __fillInputBlock(fileInputStream, inputBlock, (int)bytesToWrite);
-                            inputBlocksRead++;
-                            pointer = 0;
-                        }
-                    } else {
-                        // CASE 2: inputBlock does need to be refreshed
-                        System.arraycopy(inputBlock, pointer, dataBlock, dataBlockIndex, inputBlockLength - pointer);
-                        localBytesWritten += inputBlockLength - pointer;
-                        dataBlockIndex += localBytesWritten;
-                        bytesWrittenToCurrentRun += localBytesWritten;
-                        bytesToWrite -= localBytesWritten;
-                        if (bytesToWrite >= DATA_STORE_BLOCK_FRAME.FULL_SIZE)
-                            __fillInputBlock(fileInputStream, inputBlock, DATA_STORE_BLOCK_FRAME.FULL_SIZE);
-                        else
-                            __fillInputBlock(fileInputStream, inputBlock, (int)bytesToWrite);
-                        inputBlocksRead++;
-                        pointer = 0;
-                        if (bytesWritableToCurrentRun - bytesWrittenToCurrentRun > 0){
-                            int bytesRemaining = bytesWritableToCurrentRun - bytesWrittenToCurrentRun;
-                            System.arraycopy(inputBlock, pointer, dataBlock, dataBlockIndex, bytesRemaining);
-                            pointer += bytesRemaining;
-                            localBytesWritten += bytesRemaining;
-                            dataBlockIndex += bytesRemaining;
-                            bytesToWrite -= bytesRemaining;
-                            bytesWrittenToCurrentRun += bytesRemaining;
-                        }
+        }
+    }
+
+    boolean isDirectIO(){
+        return directChannel != null;
+    }
+
+    /**
+     * Opens an AllocationRegion of the store for a file that is written in several parts. See writeBytes.
+     */
+    BitMapUtility.AllocationRegion openRegion(){
+        return bitMapUtility.openRegion(store);
+    }
+
+    /**
+     * Writes a part of a file whose size is not known in advance. The bytes are placed in the free runs of the blocks
+     * taken from the region, and every block is written before the method returns. Chunks of HOLE_SIZE zero bytes,
+     * counted from the offset, are not written and become holes.
+     * @param bytes The bytes to be written
+     * @param offset Index of the first byte to be written within the array
+     * @param length Number of bytes to be written
+     * @param region The region of the file, which is held until the last part has been written
+     * @param extentFrames The extents of the file. An ExtentFrame is appended for every run that is written.
+     */
+    void writeBytes(byte[] bytes, int offset, int length, BitMapUtility.AllocationRegion region, LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames) throws Exception{
+        BlockWriter writer = new BlockWriter(region, extentFrames);
+        try {
+            writer.writeSparse(bytes, offset, length);
+        } finally {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes the bytes of a file to the blocks of a region in the order of the file. A block is claimed when the first
+     * byte is placed in it and is filled run by run. It is written, and its claim released, once all of its runs are
+     * full or the writer is flushed, so bytes written in several calls fill a block like bytes written at once.
+     * An ExtentFrame is appended for every part of a run that is written. If a block cannot be claimed or written, its
+     * ExtentFrames are removed and the claim is released.
+     * A BlockWriter is used by one thread only.
+     */
+    private class BlockWriter {
+        private final BitMapUtility.AllocationRegion region;
+        private final LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames;
+        private final byte[] dataBlock = new byte[frame.size];
+        /**
+         * The claimed block, or -1 if there is none.
+         */
+        private long index = -1;
+        private int[] runs;
+        /**
+         * Index of the current run within runs.
+         */
+        private int run;
+        /**
+         * Number of bytes written to the current run.
+         */
+        private int runPointer;
+        private int bytesOccupied;
+        /**
+         * Number of ExtentFrames appended for the claimed block.
+         */
+        private int blockFrames;
+
+        BlockWriter(BitMapUtility.AllocationRegion region, LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames){
+            this.region = region;
+            this.extentFrames = extentFrames;
+        }
+
+        /**
+         * Writes bytes, eliding every chunk of HOLE_SIZE zero bytes as a hole. The chunks are counted from the offset.
+         */
+        void writeSparse(byte[] bytes, int offset, int length) throws Exception{
+            int end = offset + length;
+            // Index of the first byte that has been neither written nor elided.
+            int pending = offset;
+            for (int chunk = offset; chunk + HOLE_SIZE <= end; chunk += HOLE_SIZE){
+                if (!isZero(bytes, chunk, HOLE_SIZE))
+                    continue;
+                write(bytes, pending, chunk - pending);
+                extentFrames.add(new ExtentStoreGateway.ExtentFrame(ExtentStoreGateway.ExtentFrame.HOLE, 0, HOLE_SIZE));
+                pending = chunk + HOLE_SIZE;
+            }
+            write(bytes, pending, end - pending);
+        }
+
+        void write(byte[] bytes, int offset, int length) throws Exception{
+            try {
+                while (length > 0){
+                    if (index == -1)
+                        __claimBlock();
+                    int count = Math.min(runs[run + 1] - runPointer, length);
+                    int start = runs[run] + runPointer;
+                    System.arraycopy(bytes, offset, dataBlock, frame.firstDataByteIndex + start, count);
+                    DataBlock.setRunOccupied(dataBlock, start, count, true);
+                    extentFrames.add(new ExtentStoreGateway.ExtentFrame(index, start, count));
+                    blockFrames++;
+                    bytesOccupied += count;
+                    runPointer += count;
+                    offset += count;
+                    length -= count;
+                    if (runPointer == runs[run + 1]){
+                        run += 2;
+                        runPointer = 0;
+                        if (run == runs.length)
+                            __writeBlock();
                     }
-                    bytesOccupied += (short) localBytesWritten;
                 }
-                extentFramesLinkedList.add(new ExtentStoreGateway.ExtentFrame(index, start, bytesWrittenToCurrentRun));
-                DataBlock.setRunOccupied(dataBlock, start, bytesWrittenToCurrentRun, true);
-                if (bytesToWrite == 0)
-                    break;
+            } catch (Exception e){
+                __discardBlock();
+                throw e;
             }
-            DataBlock.setBytesOccupied(dataBlock, bytesOccupied);
-//            DataBlock.setHash();
-            bitMapUtility.setIndex(store, index, bytesOccupied); // FIX THIS METHOD TO TAKE THE NUMBER OF BYTE THAT ARE OCCUPIED BY THE BLOCK NOW. THE BITMAP SHOULD DECIDE TH EBITMAP
+        }
+
+        /**
+         * Writes the block that is claimed, if any.
+         */
+        void flush() throws Exception{
+            if (index == -1)
+                return;
             try {
-                __updateDataBlockFile(dataBlock, index);
-            } catch (IOException e){
-                throw new Exception("Error with accessing and writing to the data-store file." + e.getMessage());
+                __writeBlock();
+            } catch (Exception e){
+                __discardBlock();
+                throw e;
             }
         }
-        return ExtentStoreGateway.ExtentFrame.getCompactExtentList(extentFramesLinkedList);
+
+        private void __claimBlock() throws Exception{
+            index = region.getFreeIndex();
+            // The block is claimed until it has been written so that no other thread writes to it in the meantime.
+            Arrays.fill(dataBlock, (byte)0);
+            if (bitMapUtility.isIndexOccupied(store, index))
+                __updateDataBlockArray(dataBlock, index);
+            bytesOccupied = DataBlock.getBytesOccupied(dataBlock);
+            runs = DataBlock.getRuns(dataBlock);
+            if (runs.length == 0)
+                throw new Exception("The index provided by the bitmapUtility does not have a free byte: " + index);
+            run = 0;
+            runPointer = 0;
+            blockFrames = 0;
+        }
+
+        private void __writeBlock() throws Exception{
+            DataBlock.setBytesOccupied(dataBlock, bytesOccupied);
+            bitMapUtility.setIndex(store, index, bytesOccupied);
+            __updateDataBlockFile(dataBlock, index);
+            bitMapUtility.releaseIndex(store, index);
+            index = -1;
+        }
+
+        private void __discardBlock(){
+            if (index == -1)
+                return;
+            for (int i = 0; i < blockFrames; i++)
+                extentFrames.removeLast();
+            bitMapUtility.releaseIndex(store, index);
+            index = -1;
+        }
+    }
+
+    /**
+     * @return true if every byte of the range is zero
+     */
+    static boolean isZero(byte[] bytes, int offset, int length){
+        return Arrays.mismatch(bytes, offset, offset + length, ZERO_BYTES, 0, length) == -1;
     }
 
     private void __fillInputBlock(InputStream fileInputStream, byte[] inputBlock, int bytesToRead) throws Exception{
@@ -347,53 +451,94 @@ class DataStoreGateway {
         }
     }
 
+    /**
+     * Frees the extents of a single file. See removeExtents.
+     * @param extentFrames The ExtentFrames of the file
+     */
     public void removeNode(LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames) throws Exception{
-        // Set bitmaps of individual blocks within datastore
-        // Update byteOccupied of each block
-        // Change bitmaps of each block using new bytesOccupied
-        // Update the entries in the dataStore.
-        byte[] dataBlock = new byte[DATA_STORE_BLOCK_FRAME.SIZE];
+        removeExtents(extentFrames);
+    }
+
+    /**
+     * Frees the extents of several files at once. The runs to be freed are first grouped by block and sorted by block
+     * index. Blocks whose every byte is freed are released through the bitmap without being read or rewritten, as the
+     * contents of a block that is not occupied are never read. The remaining blocks are read, updated and rewritten in
+     * block order through a single file handle. The bitmap is then updated with a single write per run of bytes.
+     * Only bytes that are still marked as occupied are subtracted from a block, so that freeing the same extents again
+     * after an interrupted removal leaves the block unchanged.
+     * Every block is claimed, in block order, until the bitmap has been updated so that no other thread writes to the
+     * blocks in the meantime.
+     * @param extentFrames The ExtentFrames of the files
+     */
+    public void removeExtents(List<ExtentStoreGateway.ExtentFrame> extentFrames) throws Exception{
+        int dataSize = frame.dataSize;
+        // The runs to be freed within each block. Each run is a pair of offset and length.
+        TreeMap<Long, LinkedList<int[]>> runsByBlock = new TreeMap<Long, LinkedList<int[]>>();
         for (ExtentStoreGateway.ExtentFrame extentFrame: extentFrames){
-            long startBlockIndex, endBlockIndex;
-            int startBlockOffset, endBlockOffset;
-            startBlockIndex = extentFrame.dataStoreIndex;
-            endBlockIndex = extentFrame.dataStoreIndex + ((extentFrame.offset + extentFrame.length) / DATA_STORE_BLOCK_FRAME.DATA_SIZE);
-            startBlockOffset = extentFrame.offset;
-            endBlockOffset = (int) ((extentFrame.offset + extentFrame.length) % DATA_STORE_BLOCK_FRAME.DATA_SIZE);
-            __updateDataBlockArray(dataBlock, startBlockIndex);
-            if (startBlockIndex == endBlockIndex){
-                // The entire extent is within the same block.
-                DataBlock.setRunOccupied(dataBlock, startBlockOffset, (int) extentFrame.length, false);
-                short newBytesOccupied = (short)(DataBlock.getBytesOccupied(dataBlock) - extentFrame.length);
-                DataBlock.setBytesOccupied(dataBlock, newBytesOccupied);
-                __updateDataBlockFile(dataBlock, startBlockIndex);
-                bitMapUtility.setIndex(store, startBlockIndex, newBytesOccupied);
-            } else {
-                // The extent spans multiple blocks
-                // FIRST: Delete everything in the first block from the offset to the end
-                int length = DATA_STORE_BLOCK_FRAME.DATA_SIZE - startBlockOffset;
-                DataBlock.setRunOccupied(dataBlock, startBlockOffset, length, false);
-                short newBytesOccupied = (short)(DataBlock.getBytesOccupied(dataBlock) - length);
-                DataBlock.setBytesOccupied(dataBlock, newBytesOccupied);
-                __updateDataBlockFile(dataBlock, startBlockIndex);
-                bitMapUtility.setIndex(store, startBlockIndex, newBytesOccupied);
-                for (long i = startBlockIndex + 1; i < endBlockIndex; i++){
-                    // SECOND: Clear all the blocks in between
-                    __updateDataBlockArray(dataBlock, i);
-                    DataBlock.setRunOccupied(dataBlock, 0, DATA_STORE_BLOCK_FRAME.DATA_SIZE, false);
-                    DataBlock.setBytesOccupied(dataBlock, (short)0);
-                    __updateDataBlockFile(dataBlock, i);
-                    bitMapUtility.setIndex(store, i, (short)0);
+            if (extentFrame.isHole())
+                continue;
+            long position = extentFrame.offset;
+            long end = extentFrame.offset + extentFrame.length;
+            while (position < end){
+                long blockIndex = extentFrame.dataStoreIndex + position / dataSize;
+                int offset = (int)(position % dataSize);
+                int length = (int) Math.min(dataSize - offset, end - position);
+                runsByBlock.computeIfAbsent(blockIndex, k -> new LinkedList<int[]>()).add(new int[]{offset, length});
+                position += length;
+            }
+        }
+        TreeMap<Long, Integer> bytesOccupied = new TreeMap<Long, Integer>();
+        byte[] byteArray = new byte[frame.fullSize];
+        ArrayList<Long> claimedBlocks = new ArrayList<Long>(runsByBlock.size());
+        try (RandomAccessFile file = new RandomAccessFile(storeFile, "rw")){
+            for (Map.Entry<Long, LinkedList<int[]>> entry: runsByBlock.entrySet()){
+                long blockIndex = entry.getKey();
+                bitMapUtility.claimIndex(store, blockIndex);
+                claimedBlocks.add(blockIndex);
+                int freedBytes = 0;
+                for (int[] run: entry.getValue())
+                    freedBytes += run[1];
+                if (freedBytes == dataSize){
+                    bytesOccupied.put(blockIndex, 0);
+                    continue;
+                }
+                synchronized (this){
+                    if (directChannel != null)
+                        directChannel.read(blockIndex * frame.fullSize, byteArray);
+                    else {
+                        file.seek(blockIndex * frame.fullSize);
+                        file.readFully(byteArray);
+                    }
                 }
-                // THIRD: Clear the last block till the End Offset
-                __updateDataBlockArray(dataBlock, endBlockIndex);
-                length = endBlockOffset;
-                DataBlock.setRunOccupied(dataBlock, 0, length, false);
-                newBytesOccupied = (short)(DataBlock.getBytesOccupied(dataBlock) - length);
+                byte[] dataBlock = Crypto.decryptBlock(byteArray, key, frame.size);
+                freedBytes = 0;
+                for (int[] run: entry.getValue()){
+                    freedBytes += DataBlock.countOccupied(dataBlock, run[0], run[1]);
+                    DataBlock.setRunOccupied(dataBlock, run[0], run[1], false);
+                }
+                int newBytesOccupied = DataBlock.getBytesOccupied(dataBlock) - freedBytes;
+                bytesOccupied.put(blockIndex, newBytesOccupied);
+                if (newBytesOccupied == 0)
+                    continue;
                 DataBlock.setBytesOccupied(dataBlock, newBytesOccupied);
-                __updateDataBlockFile(dataBlock, endBlockIndex);
-                bitMapUtility.setIndex(store, endBlockIndex, newBytesOccupied);
+                byte[] encryptedBlock = Crypto.encryptBlock(dataBlock, key, frame.size);
+                synchronized (this){
+                    if (directChannel != null)
+                        directChannel.write(blockIndex * frame.fullSize, encryptedBlock);
+                    else {
+                        file.seek(blockIndex * frame.fullSize);
+                        file.write(encryptedBlock);
+                    }
+                }
             }
+            bitMapUtility.setIndicesHalfBitmap(store, bytesOccupied);
+        } catch (FileNotFoundException e){
+            throw new Exception("DataStore FileNotFound: " + store.fileName + " " + e.getMessage());
+        } catch (IOException e){
+            throw new Exception("Unable to access the contents of " + store.fileName + " file. " + e.getMessage());
+        } finally {
+            for (long blockIndex: claimedBlocks)
+                bitMapUtility.releaseIndex(store, blockIndex);
         }
     }
 
@@ -408,11 +553,16 @@ class DataStoreGateway {
      */
     protected int populateBufferFromExtent(byte[] buffer, ExtentStoreGateway.ExtentFrame extentFrame, int bufferIndex, long extentIndex) throws Exception{
         int bytesWritten = 0;
-        byte[] dataBlock = new byte[DATA_STORE_BLOCK_FRAME.SIZE];
+        byte[] dataBlock = new byte[frame.size];
+        if (extentFrame.isHole()){
+            bytesWritten = (int) Math.min(buffer.length - bufferIndex, extentFrame.length - extentIndex);
+            Arrays.fill(buffer, bufferIndex, bufferIndex + bytesWritten, (byte) 0);
+            return bytesWritten;
+        }
         // Fill the Buffer
-        long runningBlockIndex = extentFrame.dataStoreIndex + ((extentFrame.offset + extentIndex) / DATA_STORE_BLOCK_FRAME.DATA_SIZE);
-        int runningByteIndex = (int) ((extentFrame.offset + extentIndex) % DATA_STORE_BLOCK_FRAME.DATA_SIZE);
-        long lastBlockIndex = extentFrame.dataStoreIndex + ((extentFrame.offset + extentFrame.length) / DATA_STORE_BLOCK_FRAME.DATA_SIZE);
+        long runningBlockIndex = extentFrame.dataStoreIndex + ((extentFrame.offset + extentIndex) / frame.dataSize);
+        int runningByteIndex = (int) ((extentFrame.offset + extentIndex) % frame.dataSize);
+        long lastBlockIndex = extentFrame.dataStoreIndex + ((extentFrame.offset + extentFrame.length) / frame.dataSize);
         long bytesReadable = extentFrame.length - extentIndex;
         int bytesToWrite= ((buffer.length - bufferIndex) < bytesReadable ? (buffer.length - bufferIndex) : (int) bytesReadable);
         int currentDataBlockBytesRead;
@@ -423,13 +573,13 @@ class DataStoreGateway {
                 throw new Exception("Unable to populate buffer from extent (DataStore) " + e.getMessage());
             }
             // Set the bytesToRead equal to the number of bytes from the runningByteIndex to the end of the block
-            currentDataBlockBytesRead = DATA_STORE_BLOCK_FRAME.DATA_SIZE - runningByteIndex;
+            currentDataBlockBytesRead = frame.dataSize - runningByteIndex;
             // If the runningBlock is the last block or the bytes available in the DataBlock are greater than can be
             // filled in the buffer, change the size.
             if (runningBlockIndex == lastBlockIndex || currentDataBlockBytesRead > bytesToWrite - bytesWritten) {
                 currentDataBlockBytesRead = bytesToWrite - bytesWritten;
             }
-            System.arraycopy(dataBlock, DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX + runningByteIndex, buffer, bytesWritten + bufferIndex, currentDataBlockBytesRead);
+            System.arraycopy(dataBlock, frame.firstDataByteIndex + runningByteIndex, buffer, bytesWritten + bufferIndex, currentDataBlockBytesRead);
             bytesWritten += currentDataBlockBytesRead;
             runningByteIndex = 0;
             runningBlockIndex++;
@@ -442,77 +592,179 @@ class DataStoreGateway {
      * @param address Target DataStore Address
      */
     protected void __updateDataBlockFile(byte[] dataBlock, long address) throws Exception{
-        RandomAccessFile fin;
-        try {
-            fin = new RandomAccessFile(storeFile, "rw");
-        } catch (FileNotFoundException e){
-            throw new Exception("DataStore FileNotFound: RemoveNode -- DataStoreGateway" + e.getMessage());
-        }
-        try {
-            fin.seek(address * DATA_STORE_BLOCK_FRAME.FULL_SIZE);
-        } catch (IOException e){
-            throw new Exception("DataStore Unable to seek file. IOException DataStoreGateway" + e.getMessage());
-        }
         try {
-            dataBlock = Crypto.encryptBlock(dataBlock, key, DATA_STORE_BLOCK_FRAME.SIZE);
-            fin.write(dataBlock);
-        } catch (IOException e){
-            throw new Exception("DataStore Unable to write to file. IOException DataStoreGateway" + e.getMessage());
+            dataBlock = Crypto.encryptBlock(dataBlock, key, frame.size);
         } catch (Exception e){
             throw new Exception("DataStore Unable to encrypt dataBlock." + e.getMessage());
         }
-        try {
-            fin.close();
-        } catch (IOException e){
-            throw new Exception("Unable to close DataStore File. IOException DataStoreGateway" + e.getMessage());
+        // Only the write is synchronized with the reads of the gateway, so that blocks are encrypted in parallel.
+        synchronized (this){
+            if (directChannel != null){
+                try {
+                    directChannel.write(address * frame.fullSize, dataBlock);
+                } catch (IOException e){
+                    throw new Exception("DataStore Unable to write to file. IOException DataStoreGateway" + e.getMessage());
+                }
+                return;
+            }
+            RandomAccessFile fin;
+            try {
+                fin = new RandomAccessFile(storeFile, "rw");
+            } catch (FileNotFoundException e){
+                throw new Exception("DataStore FileNotFound: RemoveNode -- DataStoreGateway" + e.getMessage());
+            }
+            try {
+                fin.seek(address * frame.fullSize);
+            } catch (IOException e){
+                throw new Exception("DataStore Unable to seek file. IOException DataStoreGateway" + e.getMessage());
+            }
+            try {
+                fin.write(dataBlock);
+            } catch (IOException e){
+                throw new Exception("DataStore Unable to write to file. IOException DataStoreGateway" + e.getMessage());
+            }
+            try {
+                fin.close();
+            } catch (IOException e){
+                throw new Exception("Unable to close DataStore File. IOException DataStoreGateway" + e.getMessage());
+            }
         }
     }
 
     /**
      * Takes a byte array and a datastore address. Replaces the content of the bytearray with the new dataBlock.
-     * @param dataBlock The target byte array of size `DATA_STORE_BLOCK_FRAME.DATA_STORE_FRAME_SIZE`
+     * @param dataBlock The target byte array of the size of a decrypted block
      * @param address Target DataStore Address
      */
     protected void __updateDataBlockArray(byte[] dataBlock, long address) throws Exception{
         try{
-            System.arraycopy(__getDataBlock(address), 0, dataBlock, 0, DATA_STORE_BLOCK_FRAME.SIZE);
+            System.arraycopy(__getDataBlock(address), 0, dataBlock, 0, frame.size);
         } catch (Exception e){
             throw new Exception("Unable to decrypt datablock: DataStoreGateway" + e.getMessage());
         }
     }
 
     /**
-     * This method takes an address. It reads the datablock at the given address. Decrypts it and returns the decrypted
-     * datablock.
-     * @param address Address of the Target Datablock
-     * @return byteArray of decrypted datablock.
-     * @throws Exception In case of Errors while handling the dataStore File or while decrypting the block.
+     * Reads a set of blocks with a single read of the span between the first and the last block, and decrypts them on
+     * the calling thread. The blocks between them that are not requested are read but not decrypted.
+     * @param blockIndices Indices of the target blocks, in ascending order
+     * @return The data bytes of the blocks, dataSize bytes per block, in the order of blockIndices
      */
-    protected byte[]  __getDataBlock(long address) throws Exception{
-        byte[] byteArray = new byte[DATA_STORE_BLOCK_FRAME.FULL_SIZE];
-        RandomAccessFile fin;
+    protected byte[][] readDataBlocks(long[] blockIndices) throws Exception{
+        if (blockIndices.length == 0)
+            return new byte[0][];
+        long firstBlock = blockIndices[0];
+        int span = (int)(blockIndices[blockIndices.length - 1] - firstBlock + 1);
+        byte[] byteArray = new byte[span * frame.fullSize];
         try {
-            fin = new RandomAccessFile(storeFile, "r");
+            synchronized (this){
+                if (directChannel != null)
+                    directChannel.read(firstBlock * frame.fullSize, byteArray);
+                else {
+                    try (RandomAccessFile file = new RandomAccessFile(storeFile, "r")){
+                        file.seek(firstBlock * frame.fullSize);
+                        file.readFully(byteArray);
+                    }
+                }
+            }
         } catch (FileNotFoundException e){
             throw new Exception("DataStore FileNotFound: " + store.fileName + " " + e.getMessage());
-        }
-        try {
-            fin.seek(address * DATA_STORE_BLOCK_FRAME.FULL_SIZE);
         } catch (IOException e){
-            throw new Exception("DataStore Unable to seek file. IOException DataStoreGateway" + e.getMessage());
+            throw new Exception("Unable to read the contents of " + store.fileName + " file. " + e.getMessage());
         }
+        byte[][] dataBlocks = new byte[blockIndices.length][];
+        for (int i = 0; i < blockIndices.length; i++){
+            int start = (int)(blockIndices[i] - firstBlock) * frame.fullSize;
+            byte[] encryptedBlock = Arrays.copyOfRange(byteArray, start, start + frame.fullSize);
+            byte[] dataBlock;
+            try {
+                dataBlock = Crypto.decryptBlock(encryptedBlock, key, frame.size);
+            } catch (Exception e){
+                throw new Exception("Unable to decrypt datablock: DataStoreGateway" + e.getMessage());
+            }
+            dataBlocks[i] = Arrays.copyOfRange(dataBlock, frame.firstDataByteIndex,
+                    frame.firstDataByteIndex + frame.dataSize);
+        }
+        return dataBlocks;
+    }
+
+    /**
+     * Reads a run of consecutive blocks with a single read and decrypts them. See __getDataBlock.
+     * @param address Address of the first block
+     * @param count Number of blocks
+     * @return The decrypted blocks, in the order of their addresses
+     */
+    protected byte[][] __getDataBlocks(long address, int count) throws Exception{
+        byte[] byteArray = new byte[count * frame.fullSize];
         try {
-            fin.readFully(byteArray);
+            synchronized (this){
+                if (directChannel != null)
+                    directChannel.read(address * frame.fullSize, byteArray);
+                else {
+                    try (RandomAccessFile file = new RandomAccessFile(storeFile, "r")){
+                        file.seek(address * frame.fullSize);
+                        file.readFully(byteArray);
+                    }
+                }
+            }
         } catch (IOException e){
             throw new Exception("DataStore Unable to read from file. IOException DataStoreGateway" + e.getMessage());
         }
-        try {
-            fin.close();
-        } catch (IOException e){
-            throw new Exception("Unable to close DataStore File. IOException DataStoreGateway" + e.getMessage());
+        byte[][] dataBlocks = new byte[count][];
+        for (int i = 0; i < count; i++){
+            int start = i * frame.fullSize;
+            try {
+                dataBlocks[i] = Crypto.decryptBlock(Arrays.copyOfRange(byteArray, start, start + frame.fullSize), key, frame.size);
+            } catch (Exception e){
+                throw new Exception("Unable to decrypt datablock: DataStoreGateway" + e.getMessage());
+            }
+        }
+        return dataBlocks;
+    }
+
+    /**
+     * This method takes an address. It reads the datablock at the given address. Decrypts it and returns the decrypted
+     * datablock.
+     * @param address Address of the Target Datablock
+     * @return byteArray of decrypted datablock.
+     * @throws Exception In case of Errors while handling the dataStore File or while decrypting the block.
+     */
+    protected byte[]  __getDataBlock(long address) throws Exception{
+        byte[] byteArray = new byte[frame.fullSize];
+        // Only the read is synchronized with the writes of the gateway, so that blocks are decrypted in parallel.
+        synchronized (this){
+            if (directChannel != null){
+                try {
+                    directChannel.read(address * frame.fullSize, byteArray);
+                } catch (IOException e){
+                    throw new Exception("DataStore Unable to read from file. IOException DataStoreGateway" + e.getMessage());
+                }
+            } else {
+                RandomAccessFile fin;
+                try {
+                    fin = new RandomAccessFile(storeFile, "r");
+                } catch (FileNotFoundException e){
+                    throw new Exception("DataStore FileNotFound: " + store.fileName + " " + e.getMessage());
+                }
+                try {
+                    fin.seek(address * frame.fullSize);
+                } catch (IOException e){
+                    throw new Exception("DataStore Unable to seek file. IOException DataStoreGateway" + e.getMessage());
+                }
+                try {
+                    fin.readFully(byteArray);
+                } catch (IOException e){
+                    throw new Exception("DataStore Unable to read from file. IOException DataStoreGateway" + e.getMessage());
+                }
+                try {
+                    fin.close();
+                } catch (IOException e){
+                    throw new Exception("Unable to close DataStore File. IOException DataStoreGateway" + e.getMessage());
+                }
+            }
         }
         try{
-            byteArray = Crypto.decryptBlock(byteArray, key, DATA_STORE_BLOCK_FRAME.SIZE);
+            byteArray = Crypto.decryptBlock(byteArray, key, frame.size);
         } catch (Exception e){
             throw new Exception("Unable to decrypt datablock: DataStoreGateway" + e.getMessage());
         }
@@ -66,6 +66,20 @@ public class DataStoreGatewayTests {
         Assertions.assertArrayEquals(expected, output);
     }
 
+    @Test
+    @DisplayName("DATABLOCK getruns()  -> Several runs within a byte and a run at the last bit")
+    public void getRuns5(){
+        byte[] block = new byte[DATA_STORE_BLOCK_FRAME.SIZE];
+        for (int i = DATA_STORE_BLOCK_FRAME.BITMAP_INDEX; i < DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX; i++){
+            block[i] = (byte) -1;
+        }
+        block[DATA_STORE_BLOCK_FRAME.BITMAP_INDEX + 1] = (byte) 0b01011001;
+        block[DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX - 1] = (byte) 0b11111110;
+        int[] expected = {8, 1, 10, 1, 13, 2, DATA_STORE_BLOCK_FRAME.DATA_SIZE - 1, 1};
+        int[] output = DataStoreGateway.DataBlock.getRuns(block);
+        Assertions.assertArrayEquals(expected, output);
+    }
+
     @Test
     @DisplayName("DATABLOCK setRunsOccupied() -> Test on empty block")
     public void setRunsOccupied(){
@@ -77,4 +91,37 @@ public class DataStoreGatewayTests {
         Assertions.assertArrayEquals(expected, block);
     }
 
+    @Test
+    @DisplayName("DATABLOCK countOccupied() -> Only counts bytes that are still occupied")
+    public void countOccupied(){
+        byte[] block = new byte[DATA_STORE_BLOCK_FRAME.SIZE];
+        DataStoreGateway.DataBlock.setRunOccupied(block, 5, 100, true);
+        Assertions.assertEquals(100, DataStoreGateway.DataBlock.countOccupied(block, 0, 200));
+        Assertions.assertEquals(10, DataStoreGateway.DataBlock.countOccupied(block, 95, 20));
+        DataStoreGateway.DataBlock.setRunOccupied(block, 5, 100, false);
+        Assertions.assertEquals(0, DataStoreGateway.DataBlock.countOccupied(block, 0, DATA_STORE_BLOCK_FRAME.DATA_SIZE));
+    }
+
+    @Test
+    @DisplayName("DATABLOCK Layout -> Frames of larger blocks")
+    public void layouts(){
+        DATA_STORE_BLOCK_FRAME.Layout frame = DATA_STORE_BLOCK_FRAME.Layout.of(DATA_STORE_BLOCK_FRAME.FULL_SIZE);
+        Assertions.assertEquals(DATA_STORE_BLOCK_FRAME.SIZE, frame.size);
+        Assertions.assertEquals(DATA_STORE_BLOCK_FRAME.BITMAP_INDEX, frame.bitmapIndex);
+        Assertions.assertEquals(DATA_STORE_BLOCK_FRAME.FIRST_DATA_BYTE_INDEX, frame.firstDataByteIndex);
+        Assertions.assertEquals(DATA_STORE_BLOCK_FRAME.DATA_SIZE, frame.dataSize);
+        for (int blockSize: new int[]{64 * 1024, 1024 * 1024}){
+            frame = DATA_STORE_BLOCK_FRAME.Layout.of(blockSize);
+            Assertions.assertTrue(frame.firstDataByteIndex + frame.dataSize <= frame.size);
+            byte[] block = new byte[frame.size];
+            Assertions.assertArrayEquals(new int[]{0, frame.dataSize}, DataStoreGateway.DataBlock.getRuns(block));
+            DataStoreGateway.DataBlock.setRunOccupied(block, 0, frame.dataSize - 3, true);
+            Assertions.assertArrayEquals(new int[]{frame.dataSize - 3, 3}, DataStoreGateway.DataBlock.getRuns(block));
+            DataStoreGateway.DataBlock.setBytesOccupied(block, frame.dataSize - 3);
+            Assertions.assertEquals(frame.dataSize - 3, DataStoreGateway.DataBlock.getBytesOccupied(block));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DATA_STORE_BLOCK_FRAME.Layout.of(6000));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DATA_STORE_BLOCK_FRAME.Layout.of(2048));
+        Assertions.assertThrows(RuntimeException.class, () -> DataStoreGateway.DataBlock.getRuns(new byte[100]));
+    }
 }
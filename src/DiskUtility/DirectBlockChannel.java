@@ -0,0 +1,124 @@
+package DiskUtility;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class reads and writes the frames of a data-store with direct I/O, so that the contents of files do not pass
+ * through the page cache of the host and do not evict the pages of the smaller stores. It is used by DataStoreGateway
+ * once direct I/O has been enabled.
+ * Direct I/O requires the position, the length and the address of the buffer of every transfer to be aligned to the
+ * block size of the host filesystem. Frames have the block size of the store, so the positions and lengths are aligned as
+ * long as the block size of the host divides it. The bytes are transferred through direct ByteBuffers that are aligned
+ * to the block size of the host and taken from a pool. A transfer larger than a pooled buffer is split into several
+ * transfers.
+ * Positional reads and writes do not share any state, so the channel may be used by several threads at once.
+ */
+class DirectBlockChannel implements AutoCloseable {
+    /**
+     * Size of a pooled buffer, unless a single frame is larger.
+     */
+    public static final int BUFFER_SIZE = 256 * 1024;
+    private final FileChannel channel;
+    private final int alignment;
+    private final int bufferSize;
+    private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private DirectBlockChannel(FileChannel channel, int alignment, int frameSize){
+        this.channel = channel;
+        this.alignment = alignment;
+        this.bufferSize = Math.max(BUFFER_SIZE / frameSize, 1) * frameSize;
+    }
+
+    /**
+     * Opens a store file for direct I/O.
+     * @param file The store file
+     * @param frameSize Size of a frame of the store
+     * @return The channel
+     * @throws IOException If the host filesystem does not support direct I/O, or its block size does not divide the
+     * size of a frame.
+     */
+    static DirectBlockChannel open(File file, int frameSize) throws IOException {
+        int alignment = (int) Files.getFileStore(file.toPath()).getBlockSize();
+        if (alignment <= 0 || frameSize % alignment != 0)
+            throw new IOException("Block size " + alignment + " of the host filesystem does not divide the frame size");
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, ExtendedOpenOption.DIRECT);
+        } catch (UnsupportedOperationException e){
+            throw new IOException("Direct I/O is not supported: " + e.getMessage());
+        }
+        return new DirectBlockChannel(channel, alignment, frameSize);
+    }
+
+    /**
+     * Reads whole frames.
+     * @param position Position of the first frame within the file. A multiple of the frame size.
+     * @param byteArray Filled with the frames. Its length is a multiple of the frame size.
+     * @throws EOFException If the file ends before the array has been filled.
+     */
+    void read(long position, byte[] byteArray) throws IOException {
+        ByteBuffer buffer = __takeBuffer();
+        try {
+            for (int offset = 0; offset < byteArray.length; offset += buffer.capacity()){
+                int length = Math.min(buffer.capacity(), byteArray.length - offset);
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining()){
+                    if (channel.read(buffer, position + offset + buffer.position()) == -1)
+                        throw new EOFException("End of File Reached");
+                }
+                buffer.flip().get(byteArray, offset, length);
+            }
+        } finally {
+            pool.offer(buffer);
+        }
+    }
+
+    /**
+     * Writes whole frames. The file is extended if the frames are beyond its end.
+     * @param position Position of the first frame within the file. A multiple of the frame size.
+     * @param byteArray The frames. Its length is a multiple of the frame size.
+     */
+    void write(long position, byte[] byteArray) throws IOException {
+        ByteBuffer buffer = __takeBuffer();
+        try {
+            for (int offset = 0; offset < byteArray.length; offset += buffer.capacity()){
+                int length = Math.min(buffer.capacity(), byteArray.length - offset);
+                buffer.clear();
+                buffer.put(byteArray, offset, length).flip();
+                while (buffer.hasRemaining())
+                    channel.write(buffer, position + offset + buffer.position());
+            }
+        } finally {
+            pool.offer(buffer);
+        }
+    }
+
+    private ByteBuffer __takeBuffer(){
+        ByteBuffer buffer = pool.poll();
+        if (buffer != null)
+            return buffer;
+        return ByteBuffer.allocateDirect(bufferSize + alignment).alignedSlice(alignment).limit(bufferSize).slice();
+    }
+
+    /**
+     * @return The block size of the host filesystem that transfers are aligned to
+     */
+    int getAlignment(){
+        return alignment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        pool.clear();
+    }
+}
@@ -8,6 +8,7 @@
  */
 package DiskUtility;
 import Constants.FLAGS;
+import Constants.DIRECTORY_PAGE_FRAME;
 import Constants.DIRECTORY_STORE_FRAME;
 import Constants.VALUES;
 import FileSystem.Node;
@@ -17,8 +18,23 @@ import Utilities.GeneralUtilities;
 
 import javax.crypto.SecretKey;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 /**
  * This class provides an interface between the DirectoryStore file and the rest of the filesystem.
  Magic Value                 -       4 bytes                                 || Starting Index: 0
@@ -33,6 +49,19 @@ import java.util.LinkedList;
  Magic Value                 -       4 bytes                                 || Starting Index: 61
  name                        -       256 bytes                               || Starting Index: 65
  Magic Value                 -       4 bytes                                 || Starting Index: 321
+
+ Directories created by this version of the filesystem are paged (Node.PAGED_FLAG_MASK is set in their flags). The
+ children of a paged directory are stored as packed entries within DirectoryPages in the directory-page-store file
+ instead of a circular chain of sibling frames. The sibling and child fields of frames within a paged directory are
+ not used. Directories that still use sibling chains are converted to DirectoryPages the first time they are modified.
+
+ The DirectoryPages of a directory are partitioned by the hash of the entry names (Node.HASH_INDEXED_FLAG_MASK), in the
+ same manner as an ext4 htree. Each page holds the entries whose hashes lie between its lower bound and the lower bound
+ of the next page. The lower bounds are stored in a chain of hash index pages once a directory has more than one page,
+ which allows a single child to be found by reading the hash index and one DirectoryPage.
+
+ The public methods are synchronized, so reads and changes of the directory-store are serialized. The Gateway holds the
+ monitor of this class across a batch of writes so that the batch is not interleaved with other changes.
  */
 public class DirectoryStoreGateway{
     private static class DirectoryFrame{
@@ -45,6 +74,22 @@ public class DirectoryStoreGateway{
         long nextSiblingIndex;
         long childIndex;
         byte flags;
+        /**
+         * Index of the first DirectoryPage of a paged directory. Set to -1 if the directory has no DirectoryPages.
+         */
+        long firstPageIndex = -1;
+        /**
+         * Number of DirectoryPages of a paged directory.
+         */
+        long pageCount = 0;
+        /**
+         * Index of the first hash index page of a hash indexed directory. Set to -1 if the directory has none.
+         */
+        long hashIndexPageIndex = -1;
+        /**
+         * Number of hash index pages of a hash indexed directory.
+         */
+        long hashIndexPageCount = 0;
         DirectoryFrame(String name, long index, long parentIndex, long iNodeAddress, long parentINodeAddress,
                        long previousSiblingIndex, long nextSiblingIndex, long childIndex, byte flags){
             this.name = name;
@@ -65,11 +110,21 @@ public class DirectoryStoreGateway{
             System.arraycopy(magicValueBytes, 0, byteArray, DIRECTORY_STORE_FRAME.MAGIC_VALUE_3_INDEX, 4);
             System.arraycopy(BinaryUtilities.convertLongToBytes(index), 0, byteArray, DIRECTORY_STORE_FRAME.DIRECTORY_STORE_INDEX_INDEX, 8);
             System.arraycopy(BinaryUtilities.convertLongToBytes(parentIndex), 0, byteArray, DIRECTORY_STORE_FRAME.PARENT_INDEX, 8);
-            System.arraycopy(BinaryUtilities.convertLongToBytes(previousSiblingIndex), 0, byteArray, DIRECTORY_STORE_FRAME.PREVIOUS_SIBLING_INDEX, 8);
             System.arraycopy(BinaryUtilities.convertLongToBytes(nextSiblingIndex), 0, byteArray, DIRECTORY_STORE_FRAME.NEXT_SIBLING_INDEX, 8);
-            System.arraycopy(BinaryUtilities.convertLongToBytes(childIndex), 0, byteArray, DIRECTORY_STORE_FRAME.CHILD_INDEX, 8);
-            System.arraycopy(BinaryUtilities.convertLongToBytes(iNodeAddress), 0, byteArray, DIRECTORY_STORE_FRAME.INODE_INDEX, 8);
-            System.arraycopy(BinaryUtilities.convertLongToBytes(parentINodeAddress), 0, byteArray, DIRECTORY_STORE_FRAME.PARENT_INODE_INDEX, 8);
+            if (isHashIndexed()){
+                System.arraycopy(BinaryUtilities.convertLongToBytes(hashIndexPageIndex), 0, byteArray, DIRECTORY_STORE_FRAME.HASH_INDEX_PAGE_INDEX, 8);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(hashIndexPageCount), 0, byteArray, DIRECTORY_STORE_FRAME.HASH_INDEX_PAGE_COUNT_INDEX, 8);
+            } else {
+                System.arraycopy(BinaryUtilities.convertLongToBytes(previousSiblingIndex), 0, byteArray, DIRECTORY_STORE_FRAME.PREVIOUS_SIBLING_INDEX, 8);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(childIndex), 0, byteArray, DIRECTORY_STORE_FRAME.CHILD_INDEX, 8);
+            }
+            if (isPaged()){
+                System.arraycopy(BinaryUtilities.convertLongToBytes(firstPageIndex), 0, byteArray, DIRECTORY_STORE_FRAME.FIRST_PAGE_INDEX, 8);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(pageCount), 0, byteArray, DIRECTORY_STORE_FRAME.PAGE_COUNT_INDEX, 8);
+            } else {
+                System.arraycopy(BinaryUtilities.convertLongToBytes(iNodeAddress), 0, byteArray, DIRECTORY_STORE_FRAME.INODE_INDEX, 8);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(parentINodeAddress), 0, byteArray, DIRECTORY_STORE_FRAME.PARENT_INODE_INDEX, 8);
+            }
             byteArray[DIRECTORY_STORE_FRAME.FLAGS_INDEX] = flags;
             System.arraycopy(GeneralUtilities.getFixedSizeUTF8StringBytes(name, 256), 0, byteArray, DIRECTORY_STORE_FRAME.NAME_INDEX, 256);
             return byteArray;
@@ -77,26 +132,319 @@ public class DirectoryStoreGateway{
         boolean isDirectory(){
             return (Node.DIRECTORY_FLAG_MASK & flags) != 0;
         }
+        boolean isPaged(){
+            return isDirectory() && (Node.PAGED_FLAG_MASK & flags) != 0;
+        }
+        boolean isHashIndexed(){
+            return isPaged() && (Node.HASH_INDEXED_FLAG_MASK & flags) != 0;
+        }
         boolean isEmpty(){
+            if (isPaged())
+                return pageCount == 0;
             return (childIndex == index);
         }
         boolean hasSiblings(){
             return (nextSiblingIndex != index);
         }
     }
+
+    /**
+     * A single entry of a DirectoryPage. Contains everything required to create the Node of a child without reading
+     * the DirectoryFrame of the child.
+     */
+    static class PageEntry{
+        long index;
+        long iNodeAddress;
+        byte flags;
+        String name;
+        PageEntry(long index, long iNodeAddress, byte flags, String name){
+            this.index = index;
+            this.iNodeAddress = iNodeAddress;
+            this.flags = flags;
+            this.name = name;
+        }
+        int getSize(){
+            return DIRECTORY_PAGE_FRAME.ENTRY_NAME_INDEX + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+
+    /**
+     * A DirectoryPage holds as many PageEntries of a single directory as fit within DIRECTORY_PAGE_FRAME.SIZE bytes.
+     * The pages of a directory form a chain through nextPageIndex. The last page points to itself.
+     */
+    static class DirectoryPage{
+        long index;
+        long directoryIndex;
+        long nextPageIndex;
+        final LinkedList<PageEntry> entries = new LinkedList<PageEntry>();
+        private int bytesUsed = DIRECTORY_PAGE_FRAME.FIRST_ENTRY_INDEX;
+        DirectoryPage(long index, long directoryIndex, long nextPageIndex){
+            this.index = index;
+            this.directoryIndex = directoryIndex;
+            this.nextPageIndex = nextPageIndex;
+        }
+        boolean canFit(PageEntry entry){
+            return bytesUsed + entry.getSize() <= DIRECTORY_PAGE_FRAME.SIZE;
+        }
+        void addEntry(PageEntry entry){
+            if (!canFit(entry))
+                throw new RuntimeException("DirectoryPage Error: Entry does not fit within the page.");
+            entries.add(entry);
+            bytesUsed += entry.getSize();
+        }
+        PageEntry getEntry(long index){
+            for (PageEntry entry: entries){
+                if (entry.index == index)
+                    return entry;
+            }
+            return null;
+        }
+        PageEntry getEntry(String name){
+            for (PageEntry entry: entries){
+                if (entry.name.equals(name))
+                    return entry;
+            }
+            return null;
+        }
+        void clearEntries(){
+            entries.clear();
+            bytesUsed = DIRECTORY_PAGE_FRAME.FIRST_ENTRY_INDEX;
+        }
+        boolean removeEntry(long index){
+            Iterator<PageEntry> iterator = entries.iterator();
+            while (iterator.hasNext()){
+                PageEntry entry = iterator.next();
+                if (entry.index == index){
+                    iterator.remove();
+                    bytesUsed -= entry.getSize();
+                    return true;
+                }
+            }
+            return false;
+        }
+        /**
+         * Replaces the entry with the same index as the provided entry, if the new entry fits within the page.
+         * @param entry The new entry
+         * @return true if and only if the entry has been replaced.
+         */
+        boolean replaceEntry(PageEntry entry){
+            PageEntry existingEntry = getEntry(entry.index);
+            if (existingEntry == null)
+                return false;
+            int newBytesUsed = bytesUsed - existingEntry.getSize() + entry.getSize();
+            if (newBytesUsed > DIRECTORY_PAGE_FRAME.SIZE)
+                return false;
+            entries.set(entries.indexOf(existingEntry), entry);
+            bytesUsed = newBytesUsed;
+            return true;
+        }
+        byte[] getBytes(){
+            byte[] byteArray = new byte[DIRECTORY_PAGE_FRAME.SIZE];
+            System.arraycopy(VALUES.MAGIC_VALUE_BYTES, 0, byteArray, DIRECTORY_PAGE_FRAME.MAGIC_VALUE_INDEX, 4);
+            System.arraycopy(BinaryUtilities.convertLongToBytes(index), 0, byteArray, DIRECTORY_PAGE_FRAME.PAGE_INDEX_INDEX, 8);
+            System.arraycopy(BinaryUtilities.convertLongToBytes(directoryIndex), 0, byteArray, DIRECTORY_PAGE_FRAME.DIRECTORY_INDEX_INDEX, 8);
+            System.arraycopy(BinaryUtilities.convertLongToBytes(nextPageIndex), 0, byteArray, DIRECTORY_PAGE_FRAME.NEXT_PAGE_INDEX, 8);
+            System.arraycopy(BinaryUtilities.convertShortToBytes((short) entries.size()), 0, byteArray, DIRECTORY_PAGE_FRAME.ENTRY_COUNT_INDEX, 2);
+            int position = DIRECTORY_PAGE_FRAME.FIRST_ENTRY_INDEX;
+            for (PageEntry entry: entries){
+                byte[] nameBytes = entry.name.getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(entry.index), 0, byteArray, position + DIRECTORY_PAGE_FRAME.ENTRY_INDEX_INDEX, 8);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(entry.iNodeAddress), 0, byteArray, position + DIRECTORY_PAGE_FRAME.ENTRY_INODE_INDEX, 8);
+                byteArray[position + DIRECTORY_PAGE_FRAME.ENTRY_FLAGS_INDEX] = entry.flags;
+                System.arraycopy(BinaryUtilities.convertShortToBytes((short) nameBytes.length), 0, byteArray, position + DIRECTORY_PAGE_FRAME.ENTRY_NAME_LENGTH_INDEX, 2);
+                System.arraycopy(nameBytes, 0, byteArray, position + DIRECTORY_PAGE_FRAME.ENTRY_NAME_INDEX, nameBytes.length);
+                position += DIRECTORY_PAGE_FRAME.ENTRY_NAME_INDEX + nameBytes.length;
+            }
+            return byteArray;
+        }
+        static DirectoryPage fromBytes(byte[] byteArray){
+            if (byteArray.length != DIRECTORY_PAGE_FRAME.SIZE)
+                throw new RuntimeException("Invalid DirectoryPage. Array should have " + DIRECTORY_PAGE_FRAME.SIZE + " bytes.");
+            if (BinaryUtilities.convertBytesToInt(byteArray, DIRECTORY_PAGE_FRAME.MAGIC_VALUE_INDEX) != VALUES.MAGIC_VALUE)
+                throw new RuntimeException("Invalid DirectoryPage. Magic Value does not match.");
+            DirectoryPage page = new DirectoryPage(
+                    BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.PAGE_INDEX_INDEX),
+                    BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.DIRECTORY_INDEX_INDEX),
+                    BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.NEXT_PAGE_INDEX));
+            int entryCount = BinaryUtilities.convertBytesToShort(byteArray, DIRECTORY_PAGE_FRAME.ENTRY_COUNT_INDEX) & 0xFFFF;
+            int position = DIRECTORY_PAGE_FRAME.FIRST_ENTRY_INDEX;
+            for (int i = 0; i < entryCount; i++){
+                long index = BinaryUtilities.convertBytesToLong(byteArray, position + DIRECTORY_PAGE_FRAME.ENTRY_INDEX_INDEX);
+                long iNodeAddress = BinaryUtilities.convertBytesToLong(byteArray, position + DIRECTORY_PAGE_FRAME.ENTRY_INODE_INDEX);
+                byte flags = byteArray[position + DIRECTORY_PAGE_FRAME.ENTRY_FLAGS_INDEX];
+                int nameLength = BinaryUtilities.convertBytesToShort(byteArray, position + DIRECTORY_PAGE_FRAME.ENTRY_NAME_LENGTH_INDEX) & 0xFFFF;
+                String name = BinaryUtilities.convertBytesToUTF8String(byteArray, position + DIRECTORY_PAGE_FRAME.ENTRY_NAME_INDEX, nameLength);
+                page.addEntry(new PageEntry(index, iNodeAddress, flags, name));
+                position += DIRECTORY_PAGE_FRAME.ENTRY_NAME_INDEX + nameLength;
+            }
+            return page;
+        }
+    }
+
+    /**
+     * A page of the hash index of a directory. Maps the lower hash bound of each DirectoryPage to the index of the page.
+     * Hash index pages form a chain through nextPageIndex. The last page points to itself.
+     */
+    static class HashIndexPage{
+        static final int CAPACITY = (DIRECTORY_PAGE_FRAME.SIZE - DIRECTORY_PAGE_FRAME.FIRST_ENTRY_INDEX) /
+                DIRECTORY_PAGE_FRAME.INDEX_ENTRY_SIZE;
+        long index;
+        long directoryIndex;
+        long nextPageIndex;
+        final TreeMap<Integer, Long> entries = new TreeMap<Integer, Long>();
+        HashIndexPage(long index, long directoryIndex, long nextPageIndex){
+            this.index = index;
+            this.directoryIndex = directoryIndex;
+            this.nextPageIndex = nextPageIndex;
+        }
+        byte[] getBytes(){
+            byte[] byteArray = new byte[DIRECTORY_PAGE_FRAME.SIZE];
+            System.arraycopy(VALUES.MAGIC_VALUE_BYTES, 0, byteArray, DIRECTORY_PAGE_FRAME.MAGIC_VALUE_INDEX, 4);
+            System.arraycopy(BinaryUtilities.convertLongToBytes(index), 0, byteArray, DIRECTORY_PAGE_FRAME.PAGE_INDEX_INDEX, 8);
+            System.arraycopy(BinaryUtilities.convertLongToBytes(directoryIndex), 0, byteArray, DIRECTORY_PAGE_FRAME.DIRECTORY_INDEX_INDEX, 8);
+            System.arraycopy(BinaryUtilities.convertLongToBytes(nextPageIndex), 0, byteArray, DIRECTORY_PAGE_FRAME.NEXT_PAGE_INDEX, 8);
+            System.arraycopy(BinaryUtilities.convertShortToBytes((short) entries.size()), 0, byteArray, DIRECTORY_PAGE_FRAME.ENTRY_COUNT_INDEX, 2);
+            int position = DIRECTORY_PAGE_FRAME.FIRST_ENTRY_INDEX;
+            for (Map.Entry<Integer, Long> entry: entries.entrySet()){
+                System.arraycopy(BinaryUtilities.convertIntToBytes(entry.getKey()), 0, byteArray, position + DIRECTORY_PAGE_FRAME.INDEX_ENTRY_HASH_INDEX, 4);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(entry.getValue()), 0, byteArray, position + DIRECTORY_PAGE_FRAME.INDEX_ENTRY_PAGE_INDEX, 8);
+                position += DIRECTORY_PAGE_FRAME.INDEX_ENTRY_SIZE;
+            }
+            return byteArray;
+        }
+        static HashIndexPage fromBytes(byte[] byteArray){
+            if (byteArray.length != DIRECTORY_PAGE_FRAME.SIZE)
+                throw new RuntimeException("Invalid HashIndexPage. Array should have " + DIRECTORY_PAGE_FRAME.SIZE + " bytes.");
+            if (BinaryUtilities.convertBytesToInt(byteArray, DIRECTORY_PAGE_FRAME.MAGIC_VALUE_INDEX) != VALUES.MAGIC_VALUE)
+                throw new RuntimeException("Invalid HashIndexPage. Magic Value does not match.");
+            HashIndexPage page = new HashIndexPage(
+                    BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.PAGE_INDEX_INDEX),
+                    BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.DIRECTORY_INDEX_INDEX),
+                    BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.NEXT_PAGE_INDEX));
+            int entryCount = BinaryUtilities.convertBytesToShort(byteArray, DIRECTORY_PAGE_FRAME.ENTRY_COUNT_INDEX) & 0xFFFF;
+            if (entryCount > CAPACITY)
+                throw new RuntimeException("Invalid HashIndexPage. Entry count exceeds capacity.");
+            int position = DIRECTORY_PAGE_FRAME.FIRST_ENTRY_INDEX;
+            for (int i = 0; i < entryCount; i++){
+                int hash = BinaryUtilities.convertBytesToInt(byteArray, position + DIRECTORY_PAGE_FRAME.INDEX_ENTRY_HASH_INDEX);
+                long pageIndex = BinaryUtilities.convertBytesToLong(byteArray, position + DIRECTORY_PAGE_FRAME.INDEX_ENTRY_PAGE_INDEX);
+                page.entries.put(hash, pageIndex);
+                position += DIRECTORY_PAGE_FRAME.INDEX_ENTRY_SIZE;
+            }
+            return page;
+        }
+    }
+
+    /**
+     * The DirectoryPages of a directory held in memory.
+     */
+    private static class DirectoryListing{
+        /**
+         * The DirectoryPages in chain order.
+         */
+        final LinkedList<DirectoryPage> pages = new LinkedList<DirectoryPage>();
+        /**
+         * The DirectoryPages keyed by their lower hash bound. Only populated for hash indexed directories.
+         */
+        final TreeMap<Integer, DirectoryPage> leaves = new TreeMap<Integer, DirectoryPage>();
+        /**
+         * The indexes of the hash index pages in chain order.
+         */
+        final LinkedList<Long> hashIndexPages = new LinkedList<Long>();
+    }
+
+    /**
+     * Returns the hash used to place an entry within the DirectoryPages of a hash indexed directory. The hash is never
+     * negative so that 0 is always the lowest bound.
+     * @param name The name of the entry
+     * @return The hash of the name
+     */
+    static int getNameHash(String name){
+        int hash = name.hashCode();
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return hash & 0x7fffffff;
+    }
+
+    /**
+     * Returns the position at which a list of entries sorted by hash is split into two pages. The position is the
+     * hash boundary closest to the middle of the entries by size. Entries with the same hash are never split.
+     * @param sortedEntries The entries sorted by hash
+     * @return The position of the first entry of the second page, or -1 if all entries have the same hash.
+     */
+    static int getSplitPosition(List<PageEntry> sortedEntries){
+        int size = sortedEntries.size();
+        int[] hashes = new int[size];
+        int totalSize = 0;
+        for (int i = 0; i < size; i++){
+            hashes[i] = getNameHash(sortedEntries.get(i).name);
+            totalSize += sortedEntries.get(i).getSize();
+        }
+        int middle = 0;
+        int runningSize = 0;
+        while (middle < size && runningSize < totalSize / 2){
+            runningSize += sortedEntries.get(middle).getSize();
+            middle++;
+        }
+        for (int distance = 0; distance < size; distance++){
+            int lower = middle - distance;
+            int upper = middle + distance;
+            if (lower > 0 && lower < size && hashes[lower - 1] != hashes[lower])
+                return lower;
+            if (upper > 0 && upper < size && hashes[upper - 1] != hashes[upper])
+                return upper;
+        }
+        return -1;
+    }
+
+    /**
+     * Maximum number of DirectoryPages read from the directory-page-store in a single read.
+     */
+    private static final int MAX_PAGES_PER_READ = 256;
+    /**
+     * Number of DirectoryFrames read from the directory-store in a single read by mountAll.
+     */
+    private static final int FRAMES_PER_READ = 1024;
     private final File directoryStoreFile;
+    private final File directoryPageStoreFile;
     private final BitMapUtility bitMapUtility;
     private final SecretKey key;
+    /**
+     * The DirectoryListings of the paged directories that have been read or written since mounting, keyed by the index
+     * of the directory. Used to locate the page of an entry without reading the page chain again.
+     */
+    private final HashMap<Long, DirectoryListing> listingCache;
+    /**
+     * Throughput of the last call to mountAll. Null if the directory tree has not been loaded eagerly.
+     */
+    private TreeLoadStatistics loadStatistics;
+    /**
+     * Plain DirectoryFrames read or written while a batch is open, keyed by index. Null if no batch is open.
+     */
+    private HashMap<Long, byte[]> batchFrames;
+    /**
+     * Indexes of the DirectoryFrames within batchFrames that have been written since the batch was opened.
+     */
+    private TreeSet<Long> dirtyFrames;
+    /**
+     * Plain pages written to the directory-page-store while a batch is open, keyed by index. Null if no batch is open.
+     */
+    private TreeMap<Long, byte[]> dirtyPages;
     public DirectoryStoreGateway(File baseFile, BitMapUtility bitMapUtility, SecretKey key) throws Exception {
         File file;
+        File pageFile;
         try {
             file = Gateway.getFileInBaseDirectory(baseFile, Store.DirectoryStore.fileName);
+            pageFile = Gateway.getFileInBaseDirectory(baseFile, Store.DirectoryPageStore.fileName);
         } catch (Exception e){
             throw new Exception("Unable to Initialize DirectoryStore: DirectoryStoreFile Inaccessible -- " + e.getMessage());
         }
         directoryStoreFile = file;
+        directoryPageStoreFile = pageFile;
         this.bitMapUtility = bitMapUtility;
         this.key = key;
+        this.listingCache = new HashMap<Long, DirectoryListing>();
     }
 
     /**
@@ -106,7 +454,7 @@ public class DirectoryStoreGateway{
      * need to be read before the operations can proceed.
      * @return NodeTree object containing the rote node.
      */
-    public NodeTree mount() throws Exception {
+    public synchronized NodeTree mount() throws Exception {
         NodeTree nodeTree = new NodeTree(true);
         DirectoryFrame rootFrame = getDirectoryFrame(0);
         Node root = new Node(rootFrame.name, null, 0, rootFrame.flags);
@@ -114,7 +462,7 @@ public class DirectoryStoreGateway{
         nodeTree.setRoot(root);
         root.setFlag(Node.CNR_FLAG_MASK, true);
         // Check to see whether root has any children. If not, simply return the root after setting CNR flag to false.
-        if (rootFrame.childIndex == 0){
+        if (rootFrame.isEmpty()){
             root.setFlag(Node.CNR_FLAG_MASK, false);
             return nodeTree;
         }
@@ -122,8 +470,171 @@ public class DirectoryStoreGateway{
         readChildren(root);
         return nodeTree;
     }
+
+    /**
+     * Reads every Node within the directory-store into memory. The file is read sequentially in runs of
+     * FRAMES_PER_READ frames. Each run is decrypted on the common ForkJoinPool while the next run is being read. The
+     * Nodes are then linked to their parents using the listings of the directories, the same source mount reads. The
+     * DirectoryPages of the directories are read in parallel, and directories that still use a chain of sibling frames
+     * are walked in memory. Unlike mount, none of the directories have their CNR flags set. The throughput of the load
+     * is available from getLoadStatistics.
+     * @return NodeTree object containing every Node of the FileSystem.
+     */
+    public synchronized NodeTree mountAll() throws Exception {
+        long start = System.nanoTime();
+        int frameSize = DIRECTORY_STORE_FRAME.FULL_SIZE;
+        long frameCount = directoryStoreFile.length() / frameSize;
+        if (frameCount > Integer.MAX_VALUE)
+            throw new Exception("Unable to Load DirectoryStore: Too many DirectoryFrames.");
+        DirectoryFrame[] frames = new DirectoryFrame[(int) frameCount];
+        LinkedList<ForkJoinTask<Void>> tasks = new LinkedList<ForkJoinTask<Void>>();
+        try (RandomAccessFile file = new RandomAccessFile(directoryStoreFile, "r")){
+            for (int first = 0; first < frameCount; first += FRAMES_PER_READ){
+                int count = (int) Math.min(FRAMES_PER_READ, frameCount - first);
+                byte[] byteArray = new byte[count * frameSize];
+                file.readFully(byteArray);
+                tasks.add(ForkJoinPool.commonPool().submit(new FrameDecryptionTask(byteArray, first, 0, count, frames)));
+            }
+        } catch (FileNotFoundException e){
+            throw new Exception("Unexpected error occurred during loading the DirectoryStore. " +
+                    "DirectoryStoreFile does not exist.");
+        }
+        try {
+            for (ForkJoinTask<Void> task: tasks)
+                task.join();
+        } catch (RuntimeException e){
+            throw new Exception("Unable to Load DirectoryStore: " + e.getMessage());
+        }
+        Node[] nodes = new Node[frames.length];
+        long occupiedCount = 0;
+        for (DirectoryFrame frame: frames){
+            if (frame == null)
+                continue;
+            Node node = new Node(frame.name, null, frame.iNodeAddress, (byte)(frame.flags & ~Node.CNR_FLAG_MASK));
+            node.setIndex(frame.index);
+            nodes[(int) frame.index] = node;
+            occupiedCount++;
+        }
+        if (nodes.length == 0 || nodes[0] == null)
+            throw new Exception("Unable to Load DirectoryStore: Root does not exist.");
+        HashMap<Long, ForkJoinTask<DirectoryListing>> listingTasks = new HashMap<Long, ForkJoinTask<DirectoryListing>>();
+        for (DirectoryFrame frame: frames){
+            if (frame != null && frame.isPaged() && !frame.isEmpty() && !listingCache.containsKey(frame.index))
+                listingTasks.put(frame.index, ForkJoinPool.commonPool().submit(() -> __readListing(frame)));
+        }
+        try {
+            for (Map.Entry<Long, ForkJoinTask<DirectoryListing>> task: listingTasks.entrySet())
+                listingCache.put(task.getKey(), task.getValue().get());
+        } catch (ExecutionException e){
+            throw new Exception("Unable to Load DirectoryStore: " + e.getCause().getMessage());
+        }
+        boolean[] linked = new boolean[nodes.length];
+        linked[0] = true;
+        ArrayDeque<DirectoryFrame> directories = new ArrayDeque<DirectoryFrame>();
+        directories.push(frames[0]);
+        while (!directories.isEmpty()){
+            DirectoryFrame frame = directories.pop();
+            for (long childIndex: __getChildIndexes(frame, frames)){
+                if (childIndex <= 0 || childIndex >= nodes.length || nodes[(int) childIndex] == null || linked[(int) childIndex])
+                    throw new Exception("Unable to Load DirectoryStore: Child " + childIndex + " of DirectoryFrame " +
+                            frame.index + " is not a valid DirectoryFrame.");
+                linked[(int) childIndex] = true;
+                nodes[(int) frame.index].addChild(nodes[(int) childIndex]);
+                if (frames[(int) childIndex].isDirectory())
+                    directories.push(frames[(int) childIndex]);
+            }
+        }
+        NodeTree nodeTree = new NodeTree(true);
+        nodeTree.setRoot(nodes[0]);
+        loadStatistics = new TreeLoadStatistics(occupiedCount, frameCount * frameSize, System.nanoTime() - start);
+        return nodeTree;
+    }
+
+    /**
+     * Decrypts a run of DirectoryFrames read by mountAll. Frames that are not occupied according to the bitmap of the
+     * DirectoryStore are skipped. Large runs are split so that they can be decrypted in parallel.
+     */
+    private class FrameDecryptionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 64;
+        private final byte[] byteArray;
+        private final int firstIndex;
+        private final int start;
+        private final int end;
+        private final DirectoryFrame[] frames;
+
+        FrameDecryptionTask(byte[] byteArray, int firstIndex, int start, int end, DirectoryFrame[] frames){
+            this.byteArray = byteArray;
+            this.firstIndex = firstIndex;
+            this.start = start;
+            this.end = end;
+            this.frames = frames;
+        }
+
+        @Override
+        protected void compute(){
+            if (end - start > THRESHOLD){
+                int middle = (start + end) >>> 1;
+                invokeAll(new FrameDecryptionTask(byteArray, firstIndex, start, middle, frames),
+                        new FrameDecryptionTask(byteArray, firstIndex, middle, end, frames));
+                return;
+            }
+            int frameSize = DIRECTORY_STORE_FRAME.FULL_SIZE;
+            for (int i = start; i < end; i++){
+                long index = firstIndex + i;
+                if (!bitMapUtility.isIndexOccupiedDirectoryStore(index))
+                    continue;
+                try {
+                    byte[] frameBytes = Arrays.copyOfRange(byteArray, i * frameSize, (i + 1) * frameSize);
+                    frames[(int) index] = __parseDirectoryFrame(Crypto.decryptBlock(frameBytes, key, DIRECTORY_STORE_FRAME.SIZE), index);
+                } catch (Exception e){
+                    throw new RuntimeException("DirectoryFrame " + index + " could not be read. " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the indexes of the children of a directory for mountAll. The DirectoryPages of a paged directory must
+     * already be in listingCache. The sibling chain of any other directory is walked within the frames read by mountAll.
+     * @param frame The DirectoryFrame of the directory
+     * @param frames Every DirectoryFrame of the directory-store, with null for the unoccupied indexes
+     * @return LinkedList of the indexes of the children
+     */
+    private LinkedList<Long> __getChildIndexes(DirectoryFrame frame, DirectoryFrame[] frames) throws Exception{
+        LinkedList<Long> childIndexes = new LinkedList<Long>();
+        if (!frame.isDirectory() || frame.isEmpty())
+            return childIndexes;
+        if (frame.isPaged()){
+            for (DirectoryPage page: listingCache.get(frame.index).pages){
+                for (PageEntry entry: page.entries)
+                    childIndexes.add(entry.index);
+            }
+            return childIndexes;
+        }
+        long childIndex = frame.childIndex;
+        do {
+            if (childIndex < 0 || childIndex >= frames.length || frames[(int) childIndex] == null || childIndexes.size() >= frames.length)
+                throw new Exception("Unable to Load DirectoryStore: Sibling chain of DirectoryFrame " + frame.index +
+                        " is broken at " + childIndex + ".");
+            childIndexes.add(childIndex);
+            DirectoryFrame childFrame = frames[(int) childIndex];
+            if (!childFrame.hasSiblings())
+                break;
+            childIndex = childFrame.nextSiblingIndex;
+        } while (childIndex != frame.childIndex);
+        return childIndexes;
+    }
+
+    public synchronized TreeLoadStatistics getLoadStatistics(){
+        return loadStatistics;
+    }
+
     private DirectoryFrame getDirectoryFrame(long index) throws Exception{
-        byte[] byteArray = __getDirectoryFrameBytes(index);
+        return __parseDirectoryFrame(__getDirectoryFrameBytes(index), index);
+    }
+
+    private static DirectoryFrame __parseDirectoryFrame(byte[] byteArray, long index){
         String name = BinaryUtilities.convertBytesToUTF8String(byteArray, DIRECTORY_STORE_FRAME.NAME_INDEX, 256);
         long i = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_STORE_FRAME.DIRECTORY_STORE_INDEX_INDEX);
         if (i != index)
@@ -136,8 +647,21 @@ public class DirectoryStoreGateway{
         long nextSiblingIndex = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_STORE_FRAME.NEXT_SIBLING_INDEX);
         long childIndex = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_STORE_FRAME.CHILD_INDEX);
         byte flags = byteArray[DIRECTORY_STORE_FRAME.FLAGS_INDEX];
-        return new DirectoryFrame(name.trim(), index, parentIndex, iNodeAddress, parentINodeAddress, previousSiblingIndex,
-                nextSiblingIndex, childIndex, flags);
+        DirectoryFrame frame = new DirectoryFrame(name.trim(), index, parentIndex, iNodeAddress, parentINodeAddress,
+                previousSiblingIndex, nextSiblingIndex, childIndex, flags);
+        if (frame.isPaged()){
+            frame.firstPageIndex = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_STORE_FRAME.FIRST_PAGE_INDEX);
+            frame.pageCount = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_STORE_FRAME.PAGE_COUNT_INDEX);
+            frame.iNodeAddress = 0;
+            frame.parentINodeAddress = 0;
+        }
+        if (frame.isHashIndexed()){
+            frame.hashIndexPageIndex = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_STORE_FRAME.HASH_INDEX_PAGE_INDEX);
+            frame.hashIndexPageCount = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_STORE_FRAME.HASH_INDEX_PAGE_COUNT_INDEX);
+            frame.childIndex = index;
+            frame.previousSiblingIndex = index;
+        }
+        return frame;
     }
     /**
      * Reads a DirectoryFrame from the DirectoryStore File.
@@ -146,6 +670,18 @@ public class DirectoryStoreGateway{
      * @throws Exception In case of IOExceptions; or in case the file has been deleted; or in case of decryption errors.
      */
     private byte[] __getDirectoryFrameBytes(long index) throws Exception {
+        if (batchFrames != null){
+            byte[] byteArray = batchFrames.get(index);
+            if (byteArray == null){
+                byteArray = __readDirectoryFrameBytes(index);
+                batchFrames.put(index, byteArray);
+            }
+            return byteArray.clone();
+        }
+        return __readDirectoryFrameBytes(index);
+    }
+
+    private byte[] __readDirectoryFrameBytes(long index) throws Exception {
         RandomAccessFile file;
         int frameSize = DIRECTORY_STORE_FRAME.FULL_SIZE;
         byte[] byteArray = new byte[frameSize];
@@ -162,18 +698,22 @@ public class DirectoryStoreGateway{
         return byteArray;
     }
     /**
-     * This method takes a node and places that node within the directory store file at a free index.
+     * This method takes a node and places that node within the directory store file at a free index. The node is
+     * added as an entry to the DirectoryPages of its parent.
      * @param node The desired node to be added to the directory store file.
      * @return The index of the node
      * @throws Exception In case the node is not successfully added to the directory-store.
      */
-    public long addNode(Node node) throws Exception{
+    public synchronized long addNode(Node node) throws Exception{
         if (node.getName().equals("root"))
             return __addRootNode(node);
         Node parentNode = node.getParentNode();
-        LinkedList<Node> siblings = parentNode.getChildNodes(this);
-        int siblingsSize = siblings.size();
+        DirectoryFrame parentFrame = getDirectoryFrame(parentNode.getIndex());
+        __ensureHashIndexed(parentFrame);
         long index = bitMapUtility.getFreeIndexDirectoryStore();
+        byte flags = (byte)(node.getFlags() & ~Node.CNR_FLAG_MASK);
+        if (node.isDirectory())
+            flags = (byte)(flags | FLAGS.DEFAULT_DIRECTORY_FRAME_DIR | Node.PAGED_FLAG_MASK | Node.HASH_INDEXED_FLAG_MASK);
         DirectoryFrame frame = new DirectoryFrame(
                 node.getName(),
                 index,
@@ -183,39 +723,13 @@ public class DirectoryStoreGateway{
                 index,
                 index,
                 index,
-                node.checkFlag(Node.DIRECTORY_FLAG_MASK) ? FLAGS.DEFAULT_DIRECTORY_FRAME_DIR : FLAGS.DEFAULT_DIRECTORY_FRAME_FILE
+                flags
         );
-        if (siblingsSize < 2){
-            frame.previousSiblingIndex = index;
-            frame.nextSiblingIndex = index;
-            DirectoryFrame parentFrame = getDirectoryFrame(frame.parentIndex);
-            parentFrame.childIndex = index;
-            __updateDirectoryFrame(parentFrame);
-        }
-        else{
-            int selfIndex = siblings.indexOf(node);
-            DirectoryFrame previousSibling = null;
-            DirectoryFrame nextSibling = null;
-            int nextIndex = (selfIndex == 0) ? 1: 0;
-            previousSibling = getDirectoryFrame(siblings.get(nextIndex).getIndex());
-            if (previousSibling.previousSiblingIndex == previousSibling.index){ // There is only 1 sibling.
-                previousSibling.previousSiblingIndex = index;
-                previousSibling.nextSiblingIndex = index;
-                frame.nextSiblingIndex = previousSibling.index;
-                frame.previousSiblingIndex = previousSibling.index;
-                __updateDirectoryFrame(previousSibling);
-            } else { // There are at least 2 siblings.
-                nextSibling = getDirectoryFrame(previousSibling.nextSiblingIndex);
-                previousSibling.nextSiblingIndex = index;
-                frame.previousSiblingIndex = previousSibling.index;
-                nextSibling.previousSiblingIndex = index;
-                frame.nextSiblingIndex = nextSibling.index;
-                __updateDirectoryFrame(previousSibling);
-                __updateDirectoryFrame(nextSibling);
-            }
-        }
         __writeDirectoryFrame(frame, index);
         bitMapUtility.setIndexDirectoryStore(index, true);
+        if (frame.isPaged())
+            listingCache.put(index, new DirectoryListing());
+        __addPageEntry(parentFrame, __getPageEntry(frame));
         node.setIndex(index);
         return index;
     }
@@ -225,23 +739,24 @@ public class DirectoryStoreGateway{
      * @param node Target Node
      * @return Index of the node.
      */
-    public long updateNode(Node node) throws Exception{
+    public synchronized long updateNode(Node node) throws Exception{
         long index = node.getIndex();
         DirectoryFrame frame = getDirectoryFrame(index);
         Node parentNode = node.getParentNode();
         boolean nameChanged, parentChanged, flagsChanged;
+        // The CNR flag is only meaningful in memory and the layout flags are only maintained by this class.
+        byte layoutFlags = (byte)(Node.PAGED_FLAG_MASK | Node.HASH_INDEXED_FLAG_MASK);
+        byte flags = (byte)((node.getFlags() & ~Node.CNR_FLAG_MASK & ~layoutFlags) | (frame.flags & layoutFlags));
         /*
          * Cases:
          *  1. Name Changed:
-         *      Only change the name and return.
+         *      Change the name in the frame and in the entry of the parent.
          *  2. Parent Changed:
-         *      Change the child index of the previous parent, possibly the new parent. Change the sibling index of the past siblings. New possibly.
+         *      Remove the entry from the DirectoryPages of the previous parent and add it to the new parent.
          *  3. Flags Changed:
-         *      Write Flags.
+         *      Change the flags in the frame and in the entry of the parent.
          */
-        // CASE 1: Name Changed.
         nameChanged = !node.getName().equals(frame.name);
-        // CASE 2: Parent Changed.
         if (parentNode != null){
             // Only handling this case as the parent of Root can never be changed.
             parentChanged = parentNode.getIndex() != frame.parentIndex;
@@ -249,136 +764,175 @@ public class DirectoryStoreGateway{
             // If root, parentChanged is false.
             parentChanged = false;
         }
-        // CASE 3: Flags Changed.
-        flagsChanged = node.getFlags() != frame.flags;
-        ///////////////////////////////////////////
-        // HANDLE ALL THE CHANGES ONE BY ONE.
-        ///////////////////////////////////////////
-        // CASE 1: NAME CHANGED.
-        if (nameChanged){
-            frame.name = node.getName();
-        }
-        // CASE 2: PARENT CHANGED.
+        flagsChanged = flags != frame.flags;
+        if (!nameChanged && !parentChanged && !flagsChanged)
+            return index;
+        String previousName = frame.name;
+        frame.name = node.getName();
+        frame.flags = flags;
         if (parentChanged){
-            ////////////////////////////////////////////////////////////////////////////////////////////////////////////
-            ///////// PREVIOUS CONNECTIONS
-            ////////////////////////////////////////////////////////////////////////////////////////////////////////////
-            // First Take Care of All the changes needed to the previous parent and possibly siblings.
             DirectoryFrame previousParentFrame = getDirectoryFrame(frame.parentIndex);
-            // Take Care of previous parent's childIndex.
-            if (previousParentFrame.childIndex == index){
-                // Node is set as the ChildIndex of the previous parent.
-                // In case there are more siblings, set the index to one of them else set it to the parent's own index.
-                if (frame.previousSiblingIndex != frame.index){
-                    // It had a sibling, hence assign the sibling as the new child.
-                    previousParentFrame.childIndex = frame.previousSiblingIndex;
-                } else {
-                    previousParentFrame.childIndex = previousParentFrame.index;
-                }
-                __writeDirectoryFrame(previousParentFrame, previousParentFrame.index);
-            }
-            // Take care of previous siblings, if any.
-            if (frame.previousSiblingIndex != frame.index){
-                DirectoryFrame previousSiblingFrame;
-                // At least one sibling exists.
-                previousSiblingFrame = getDirectoryFrame(frame.previousSiblingIndex);
-                if (frame.previousSiblingIndex != frame.nextSiblingIndex){
-                    DirectoryFrame nextSiblingFrame = getDirectoryFrame(frame.nextSiblingIndex);
-                    // At least two siblings exist.
-                    previousSiblingFrame.nextSiblingIndex = nextSiblingFrame.index;
-                    nextSiblingFrame.previousSiblingIndex = previousSiblingFrame.index;
-                    __writeDirectoryFrame(nextSiblingFrame, nextSiblingFrame.index);
-                } else {
-                    // Only 1 sibling.
-                    previousSiblingFrame.previousSiblingIndex = previousSiblingFrame.index;
-                    previousSiblingFrame.nextSiblingIndex = previousSiblingFrame.index;
-                }
-                __writeDirectoryFrame(previousSiblingFrame, previousSiblingFrame.index);
-            }
-            ////////////////////////////////////////////////////////////////////////////////////////////////////////////
-            //////// NEW CONNECTION
-            ////////////////////////////////////////////////////////////////////////////////////////////////////////////
-            // Turn for next parent.
+            __ensureHashIndexed(previousParentFrame);
+            __removePageEntry(previousParentFrame, index, previousName);
             DirectoryFrame nextParentFrame = getDirectoryFrame(parentNode.getIndex());
-            if (nextParentFrame.childIndex == nextParentFrame.index){
-                // Next Parent Currently has no children.
-                nextParentFrame.childIndex = frame.index;
-                frame.nextSiblingIndex = frame.index;
-                frame.previousSiblingIndex = frame.index;
-                __writeDirectoryFrame(nextParentFrame, nextParentFrame.index);
-            } else {
-                // There is at least 1 child already.
-                DirectoryFrame nextParentChildFrame = getDirectoryFrame(nextParentFrame.childIndex);
-                if (nextParentChildFrame.previousSiblingIndex == nextParentChildFrame.index){
-                    // The child does not have any siblings.
-                    nextParentChildFrame.nextSiblingIndex = frame.index;
-                    nextParentChildFrame.previousSiblingIndex = frame.index;
-                    frame.nextSiblingIndex = nextParentChildFrame.index;
-                    frame.previousSiblingIndex = nextParentChildFrame.index;
-                } else {
-                    // The child does have at least one sibling already.
-                    DirectoryFrame nextParentChildSiblingFrame = getDirectoryFrame(nextParentChildFrame.previousSiblingIndex);
-                    nextParentChildSiblingFrame.nextSiblingIndex = frame.index;
-                    frame.previousSiblingIndex = nextParentChildSiblingFrame.index;
-                    frame.nextSiblingIndex = nextParentChildFrame.index;
-                    nextParentChildFrame.previousSiblingIndex = frame.index;
-                    __writeDirectoryFrame(nextParentChildSiblingFrame, nextParentChildSiblingFrame.index);
-                }
-                __writeDirectoryFrame(nextParentChildFrame, nextParentChildFrame.index);
-            }
-        }
-        // CASE 3: FLAGS CHANGED
-        if (flagsChanged){
-            frame.flags = node.getFlags();
-        }
-        if (nameChanged || parentChanged || flagsChanged){
+            __ensureHashIndexed(nextParentFrame);
+            frame.parentIndex = nextParentFrame.index;
+            frame.nextSiblingIndex = index;
+            if (!frame.isHashIndexed())
+                frame.previousSiblingIndex = index;
             __writeDirectoryFrame(frame, index);
+            __addPageEntry(nextParentFrame, __getPageEntry(frame));
+        } else {
+            __writeDirectoryFrame(frame, index);
+            if (parentNode != null){
+                DirectoryFrame parentFrame = getDirectoryFrame(frame.parentIndex);
+                __ensureHashIndexed(parentFrame);
+                __updatePageEntry(parentFrame, __getPageEntry(frame), previousName);
+            }
         }
         return index;
     }
 
 
 
+    /**
+     * Opens a batch. Until commitBatch is called, DirectoryFrames and pages are written to a write set in memory instead
+     * of the directory-store and the directory-page-store. A frame or page that is written several times within the
+     * batch is only written to disk once. DirectoryFrames read within the batch are kept in memory so that the frame
+     * of a parent is only read once for all of its children.
+     */
+    public synchronized void beginBatch(){
+        if (batchFrames != null)
+            throw new IllegalStateException("A batch is already open.");
+        batchFrames = new HashMap<Long, byte[]>();
+        dirtyFrames = new TreeSet<Long>();
+        dirtyPages = new TreeMap<Long, byte[]>();
+    }
+
+    /**
+     * Writes the write set of the open batch in index order. Consecutive frames and pages are written with a single
+     * write. The batch is closed even if the write fails.
+     */
+    public synchronized void commitBatch() throws Exception{
+        if (batchFrames == null)
+            throw new IllegalStateException("No batch is open.");
+        TreeMap<Long, byte[]> frames = new TreeMap<Long, byte[]>();
+        for (long index: dirtyFrames)
+            frames.put(index, batchFrames.get(index));
+        TreeMap<Long, byte[]> pages = dirtyPages;
+        batchFrames = null;
+        dirtyFrames = null;
+        dirtyPages = null;
+        __writeRuns(directoryStoreFile, frames, DIRECTORY_STORE_FRAME.SIZE, DIRECTORY_STORE_FRAME.FULL_SIZE);
+        __writeRuns(directoryPageStoreFile, pages, DIRECTORY_PAGE_FRAME.SIZE, DIRECTORY_PAGE_FRAME.FULL_SIZE);
+    }
+
+    /**
+     * Encrypts the provided frames and writes them to a store in index order with one write per run of consecutive
+     * indexes.
+     * @param storeFile The file of the store
+     * @param frames The plain frames keyed by index
+     * @param size The size of a plain frame
+     * @param fullSize The size of an encrypted frame
+     */
+    private void __writeRuns(File storeFile, TreeMap<Long, byte[]> frames, int size, int fullSize) throws Exception{
+        if (frames.isEmpty())
+            return;
+        try (RandomAccessFile file = new RandomAccessFile(storeFile, "rw")){
+            Iterator<Map.Entry<Long, byte[]>> iterator = frames.entrySet().iterator();
+            Map.Entry<Long, byte[]> entry = iterator.next();
+            while (entry != null){
+                long runStart = entry.getKey();
+                ByteArrayOutputStream run = new ByteArrayOutputStream();
+                long nextIndex = runStart;
+                while (entry != null && entry.getKey() == nextIndex){
+                    run.write(Crypto.encryptBlock(entry.getValue(), key, size));
+                    nextIndex++;
+                    entry = iterator.hasNext() ? iterator.next() : null;
+                }
+                file.seek(runStart * fullSize);
+                file.write(run.toByteArray());
+            }
+        } catch (FileNotFoundException e){
+            throw new Exception("Unexpected error occurred during writing batch. " + storeFile.getName() +
+                    " does not exist.");
+        }
+    }
+
     /**
      * This method takes a node and removes the node from the FileSystem
      * @param node Target Node
      */
-    public void removeNode(Node node) throws Exception{
+    public synchronized void removeNode(Node node) throws Exception{
         Node parentNode = node.getParentNode();
         DirectoryFrame nodeFrame = getDirectoryFrame(node.getIndex());
-        DirectoryFrame parentFrame = getDirectoryFrame(parentNode.getIndex());
-        if (nodeFrame.isDirectory() && nodeFrame.childIndex != nodeFrame.index){
+        if (nodeFrame.isDirectory() && !nodeFrame.isEmpty()){
             throw new Exception("Cannot Remove Non Empty Directory");
         }
-        if (nodeFrame.nextSiblingIndex == nodeFrame.index){
-            // Node has no siblings
-            parentFrame.childIndex = parentFrame.index;
-            __updateDirectoryFrame(parentFrame);
-        } else {
-            DirectoryFrame previousSiblingFrame = getDirectoryFrame(nodeFrame.previousSiblingIndex);
-            if (nodeFrame.nextSiblingIndex == nodeFrame.previousSiblingIndex){
-                // Node only has 1 sibling
-                previousSiblingFrame.nextSiblingIndex = previousSiblingFrame.index;
-                previousSiblingFrame.previousSiblingIndex = previousSiblingFrame.index;
-                __updateDirectoryFrame(previousSiblingFrame);
-            } else {
-                // Node has at least 2 siblings
-                DirectoryFrame nextSiblingFrame = getDirectoryFrame(nodeFrame.nextSiblingIndex);
-                previousSiblingFrame.nextSiblingIndex = nextSiblingFrame.index;
-                nextSiblingFrame.previousSiblingIndex = previousSiblingFrame.index;
-                __updateDirectoryFrame(previousSiblingFrame);
-                __updateDirectoryFrame(nextSiblingFrame);
-            }
-            // If ParentFrame points to node, change it.
-            if (parentFrame.childIndex == nodeFrame.index){
-                parentFrame.childIndex = previousSiblingFrame.index;
-                __updateDirectoryFrame(parentFrame);
-            }
-        }
+        DirectoryFrame parentFrame = getDirectoryFrame(parentNode.getIndex());
+        __ensureHashIndexed(parentFrame);
+        __removePageEntry(parentFrame, nodeFrame.index, nodeFrame.name);
+        listingCache.remove(nodeFrame.index);
         // Set Bitmap to 0
         bitMapUtility.setIndexDirectoryStore(nodeFrame.index, false);
-        parentNode.getChildNodes(this).remove(node);
+        parentNode.removeChild(node);
+    }
+    /**
+     * Returns every Node within the subtree of a node. The children of directories are read if required.
+     * @param node The root of the subtree
+     * @return The Nodes of the subtree in breadth first order, starting with the node itself.
+     */
+    public synchronized ArrayList<Node> getSubtree(Node node) throws Exception{
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        nodes.add(node);
+        for (int i = 0; i < nodes.size(); i++){
+            Node runningNode = nodes.get(i);
+            if (!runningNode.isDirectory())
+                continue;
+            if (runningNode.childrenNotRead())
+                readChildren(runningNode);
+            nodes.addAll(runningNode.getChildNodes());
+        }
+        return nodes;
     }
+
+    /**
+     * Removes a whole subtree from the directory-store. Only the entry of the root of the subtree is removed from the
+     * DirectoryPages of its parent. The frames and pages of the rest of the subtree are not updated as they are freed
+     * along with it. All the frames and pages are freed with a single update of each bitmap.
+     * @param node The root of the subtree. Must not be the root of the FileSystem.
+     * @param subtree Every Node within the subtree, as returned by getSubtree.
+     */
+    public synchronized void removeTree(Node node, List<Node> subtree) throws Exception{
+        Node parentNode = node.getParentNode();
+        if (parentNode == null)
+            throw new Exception("Cannot Remove Root");
+        long[] frameIndexes = new long[subtree.size()];
+        ArrayList<Long> pageIndexes = new ArrayList<Long>();
+        int i = 0;
+        for (Node runningNode: subtree){
+            frameIndexes[i++] = runningNode.getIndex();
+            if (!runningNode.isDirectory())
+                continue;
+            DirectoryFrame frame = getDirectoryFrame(runningNode.getIndex());
+            if (frame.isPaged()){
+                DirectoryListing listing = __getListing(frame);
+                for (DirectoryPage page: listing.pages)
+                    pageIndexes.add(page.index);
+                pageIndexes.addAll(listing.hashIndexPages);
+            }
+        }
+        DirectoryFrame nodeFrame = getDirectoryFrame(node.getIndex());
+        DirectoryFrame parentFrame = getDirectoryFrame(parentNode.getIndex());
+        __ensureHashIndexed(parentFrame);
+        __removePageEntry(parentFrame, nodeFrame.index, nodeFrame.name);
+        bitMapUtility.clearIndicesDirectoryStore(frameIndexes);
+        bitMapUtility.clearIndicesDirectoryPageStore(pageIndexes.stream().mapToLong(Long::longValue).toArray());
+        for (long frameIndex: frameIndexes)
+            listingCache.remove(frameIndex);
+        parentNode.removeChild(node);
+    }
+
     private long __addRootNode(Node node) throws Exception{
         long index = bitMapUtility.getFreeIndexDirectoryStore();
         DirectoryFrame frame = new DirectoryFrame(
@@ -390,10 +944,11 @@ public class DirectoryStoreGateway{
                 index,
                 index,
                 index,
-                FLAGS.DEFAULT_DIRECTORY_FRAME_DIR
+                (byte)(FLAGS.DEFAULT_DIRECTORY_FRAME_DIR | Node.PAGED_FLAG_MASK | Node.HASH_INDEXED_FLAG_MASK)
         );
         __writeDirectoryFrame(frame, index);
         bitMapUtility.setIndexDirectoryStore(index, true);
+        listingCache.put(index, new DirectoryListing());
         node.setIndex(index);
         return index;
     }
@@ -409,6 +964,11 @@ public class DirectoryStoreGateway{
     private void __writeDirectoryFrame(DirectoryFrame frame, long index) throws Exception{
         int frameSize = DIRECTORY_STORE_FRAME.FULL_SIZE;
         byte[] byteArray = frame.getBytes();
+        if (batchFrames != null){
+            batchFrames.put(index, byteArray);
+            dirtyFrames.add(index);
+            return;
+        }
         byteArray = Crypto.encryptBlock(byteArray, key, DIRECTORY_STORE_FRAME.SIZE);
         RandomAccessFile file;
         try {
@@ -422,42 +982,488 @@ public class DirectoryStoreGateway{
         }
     }
     /**
-     * This method takes a node with the CNR flag set to true and reads the children for that node.
+     * This method takes a node with the CNR flag set to true and reads the children for that node. Children that are
+     * already present within the node (e.g. from lookupChild) are kept.
      * @param node The required node.
      */
-    public void readChildren(Node node) throws Exception{
+    public synchronized void readChildren(Node node) throws Exception{
         DirectoryFrame frame = getDirectoryFrame(node.getIndex());
-        if (frame.childIndex == frame.index)
-            return;
         if (!node.isDirectory())
             return;
-        // Get the directory frame of a child.
+        if (frame.isPaged()){
+            for (DirectoryPage page: __getListing(frame).pages){
+                for (PageEntry entry: page.entries){
+                    if (node.getChildNode(entry.name) == null)
+                        node.addChild(__getChildNode(node, entry));
+                }
+            }
+        } else {
+            for (DirectoryFrame childFrame: __getLegacyChildFrames(frame)){
+                if (node.getChildNode(childFrame.name) == null)
+                    node.addChild(__getChildNode(node, __getPageEntry(childFrame)));
+            }
+        }
+        node.setFlag(Node.CNR_FLAG_MASK, false);
+    }
+
+    /**
+     * Finds a single child of a directory by name without reading the rest of its children. In a hash indexed
+     * directory only the hash index and the DirectoryPage that covers the hash of the name are read. The child is
+     * added to the node. The CNR flag of the node is left unchanged.
+     * @param node The parent node
+     * @param name The name of the child
+     * @return The child Node, or null if the directory has no child by that name.
+     */
+    public synchronized Node lookupChild(Node node, String name) throws Exception{
+        if (!node.isDirectory())
+            return null;
+        Node childNode = node.getChildNode(name);
+        if (childNode != null)
+            return childNode;
+        DirectoryFrame frame = getDirectoryFrame(node.getIndex());
+        PageEntry entry = __findPageEntry(frame, name);
+        if (entry == null)
+            return null;
+        childNode = __getChildNode(node, entry);
+        node.addChild(childNode);
+        return childNode;
+    }
+
+    private Node __getChildNode(Node node, PageEntry entry){
+        Node childNode = new Node(entry.name, node, entry.iNodeAddress, entry.flags);
+        childNode.setIndex(entry.index);
+        if (childNode.isDirectory())
+            childNode.setFlag(Node.CNR_FLAG_MASK, true);
+        return childNode;
+    }
+
+    private PageEntry __findPageEntry(DirectoryFrame frame, String name) throws Exception{
+        DirectoryListing listing = listingCache.get(frame.index);
+        if (listing != null || (frame.isPaged() && (!frame.isHashIndexed() || frame.hashIndexPageCount == 0))){
+            if (listing == null)
+                listing = __getListing(frame);
+            if (frame.isHashIndexed() && !listing.leaves.isEmpty())
+                return listing.leaves.floorEntry(getNameHash(name)).getValue().getEntry(name);
+            for (DirectoryPage page: listing.pages){
+                PageEntry entry = page.getEntry(name);
+                if (entry != null)
+                    return entry;
+            }
+            return null;
+        }
+        if (!frame.isPaged()){
+            for (DirectoryFrame childFrame: __getLegacyChildFrames(frame)){
+                if (childFrame.name.equals(name))
+                    return __getPageEntry(childFrame);
+            }
+            return null;
+        }
+        TreeMap<Integer, Long> bounds = __readHashIndex(frame, new LinkedList<Long>());
+        long pageIndex = bounds.floorEntry(getNameHash(name)).getValue();
+        DirectoryPage page = DirectoryPage.fromBytes(__readPageChain(pageIndex, 1).getFirst());
+        if (page.directoryIndex != frame.index)
+            throw new Exception("DirectoryPage Error: Page " + pageIndex + " does not belong to directory " + frame.index);
+        return page.getEntry(name);
+    }
+
+    /**
+     * Walks the circular chain of sibling frames of a directory that has not been converted to DirectoryPages.
+     * @param frame The DirectoryFrame of the directory
+     * @return A LinkedList of the DirectoryFrames of the children of the directory.
+     */
+    private LinkedList<DirectoryFrame> __getLegacyChildFrames(DirectoryFrame frame) throws Exception{
+        LinkedList<DirectoryFrame> childFrames = new LinkedList<DirectoryFrame>();
+        if (frame.childIndex == frame.index)
+            return childFrames;
         DirectoryFrame childFrame = getDirectoryFrame(frame.childIndex);
         DirectoryFrame runningChildFrame = childFrame;
-        if (childFrame.hasSiblings()){
-            do {
-                Node childNode = new Node(runningChildFrame.name,  node, runningChildFrame.iNodeAddress, runningChildFrame.flags);
-                if (childNode.isDirectory())
-                    childNode.setFlag(Node.CNR_FLAG_MASK, true);
-                childNode.setIndex(runningChildFrame.index);
-                node.addChild(childNode);
-                runningChildFrame = getDirectoryFrame(runningChildFrame.nextSiblingIndex);
-            } while (runningChildFrame.index != childFrame.index);
+        do {
+            childFrames.add(runningChildFrame);
+            if (!runningChildFrame.hasSiblings())
+                break;
+            runningChildFrame = getDirectoryFrame(runningChildFrame.nextSiblingIndex);
+        } while (runningChildFrame.index != childFrame.index);
+        return childFrames;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // DIRECTORY PAGES
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Converts a directory that uses a chain of sibling frames, or DirectoryPages without a hash index, into a hash
+     * indexed directory. Does nothing if the directory is already hash indexed.
+     * @param dirFrame The DirectoryFrame of the target directory. Updated in place.
+     */
+    private void __ensureHashIndexed(DirectoryFrame dirFrame) throws Exception{
+        if (dirFrame.isHashIndexed())
+            return;
+        ArrayList<PageEntry> entries = new ArrayList<PageEntry>();
+        if (dirFrame.isPaged()){
+            for (DirectoryPage page: __getListing(dirFrame).pages){
+                entries.addAll(page.entries);
+                bitMapUtility.setIndexDirectoryPageStore(page.index, false);
+            }
         } else {
-            Node childNode = new Node(runningChildFrame.name, node, runningChildFrame.iNodeAddress, runningChildFrame.flags);
-            childNode.setIndex(runningChildFrame.index);
-            if (childNode.isDirectory())
-                childNode.setFlag(Node.CNR_FLAG_MASK, true);
-            node.addChild(childNode);
+            for (DirectoryFrame childFrame: __getLegacyChildFrames(dirFrame)){
+                entries.add(__getPageEntry(childFrame));
+            }
         }
-        node.setFlag(Node.CNR_FLAG_MASK, false);
+        dirFrame.flags = (byte)(dirFrame.flags | Node.PAGED_FLAG_MASK | Node.HASH_INDEXED_FLAG_MASK);
+        dirFrame.childIndex = dirFrame.index;
+        dirFrame.previousSiblingIndex = dirFrame.index;
+        dirFrame.firstPageIndex = -1;
+        dirFrame.pageCount = 0;
+        dirFrame.hashIndexPageIndex = -1;
+        dirFrame.hashIndexPageCount = 0;
+        entries.sort(Comparator.comparingInt(entry -> getNameHash(entry.name)));
+        DirectoryListing listing = new DirectoryListing();
+        DirectoryPage page = null;
+        for (PageEntry entry: entries){
+            if (page == null || !page.canFit(entry)){
+                // Entries with the same hash must remain within the same page.
+                LinkedList<PageEntry> carriedEntries = new LinkedList<PageEntry>();
+                int hash = getNameHash(entry.name);
+                while (page != null && !page.entries.isEmpty() && getNameHash(page.entries.getLast().name) == hash){
+                    carriedEntries.addFirst(page.entries.getLast());
+                    page.removeEntry(page.entries.getLast().index);
+                }
+                if (page != null && page.entries.isEmpty())
+                    throw new Exception("Unable to index directory: Too many names with the same hash.");
+                long pageIndex = __getFreePageIndex(page == null ? -1 : page.index + 1);
+                bitMapUtility.setIndexDirectoryPageStore(pageIndex, true);
+                if (page != null)
+                    page.nextPageIndex = pageIndex;
+                listing.leaves.put(page == null ? 0 : hash, page = new DirectoryPage(pageIndex, dirFrame.index, pageIndex));
+                listing.pages.add(page);
+                for (PageEntry carriedEntry: carriedEntries)
+                    page.addEntry(carriedEntry);
+            }
+            page.addEntry(entry);
+        }
+        for (DirectoryPage directoryPage: listing.pages){
+            __writePage(directoryPage);
+        }
+        if (!listing.pages.isEmpty()){
+            dirFrame.firstPageIndex = listing.pages.getFirst().index;
+            dirFrame.pageCount = listing.pages.size();
+        }
+        listingCache.put(dirFrame.index, listing);
+        __writeHashIndex(dirFrame, listing);
+    }
+
+    /**
+     * Returns the DirectoryListing of a paged directory. The listing is read from the cache if available. Otherwise,
+     * the DirectoryPages and the hash index are read from the directory-page-store.
+     * @param dirFrame The DirectoryFrame of a paged directory
+     * @return DirectoryListing of the directory
+     */
+    private DirectoryListing __getListing(DirectoryFrame dirFrame) throws Exception{
+        DirectoryListing listing = listingCache.get(dirFrame.index);
+        if (listing == null){
+            listing = __readListing(dirFrame);
+            listingCache.put(dirFrame.index, listing);
+        }
+        return listing;
+    }
+
+    /**
+     * Reads the DirectoryPages and the hash index of a paged directory without consulting or populating listingCache,
+     * so that the listings of several directories can be read in parallel.
+     */
+    private DirectoryListing __readListing(DirectoryFrame dirFrame) throws Exception{
+        DirectoryListing listing = new DirectoryListing();
+        HashMap<Long, DirectoryPage> pagesByIndex = new HashMap<Long, DirectoryPage>();
+        for (byte[] byteArray: __readPageChain(dirFrame.firstPageIndex, dirFrame.pageCount)){
+            DirectoryPage page = DirectoryPage.fromBytes(byteArray);
+            if (page.directoryIndex != dirFrame.index)
+                throw new Exception("DirectoryPage Error: Page " + page.index + " does not belong to directory " + dirFrame.index);
+            listing.pages.add(page);
+            pagesByIndex.put(page.index, page);
+        }
+        if (dirFrame.isHashIndexed() && dirFrame.pageCount == 1){
+            listing.leaves.put(0, listing.pages.getFirst());
+        } else if (dirFrame.isHashIndexed() && dirFrame.pageCount > 1){
+            for (Map.Entry<Integer, Long> bound: __readHashIndex(dirFrame, listing.hashIndexPages).entrySet()){
+                DirectoryPage page = pagesByIndex.get(bound.getValue());
+                if (page == null)
+                    throw new Exception("DirectoryPage Error: Hash index of directory " + dirFrame.index +
+                            " refers to missing page " + bound.getValue());
+                listing.leaves.put(bound.getKey(), page);
+            }
+        }
+        return listing;
+    }
+
+    /**
+     * Reads the hash index of a hash indexed directory.
+     * @param dirFrame The DirectoryFrame of the directory
+     * @param hashIndexPages Populated with the indexes of the hash index pages in chain order.
+     * @return The lower hash bound of each DirectoryPage mapped to the index of the page.
+     */
+    private TreeMap<Integer, Long> __readHashIndex(DirectoryFrame dirFrame, LinkedList<Long> hashIndexPages) throws Exception{
+        TreeMap<Integer, Long> bounds = new TreeMap<Integer, Long>();
+        for (byte[] byteArray: __readPageChain(dirFrame.hashIndexPageIndex, dirFrame.hashIndexPageCount)){
+            HashIndexPage page = HashIndexPage.fromBytes(byteArray);
+            if (page.directoryIndex != dirFrame.index)
+                throw new Exception("HashIndexPage Error: Page " + page.index + " does not belong to directory " + dirFrame.index);
+            bounds.putAll(page.entries);
+            hashIndexPages.add(page.index);
+        }
+        if (!bounds.isEmpty() && bounds.firstKey() != 0)
+            throw new Exception("HashIndexPage Error: Hash index of directory " + dirFrame.index + " does not start at 0.");
+        return bounds;
     }
+
+    /**
+     * Reads and decrypts a chain of pages from the directory-page-store. Consecutive pages are read with a single read.
+     * Both DirectoryPages and HashIndexPages can be read as they share the same header.
+     * @param pageIndex Index of the first page in the chain
+     * @param pageCount Number of pages in the chain
+     * @return LinkedList of the decrypted pages in chain order
+     */
+    private LinkedList<byte[]> __readPageChain(long pageIndex, long pageCount) throws Exception{
+        LinkedList<byte[]> pages = new LinkedList<byte[]>();
+        byte[] run = new byte[0];
+        long runStart = pageIndex;
+        int frameSize = DIRECTORY_PAGE_FRAME.FULL_SIZE;
+        for (long i = 0; i < pageCount; i++){
+            if (dirtyPages != null && dirtyPages.containsKey(pageIndex)){
+                byte[] byteArray = dirtyPages.get(pageIndex).clone();
+                pages.add(byteArray);
+                pageIndex = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.NEXT_PAGE_INDEX);
+                continue;
+            }
+            if (pageIndex < runStart || pageIndex >= runStart + (run.length / frameSize)){
+                run = __readPageRun(pageIndex, pageCount - i);
+                runStart = pageIndex;
+            }
+            int start = (int)(pageIndex - runStart) * frameSize;
+            byte[] byteArray = Crypto.decryptBlock(Arrays.copyOfRange(run, start, start + frameSize), key, DIRECTORY_PAGE_FRAME.SIZE);
+            long index = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.PAGE_INDEX_INDEX);
+            if (index != pageIndex)
+                throw new Exception("DirectoryPage Error: Index is not what is is supposed to be.\n" +
+                        "Expected Value: " + pageIndex + "\nCurrent Value: " + index);
+            pages.add(byteArray);
+            pageIndex = BinaryUtilities.convertBytesToLong(byteArray, DIRECTORY_PAGE_FRAME.NEXT_PAGE_INDEX);
+        }
+        return pages;
+    }
+
+    /**
+     * Reads up to pageCount consecutive encrypted pages starting from the provided index.
+     * @param pageIndex Index of the first page
+     * @param pageCount Maximum number of pages to read
+     * @return byte array containing the encrypted pages
+     */
+    private byte[] __readPageRun(long pageIndex, long pageCount) throws Exception{
+        int frameSize = DIRECTORY_PAGE_FRAME.FULL_SIZE;
+        try (RandomAccessFile file = new RandomAccessFile(directoryPageStoreFile, "r")){
+            long pagesInFile = file.length() / frameSize;
+            int pagesToRead = (int) Math.min(Math.min(pageCount, pagesInFile - pageIndex), MAX_PAGES_PER_READ);
+            if (pagesToRead <= 0)
+                throw new EOFException("DirectoryPage " + pageIndex + " does not exist.");
+            byte[] byteArray = new byte[pagesToRead * frameSize];
+            file.seek(pageIndex * frameSize);
+            file.readFully(byteArray);
+            return byteArray;
+        } catch (FileNotFoundException e){
+            throw new Exception("Unexpected error occurred during getting DirectoryPage. " +
+                    "DirectoryPageStoreFile does not exist.");
+        }
+    }
+
+    private void __writePage(DirectoryPage page) throws Exception{
+        __writePageBytes(page.index, page.getBytes());
+    }
+
+    private void __writePageBytes(long pageIndex, byte[] byteArray) throws Exception{
+        if (dirtyPages != null){
+            dirtyPages.put(pageIndex, byteArray);
+            return;
+        }
+        int frameSize = DIRECTORY_PAGE_FRAME.FULL_SIZE;
+        byteArray = Crypto.encryptBlock(byteArray, key, DIRECTORY_PAGE_FRAME.SIZE);
+        try (RandomAccessFile file = new RandomAccessFile(directoryPageStoreFile, "rw")){
+            file.seek(pageIndex * frameSize);
+            file.write(byteArray);
+        } catch (FileNotFoundException e){
+            throw new Exception("Unexpected error occurred during writing DirectoryPage. " +
+                    "DirectoryPageStoreFile does not exist.");
+        }
+    }
+
+    /**
+     * Rewrites the hash index of a directory from its DirectoryListing and updates the DirectoryFrame. A directory
+     * with a single DirectoryPage does not need a hash index, so its hash index pages are freed.
+     * @param dirFrame The DirectoryFrame of a hash indexed directory. Updated in place.
+     * @param listing The DirectoryListing of the directory
+     */
+    private void __writeHashIndex(DirectoryFrame dirFrame, DirectoryListing listing) throws Exception{
+        LinkedList<Long> hashIndexPages = listing.hashIndexPages;
+        int requiredPages = 0;
+        if (listing.leaves.size() > 1)
+            requiredPages = (listing.leaves.size() + HashIndexPage.CAPACITY - 1) / HashIndexPage.CAPACITY;
+        while (hashIndexPages.size() > requiredPages){
+            bitMapUtility.setIndexDirectoryPageStore(hashIndexPages.removeLast(), false);
+        }
+        while (hashIndexPages.size() < requiredPages){
+            long pageIndex = __getFreePageIndex(hashIndexPages.isEmpty() ? -1 : hashIndexPages.getLast() + 1);
+            bitMapUtility.setIndexDirectoryPageStore(pageIndex, true);
+            hashIndexPages.add(pageIndex);
+        }
+        Iterator<Map.Entry<Integer, DirectoryPage>> leaves = listing.leaves.entrySet().iterator();
+        Iterator<Long> pageIndexes = hashIndexPages.iterator();
+        while (pageIndexes.hasNext()){
+            long pageIndex = pageIndexes.next();
+            HashIndexPage page = new HashIndexPage(pageIndex, dirFrame.index, pageIndex);
+            while (page.entries.size() < HashIndexPage.CAPACITY && leaves.hasNext()){
+                Map.Entry<Integer, DirectoryPage> leaf = leaves.next();
+                page.entries.put(leaf.getKey(), leaf.getValue().index);
+            }
+            if (leaves.hasNext())
+                page.nextPageIndex = hashIndexPages.get(hashIndexPages.indexOf(pageIndex) + 1);
+            __writePageBytes(pageIndex, page.getBytes());
+        }
+        dirFrame.hashIndexPageIndex = hashIndexPages.isEmpty() ? -1 : hashIndexPages.getFirst();
+        dirFrame.hashIndexPageCount = hashIndexPages.size();
+        __updateDirectoryFrame(dirFrame);
+    }
+
+    /**
+     * Returns a free index within the directory-page-store. The preferred index is returned if it is free so that the
+     * pages of a directory are placed consecutively.
+     * @param preferredIndex The preferred index. Set to -1 if there is no preference.
+     * @return A free page index
+     */
+    private long __getFreePageIndex(long preferredIndex) throws Exception{
+        if (preferredIndex >= 0 && !bitMapUtility.isIndexOccupiedDirectoryPageStore(preferredIndex))
+            return preferredIndex;
+        return bitMapUtility.getFreeIndexDirectoryPageStore();
+    }
+
+    /**
+     * Adds an entry to the DirectoryPage that covers the hash of its name. The page is split in two if the entry does
+     * not fit.
+     * @param dirFrame The DirectoryFrame of a hash indexed directory. Updated in place.
+     * @param entry The new entry
+     */
+    private void __addPageEntry(DirectoryFrame dirFrame, PageEntry entry) throws Exception{
+        DirectoryListing listing = __getListing(dirFrame);
+        if (listing.pages.isEmpty()){
+            long pageIndex = __getFreePageIndex(-1);
+            DirectoryPage page = new DirectoryPage(pageIndex, dirFrame.index, pageIndex);
+            page.addEntry(entry);
+            __writePage(page);
+            bitMapUtility.setIndexDirectoryPageStore(pageIndex, true);
+            listing.pages.add(page);
+            listing.leaves.put(0, page);
+            dirFrame.firstPageIndex = pageIndex;
+            dirFrame.pageCount = 1;
+            __updateDirectoryFrame(dirFrame);
+            return;
+        }
+        DirectoryPage page = listing.leaves.floorEntry(getNameHash(entry.name)).getValue();
+        if (page.canFit(entry)){
+            page.addEntry(entry);
+            __writePage(page);
+            return;
+        }
+        ArrayList<PageEntry> entries = new ArrayList<PageEntry>(page.entries);
+        entries.add(entry);
+        entries.sort(Comparator.comparingInt(e -> getNameHash(e.name)));
+        int splitPosition = getSplitPosition(entries);
+        if (splitPosition < 0)
+            throw new Exception("Unable to add entry: Too many names with the same hash.");
+        DirectoryPage lastPage = listing.pages.getLast();
+        long pageIndex = __getFreePageIndex(lastPage.index + 1);
+        DirectoryPage newPage = new DirectoryPage(pageIndex, dirFrame.index, pageIndex);
+        page.clearEntries();
+        for (int i = 0; i < entries.size(); i++){
+            if (i < splitPosition)
+                page.addEntry(entries.get(i));
+            else
+                newPage.addEntry(entries.get(i));
+        }
+        bitMapUtility.setIndexDirectoryPageStore(pageIndex, true);
+        lastPage.nextPageIndex = pageIndex;
+        __writePage(newPage);
+        __writePage(page);
+        if (lastPage != page)
+            __writePage(lastPage);
+        listing.pages.add(newPage);
+        listing.leaves.put(getNameHash(entries.get(splitPosition).name), newPage);
+        dirFrame.pageCount++;
+        __writeHashIndex(dirFrame, listing);
+    }
+
+    /**
+     * Removes an entry from the DirectoryPages of the directory. Pages that become empty are removed from the chain
+     * and freed. The range of hashes of a removed page is taken over by the page before it.
+     * @param dirFrame The DirectoryFrame of a hash indexed directory. Updated in place.
+     * @param index The index of the entry
+     * @param name The name of the entry
+     */
+    private void __removePageEntry(DirectoryFrame dirFrame, long index, String name) throws Exception{
+        DirectoryListing listing = __getListing(dirFrame);
+        if (listing.pages.isEmpty())
+            throw new Exception("DirectoryPage Error: Entry " + index + " not found in directory " + dirFrame.index);
+        Map.Entry<Integer, DirectoryPage> leaf = listing.leaves.floorEntry(getNameHash(name));
+        DirectoryPage page = leaf.getValue();
+        if (!page.removeEntry(index))
+            throw new Exception("DirectoryPage Error: Entry " + index + " not found in directory " + dirFrame.index);
+        if (!page.entries.isEmpty()){
+            __writePage(page);
+            return;
+        }
+        int position = listing.pages.indexOf(page);
+        listing.pages.remove(position);
+        if (position == 0){
+            dirFrame.firstPageIndex = listing.pages.isEmpty() ? -1 : listing.pages.getFirst().index;
+        } else {
+            DirectoryPage previousPage = listing.pages.get(position - 1);
+            previousPage.nextPageIndex = (position < listing.pages.size()) ? listing.pages.get(position).index : previousPage.index;
+            __writePage(previousPage);
+        }
+        listing.leaves.remove(leaf.getKey());
+        if (leaf.getKey() == 0 && !listing.leaves.isEmpty())
+            listing.leaves.put(0, listing.leaves.pollFirstEntry().getValue());
+        dirFrame.pageCount--;
+        bitMapUtility.setIndexDirectoryPageStore(page.index, false);
+        __writeHashIndex(dirFrame, listing);
+    }
+
+    /**
+     * Replaces the entry with the same index as the provided entry. The entry is moved to another page if the hash of
+     * its name has changed or it no longer fits within its page.
+     * @param dirFrame The DirectoryFrame of a hash indexed directory. Updated in place.
+     * @param entry The updated entry
+     * @param previousName The name of the entry before the update
+     */
+    private void __updatePageEntry(DirectoryFrame dirFrame, PageEntry entry, String previousName) throws Exception{
+        DirectoryListing listing = __getListing(dirFrame);
+        if (getNameHash(previousName) == getNameHash(entry.name)){
+            DirectoryPage page = listing.leaves.floorEntry(getNameHash(entry.name)).getValue();
+            if (page.replaceEntry(entry)){
+                __writePage(page);
+                return;
+            }
+        }
+        __removePageEntry(dirFrame, entry.index, previousName);
+        __addPageEntry(dirFrame, entry);
+    }
+
+    private PageEntry __getPageEntry(DirectoryFrame frame){
+        return new PageEntry(frame.index, frame.iNodeAddress, frame.flags, frame.name);
+    }
+
     /**
      * This method provides a byte array containing the data within a new DirectoryStore file.
      * @return a byte array containing the bytes in a new DirectoryStore file.
      */
     protected static byte[] getDefaultBytes(){
-        DirectoryFrame frame = new DirectoryFrame("root", 0, 0, 0, 0, 0, 0, 0, FLAGS.DEFAULT_DIRECTORY_FRAME_DIR);
+        DirectoryFrame frame = new DirectoryFrame("root", 0, 0, 0, 0, 0, 0, 0,
+                (byte)(FLAGS.DEFAULT_DIRECTORY_FRAME_DIR | Node.PAGED_FLAG_MASK | Node.HASH_INDEXED_FLAG_MASK));
         return frame.getBytes();
     }
 }
@@ -0,0 +1,375 @@
+package DiskUtility;
+
+import Constants.CHECKPOINT_FRAME;
+import Constants.DIRECTORY_PAGE_FRAME;
+import Constants.DIRECTORY_STORE_FRAME;
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+import FileSystem.Node;
+import Utilities.BinaryUtilities;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class DirectoryStoreGatewayTests {
+    @Test
+    @DisplayName("DirectoryPage -> getBytes and fromBytes round trip")
+    public void directoryPageRoundTrip(){
+        DirectoryStoreGateway.DirectoryPage page = new DirectoryStoreGateway.DirectoryPage(7, 3, 9);
+        page.addEntry(new DirectoryStoreGateway.PageEntry(12, 40, (byte) 0, "file.txt"));
+        page.addEntry(new DirectoryStoreGateway.PageEntry(13, 0, (byte) 0b10000100, "dossier-été"));
+        byte[] byteArray = page.getBytes();
+        Assertions.assertEquals(DIRECTORY_PAGE_FRAME.SIZE, byteArray.length);
+        DirectoryStoreGateway.DirectoryPage result = DirectoryStoreGateway.DirectoryPage.fromBytes(byteArray);
+        Assertions.assertEquals(7, result.index);
+        Assertions.assertEquals(3, result.directoryIndex);
+        Assertions.assertEquals(9, result.nextPageIndex);
+        Assertions.assertEquals(2, result.entries.size());
+        Assertions.assertEquals("file.txt", result.entries.get(0).name);
+        Assertions.assertEquals(40, result.entries.get(0).iNodeAddress);
+        Assertions.assertEquals("dossier-été", result.entries.get(1).name);
+        Assertions.assertEquals((byte) 0b10000100, result.entries.get(1).flags);
+    }
+
+    @Test
+    @DisplayName("DirectoryPage -> Entries are packed until the page is full")
+    public void directoryPageCapacity(){
+        DirectoryStoreGateway.DirectoryPage page = new DirectoryStoreGateway.DirectoryPage(0, 0, 0);
+        int count = 0;
+        DirectoryStoreGateway.PageEntry entry = new DirectoryStoreGateway.PageEntry(count, 0, (byte) 0, "entry-000000");
+        while (page.canFit(entry)){
+            page.addEntry(entry);
+            count++;
+            entry = new DirectoryStoreGateway.PageEntry(count, 0, (byte) 0, String.format("entry-%06d", count));
+        }
+        int expected = (DIRECTORY_PAGE_FRAME.SIZE - DIRECTORY_PAGE_FRAME.FIRST_ENTRY_INDEX) / entry.getSize();
+        Assertions.assertEquals(expected, count);
+        Assertions.assertEquals(count, DirectoryStoreGateway.DirectoryPage.fromBytes(page.getBytes()).entries.size());
+    }
+
+    @Test
+    @DisplayName("DirectoryPage -> replaceEntry and removeEntry")
+    public void directoryPageReplaceAndRemove(){
+        DirectoryStoreGateway.DirectoryPage page = new DirectoryStoreGateway.DirectoryPage(0, 0, 0);
+        page.addEntry(new DirectoryStoreGateway.PageEntry(1, 0, (byte) 0, "a"));
+        page.addEntry(new DirectoryStoreGateway.PageEntry(2, 0, (byte) 0, "b"));
+        Assertions.assertTrue(page.replaceEntry(new DirectoryStoreGateway.PageEntry(1, 0, (byte) 0, "renamed")));
+        Assertions.assertEquals("renamed", page.entries.getFirst().name);
+        Assertions.assertFalse(page.replaceEntry(new DirectoryStoreGateway.PageEntry(5, 0, (byte) 0, "missing")));
+        Assertions.assertTrue(page.removeEntry(2));
+        Assertions.assertFalse(page.removeEntry(2));
+        Assertions.assertEquals(1, page.entries.size());
+    }
+
+    @Test
+    @DisplayName("HashIndexPage -> getBytes and fromBytes round trip")
+    public void hashIndexPageRoundTrip(){
+        DirectoryStoreGateway.HashIndexPage page = new DirectoryStoreGateway.HashIndexPage(4, 2, 4);
+        page.entries.put(0, 10L);
+        page.entries.put(123456, 11L);
+        page.entries.put(Integer.MAX_VALUE, 12L);
+        DirectoryStoreGateway.HashIndexPage result = DirectoryStoreGateway.HashIndexPage.fromBytes(page.getBytes());
+        Assertions.assertEquals(4, result.index);
+        Assertions.assertEquals(2, result.directoryIndex);
+        Assertions.assertEquals(4, result.nextPageIndex);
+        Assertions.assertEquals(page.entries, result.entries);
+    }
+
+    @Test
+    @DisplayName("getNameHash -> Hashes are never negative")
+    public void getNameHash(){
+        for (int i = 0; i < 10000; i++){
+            Assertions.assertTrue(DirectoryStoreGateway.getNameHash("name-" + i) >= 0);
+        }
+        Assertions.assertEquals(DirectoryStoreGateway.getNameHash("file.txt"), DirectoryStoreGateway.getNameHash("file.txt"));
+    }
+
+    @Test
+    @DisplayName("getSplitPosition -> Splits near the middle by size")
+    public void getSplitPosition1(){
+        ArrayList<DirectoryStoreGateway.PageEntry> entries = new ArrayList<DirectoryStoreGateway.PageEntry>();
+        for (int i = 0; i < 10; i++){
+            entries.add(new DirectoryStoreGateway.PageEntry(i, 0, (byte) 0, "entry-" + i));
+        }
+        entries.sort((a, b) -> Integer.compare(DirectoryStoreGateway.getNameHash(a.name), DirectoryStoreGateway.getNameHash(b.name)));
+        Assertions.assertEquals(5, DirectoryStoreGateway.getSplitPosition(entries));
+    }
+
+    @Test
+    @DisplayName("getSplitPosition -> Entries with the same hash are not split")
+    public void getSplitPosition2(){
+        ArrayList<DirectoryStoreGateway.PageEntry> entries = new ArrayList<DirectoryStoreGateway.PageEntry>();
+        // "Aa" and "BB" have the same String.hashCode.
+        entries.add(new DirectoryStoreGateway.PageEntry(0, 0, (byte) 0, "Aa"));
+        entries.add(new DirectoryStoreGateway.PageEntry(1, 0, (byte) 0, "BB"));
+        Assertions.assertEquals(-1, DirectoryStoreGateway.getSplitPosition(entries));
+        entries.add(new DirectoryStoreGateway.PageEntry(2, 0, (byte) 0, "CC"));
+        entries.sort((a, b) -> Integer.compare(DirectoryStoreGateway.getNameHash(a.name), DirectoryStoreGateway.getNameHash(b.name)));
+        int position = DirectoryStoreGateway.getSplitPosition(entries);
+        Assertions.assertTrue(position == 1 || position == 2);
+        Assertions.assertNotEquals(DirectoryStoreGateway.getNameHash(entries.get(position - 1).name),
+                DirectoryStoreGateway.getNameHash(entries.get(position).name));
+    }
+
+    @Test
+    @DisplayName("mountAll -> Moved nodes are attached to the directory that lists them, whatever their parentIndex")
+    public void mountAllStaleParentIndex() throws Exception{
+        Path base = Files.createTempDirectory("directory-store");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            Node a = fs.createDirectory("/", "a");
+            fs.createDirectory("/", "b");
+            fs.createDirectory("/a", "d");
+            byte[] contents = new byte[10000];
+            Arrays.fill(contents, (byte) 7);
+            fs.addFile(new InputFile("f", "/a", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            fs.moveNode("/a/f", "/b");
+            fs.moveNode("/a/d", "/b");
+            long[] movedIndexes = new long[2];
+            for (Node node: fs.openDirectory("/b"))
+                movedIndexes[node.getName().equals("f") ? 0 : 1] = node.getIndex();
+            SecretKey key = fs.getGateway().key;
+            fs.unmount();
+            // Filesystems written before parentIndex was maintained on a move still point to the previous parent.
+            try (RandomAccessFile file = new RandomAccessFile(base.resolve("fs").resolve(Store.DirectoryStore.fileName).toFile(), "rw")){
+                for (long index: movedIndexes){
+                    byte[] frame = new byte[DIRECTORY_STORE_FRAME.FULL_SIZE];
+                    file.seek(index * DIRECTORY_STORE_FRAME.FULL_SIZE);
+                    file.readFully(frame);
+                    frame = Crypto.decryptBlock(frame, key, DIRECTORY_STORE_FRAME.SIZE);
+                    System.arraycopy(BinaryUtilities.convertLongToBytes(a.getIndex()), 0, frame, DIRECTORY_STORE_FRAME.PARENT_INDEX, 8);
+                    file.seek(index * DIRECTORY_STORE_FRAME.FULL_SIZE);
+                    file.write(Crypto.encryptBlock(frame, key, DIRECTORY_STORE_FRAME.SIZE));
+                }
+            }
+            FileSystem mounted = FileSystem.mount(new File(base.toFile(), "fs"), "password", true);
+            Assertions.assertEquals(0, mounted.openDirectory("/a").size());
+            Assertions.assertEquals(2, mounted.openDirectory("/b").size());
+            try (CustomInputStream inputStream = mounted.openFile("/b/f")){
+                Assertions.assertArrayEquals(contents, inputStream.readAllBytes());
+            }
+            mounted.unmount();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("mount -> Directories with a chain of sibling frames are listed and converted to pages on their first change")
+    public void legacySiblingChain() throws Exception{
+        Path base = Files.createTempDirectory("directory-store");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            for (int i = 0; i < 5; i++)
+                __addFile(fs, "/legacy", "f" + i, i);
+            for (int i = 0; i < 3; i++)
+                __addFile(fs, "/legacy/sub", "s" + i, i + 10);
+            long legacyIndex = fs.getNode("/legacy").getIndex();
+            long subIndex = fs.getNode("/legacy/sub").getIndex();
+            long[] legacyChildren = __getChildIndexes(fs, "/legacy");
+            long[] subChildren = __getChildIndexes(fs, "/legacy/sub");
+            SecretKey key = fs.getGateway().key;
+            fs.unmount();
+            // Rewrites /legacy and /legacy/sub the way filesystems written before DirectoryPages stored them. The pages
+            // they used are left allocated.
+            Files.delete(base.resolve("fs").resolve(CHECKPOINT_FRAME.FILE_NAME));
+            File directoryStore = base.resolve("fs").resolve(Store.DirectoryStore.fileName).toFile();
+            try (RandomAccessFile file = new RandomAccessFile(directoryStore, "rw")){
+                __writeSiblingChain(file, key, legacyIndex, legacyChildren);
+                __writeSiblingChain(file, key, subIndex, subChildren);
+                byte[] frame = __readFrame(file, key, legacyIndex);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(legacyIndex), 0, frame, DIRECTORY_STORE_FRAME.PREVIOUS_SIBLING_INDEX, 8);
+                System.arraycopy(BinaryUtilities.convertLongToBytes(legacyIndex), 0, frame, DIRECTORY_STORE_FRAME.NEXT_SIBLING_INDEX, 8);
+                __writeFrame(file, key, legacyIndex, frame);
+            }
+
+            for (boolean eager: new boolean[]{false, true}){
+                FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password", eager);
+                Assertions.assertEquals(6, mounted.openDirectory("/legacy").size());
+                Assertions.assertEquals(3, mounted.openDirectory("/legacy/sub").size());
+                for (int i = 0; i < 5; i++)
+                    __assertContents(mounted, "/legacy/f" + i, i);
+                for (int i = 0; i < 3; i++)
+                    __assertContents(mounted, "/legacy/sub/s" + i, i + 10);
+                // Closed without a checkpoint, so that the next mount reads the directory-store again.
+                mounted.getGateway().close();
+            }
+            try (RandomAccessFile file = new RandomAccessFile(directoryStore, "r")){
+                Assertions.assertFalse(__isHashIndexed(__readFrame(file, key, legacyIndex)));
+            }
+
+            // Adding a child converts /legacy. /legacy/sub keeps its sibling chain until a child is removed from it.
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            __addFile(mounted, "/legacy", "new", 20);
+            try (RandomAccessFile file = new RandomAccessFile(directoryStore, "r")){
+                Assertions.assertTrue(__isHashIndexed(__readFrame(file, key, legacyIndex)));
+                Assertions.assertFalse(__isHashIndexed(__readFrame(file, key, subIndex)));
+            }
+            mounted.removeNode("/legacy/sub/s1");
+            try (RandomAccessFile file = new RandomAccessFile(directoryStore, "r")){
+                Assertions.assertTrue(__isHashIndexed(__readFrame(file, key, subIndex)));
+            }
+            mounted.getGateway().close();
+
+            for (boolean eager: new boolean[]{false, true}){
+                FileSystem remounted = FileSystem.mount(base.resolve("fs").toFile(), "password", eager);
+                Assertions.assertEquals(7, remounted.openDirectory("/legacy").size());
+                Assertions.assertEquals(2, remounted.openDirectory("/legacy/sub").size());
+                for (int i = 0; i < 5; i++)
+                    __assertContents(remounted, "/legacy/f" + i, i);
+                __assertContents(remounted, "/legacy/new", 20);
+                __assertContents(remounted, "/legacy/sub/s0", 10);
+                __assertContents(remounted, "/legacy/sub/s2", 12);
+                Assertions.assertThrows(Exception.class, () -> remounted.getNode("/legacy/sub/s1"));
+                remounted.getGateway().close();
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("lookupChild -> A child of a large directory is found without reading its siblings, after its pages split")
+    public void lookupChildLargeDirectory() throws Exception{
+        Path base = Files.createTempDirectory("directory-store");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            Node big = fs.createDirectory("/", "big");
+            HashSet<String> names = new HashSet<String>();
+            for (int i = 0; i < 2000; i++){
+                fs.createDirectory(big, "d" + i);
+                names.add("d" + i);
+            }
+            for (int i = 0; i < 10; i++){
+                __addFile(fs, "/big", "f" + i, i);
+                names.add("f" + i);
+            }
+            long bigIndex = big.getIndex();
+            SecretKey key = fs.getGateway().key;
+            File directoryStore = base.resolve("fs").resolve(Store.DirectoryStore.fileName).toFile();
+            try (RandomAccessFile file = new RandomAccessFile(directoryStore, "r")){
+                byte[] frame = __readFrame(file, key, bigIndex);
+                Assertions.assertTrue(__isHashIndexed(frame));
+                Assertions.assertTrue(BinaryUtilities.convertBytesToLong(frame, DIRECTORY_STORE_FRAME.PAGE_COUNT_INDEX) > 1);
+                Assertions.assertTrue(BinaryUtilities.convertBytesToLong(frame, DIRECTORY_STORE_FRAME.HASH_INDEX_PAGE_COUNT_INDEX) > 0);
+            }
+            // Closed without a checkpoint, so that the lazy mount reads /big from the directory-store.
+            fs.getGateway().close();
+
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            DirectoryStoreGateway gateway = mounted.getGateway().getDirectoryStoreGateway();
+            Node mountedBig = mounted.getDir().getRoot().getChildNode("big");
+            Assertions.assertTrue(mountedBig.childrenNotRead());
+            Node child = gateway.lookupChild(mountedBig, "d1234");
+            Assertions.assertNotNull(child);
+            Assertions.assertTrue(child.isDirectory());
+            Assertions.assertTrue(child.childrenNotRead());
+            Assertions.assertEquals(1, mountedBig.getChildNodes().size());
+            Assertions.assertTrue(mountedBig.childrenNotRead());
+            Assertions.assertSame(child, gateway.lookupChild(mountedBig, "d1234"));
+            Assertions.assertNull(gateway.lookupChild(mountedBig, "d2000"));
+            Assertions.assertFalse(gateway.lookupChild(mountedBig, "f3").isDirectory());
+            __assertContents(mounted, "/big/f3", 3);
+            Assertions.assertEquals(2, mountedBig.getChildNodes().size());
+
+            // Removes and adds enough children to change the pages that the hash index points to.
+            for (int i = 0; i < 2000; i += 2){
+                mounted.removeNode("/big/d" + i);
+                names.remove("d" + i);
+            }
+            for (int i = 0; i < 600; i++){
+                mounted.createDirectory("/big", "e" + i);
+                names.add("e" + i);
+            }
+            mounted.getGateway().close();
+
+            for (boolean eager: new boolean[]{false, true}){
+                FileSystem remounted = FileSystem.mount(base.resolve("fs").toFile(), "password", eager);
+                if (!eager){
+                    Node remountedBig = remounted.getDir().getRoot().getChildNode("big");
+                    DirectoryStoreGateway remountedGateway = remounted.getGateway().getDirectoryStoreGateway();
+                    for (int i = 0; i < 2000; i += 7)
+                        Assertions.assertEquals(i % 2 == 1, remountedGateway.lookupChild(remountedBig, "d" + i) != null, "d" + i);
+                    for (int i = 0; i < 600; i += 7)
+                        Assertions.assertNotNull(remountedGateway.lookupChild(remountedBig, "e" + i), "e" + i);
+                    Assertions.assertTrue(remountedBig.childrenNotRead());
+                }
+                HashSet<String> listed = new HashSet<String>();
+                for (Node node: remounted.openDirectory("/big"))
+                    listed.add(node.getName());
+                Assertions.assertEquals(names, listed);
+                for (int i = 0; i < 10; i++)
+                    __assertContents(remounted, "/big/f" + i, i);
+                remounted.getGateway().close();
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static void __addFile(FileSystem fs, String parentPath, String name, int seed) throws Exception{
+        byte[] contents = TestUtilities.getContents(5000 + seed * 100, seed);
+        fs.addFile(new InputFile(name, parentPath, contents.length, 0, 0, new ByteArrayInputStream(contents)));
+    }
+
+    private static void __assertContents(FileSystem fs, String path, int seed) throws Exception{
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            Assertions.assertArrayEquals(TestUtilities.getContents(5000 + seed * 100, seed), inputStream.readAllBytes(), path);
+        }
+    }
+
+    private static long[] __getChildIndexes(FileSystem fs, String path) throws Exception{
+        ArrayList<Node> nodes = new ArrayList<Node>(fs.openDirectory(path));
+        long[] indexes = new long[nodes.size()];
+        for (int i = 0; i < indexes.length; i++)
+            indexes[i] = nodes.get(i).getIndex();
+        return indexes;
+    }
+
+    /**
+     * Replaces the DirectoryPages of a directory with a circular chain of the frames of its children.
+     */
+    private static void __writeSiblingChain(RandomAccessFile file, SecretKey key, long index, long[] childIndexes) throws Exception{
+        byte[] frame = __readFrame(file, key, index);
+        frame[DIRECTORY_STORE_FRAME.FLAGS_INDEX] &= (byte) ~(Node.PAGED_FLAG_MASK | Node.HASH_INDEXED_FLAG_MASK);
+        System.arraycopy(BinaryUtilities.convertLongToBytes(childIndexes[0]), 0, frame, DIRECTORY_STORE_FRAME.CHILD_INDEX, 8);
+        System.arraycopy(BinaryUtilities.convertLongToBytes(-1), 0, frame, DIRECTORY_STORE_FRAME.INODE_INDEX, 8);
+        System.arraycopy(BinaryUtilities.convertLongToBytes(0), 0, frame, DIRECTORY_STORE_FRAME.PARENT_INODE_INDEX, 8);
+        __writeFrame(file, key, index, frame);
+        for (int i = 0; i < childIndexes.length; i++){
+            long previous = childIndexes[(i + childIndexes.length - 1) % childIndexes.length];
+            long next = childIndexes[(i + 1) % childIndexes.length];
+            byte[] childFrame = __readFrame(file, key, childIndexes[i]);
+            System.arraycopy(BinaryUtilities.convertLongToBytes(previous), 0, childFrame, DIRECTORY_STORE_FRAME.PREVIOUS_SIBLING_INDEX, 8);
+            System.arraycopy(BinaryUtilities.convertLongToBytes(next), 0, childFrame, DIRECTORY_STORE_FRAME.NEXT_SIBLING_INDEX, 8);
+            __writeFrame(file, key, childIndexes[i], childFrame);
+        }
+    }
+
+    private static byte[] __readFrame(RandomAccessFile file, SecretKey key, long index) throws Exception{
+        byte[] frame = new byte[DIRECTORY_STORE_FRAME.FULL_SIZE];
+        file.seek(index * DIRECTORY_STORE_FRAME.FULL_SIZE);
+        file.readFully(frame);
+        return Crypto.decryptBlock(frame, key, DIRECTORY_STORE_FRAME.SIZE);
+    }
+
+    private static void __writeFrame(RandomAccessFile file, SecretKey key, long index, byte[] frame) throws Exception{
+        file.seek(index * DIRECTORY_STORE_FRAME.FULL_SIZE);
+        file.write(Crypto.encryptBlock(frame, key, DIRECTORY_STORE_FRAME.SIZE));
+    }
+
+    private static boolean __isHashIndexed(byte[] frame){
+        return (frame[DIRECTORY_STORE_FRAME.FLAGS_INDEX] & Node.HASH_INDEXED_FLAG_MASK) != 0;
+    }
+}
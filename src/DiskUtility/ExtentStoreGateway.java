@@ -1,6 +1,5 @@
 package DiskUtility;
 
-import Constants.DATA_STORE_BLOCK_FRAME;
 import Constants.EXTENT_STORE_FRAME;
 import Constants.VALUES;
 import Utilities.BinaryUtilities;
@@ -13,6 +12,7 @@ import java.io.RandomAccessFile;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 
 class ExtentStoreGateway {
     private final BitMapUtility bitMapUtility;
@@ -31,6 +31,11 @@ class ExtentStoreGateway {
         this.key = key;
     }
     static class ExtentFrame {
+        /**
+         * The dataStoreIndex of a hole. A hole is a range of zero bytes of a sparse file that is not stored in any data
+         * block. Its offset is always 0.
+         */
+        static final long HOLE = -1;
         long dataStoreIndex;
         int offset;
         long length;
@@ -42,54 +47,55 @@ class ExtentStoreGateway {
         }
         void setNextAddress(long nextAddress){this.nextAddress = nextAddress;}
 
+        boolean isHole(){
+            return dataStoreIndex == HOLE;
+        }
+
         /**
          * This method takes an extentFrame and calculates the index of the block after it along with the byte index of
          * its first byte.
          * @param extentFrame The target ExtentFrame object
+         * @param dataSize Number of data bytes of a block of the store
          * @return An array of two long integers. The first value is the index of the next block. The second value is
          * the first byte index of the block.
          */
-        static long[] getNextBlock(ExtentFrame extentFrame){
-            long additionalBlocks = (extentFrame.length + extentFrame.offset) / DATA_STORE_BLOCK_FRAME.DATA_SIZE;
-            long lastByteIndex = (extentFrame.length + extentFrame.offset) % DATA_STORE_BLOCK_FRAME.DATA_SIZE;
+        static long[] getNextBlock(ExtentFrame extentFrame, int dataSize){
+            long additionalBlocks = (extentFrame.length + extentFrame.offset) / dataSize;
+            long lastByteIndex = (extentFrame.length + extentFrame.offset) % dataSize;
             return new long[]{extentFrame.dataStoreIndex + additionalBlocks, lastByteIndex};
         }
         /**
          * This method takes a linked list of extent frames. The extents of the input linked list do not span over
          * multiple blocks. The linked list of extents returned by the method has extents that may span over multiple
          * data blocks.
+         * The extents are kept in the order of the file. They are not sorted, as the blocks of a file are not always
+         * allocated in ascending order once space is freed while the file is being written. Consecutive holes are
+         * merged into a single hole.
          *
-         * @param inputExtentFrames LinkedList of ExtentFrame objects that are restricted to a single data block.
+         * @param inputExtentFrames LinkedList of ExtentFrame objects that are restricted to a single data block, in the
+         *                          order of the file.
+         * @param dataSize Number of data bytes of a block of the store
          * @return A LinkedList of ExtentFrames that may span multiple data blocks.
          */
-        static LinkedList<ExtentFrame> getCompactExtentList(LinkedList<ExtentFrame> inputExtentFrames) {
+        static LinkedList<ExtentFrame> getCompactExtentList(LinkedList<ExtentFrame> inputExtentFrames, int dataSize) {
             if (inputExtentFrames.size() < 2){
                 return inputExtentFrames;
             }
             LinkedList<ExtentFrame> outputExtentFrames = new LinkedList<ExtentFrame>();
-            // Sort the extent frames. After sorting, the first extent is guaranteed to be at a lower index. In the
-            // case of multiple extents at the same index, they will be sorted based on their offsets within the block.
-            inputExtentFrames.sort((ExtentFrame o1, ExtentFrame o2) -> {
-                if (o1.dataStoreIndex < o2.dataStoreIndex) {
-                    return -1;
-                }
-                else if (o1.dataStoreIndex > o2.dataStoreIndex) {
-                    return 1;
-                }
-                else {
-                    return o1.offset - o2.offset;
-                }
-            });
             ExtentFrame runningExtent = inputExtentFrames.get(0);
             for (int i = 1; i < inputExtentFrames.size(); i++){
                 ExtentFrame currentExtent = inputExtentFrames.get(i);
-                long[] runningDetails = getNextBlock(runningExtent);
+                long[] runningDetails = getNextBlock(runningExtent, dataSize);
                 // Check the following two cases:
                 // 1. Both extents are in the same block and are contiguous
                 // 2. The extents are in consecutive blocks and contiguous
                 // In both cases, extend the length of the first extent to incorporate the second extent.
-                if ((currentExtent.dataStoreIndex == runningDetails[0] &&
-                    currentExtent.offset == runningDetails[1])){
+                boolean contiguous;
+                if (runningExtent.isHole() || currentExtent.isHole())
+                    contiguous = runningExtent.isHole() && currentExtent.isHole();
+                else
+                    contiguous = currentExtent.dataStoreIndex == runningDetails[0] && currentExtent.offset == runningDetails[1];
+                if (contiguous){
                     runningExtent.length += currentExtent.length;
                 } else {
                     outputExtentFrames.add(runningExtent);
@@ -103,6 +109,38 @@ class ExtentStoreGateway {
             outputExtentFrames.add(runningExtent);
             return outputExtentFrames;
         }
+        /**
+         * This method takes the extents of a file and returns the extents of a range of its bytes. Extents that lie
+         * partly within the range are cut at the bounds of the range, so that they start and end at the right blocks.
+         * @param extentFrames The ExtentFrames of the file, in the order of the file
+         * @param start Index of the first byte of the range within the file
+         * @param end Index after the last byte of the range within the file
+         * @param dataSize Number of data bytes of a block of the store
+         * @return A LinkedList of new ExtentFrames, in the order of the file
+         */
+        static LinkedList<ExtentFrame> slice(List<ExtentFrame> extentFrames, long start, long end, int dataSize){
+            LinkedList<ExtentFrame> slice = new LinkedList<ExtentFrame>();
+            if (start >= end)
+                return slice;
+            long extentStart = 0;
+            for (ExtentFrame extentFrame: extentFrames){
+                long extentEnd = extentStart + extentFrame.length;
+                if (extentEnd > start && extentStart < end){
+                    long from = Math.max(start, extentStart) - extentStart;
+                    long to = Math.min(end, extentEnd) - extentStart;
+                    long byteIndex = extentFrame.offset + from;
+                    if (extentFrame.isHole())
+                        slice.add(new ExtentFrame(HOLE, 0, to - from));
+                    else
+                        slice.add(new ExtentFrame(extentFrame.dataStoreIndex + byteIndex / dataSize,
+                                (int) (byteIndex % dataSize), to - from));
+                }
+                if (extentEnd >= end)
+                    break;
+                extentStart = extentEnd;
+            }
+            return slice;
+        }
     }
     static byte[] getDefaultBytes(){
         return new byte[EXTENT_STORE_FRAME.SIZE * 16];
@@ -276,6 +314,36 @@ class ExtentStoreGateway {
         }
     }
 
+    /**
+     * Returns the ExtentStore addresses occupied by a chain of ExtentFrames. Every frame holds the address of the next
+     * frame, and the last frame holds its own address.
+     * @param extentStoreAddress The address of the first ExtentFrame
+     * @param extentFrames The ExtentFrames in chain order
+     * @return The address of each ExtentFrame
+     */
+    static long[] getExtentAddresses(long extentStoreAddress, LinkedList<ExtentFrame> extentFrames){
+        long[] addresses = new long[extentFrames.size()];
+        long address = extentStoreAddress;
+        int i = 0;
+        for (ExtentFrame extentFrame: extentFrames){
+            addresses[i++] = address;
+            address = extentFrame.nextAddress;
+        }
+        return addresses;
+    }
+
+    /**
+     * Frees several ExtentStore addresses with a single update of the bitmap.
+     * @param addresses The addresses to be freed
+     */
+    public void removeExtentEntries(long[] addresses) throws Exception{
+        try {
+            bitMapUtility.clearIndicesExtentStore(addresses);
+        } catch (Exception e){
+            throw new Exception("Unable to remove Extent Entries: " + e.getMessage());
+        }
+    }
+
     /**
      * This method takes the ExtentStore Address and the ExtentCount to delete the target Extent Entry from the Extent
      * Store
@@ -1,4 +1,6 @@
 package DiskUtility;
+
+import Constants.DATA_STORE_BLOCK_FRAME;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,7 +12,7 @@ public class ExtentStoreGatewayTests {
     @DisplayName("getNextBlock Single block extent")
     public void getNextBlockTest1(){
         ExtentStoreGateway.ExtentFrame extentFrame = new ExtentStoreGateway.ExtentFrame(1,90,320);
-        long[] output = ExtentStoreGateway.ExtentFrame.getNextBlock(extentFrame);
+        long[] output = ExtentStoreGateway.ExtentFrame.getNextBlock(extentFrame, DATA_STORE_BLOCK_FRAME.DATA_SIZE);
         long[] expected = {1, 410};
         Assertions.assertArrayEquals(expected, output);
     }
@@ -18,7 +20,7 @@ public class ExtentStoreGatewayTests {
     @DisplayName("getNextBlock Covering entire extent")
     public void getNextBlockTest2(){
         ExtentStoreGateway.ExtentFrame extentFrame = new ExtentStoreGateway.ExtentFrame(1,0,3624);
-        long[] output = ExtentStoreGateway.ExtentFrame.getNextBlock(extentFrame);
+        long[] output = ExtentStoreGateway.ExtentFrame.getNextBlock(extentFrame, DATA_STORE_BLOCK_FRAME.DATA_SIZE);
         long[] expected = {2, 0};
         Assertions.assertArrayEquals(expected, output);
     }
@@ -26,7 +28,7 @@ public class ExtentStoreGatewayTests {
     @DisplayName("getNextBlock Multi block extent")
     public void getNextBlockTest3(){
         ExtentStoreGateway.ExtentFrame extentFrame = new ExtentStoreGateway.ExtentFrame(1,0,4000);
-        long[] output = ExtentStoreGateway.ExtentFrame.getNextBlock(extentFrame);
+        long[] output = ExtentStoreGateway.ExtentFrame.getNextBlock(extentFrame, DATA_STORE_BLOCK_FRAME.DATA_SIZE);
         long[] expected = {2, 376};
         Assertions.assertArrayEquals(expected, output);
     }
@@ -43,7 +45,7 @@ public class ExtentStoreGatewayTests {
         LinkedList<ExtentStoreGateway.ExtentFrame> expected = new LinkedList<ExtentStoreGateway.ExtentFrame>();
         expected.add(new ExtentStoreGateway.ExtentFrame(0, 0, 14513));
         expected.add(new ExtentStoreGateway.ExtentFrame(4, 72, 18));
-        LinkedList<ExtentStoreGateway.ExtentFrame> output = ExtentStoreGateway.ExtentFrame.getCompactExtentList(input);
+        LinkedList<ExtentStoreGateway.ExtentFrame> output = ExtentStoreGateway.ExtentFrame.getCompactExtentList(input, DATA_STORE_BLOCK_FRAME.DATA_SIZE);
         Assertions.assertEquals(expected.size(), output.size());
         for (int i = 0; i < expected.size(); i++){
             ExtentStoreGateway.ExtentFrame expectedFrame = expected.get(i);
@@ -53,4 +55,48 @@ public class ExtentStoreGatewayTests {
             Assertions.assertEquals(expectedFrame.length, outputFrame.length);
         }
     }
+    @Test
+    @DisplayName("slice Extents are cut at the bounds of the range")
+    public void slice(){
+        LinkedList<ExtentStoreGateway.ExtentFrame> input = new LinkedList<ExtentStoreGateway.ExtentFrame>();
+        input.add(new ExtentStoreGateway.ExtentFrame(0, 100, 10000));
+        input.add(new ExtentStoreGateway.ExtentFrame(9, 50, 200));
+        LinkedList<ExtentStoreGateway.ExtentFrame> output = ExtentStoreGateway.ExtentFrame.slice(input, 3600, 10100, DATA_STORE_BLOCK_FRAME.DATA_SIZE);
+        Assertions.assertEquals(2, output.size());
+        Assertions.assertEquals(1, output.get(0).dataStoreIndex);
+        Assertions.assertEquals(100, output.get(0).offset);
+        Assertions.assertEquals(6400, output.get(0).length);
+        Assertions.assertEquals(9, output.get(1).dataStoreIndex);
+        Assertions.assertEquals(50, output.get(1).offset);
+        Assertions.assertEquals(100, output.get(1).length);
+        Assertions.assertEquals(0, ExtentStoreGateway.ExtentFrame.slice(input, 500, 500, DATA_STORE_BLOCK_FRAME.DATA_SIZE).size());
+        Assertions.assertEquals(10000, input.get(0).length);
+    }
+
+    @Test
+    @DisplayName("holes -> Consecutive holes are merged, holes are not merged with data, and slices of holes are holes")
+    public void holes(){
+        long hole = ExtentStoreGateway.ExtentFrame.HOLE;
+        LinkedList<ExtentStoreGateway.ExtentFrame> input = new LinkedList<ExtentStoreGateway.ExtentFrame>();
+        input.add(new ExtentStoreGateway.ExtentFrame(hole, 0, 3600));
+        input.add(new ExtentStoreGateway.ExtentFrame(hole, 0, 3600));
+        input.add(new ExtentStoreGateway.ExtentFrame(2, 0, 3600));
+        input.add(new ExtentStoreGateway.ExtentFrame(hole, 0, 3600));
+        input.add(new ExtentStoreGateway.ExtentFrame(3, 0, 100));
+        LinkedList<ExtentStoreGateway.ExtentFrame> output = ExtentStoreGateway.ExtentFrame.getCompactExtentList(input, DATA_STORE_BLOCK_FRAME.DATA_SIZE);
+        Assertions.assertEquals(4, output.size());
+        Assertions.assertTrue(output.get(0).isHole());
+        Assertions.assertEquals(7200, output.get(0).length);
+        Assertions.assertEquals(2, output.get(1).dataStoreIndex);
+        Assertions.assertTrue(output.get(2).isHole());
+        Assertions.assertEquals(3, output.get(3).dataStoreIndex);
+        LinkedList<ExtentStoreGateway.ExtentFrame> slice = ExtentStoreGateway.ExtentFrame.slice(output, 5000, 11000, DATA_STORE_BLOCK_FRAME.DATA_SIZE);
+        Assertions.assertEquals(3, slice.size());
+        Assertions.assertTrue(slice.get(0).isHole());
+        Assertions.assertEquals(0, slice.get(0).offset);
+        Assertions.assertEquals(2200, slice.get(0).length);
+        Assertions.assertEquals(2, slice.get(1).dataStoreIndex);
+        Assertions.assertTrue(slice.get(2).isHole());
+        Assertions.assertEquals(200, slice.get(2).length);
+    }
 }
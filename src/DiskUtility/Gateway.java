@@ -1,18 +1,25 @@
 package DiskUtility;
 
+import Constants.DATA_STORE_BLOCK_FRAME;
 import Constants.DIRECTORY_STORE_FRAME;
+import Constants.INLINE_INODE_STORE_FRAME;
 import Constants.SUPER_BLOCK_BASE_FRAME;
 import Constants.VALUES;
 import FileSystem.FileSystem;
 import FileSystem.INode;
 import FileSystem.Node;
+import FileSystem.NodeTree;
 import FileSystem.SuperBlock;
 import FileSystem.InputFile;
 
 import javax.crypto.SecretKey;
 import java.io.*;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Gateway provides the basic initialization operations that the FileSystem requires.
@@ -32,6 +39,28 @@ public class Gateway {
             this.thumbnailExtentFrames = thumbnailExtentFrames;
         }
     }
+
+    /**
+     * The bytes of a file that are stored within a single data block.
+     */
+    public static class BlockSegment {
+        public final long blockIndex;
+        /**
+         * Index of the first byte of the segment within the data bytes of the block.
+         */
+        public final int blockOffset;
+        public final int length;
+        /**
+         * Index of the first byte of the segment within the file.
+         */
+        public final long fileOffset;
+        BlockSegment(long blockIndex, int blockOffset, int length, long fileOffset){
+            this.blockIndex = blockIndex;
+            this.blockOffset = blockOffset;
+            this.length = length;
+            this.fileOffset = fileOffset;
+        }
+    }
     private final SuperBlock superBlock;
     private final DirectoryStoreGateway directoryStoreGateway;
     private final INodeStoreGateway iNodeStoreGateway;
@@ -39,6 +68,29 @@ public class Gateway {
     private final DataStoreGateway dataStoreGateway;
     private final ThumbnailStoreGateway thumbnailStoreGateway;
     private final BitMapUtility bitMapUtility;
+    private final CheckpointGateway checkpointGateway;
+    private final ReclaimQueueGateway reclaimQueueGateway;
+    private final Reclaimer reclaimer;
+    /**
+     * Set if a batch of the reclaim queue could not be freed. Space freed by the batch may have been allocated again
+     * since, so the batch is only retried when the FileSystem is mounted again.
+     */
+    private boolean reclaimFailed;
+    /**
+     * Serializes the batches of the reclaim queue. Files are freed while other threads add files and change the
+     * directory tree.
+     */
+    private final Object reclaimLock = new Object();
+    /**
+     * Set while a checkpoint may exist for the current generation of the SuperBlock. The generation is incremented
+     * before the directory tree is changed, which invalidates the checkpoint.
+     */
+    private boolean checkpointCurrent;
+    /**
+     * Files of at most this many bytes are stored within their INode in the inline-inode-store. At most
+     * INLINE_INODE_STORE_FRAME.DATA_SIZE. 0 disables inline files.
+     */
+    private volatile int inlineThreshold = INLINE_INODE_STORE_FRAME.DATA_SIZE;
     /**
      * Points to the root directory of the filesystem
      */
@@ -50,25 +102,48 @@ public class Gateway {
         this.superBlock = superBlock;
         this.baseFile = baseFile;
         this.superBlockKey = Crypto.deriveKeyFromPassword(password, new byte[VALUES.SALT_SIZE]);;
+        // The Reclaimer of an earlier mount must not change the stores once their bitmaps have been read.
+        Reclaimer.stop(baseFile);
+        DATA_STORE_BLOCK_FRAME.Layout frame = DATA_STORE_BLOCK_FRAME.Layout.of(superBlock.getBlockSize());
         if (firstCreation){
             byte[] salt = new byte[VALUES.SALT_SIZE];
             new SecureRandom().nextBytes(salt);
             this.key = Crypto.deriveKeyFromPassword(password, salt);
             this.superBlock.setSalt(salt);
             initializeFileSystem();
-            this.bitMapUtility = new BitMapUtility(baseFile, true);
+            this.bitMapUtility = new BitMapUtility(baseFile, true, frame.dataSize);
         } else {
             if (!baseFile.isDirectory()){
                 throw new Exception("Gateway Initialization Error: FileSystem Root Directory Does Not Exist or Inaccessible");
             }
-            this.bitMapUtility = new BitMapUtility(baseFile);
+            if (!new File(baseFile, Store.DirectoryPageStore.fileName).isFile()){
+                // FileSystems created before DirectoryPages were introduced do not have a directory-page-store.
+                createFileInBaseDirectory(baseFile, Store.DirectoryPageStore.fileName);
+            }
+            if (!new File(baseFile, Store.InlineINodeStore.fileName).isFile()){
+                // FileSystems created before inline INodes were introduced do not have an inline-inode-store.
+                createFileInBaseDirectory(baseFile, Store.InlineINodeStore.fileName);
+            }
+            this.bitMapUtility = new BitMapUtility(baseFile, false, frame.dataSize);
             this.key = Crypto.deriveKeyFromPassword(password, this.superBlock.getSalt());
         }
         this.directoryStoreGateway = new DirectoryStoreGateway(baseFile, bitMapUtility, key);
         this.iNodeStoreGateway = new INodeStoreGateway(baseFile, bitMapUtility, key);
         this.extentStoreGateway = new ExtentStoreGateway(baseFile, bitMapUtility, key);
-        this.dataStoreGateway = new DataStoreGateway(baseFile, bitMapUtility, key);
+        this.dataStoreGateway = new DataStoreGateway(baseFile, bitMapUtility, key, frame);
         this.thumbnailStoreGateway = new ThumbnailStoreGateway(baseFile, bitMapUtility, key);
+        this.checkpointGateway = new CheckpointGateway(baseFile, key);
+        // A checkpoint of a mounted FileSystem may match the current generation even if it is not used for mounting.
+        this.checkpointCurrent = !firstCreation;
+        this.reclaimQueueGateway = new ReclaimQueueGateway(baseFile, key);
+        int inProgress = reclaimQueueGateway.getInProgress();
+        if (inProgress > 0){
+            // A batch was being reclaimed when the FileSystem was last used. Reclaim it again before anything else
+            // can be allocated from the space it frees.
+            __freeFiles(reclaimQueueGateway.peek(inProgress));
+            reclaimQueueGateway.complete(inProgress);
+        }
+        this.reclaimer = Reclaimer.start(baseFile, this);
     }
 
     public Gateway(File baseFile, SuperBlock superBlock, String password) throws Exception{
@@ -102,6 +177,18 @@ public class Gateway {
      * @return FileSystem object containing the FileSystem at the provided path.
      */
     public static FileSystem mountFileSystem(FileSystem fs, File baseFile, String password) throws Exception {
+        return mountFileSystem(fs, baseFile, password, false);
+    }
+
+    /**
+     * This method takes the path of the root directory of the FileSystem and returns the FileSystem contained within
+     * that directory
+     * @param baseFile Path of the root directory of the FileSystem
+     * @param eager If true, every Node is read into memory using DirectoryStoreGateway.mountAll. Otherwise the
+     *              NodeTree is read from the checkpoint or mounted lazily.
+     * @return FileSystem object containing the FileSystem at the provided path.
+     */
+    public static FileSystem mountFileSystem(FileSystem fs, File baseFile, String password, boolean eager) throws Exception {
         if (!baseFile.isDirectory())
             throw new IllegalArgumentException("Invalid Path.");
         File superBlockFile;
@@ -112,8 +199,16 @@ public class Gateway {
         }
         SecretKey key = Crypto.deriveKeyFromPassword(password, new byte[16]);
         SuperBlock superBlock = SuperBlockGateway.getSuperBlock(baseFile, key);
-        fs.setGateway(new Gateway(baseFile, superBlock, password));
-        fs.setDir(fs.getGateway().directoryStoreGateway.mount());
+        Gateway gateway = new Gateway(baseFile, superBlock, password);
+        fs.setGateway(gateway);
+        NodeTree tree;
+        if (eager)
+            tree = gateway.directoryStoreGateway.mountAll();
+        else
+            tree = gateway.checkpointGateway.readCheckpoint(superBlock.getGeneration());
+        if (tree == null)
+            tree = gateway.directoryStoreGateway.mount();
+        fs.setDir(tree);
         return fs;
     }
 
@@ -153,13 +248,68 @@ public class Gateway {
     //  Adding nodes to directory store
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     public long writeNode(Node node) throws Exception{
-        if (node.getIndex() == -1L){
-            return directoryStoreGateway.addNode(node);
-        } else {
-            return directoryStoreGateway.updateNode(node);
+        synchronized (directoryStoreGateway){
+            __invalidateCheckpoint();
+            if (node.getIndex() == -1L){
+                return directoryStoreGateway.addNode(node);
+            } else {
+                return directoryStoreGateway.updateNode(node);
+            }
+        }
+    }
+
+    /**
+     * Writes several nodes as a single batch. The DirectoryFrames and DirectoryPages changed by the nodes are collected
+     * into a write set and each one is written once, in index order, after all the nodes have been processed.
+     * @param nodes The nodes in the order they must be written. A parent must precede its new children.
+     * @return The number of nodes written
+     */
+    public int writeNodes(List<Node> nodes) throws Exception{
+        if (nodes.isEmpty())
+            return 0;
+        synchronized (directoryStoreGateway){
+            __invalidateCheckpoint();
+            directoryStoreGateway.beginBatch();
+            try {
+                for (Node node: nodes)
+                    writeNode(node);
+            } finally {
+                directoryStoreGateway.commitBatch();
+            }
+        }
+        return nodes.size();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //  Checkpoints of the directory tree
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes a checkpoint of the NodeTree and moves the SuperBlock to the generation of the checkpoint.
+     * @param tree The NodeTree. All the nodes must have been written to the DirectoryStore.
+     */
+    public void writeCheckpoint(NodeTree tree) throws Exception{
+        synchronized (directoryStoreGateway){
+            long generation = superBlock.getGeneration() + 1;
+            checkpointGateway.writeCheckpoint(tree, generation);
+            superBlock.setGeneration(generation);
+            SuperBlockGateway.writeSuperBlock(baseFile, superBlock, superBlockKey);
+            checkpointCurrent = true;
         }
     }
 
+    /**
+     * Increments the generation of the SuperBlock if a checkpoint may exist for the current generation. Must be called
+     * before the directory tree is changed, while holding the monitor of the DirectoryStoreGateway.
+     */
+    private void __invalidateCheckpoint() throws Exception{
+        if (!checkpointCurrent)
+            return;
+        superBlock.setGeneration(superBlock.getGeneration() + 1);
+        SuperBlockGateway.writeSuperBlock(baseFile, superBlock, superBlockKey);
+        checkpointCurrent = false;
+    }
+
     public DirectoryStoreGateway getDirectoryStoreGateway() {
         return directoryStoreGateway;
     }
@@ -170,8 +320,27 @@ public class Gateway {
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     //  Adding actual data files.
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Writes the contents, extents and INode of a file. Files can be added by several threads at once as the blocks of
+     * every store are claimed from the BitMapUtility. The file is not linked into the directory tree.
+     * @param file The file to be added
+     * @return The INode of the file
+     */
     public INode addFile(InputFile file) throws Exception{
-        long[] extentStoreDetails = extentStoreGateway.addExtentEntry(dataStoreGateway.addNode(file));
+        byte[] contents = null;
+        long[] extentStoreDetails = null;
+        if (file.size > 0 && file.size <= inlineThreshold){
+            // The contents are stored within the INode, so no data blocks or extents are used.
+            try {
+                contents = file.fileInputStream.readNBytes((int) file.size);
+            } catch (IOException e){
+                throw new Exception("Unable to Add File: Unable to read the contents -- " + e.getMessage());
+            }
+            if (contents.length != file.size)
+                throw new Exception("Unable to Add File: The contents are shorter than the size of the file");
+        } else {
+            extentStoreDetails = extentStoreGateway.addExtentEntry(dataStoreGateway.addNode(file));
+        }
         long[] thumbnailExtentStoreDetails = null;
         long thumbnailStoreAddress = -1;
         if (file.thumbnailInputStream != null){
@@ -179,29 +348,351 @@ public class Gateway {
             thumbnailStoreAddress = iNodeStoreGateway.addThumbnailNode(file, thumbnailExtentStoreDetails).getiNodeAddress();
         }
         file.close();
+        if (contents != null)
+            return iNodeStoreGateway.addInlineNode(file, contents, thumbnailStoreAddress);
         return iNodeStoreGateway.addNode(file, extentStoreDetails, thumbnailStoreAddress);
     }
+    /**
+     * Creates the inline INode of a file written by a CustomOutputStream whose contents were never written to the
+     * data-store.
+     * @param file The details of the file. The input streams are not used.
+     * @param contents The contents of the file
+     * @return The INode of the file
+     */
+    INode addWrittenFile(InputFile file, byte[] contents) throws Exception{
+        return iNodeStoreGateway.addInlineNode(file, contents, -1);
+    }
+
+    /**
+     * Sets the size up to which new files are stored within their INode. Files that have already been added are not
+     * moved. The threshold is not stored with the FileSystem.
+     * @param inlineThreshold Number of bytes, between 0 and INLINE_INODE_STORE_FRAME.DATA_SIZE. 0 disables inline files.
+     */
+    public void setInlineThreshold(int inlineThreshold){
+        if (inlineThreshold < 0 || inlineThreshold > INLINE_INODE_STORE_FRAME.DATA_SIZE)
+            throw new IllegalArgumentException("Inline threshold must be between 0 and " + INLINE_INODE_STORE_FRAME.DATA_SIZE);
+        this.inlineThreshold = inlineThreshold;
+    }
+
+    public int getInlineThreshold(){
+        return inlineThreshold;
+    }
+
+    /**
+     * @return Size of a block of the data-store, which is chosen when the FileSystem is created
+     */
+    public int getBlockSize(){
+        return dataStoreGateway.getFrame().fullSize;
+    }
+
+    /**
+     * Enables or disables direct I/O for the data-store. See DataStoreGateway.setDirectIO.
+     */
+    public void setDirectIO(boolean enabled) throws Exception{
+        dataStoreGateway.setDirectIO(enabled);
+    }
+
+    public boolean isDirectIO(){
+        return dataStoreGateway.isDirectIO();
+    }
+    /**
+     * Creates the INode of a file whose contents have been written by a CustomOutputStream.
+     * @param file The details of the file. The input streams are not used.
+     * @param extentFrames The extents of the contents
+     * @return The INode of the file
+     */
+    INode addWrittenFile(InputFile file, LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames) throws Exception{
+        long[] extentStoreDetails = extentStoreGateway.addExtentEntry(ExtentStoreGateway.ExtentFrame.getCompactExtentList(extentFrames, dataStoreGateway.getFrame().dataSize));
+        return iNodeStoreGateway.addNode(file, extentStoreDetails, -1);
+    }
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //  Changing the contents of files
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Replaces a range of the contents of a file. The range may extend beyond the end of the file, which grows the file.
+     * See __writeRange.
+     * @param iNodeAddress The iNode address of the file
+     * @param position Index of the first byte to be replaced. Must not be after the end of the file.
+     * @param bytes The new bytes
+     * @param offset Index of the first new byte within the array
+     * @param length Number of new bytes
+     * @return The updated INode
+     */
+    public INode writeFile(long iNodeAddress, long position, byte[] bytes, int offset, int length) throws Exception{
+        if (position < 0)
+            throw new Exception("Unable to Write File: Negative position");
+        return __writeRange(iNodeAddress, position, bytes, offset, length);
+    }
+
+    /**
+     * Appends bytes to the end of a file. See __writeRange.
+     * @param iNodeAddress The iNode address of the file
+     * @param bytes The new bytes
+     * @param offset Index of the first new byte within the array
+     * @param length Number of new bytes
+     * @return The updated INode
+     */
+    public INode appendFile(long iNodeAddress, byte[] bytes, int offset, int length) throws Exception{
+        return __writeRange(iNodeAddress, -1, bytes, offset, length);
+    }
+
+    /**
+     * Writes a range of a file copy-on-write. The new bytes are written to free runs of the data-store, and the blocks
+     * of the rest of the file are not read or written. The new extent list consists of the extents before the range, the
+     * extents of the new bytes and the extents after the range. It is written to new ExtentFrames, and the INode is then
+     * updated in place with a single write, which commits the change. The replaced runs and the previous ExtentFrames are
+     * freed afterwards. A failure before the INode is updated frees the new runs and leaves the file unchanged, and a
+     * crash between the update and the freeing leaks the replaced runs instead of freeing runs that are still in use.
+     * Changes to the same file are serialized by claiming its INode address.
+     * @param position Index of the first byte to be replaced, or -1 to append
+     * @return The updated INode
+     */
+    private INode __writeRange(long iNodeAddress, long position, byte[] bytes, int offset, int length) throws Exception{
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        Store iNodeStore = INodeStoreGateway.isInlineAddress(iNodeAddress) ? Store.InlineINodeStore : Store.INodeStore;
+        long iNodeIndex = iNodeAddress & ~INLINE_INODE_STORE_FRAME.ADDRESS_FLAG;
+        bitMapUtility.claimIndex(iNodeStore, iNodeIndex);
+        try {
+            INode iNode = iNodeStoreGateway.getINode(iNodeAddress);
+            long size = iNode.getiNodeSize();
+            if (position == -1)
+                position = size;
+            if (position > size)
+                throw new Exception("Unable to Write File: Position " + position + " is after the end of the file");
+            if (length == 0)
+                return iNode;
+            long end = position + length;
+            if (iNode.isInline())
+                return __writeInlineRange(iNode, iNodeAddress, position, bytes, offset, length);
+            LinkedList<ExtentStoreGateway.ExtentFrame> previousFrames = extentStoreGateway.getExtentFrames(iNode.getExtentStoreAddress(), iNode.getExtentCount());
+            LinkedList<ExtentStoreGateway.ExtentFrame> newFrames = new LinkedList<ExtentStoreGateway.ExtentFrame>();
+            long[] extentStoreDetails;
+            try (BitMapUtility.AllocationRegion region = dataStoreGateway.openRegion()){
+                dataStoreGateway.writeBytes(bytes, offset, length, region, newFrames);
+                LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames = ExtentStoreGateway.ExtentFrame.slice(previousFrames, 0, position, dataStoreGateway.getFrame().dataSize);
+                extentFrames.addAll(newFrames);
+                if (end < size)
+                    extentFrames.addAll(ExtentStoreGateway.ExtentFrame.slice(previousFrames, end, size, dataStoreGateway.getFrame().dataSize));
+                extentStoreDetails = extentStoreGateway.addExtentEntry(ExtentStoreGateway.ExtentFrame.getCompactExtentList(extentFrames, dataStoreGateway.getFrame().dataSize));
+            } catch (Exception e){
+                dataStoreGateway.removeExtents(newFrames);
+                throw new Exception("Unable to Write File: " + e.getMessage());
+            }
+            long previousExtentStoreAddress = iNode.getExtentStoreAddress();
+            iNode.setiNodeSize(Math.max(size, end));
+            iNode.setLastModifiedTime(System.currentTimeMillis());
+            iNode.setExtentStoreAddress(extentStoreDetails[0]);
+            iNode.setExtentCount(extentStoreDetails[1]);
+            try {
+                iNodeStoreGateway.updateINode(iNode, iNodeAddress);
+            } catch (Exception e){
+                dataStoreGateway.removeExtents(newFrames);
+                extentStoreGateway.removeExtentEntries(ExtentStoreGateway.getExtentAddresses(extentStoreDetails[0], extentStoreGateway.getExtentFrames(extentStoreDetails[0], extentStoreDetails[1])));
+                throw new Exception("Unable to Write File: " + e.getMessage());
+            }
+            dataStoreGateway.removeExtents(ExtentStoreGateway.ExtentFrame.slice(previousFrames, position, Math.min(end, size), dataStoreGateway.getFrame().dataSize));
+            extentStoreGateway.removeExtentEntries(ExtentStoreGateway.getExtentAddresses(previousExtentStoreAddress, previousFrames));
+            return iNode;
+        } finally {
+            bitMapUtility.releaseIndex(iNodeStore, iNodeIndex);
+        }
+    }
+
+    /**
+     * Writes a range of a file whose contents are stored within its INode. The contents are changed in memory and the
+     * INode is rewritten with a single write. If the new contents no longer fit within the INode, they are written to
+     * the data-store and the INode is rewritten with their extents instead. The INode keeps its address either way.
+     * Called by __writeRange with the INode address claimed.
+     * @return The updated INode
+     */
+    private INode __writeInlineRange(INode iNode, long iNodeAddress, long position, byte[] bytes, int offset, int length) throws Exception{
+        byte[] contents = Arrays.copyOf(iNode.getInlineData(), (int) Math.max(iNode.getiNodeSize(), position + length));
+        System.arraycopy(bytes, offset, contents, (int) position, length);
+        iNode.setiNodeSize(contents.length);
+        iNode.setLastModifiedTime(System.currentTimeMillis());
+        if (contents.length <= INLINE_INODE_STORE_FRAME.DATA_SIZE){
+            iNode.setInlineData(contents);
+            iNodeStoreGateway.updateINode(iNode, iNodeAddress);
+            return iNode;
+        }
+        LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames = new LinkedList<ExtentStoreGateway.ExtentFrame>();
+        long[] extentStoreDetails;
+        try (BitMapUtility.AllocationRegion region = dataStoreGateway.openRegion()){
+            dataStoreGateway.writeBytes(contents, 0, contents.length, region, extentFrames);
+            extentStoreDetails = extentStoreGateway.addExtentEntry(ExtentStoreGateway.ExtentFrame.getCompactExtentList(extentFrames, dataStoreGateway.getFrame().dataSize));
+        } catch (Exception e){
+            dataStoreGateway.removeExtents(extentFrames);
+            throw new Exception("Unable to Write File: " + e.getMessage());
+        }
+        iNode.setInlineData(null);
+        iNode.setExtentStoreAddress(extentStoreDetails[0]);
+        iNode.setExtentCount(extentStoreDetails[1]);
+        try {
+            iNodeStoreGateway.updateINode(iNode, iNodeAddress);
+        } catch (Exception e){
+            dataStoreGateway.removeExtents(extentFrames);
+            extentStoreGateway.removeExtentEntries(ExtentStoreGateway.getExtentAddresses(extentStoreDetails[0], extentStoreGateway.getExtentFrames(extentStoreDetails[0], extentStoreDetails[1])));
+            throw new Exception("Unable to Write File: " + e.getMessage());
+        }
+        return iNode;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     //  Removing actual data files
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Removes a file. The node is unlinked from the directory tree and its INode is appended to the reclaim queue. The
+     * INode, extents and data of the file are freed later by the Reclaimer. The node is unlinked before it is queued so
+     * that a crash in between leaks the space of the file instead of freeing space that is still in use.
+     * @param node The file to be removed
+     */
     public void removeNode(Node node) throws Exception{
-        NodeEntry nodeEntry = __getNodeDetails(node);
-        dataStoreGateway.removeNode(nodeEntry.extentFrames);
-        // FIX THIS
-        extentStoreGateway.removeExtentEntry(nodeEntry.extentFrames);
-        iNodeStoreGateway.removeINode(nodeEntry.iNode.getiNodeAddress());
-        if (nodeEntry.thumbnailExtentFrames != null){
-            thumbnailStoreGateway.removeNode(nodeEntry.thumbnailExtentFrames);
-            extentStoreGateway.removeExtentEntry(nodeEntry.thumbnailExtentFrames);
-            iNodeStoreGateway.removeINode(nodeEntry.iNode.getThumbnailStoreAddress());
+        synchronized (directoryStoreGateway){
+            __invalidateCheckpoint();
+            directoryStoreGateway.removeNode(node);
+            reclaimQueueGateway.append(new long[]{node.getiNodeAddress()});
+        }
+        reclaimer.wake();
+    }
+
+    /**
+     * Removes a directory along with everything within it. The subtree is unlinked from the directory tree at once and
+     * the INodes of every file within it are appended to the reclaim queue with a single write.
+     * @param node The directory to be removed
+     * @return The number of nodes removed
+     */
+    public int removeTree(Node node) throws Exception{
+        if (!node.checkFlag(Node.DIRECTORY_FLAG_MASK))
+            throw new Exception("Node is not a directory.");
+        ArrayList<Node> subtree;
+        synchronized (directoryStoreGateway){
+            __invalidateCheckpoint();
+            subtree = directoryStoreGateway.getSubtree(node);
+            long[] fileINodeAddresses = subtree.stream().filter(n -> !n.isDirectory()).mapToLong(Node::getiNodeAddress).toArray();
+            directoryStoreGateway.removeTree(node, subtree);
+            reclaimQueueGateway.append(fileINodeAddresses);
         }
-        directoryStoreGateway.removeNode(node);
+        reclaimer.wake();
+        return subtree.size();
+    }
+
+    /**
+     * Queues files that were added but never linked into the directory tree, e.g. by a cancelled copy, to be freed by
+     * the Reclaimer.
+     * @param iNodeAddresses The iNode addresses of the files
+     */
+    public void discardFiles(long[] iNodeAddresses) throws Exception{
+        if (iNodeAddresses.length == 0)
+            return;
+        reclaimQueueGateway.append(iNodeAddresses);
+        reclaimer.wake();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //  Reclaiming removed files
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Frees the files at the head of the reclaim queue. The size of the batch is recorded in the queue before anything
+     * is freed, so that a batch interrupted by a crash is freed again when the FileSystem is mounted.
+     * @param max The maximum number of files to free
+     * @return The number of files freed
+     */
+    public int reclaim(int max) throws Exception{
+        synchronized (reclaimLock){
+            if (reclaimFailed)
+                throw new Exception("Unable to Reclaim: An earlier batch failed. Mount the FileSystem again to retry.");
+            long[] iNodeAddresses = reclaimQueueGateway.peek(max);
+            if (iNodeAddresses.length == 0)
+                return 0;
+            reclaimQueueGateway.markInProgress(iNodeAddresses.length);
+            try {
+                __freeFiles(iNodeAddresses);
+            } catch (Exception e){
+                reclaimFailed = true;
+                throw e;
+            }
+            reclaimQueueGateway.complete(iNodeAddresses.length);
+            return iNodeAddresses.length;
+        }
+    }
+
+    /**
+     * Frees every file in the reclaim queue before returning.
+     * @return The number of files freed
+     */
+    public int reclaimAll() throws Exception{
+        int total = 0;
+        int count;
+        while ((count = reclaim(Reclaimer.BATCH_SIZE)) > 0)
+            total += count;
+        return total;
+    }
+
+    /**
+     * @return The number of removed files whose space has not been freed yet.
+     */
+    public long getPendingReclaims(){
+        return reclaimQueueGateway.size();
+    }
+
+    public Reclaimer getReclaimer(){
+        return reclaimer;
+    }
+
+    /**
+     * Stops the Reclaimer and closes the reclaim queue. Files that are still in the queue are freed after the next
+     * mount. The Gateway must not be used afterwards.
+     */
+    public void close() throws Exception{
+        reclaimer.stop();
+        reclaimQueueGateway.close();
+        dataStoreGateway.setDirectIO(false);
+    }
+
+    /**
+     * Frees the INodes, extents and data of several files at once. The INodes, extents and data runs of every file are
+     * collected first. The data runs are then freed block by block in block order, and each bitmap is updated once for
+     * all the files instead of once per file. INodes are freed last, so files whose INode is already free were freed
+     * completely by an earlier, interrupted attempt and are skipped.
+     * @param iNodeAddresses The iNode addresses of the files
+     */
+    private void __freeFiles(long[] iNodeAddresses) throws Exception{
+        long[] fileINodeAddresses = Arrays.stream(iNodeAddresses).filter(iNodeStoreGateway::isOccupied).toArray();
+        INode[] iNodes = iNodeStoreGateway.getINodes(fileINodeAddresses);
+        long[] thumbnailINodeAddresses = Arrays.stream(iNodes).mapToLong(INode::getThumbnailStoreAddress).filter(a -> a != -1).toArray();
+        INode[] thumbnailINodes = iNodeStoreGateway.getINodes(thumbnailINodeAddresses);
+        LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames = new LinkedList<ExtentStoreGateway.ExtentFrame>();
+        LinkedList<ExtentStoreGateway.ExtentFrame> thumbnailExtentFrames = new LinkedList<ExtentStoreGateway.ExtentFrame>();
+        ArrayList<Long> extentAddresses = new ArrayList<Long>();
+        for (INode iNode: iNodes)
+            __collectExtents(iNode, extentFrames, extentAddresses);
+        for (INode iNode: thumbnailINodes)
+            __collectExtents(iNode, thumbnailExtentFrames, extentAddresses);
+        dataStoreGateway.removeExtents(extentFrames);
+        thumbnailStoreGateway.removeExtents(thumbnailExtentFrames);
+        extentStoreGateway.removeExtentEntries(extentAddresses.stream().mapToLong(Long::longValue).toArray());
+        // The INodes of the thumbnails are freed first so that a free file INode means the whole file has been freed.
+        iNodeStoreGateway.removeINodes(thumbnailINodeAddresses);
+        iNodeStoreGateway.removeINodes(fileINodeAddresses);
+    }
+
+    private void __collectExtents(INode iNode, LinkedList<ExtentStoreGateway.ExtentFrame> extentFrames,
+                                  ArrayList<Long> extentAddresses) throws Exception{
+        LinkedList<ExtentStoreGateway.ExtentFrame> frames = extentStoreGateway.getExtentFrames(iNode.getExtentStoreAddress(), iNode.getExtentCount());
+        extentFrames.addAll(frames);
+        for (long address: ExtentStoreGateway.getExtentAddresses(iNode.getExtentStoreAddress(), frames))
+            extentAddresses.add(address);
     }
 
     public void removeDirectory(Node node) throws Exception{
         if (!node.checkFlag(Node.DIRECTORY_FLAG_MASK))
             throw new Exception("Node is not a directory.");
-        directoryStoreGateway.removeNode(node);
+        synchronized (directoryStoreGateway){
+            __invalidateCheckpoint();
+            directoryStoreGateway.removeNode(node);
+        }
     }
 
     public INode copyNode(Node node, Node targetNode) throws Exception{
@@ -245,6 +736,65 @@ public class Gateway {
         return iNodeStoreGateway.getINode(iNodeAddress);
     }
 
+    /**
+     * Takes a list of nodes and returns their INodes in a single batched read of the INODE_STORE.
+     * @param nodes The target nodes
+     * @return An array of INodes. The INode at index i belongs to the ith node. Directories get null.
+     */
+    public INode[] getINodes(List<Node> nodes) throws Exception{
+        INode[] iNodes = new INode[nodes.size()];
+        long[] iNodeAddresses = nodes.stream().filter(node -> !node.isDirectory()).mapToLong(Node::getiNodeAddress).toArray();
+        INode[] fileINodes = iNodeStoreGateway.getINodes(iNodeAddresses);
+        int fileIndex = 0;
+        int i = 0;
+        for (Node node: nodes){
+            if (!node.isDirectory())
+                iNodes[i] = fileINodes[fileIndex++];
+            i++;
+        }
+        return iNodes;
+    }
+
+    /**
+     * Takes an INode and returns the contents of the file as segments of data blocks, in the order of the file.
+     * @param iNode The INode of the file
+     * @return A list of BlockSegments, one for every data block the file occupies part of. The holes of a sparse file
+     * have no segments, so their bytes are not covered by any segment.
+     */
+    public ArrayList<BlockSegment> getBlockSegments(INode iNode) throws Exception{
+        ArrayList<BlockSegment> segments = new ArrayList<BlockSegment>();
+        int dataSize = dataStoreGateway.getFrame().dataSize;
+        long fileOffset = 0;
+        for (ExtentStoreGateway.ExtentFrame extentFrame: extentStoreGateway.getExtentFrames(iNode.getExtentStoreAddress(), iNode.getExtentCount())){
+            if (extentFrame.isHole()){
+                fileOffset += extentFrame.length;
+                continue;
+            }
+            long blockIndex = extentFrame.dataStoreIndex + extentFrame.offset / dataSize;
+            int blockOffset = extentFrame.offset % dataSize;
+            long remaining = extentFrame.length;
+            while (remaining > 0){
+                int length = (int) Math.min(dataSize - blockOffset, remaining);
+                segments.add(new BlockSegment(blockIndex, blockOffset, length, fileOffset));
+                fileOffset += length;
+                remaining -= length;
+                blockIndex++;
+                blockOffset = 0;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Reads and decrypts a set of data blocks. The span from the first to the last block is read at once, so the
+     * blocks should be close together.
+     * @param blockIndices Indices of the target blocks, in ascending order
+     * @return The data bytes of the blocks, in the order of blockIndices
+     */
+    public byte[][] readDataBlocks(long[] blockIndices) throws Exception{
+        return dataStoreGateway.readDataBlocks(blockIndices);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     //  HELPER METHODS
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -1,13 +1,25 @@
 package DiskUtility;
 
+import Constants.INLINE_INODE_STORE_FRAME;
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+import FileSystem.Node;
+import FileSystem.NodeTree;
 import FileSystem.SuperBlock;
+import Utilities.TestUtilities;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 
 public class GatewayTests {
     SuperBlock superBlock = new SuperBlock("Test");
@@ -33,4 +45,313 @@ public class GatewayTests {
 //        Assertions.assertTrue(Files.isReadable(path.resolve("data-store")));
 //        Assertions.assertTrue(Files.isReadable(path.resolve("thumbnail-store")));
 //    }
+
+    @Test
+    @DisplayName("writeFile -> Ranges are replaced and the replaced runs are freed")
+    public void writeFile() throws Exception{
+        Path base = Files.createTempDirectory("gateway");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            byte[] contents = TestUtilities.getContents(50000, 0);
+            fs.addFile(new InputFile("file", "/", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            Path dataStore = base.resolve("fs").resolve(Store.DataStore.fileName);
+            byte[] range = TestUtilities.getContents(8000, 3);
+            for (int i = 0; i < 3; i++){
+                fs.writeFile("/file", 5000, range);
+                System.arraycopy(range, 0, contents, 5000, range.length);
+                __assertContents(fs, "/file", contents);
+            }
+            // The runs replaced by the first write are reused by the later ones.
+            long length = Files.size(dataStore);
+            fs.writeFile("/file", 5000, range);
+            Assertions.assertEquals(length, Files.size(dataStore));
+
+            byte[] tail = TestUtilities.getContents(1000, 5);
+            fs.writeFile("/file", contents.length - 100, tail);
+            contents = Arrays.copyOf(contents, contents.length + 900);
+            System.arraycopy(tail, 0, contents, contents.length - 1000, tail.length);
+            __assertContents(fs, "/file", contents);
+            Assertions.assertThrows(Exception.class, () -> fs.writeFile("/file", 60000, tail));
+            Assertions.assertThrows(Exception.class, () -> fs.writeFile("/", 0, tail));
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("appendFile -> Appended bytes follow the contents and survive a remount")
+    public void appendFile() throws Exception{
+        Path base = Files.createTempDirectory("gateway");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            byte[] contents = TestUtilities.getContents(1000, 0);
+            fs.addFile(new InputFile("log", "/", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            for (int i = 1; i <= 20; i++){
+                byte[] entry = TestUtilities.getContents(i * 300, i);
+                fs.appendFile("/log", entry);
+                int length = contents.length;
+                contents = Arrays.copyOf(contents, length + entry.length);
+                System.arraycopy(entry, 0, contents, length, entry.length);
+            }
+            __assertContents(fs, "/log", contents);
+            fs.unmount();
+            __assertContents(FileSystem.mount(base.resolve("fs").toFile(), "password"), "/log", contents);
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("inline -> Small files are stored within their INode and move to the data-store once they grow")
+    public void inlineFiles() throws Exception{
+        Path base = Files.createTempDirectory("gateway");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            Path dataStore = base.resolve("fs").resolve(Store.DataStore.fileName);
+            Path inlineStore = base.resolve("fs").resolve(Store.InlineINodeStore.fileName);
+            for (int i = 0; i < 50; i++){
+                byte[] contents = TestUtilities.getContents(1 + i * 19, i);
+                fs.addFile(new InputFile("f" + i, "/small", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            }
+            byte[] written = TestUtilities.getContents(INLINE_INODE_STORE_FRAME.DATA_SIZE, 99);
+            try (CustomOutputStream outputStream = fs.createFile("/small/written")){
+                outputStream.write(written);
+            }
+            Assertions.assertEquals(0, Files.size(dataStore));
+            long inlineStoreLength = Files.size(inlineStore);
+            Assertions.assertEquals(51L * INLINE_INODE_STORE_FRAME.FULL_SIZE, inlineStoreLength);
+            try (CustomByteChannel channel = fs.openChannel("/small/f10")){
+                ByteBuffer buffer = ByteBuffer.allocate(100);
+                Assertions.assertEquals(100, channel.read(buffer, 50));
+                Assertions.assertArrayEquals(Arrays.copyOfRange(TestUtilities.getContents(191, 10), 50, 150), buffer.array());
+            }
+            fs.unmount();
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            for (int i = 0; i < 50; i++)
+                __assertContents(mounted, "/small/f" + i, TestUtilities.getContents(1 + i * 19, i));
+            __assertContents(mounted, "/small/written", written);
+            Assertions.assertTrue(mounted.getINode(mounted.getNode("/small/written")).isInline());
+
+            // Writes within the inline area rewrite the INode, and a file that outgrows it is moved to the data-store.
+            byte[] contents = TestUtilities.getContents(1 + 5 * 19, 5);
+            mounted.writeFile("/small/f5", 10, new byte[]{1, 2, 3});
+            contents[10] = 1;
+            contents[11] = 2;
+            contents[12] = 3;
+            __assertContents(mounted, "/small/f5", contents);
+            Assertions.assertEquals(0, Files.size(dataStore));
+            byte[] entry = TestUtilities.getContents(5000, 7);
+            mounted.appendFile("/small/f5", entry);
+            int length = contents.length;
+            contents = Arrays.copyOf(contents, length + entry.length);
+            System.arraycopy(entry, 0, contents, length, entry.length);
+            __assertContents(mounted, "/small/f5", contents);
+            Assertions.assertTrue(Files.size(dataStore) > 0);
+
+            // Removed inline files are freed and their frames are reused.
+            for (int i = 0; i < 50; i++)
+                mounted.removeNode("/small/f" + i);
+            mounted.reclaimAll();
+            for (int i = 0; i < 50; i++){
+                byte[] replacement = TestUtilities.getContents(100, i);
+                mounted.addFile(new InputFile("g" + i, "/", replacement.length, 0, 0, new ByteArrayInputStream(replacement)));
+            }
+            Assertions.assertEquals(inlineStoreLength, Files.size(inlineStore));
+            __assertContents(mounted, "/g49", TestUtilities.getContents(100, 49));
+
+            // A threshold of 0 stores every file in the data-store.
+            mounted.setInlineThreshold(0);
+            mounted.addFile(new InputFile("large", "/", 10, 0, 0, new ByteArrayInputStream(new byte[10])));
+            Assertions.assertFalse(mounted.getINode(mounted.getNode("/large")).isInline());
+            __assertContents(mounted, "/large", new byte[10]);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> mounted.setInlineThreshold(INLINE_INODE_STORE_FRAME.DATA_SIZE + 1));
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("setDirectIO -> Files written and read with direct I/O match the files written through the page cache")
+    public void directIO() throws Exception{
+        Path base = Files.createTempDirectory("gateway");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            byte[] buffered = TestUtilities.getContents(100000, 1);
+            fs.addFile(new InputFile("buffered", "/", buffered.length, 0, 0, new ByteArrayInputStream(buffered)));
+            boolean supported = true;
+            try {
+                fs.setDirectIO(true);
+            } catch (Exception e){
+                supported = false;
+            }
+            Assumptions.assumeTrue(supported, "Direct I/O is not supported by the host filesystem");
+            Assertions.assertTrue(fs.isDirectIO());
+            __assertContents(fs, "/buffered", buffered);
+            byte[][] contents = new byte[6][];
+            for (int i = 0; i < contents.length; i++){
+                contents[i] = TestUtilities.getContents(5000 + i * 40000, i);
+                fs.addFile(new InputFile("f" + i, "/direct", contents[i].length, 0, 0, new ByteArrayInputStream(contents[i])));
+            }
+            for (int i = 0; i < contents.length; i += 2)
+                fs.removeNode("/direct/f" + i);
+            fs.reclaimAll();
+            fs.appendFile("/direct/f1", buffered);
+            byte[] appended = Arrays.copyOf(contents[1], contents[1].length + buffered.length);
+            System.arraycopy(buffered, 0, appended, contents[1].length, buffered.length);
+            __assertContents(fs, "/direct/f1", appended);
+            fs.setDirectIO(false);
+            Assertions.assertFalse(fs.isDirectIO());
+            __assertContents(fs, "/direct/f1", appended);
+            __assertContents(fs, "/direct/f3", contents[3]);
+            fs.unmount();
+            __assertContents(FileSystem.mount(base.resolve("fs").toFile(), "password"), "/direct/f5", contents[5]);
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("Files are stored in blocks of the size chosen for the FileSystem")
+    public void blockSizes() throws Exception{
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SuperBlock("fs").setBlockSize(3000));
+        for (int blockSize: new int[]{4096, 64 * 1024, 1024 * 1024}){
+            Path base = Files.createTempDirectory("gateway");
+            try {
+                FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password", blockSize);
+                Assertions.assertEquals(blockSize, fs.getBlockSize());
+                byte[][] contents = new byte[5][];
+                for (int i = 0; i < contents.length; i++){
+                    contents[i] = TestUtilities.getContents(1000 + i * 700000, i);
+                    fs.addFile(new InputFile("f" + i, "/", contents[i].length, 0, 0, new ByteArrayInputStream(contents[i])));
+                }
+                // Zero chunks become holes whatever the block size.
+                byte[] sparse = new byte[3 * DataStoreGateway.HOLE_SIZE + 10];
+                Arrays.fill(sparse, 2 * DataStoreGateway.HOLE_SIZE, sparse.length, (byte) 5);
+                fs.addFile(new InputFile("sparse", "/", sparse.length, 0, 0, new ByteArrayInputStream(sparse)));
+                fs.removeNode("/f1");
+                fs.removeNode("/f3");
+                fs.reclaimAll();
+                fs.writeFile("/f2", 5000, contents[4]);
+                byte[] written = Arrays.copyOf(contents[2], Math.max(contents[2].length, 5000 + contents[4].length));
+                System.arraycopy(contents[4], 0, written, 5000, contents[4].length);
+                __assertContents(fs, "/f2", written);
+                __assertContents(fs, "/sparse", sparse);
+                ByteBuffer buffer = ByteBuffer.allocate(100);
+                try (CustomByteChannel channel = fs.openChannel("/f4")){
+                    channel.read(buffer, 1400000);
+                }
+                Assertions.assertArrayEquals(Arrays.copyOfRange(contents[4], 1400000, 1400100), buffer.array());
+                fs.unmount();
+                FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+                Assertions.assertEquals(blockSize, mounted.getBlockSize());
+                __assertContents(mounted, "/f0", contents[0]);
+                __assertContents(mounted, "/f2", written);
+                __assertContents(mounted, "/f4", contents[4]);
+                mounted.unmount();
+            } finally {
+                TestUtilities.deleteRecursively(base);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("removeTree -> A removed subtree is freed through the reclaim queue and stays removed after a remount")
+    public void removeTree() throws Exception{
+        Path base = Files.createTempDirectory("gateway");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            Path dataStore = base.resolve("fs").resolve(Store.DataStore.fileName);
+            byte[] kept = TestUtilities.getContents(30000, 0);
+            fs.addFile(new InputFile("keep", "/", kept.length, 0, 0, new ByteArrayInputStream(kept)));
+            for (int i = 0; i < 10; i++){
+                byte[] contents = TestUtilities.getContents(5000 + i * 3000, i + 1);
+                String parentPath = i < 5 ? "/d" : "/d/e";
+                fs.addFile(new InputFile("f" + i, parentPath, contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            }
+            fs.createDirectory("/d/e", "empty");
+            long length = Files.size(dataStore);
+            // Without the Reclaimer, the files stay in the queue until they are reclaimed explicitly.
+            fs.getGateway().getReclaimer().stop();
+            fs.removeNode("/d", true);
+            Assertions.assertEquals(10, fs.getPendingReclaims());
+            Assertions.assertEquals(1, fs.openDirectory("/").size());
+            Assertions.assertThrows(Exception.class, () -> fs.openDirectory("/d/e"));
+            Assertions.assertEquals(10, fs.reclaimAll());
+            Assertions.assertEquals(0, fs.getPendingReclaims());
+            // The freed blocks are reused by files of the same sizes.
+            for (int i = 0; i < 10; i++){
+                byte[] contents = TestUtilities.getContents(5000 + i * 3000, i + 20);
+                fs.addFile(new InputFile("g" + i, "/d2", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            }
+            Assertions.assertEquals(length, Files.size(dataStore));
+            fs.unmount();
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            Assertions.assertEquals(0, mounted.getPendingReclaims());
+            Assertions.assertEquals(2, mounted.openDirectory("/").size());
+            Assertions.assertThrows(Exception.class, () -> mounted.openDirectory("/d"));
+            __assertContents(mounted, "/keep", kept);
+            for (int i = 0; i < 10; i++)
+                __assertContents(mounted, "/d2/g" + i, TestUtilities.getContents(5000 + i * 3000, i + 20));
+            mounted.unmount();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("writeNodes -> Every node of a batch is read back from the directory-store after a remount")
+    public void writeNodes() throws Exception{
+        Path base = Files.createTempDirectory("gateway");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            byte[] contents = TestUtilities.getContents(10000, 1);
+            fs.addFile(new InputFile("f", "/", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            // The nodes are added to the NodeTree without being written, so that they are all written by one batch.
+            // Siblings share the frame of their parent and its pages. The pages of /batch/d0 split while the batch is
+            // open.
+            NodeTree dir = fs.getDir();
+            Node batch = dir.addNode(dir.getRoot(), "batch");
+            for (int i = 0; i < 30; i++){
+                Node directory = dir.addNode(batch, "d" + i);
+                for (int j = 0; j < __getChildCount(i); j++)
+                    dir.addNode(directory, "e" + j);
+            }
+            List<Node> dirtyNodes = dir.getDirtyNodesCopy();
+            Assertions.assertEquals(1 + 30 + 29 * 40 + 600, dirtyNodes.size());
+            Assertions.assertEquals(dirtyNodes.size(), fs.getGateway().writeNodes(dirtyNodes));
+            dir.removeDirtyNodes(dirtyNodes.size());
+            // Closed without a checkpoint, so that both mounts read the directory-store.
+            fs.getGateway().close();
+            for (boolean eager: new boolean[]{false, true}){
+                FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password", eager);
+                Assertions.assertEquals(2, mounted.openDirectory("/").size());
+                Assertions.assertEquals(30, mounted.openDirectory("/batch").size());
+                for (int i = 0; i < 30; i++){
+                    HashSet<String> names = new HashSet<String>();
+                    for (Node node: mounted.openDirectory("/batch/d" + i)){
+                        Assertions.assertTrue(node.isDirectory());
+                        names.add(node.getName());
+                    }
+                    Assertions.assertEquals(__getChildCount(i), names.size());
+                    for (int j = 0; j < __getChildCount(i); j++)
+                        Assertions.assertTrue(names.contains("e" + j));
+                    Assertions.assertNotNull(mounted.getNode("/batch/d" + i + "/e" + (i * 7 % 40)));
+                }
+                __assertContents(mounted, "/f", contents);
+                mounted.getGateway().close();
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static int __getChildCount(int directory){
+        return directory == 0 ? 600 : 40;
+    }
+
+    private static void __assertContents(FileSystem fs, String path, byte[] contents) throws Exception{
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            Assertions.assertArrayEquals(contents, inputStream.readAllBytes());
+        }
+    }
 }
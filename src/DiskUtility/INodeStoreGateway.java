@@ -1,6 +1,7 @@
 package DiskUtility;
 
 import Constants.FLAGS;
+import Constants.INLINE_INODE_STORE_FRAME;
 import Constants.INODE_STORE_FRAME;
 import FileSystem.INode;
 import FileSystem.InputFile;
@@ -11,12 +12,27 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.stream.IntStream;
 /**
  * This class serves as a gateway between the iNodeStore File and the rest of the filesystem.
+ * INodes of small files are stored in the inline-inode-store along with the contents of the file, so that such a file
+ * is read with a single read. Their addresses have INLINE_INODE_STORE_FRAME.ADDRESS_FLAG set, and every method of the
+ * class accepts the addresses of both stores.
  */
 public class INodeStoreGateway {
+    /**
+     * Maximum number of unused frames that may lie between two requested frames for them to be read in a single run.
+     */
+    private static final int MAX_COALESCED_GAP = 8;
+    /**
+     * Maximum number of frames read from the INODE_STORE in a single run.
+     */
+    private static final int MAX_COALESCED_FRAMES = 1024;
     // Denotes the extentFrame
     private final File iNodeFile;
+    private final File inlineINodeFile;
     private final BitMapUtility bitMapUtility;
     private final SecretKey key;
     public INodeStoreGateway(File baseFile, BitMapUtility bitMapUtility, SecretKey key) throws Exception {
@@ -27,6 +43,12 @@ public class INodeStoreGateway {
             throw new Exception("Unable to Initialize INodeStore: INodeStore file Inaccessible -- " + e.getMessage());
         }
         this.iNodeFile = file;
+        try {
+            file = Gateway.getFileInBaseDirectory(baseFile, Store.InlineINodeStore.fileName);
+        } catch (Exception e){
+            throw new Exception("Unable to Initialize INodeStore: InlineINodeStore file Inaccessible -- " + e.getMessage());
+        }
+        this.inlineINodeFile = file;
         this.bitMapUtility = bitMapUtility;
         this.key = key;
     }
@@ -61,6 +83,49 @@ public class INodeStoreGateway {
         return iNode;
     }
 
+    /**
+     * Adds the INode of a file whose contents are stored within the INode. The INode and the contents are written to
+     * the inline-inode-store with a single write.
+     * @param file The details of the file
+     * @param contents The contents of the file. At most INLINE_INODE_STORE_FRAME.DATA_SIZE bytes.
+     * @param thumbnailStoreAddress The address of the INode of the thumbnail, or -1
+     * @return The INode of the file
+     */
+    public INode addInlineNode(InputFile file, byte[] contents, long thumbnailStoreAddress) throws Exception{
+        if (contents.length > INLINE_INODE_STORE_FRAME.DATA_SIZE)
+            throw new Exception("Unable to Add Inline INode: The contents exceed " + INLINE_INODE_STORE_FRAME.DATA_SIZE + " bytes");
+        INode iNode = new INode();
+        iNode.setiNodeSize(contents.length);
+        iNode.setCreationTime(file.creationTime);
+        iNode.setLastModifiedTime(file.lastModifiedTime);
+        iNode.setExtentStoreAddress(-1);
+        iNode.setExtentCount(0);
+        iNode.setThumbnailStoreAddress(thumbnailStoreAddress);
+        iNode.setFlags(FLAGS.DEFAULT_INODE);
+        iNode.setInlineData(contents);
+        long index = bitMapUtility.getFreeIndex(Store.InlineINodeStore);
+        iNode.setiNodeAddress(index | INLINE_INODE_STORE_FRAME.ADDRESS_FLAG);
+        __writeInlineINode(iNode, index);
+        bitMapUtility.setIndex(Store.InlineINodeStore, index, true);
+        return iNode;
+    }
+
+    /**
+     * @return true if the address belongs to an INode of the inline-inode-store.
+     */
+    static boolean isInlineAddress(long iNodeAddress){
+        return (iNodeAddress & INLINE_INODE_STORE_FRAME.ADDRESS_FLAG) != 0;
+    }
+
+    /**
+     * @return true if an INode is stored at the address.
+     */
+    boolean isOccupied(long iNodeAddress){
+        if (isInlineAddress(iNodeAddress))
+            return bitMapUtility.isIndexOccupiedSingularBitmap(Store.InlineINodeStore, iNodeAddress & ~INLINE_INODE_STORE_FRAME.ADDRESS_FLAG);
+        return bitMapUtility.isIndexOccupiedSingularBitmap(Store.INodeStore, iNodeAddress);
+    }
+
     public long writeINode(INode iNode) throws Exception{
         RandomAccessFile fin;
         long iNodeAddress = bitMapUtility.getFreeIndex(Store.INodeStore);
@@ -97,7 +162,8 @@ public class INodeStoreGateway {
      * @return The required iNode object
      */
     public INode getINode(long iNodeAddress) throws Exception{
-        // IMPLEMENT
+        if (isInlineAddress(iNodeAddress))
+            return __readInlineINode(iNodeAddress & ~INLINE_INODE_STORE_FRAME.ADDRESS_FLAG);
         RandomAccessFile fin;
         byte[] byteArray = new byte[INODE_STORE_FRAME.FULL_SIZE];
         try {
@@ -124,6 +190,104 @@ public class INodeStoreGateway {
         return __getINode(byteArray);
     }
 
+    /**
+     * This method takes an array of iNodeAddresses and returns the relevant iNodes in the same order. The addresses
+     * are sorted and adjacent frames are coalesced into runs so that each run is read from the INODE_STORE with a single
+     * read. The frames are then decrypted in parallel.
+     * @param iNodeAddresses The iNodeAddresses of the required iNodes. May contain duplicates.
+     * @return An array of INode objects. The INode at index i belongs to iNodeAddresses[i].
+     */
+    public INode[] getINodes(long[] iNodeAddresses) throws Exception{
+        INode[] iNodes = new INode[iNodeAddresses.length];
+        if (iNodeAddresses.length == 0)
+            return iNodes;
+        if (Arrays.stream(iNodeAddresses).anyMatch(INodeStoreGateway::isInlineAddress)){
+            // Inline INodes are read one at a time, and the other INodes in runs.
+            long[] addresses = Arrays.stream(iNodeAddresses).filter(a -> !isInlineAddress(a)).toArray();
+            INode[] storeINodes = getINodes(addresses);
+            for (int i = 0, j = 0; i < iNodeAddresses.length; i++)
+                iNodes[i] = isInlineAddress(iNodeAddresses[i]) ? getINode(iNodeAddresses[i]) : storeINodes[j++];
+            return iNodes;
+        }
+        long[] sortedAddresses = Arrays.stream(iNodeAddresses).sorted().distinct().toArray();
+        int frameSize = INODE_STORE_FRAME.FULL_SIZE;
+        // Encrypted frames in the same order as sortedAddresses.
+        byte[][] encryptedFrames = new byte[sortedAddresses.length][];
+        RandomAccessFile fin;
+        try {
+            fin = new RandomAccessFile(iNodeFile, "r");
+        } catch (FileNotFoundException e){
+            throw new Exception("INODE_STORE File Not Found." + e.getMessage());
+        }
+        try {
+            int[] runs = getReadRuns(sortedAddresses, MAX_COALESCED_GAP, MAX_COALESCED_FRAMES);
+            for (int i = 0; i < runs.length; i += 2){
+                long firstAddress = sortedAddresses[runs[i]];
+                long lastAddress = sortedAddresses[runs[i] + runs[i + 1] - 1];
+                byte[] runBytes = new byte[(int)(lastAddress - firstAddress + 1) * frameSize];
+                fin.seek(firstAddress * frameSize);
+                fin.readFully(runBytes);
+                for (int j = runs[i]; j < runs[i] + runs[i + 1]; j++){
+                    int start = (int)(sortedAddresses[j] - firstAddress) * frameSize;
+                    encryptedFrames[j] = Arrays.copyOfRange(runBytes, start, start + frameSize);
+                }
+            }
+        } catch (IOException e){
+            throw new Exception("Unable to read from INODE_STORE." + e.getMessage());
+        } finally {
+            try {
+                fin.close();
+            } catch (IOException e){
+                throw new Exception("Unable to close INODE_STORE file." + e.getMessage());
+            }
+        }
+        INode[] sortedINodes = new INode[sortedAddresses.length];
+        try {
+            IntStream.range(0, sortedAddresses.length).parallel().forEach(i -> {
+                try {
+                    sortedINodes[i] = __getINode(encryptedFrames[i]);
+                } catch (Exception e){
+                    throw new RuntimeException(e.getMessage());
+                }
+            });
+        } catch (RuntimeException e){
+            throw new Exception("Unable to decrypt INODE_FRAME: " + e.getMessage());
+        }
+        for (int i = 0; i < iNodeAddresses.length; i++){
+            iNodes[i] = sortedINodes[Arrays.binarySearch(sortedAddresses, iNodeAddresses[i])];
+        }
+        return iNodes;
+    }
+
+    /**
+     * This method takes a sorted array of distinct addresses and groups them into runs that can be read with a single
+     * read. Two consecutive addresses are placed in the same run if there are at most maxGap unused frames between them
+     * (reading a few extra frames is cheaper than another seek) and the run does not exceed maxFrames frames.
+     * @param sortedAddresses Sorted array of distinct frame addresses
+     * @param maxGap Maximum number of frames between two addresses of the same run
+     * @param maxFrames Maximum number of frames (including gaps) spanned by a run
+     * @return an array whose number of total elements is always a multiple of 2. The first element is the index of the
+     * first address of the run within sortedAddresses. The following element is the number of addresses in the run.
+     */
+    static int[] getReadRuns(long[] sortedAddresses, int maxGap, int maxFrames){
+        LinkedList<Integer> runs = new LinkedList<Integer>();
+        if (sortedAddresses.length == 0)
+            return new int[0];
+        int runStart = 0;
+        for (int i = 1; i < sortedAddresses.length; i++){
+            boolean withinGap = sortedAddresses[i] - sortedAddresses[i - 1] - 1 <= maxGap;
+            boolean withinSize = sortedAddresses[i] - sortedAddresses[runStart] + 1 <= maxFrames;
+            if (!withinGap || !withinSize){
+                runs.add(runStart);
+                runs.add(i - runStart);
+                runStart = i;
+            }
+        }
+        runs.add(runStart);
+        runs.add(sortedAddresses.length - runStart);
+        return runs.stream().mapToInt(x->x).toArray();
+    }
+
     /**
      * This method takes an INodeAddress and removes the INode Entry from the FileSystem
      * @param iNodeAddress Target INode Address
@@ -132,20 +296,58 @@ public class INodeStoreGateway {
         // Remove the bitmap entry
         // Delete the entry in case if it is the last one.
         try {
-            bitMapUtility.setIndexINodeStore(iNodeAddress, false);
+            if (isInlineAddress(iNodeAddress))
+                bitMapUtility.setIndex(Store.InlineINodeStore, iNodeAddress & ~INLINE_INODE_STORE_FRAME.ADDRESS_FLAG, false);
+            else
+                bitMapUtility.setIndexINodeStore(iNodeAddress, false);
         } catch (Exception e){
             throw new Exception("Unable to Remove INode: " +  e.getMessage());
         }
     }
 
+    /**
+     * Removes several INodes with a single update of the bitmap.
+     * @param iNodeAddresses Target INode Addresses
+     */
+    public void removeINodes(long[] iNodeAddresses) throws Exception{
+        try {
+            bitMapUtility.clearIndicesINodeStore(Arrays.stream(iNodeAddresses).filter(a -> !isInlineAddress(a)).toArray());
+            bitMapUtility.clearIndicesInlineINodeStore(Arrays.stream(iNodeAddresses).filter(INodeStoreGateway::isInlineAddress)
+                    .map(a -> a & ~INLINE_INODE_STORE_FRAME.ADDRESS_FLAG).toArray());
+        } catch (Exception e){
+            throw new Exception("Unable to Remove INodes: " +  e.getMessage());
+        }
+    }
+
     /**
      * This method takes an iNode object and an iNodeAddress. The iNode at the particular address is updated to the new
-     * iNode object.
+     * iNode object. The frame is written with a single write, so the INode on disk is either the previous or the
+     * updated one.
      * @param iNode The updated iNode.
      * @param iNodeAddress  Target iNodeAddress
      */
-    public void updateINode(INode iNode, long iNodeAddress){
-        // IMPLEMENT
+    public void updateINode(INode iNode, long iNodeAddress) throws Exception{
+        if (!isOccupied(iNodeAddress))
+            throw new Exception("Unable to Update INode: No INode at address " + iNodeAddress);
+        iNode.setiNodeAddress(iNodeAddress);
+        if (isInlineAddress(iNodeAddress)){
+            __writeInlineINode(iNode, iNodeAddress & ~INLINE_INODE_STORE_FRAME.ADDRESS_FLAG);
+            return;
+        }
+        if (iNode.isInline())
+            throw new Exception("Unable to Update INode: Contents cannot be stored within INode " + iNodeAddress);
+        byte[] byteArray;
+        try {
+            byteArray = Crypto.encryptBlock(__getINodeFrame(iNode), key, INODE_STORE_FRAME.SIZE);
+        } catch (Exception e){
+            throw new Exception("Unable to encrypt INODE_FRAME." + e.getMessage());
+        }
+        try (RandomAccessFile fin = new RandomAccessFile(iNodeFile, "rw")){
+            fin.seek(iNodeAddress * INODE_STORE_FRAME.FULL_SIZE);
+            fin.write(byteArray);
+        } catch (IOException e){
+            throw new Exception("Unable to write updated INODE_FRAME to the INODE_STORE." + e.getMessage());
+        }
     }
 
     private byte[] __getINodeFrame(INode iNode){
@@ -168,7 +370,57 @@ public class INodeStoreGateway {
      * @return Target INode Object
      */
     private INode __getINode(byte[] byteArray) throws Exception{
-        byteArray = Crypto.decryptBlock(byteArray, key, INODE_STORE_FRAME.SIZE);
+        return __parseINode(Crypto.decryptBlock(byteArray, key, INODE_STORE_FRAME.SIZE));
+    }
+
+    /**
+     * Writes an INode of the inline-inode-store, along with its contents if it is inline.
+     * @param iNode Target INode
+     * @param index Index of the frame within the inline-inode-store
+     */
+    private void __writeInlineINode(INode iNode, long index) throws Exception{
+        byte[] byteArray = new byte[INLINE_INODE_STORE_FRAME.SIZE];
+        System.arraycopy(__getINodeFrame(iNode), 0, byteArray, 0, INODE_STORE_FRAME.SIZE);
+        if (iNode.isInline())
+            System.arraycopy(iNode.getInlineData(), 0, byteArray, INLINE_INODE_STORE_FRAME.DATA_INDEX, iNode.getInlineData().length);
+        try {
+            byteArray = Crypto.encryptBlock(byteArray, key, INLINE_INODE_STORE_FRAME.SIZE);
+        } catch (Exception e){
+            throw new Exception("Unable to encrypt INLINE_INODE_FRAME." + e.getMessage());
+        }
+        try (RandomAccessFile fin = new RandomAccessFile(inlineINodeFile, "rw")){
+            fin.seek(index * INLINE_INODE_STORE_FRAME.FULL_SIZE);
+            fin.write(byteArray);
+        } catch (IOException e){
+            throw new Exception("Unable to write INLINE_INODE_FRAME to the INLINE_INODE_STORE." + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads an INode of the inline-inode-store, along with its contents if it is inline.
+     * @param index Index of the frame within the inline-inode-store
+     */
+    private INode __readInlineINode(long index) throws Exception{
+        byte[] byteArray = new byte[INLINE_INODE_STORE_FRAME.FULL_SIZE];
+        try (RandomAccessFile fin = new RandomAccessFile(inlineINodeFile, "r")){
+            fin.seek(index * INLINE_INODE_STORE_FRAME.FULL_SIZE);
+            fin.readFully(byteArray);
+        } catch (IOException e){
+            throw new Exception("Unable to read from INLINE_INODE_STORE." + e.getMessage());
+        }
+        byteArray = Crypto.decryptBlock(byteArray, key, INLINE_INODE_STORE_FRAME.SIZE);
+        INode iNode = __parseINode(byteArray);
+        if (iNode.isInline()){
+            int start = INLINE_INODE_STORE_FRAME.DATA_INDEX;
+            iNode.setInlineData(Arrays.copyOfRange(byteArray, start, start + (int) iNode.getiNodeSize()));
+        }
+        return iNode;
+    }
+
+    /**
+     * This method takes the decrypted bytes of an INODE_FRAME and returns the iNode.
+     */
+    private static INode __parseINode(byte[] byteArray){
         INode iNode = new INode();
         iNode.setiNodeAddress(BinaryUtilities.convertBytesToLong(byteArray, INODE_STORE_FRAME.INODE_ADDRESS_INDEX));
         iNode.setiNodeSize(BinaryUtilities.convertBytesToLong(byteArray, INODE_STORE_FRAME.SIZE_INDEX));
@@ -0,0 +1,160 @@
+package DiskUtility;
+
+import FileSystem.DirectoryEntry;
+import FileSystem.FileSystem;
+import FileSystem.INode;
+import FileSystem.InputFile;
+import FileSystem.Node;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+public class INodeStoreGatewayTests {
+    @Test
+    @DisplayName("getReadRuns -> Adjacent addresses form a single run")
+    public void getReadRuns1(){
+        long[] addresses = {3, 4, 5, 6};
+        int[] expected = {0, 4};
+        Assertions.assertArrayEquals(expected, INodeStoreGateway.getReadRuns(addresses, 0, 1024));
+    }
+
+    @Test
+    @DisplayName("getReadRuns -> Gaps larger than maxGap split the runs")
+    public void getReadRuns2(){
+        long[] addresses = {0, 2, 3, 20, 21, 40};
+        int[] expected = {0, 3, 3, 2, 5, 1};
+        Assertions.assertArrayEquals(expected, INodeStoreGateway.getReadRuns(addresses, 1, 1024));
+    }
+
+    @Test
+    @DisplayName("getReadRuns -> Runs do not exceed maxFrames")
+    public void getReadRuns3(){
+        long[] addresses = {0, 1, 2, 3, 4};
+        int[] expected = {0, 2, 2, 2, 4, 1};
+        Assertions.assertArrayEquals(expected, INodeStoreGateway.getReadRuns(addresses, 0, 2));
+    }
+
+    @Test
+    @DisplayName("getReadRuns -> No addresses")
+    public void getReadRuns4(){
+        Assertions.assertArrayEquals(new int[0], INodeStoreGateway.getReadRuns(new long[0], 8, 1024));
+    }
+
+    @Test
+    @DisplayName("getINodes -> Returns the same INodes as getINode, in the order of the addresses")
+    public void getINodes() throws Exception{
+        Path base = Files.createTempDirectory("inode-store");
+        try {
+            FileSystem fs = __createFileSystem(base);
+            INodeStoreGateway gateway = fs.getGateway().getiNodeStoreGateway();
+            ArrayList<Long> addresses = new ArrayList<Long>();
+            for (Node node: fs.openDirectory("/files")){
+                if (!node.isDirectory())
+                    addresses.add(node.getiNodeAddress());
+            }
+            // The INodes are read in several runs, separated by gaps as well as limited in length.
+            long[] storeAddresses = addresses.stream().mapToLong(Long::longValue)
+                    .filter(address -> !INodeStoreGateway.isInlineAddress(address)).sorted().toArray();
+            int[] runs = INodeStoreGateway.getReadRuns(storeAddresses, 8, 1024);
+            Assertions.assertTrue(runs.length / 2 > 2);
+            int longestRun = 0;
+            for (int i = 1; i < runs.length; i += 2)
+                longestRun = Math.max(longestRun, runs[i]);
+            Assertions.assertEquals(1024, longestRun);
+            // Duplicates, and an order that is unrelated to the positions of the INodes in the store.
+            for (int i = 0; i < addresses.size(); i += 50)
+                addresses.add(addresses.get(i));
+            Collections.shuffle(addresses, new Random(1));
+            long[] addressArray = addresses.stream().mapToLong(Long::longValue).toArray();
+            INode[] iNodes = gateway.getINodes(addressArray);
+            Assertions.assertEquals(addressArray.length, iNodes.length);
+            for (int i = 0; i < addressArray.length; i++)
+                __assertINodeEquals(gateway.getINode(addressArray[i]), iNodes[i]);
+            Assertions.assertEquals(0, gateway.getINodes(new long[0]).length);
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("openDirectoryWithINodes and streamDirectoryWithINodes -> Every child is paired with its own INode")
+    public void directoryWithINodes() throws Exception{
+        Path base = Files.createTempDirectory("inode-store");
+        try {
+            FileSystem fs = __createFileSystem(base);
+            LinkedList<Node> childNodes = fs.openDirectory("/files");
+            LinkedList<DirectoryEntry> entries = fs.openDirectoryWithINodes("/files");
+            Assertions.assertEquals(childNodes.size(), entries.size());
+            Iterator<Node> nodeIterator = childNodes.iterator();
+            for (DirectoryEntry entry: entries)
+                __assertEntry(fs, nodeIterator.next(), entry);
+
+            Node directory = fs.getNode("/files");
+            for (int batchSize: new int[]{1, 7, 1000, 5000}){
+                Iterator<DirectoryEntry> iterator = fs.streamDirectoryWithINodes(directory, batchSize);
+                nodeIterator = childNodes.iterator();
+                while (iterator.hasNext())
+                    __assertEntry(fs, nodeIterator.next(), iterator.next());
+                Assertions.assertFalse(nodeIterator.hasNext());
+                Assertions.assertThrows(NoSuchElementException.class, iterator::next);
+            }
+            Assertions.assertThrows(IllegalArgumentException.class, () -> fs.streamDirectoryWithINodes(directory, 0));
+            Assertions.assertTrue(fs.openDirectoryWithINodes("/files/d0").isEmpty());
+            Assertions.assertFalse(fs.streamDirectoryWithINodes(fs.getNode("/files/d0"), 10).hasNext());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    /**
+     * Creates a FileSystem with a directory of files and a few empty directories. Every tenth file is small enough to
+     * be stored inline. Groups of files near the start are removed, so the INodes that remain are separated by gaps
+     * wider than MAX_COALESCED_GAP there, and are adjacent for more than MAX_COALESCED_FRAMES frames after them.
+     */
+    private static FileSystem __createFileSystem(Path base) throws Exception{
+        FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+        for (int i = 0; i < 1400; i++){
+            byte[] contents = TestUtilities.getContents(i % 10 == 0 ? 100 + i % 50 : 4000 + i, i);
+            fs.addFile(new InputFile("f" + i, "/files", contents.length, i, 2L * i, new ByteArrayInputStream(contents)));
+        }
+        for (int i = 0; i < 5; i++)
+            fs.createDirectory("/files", "d" + i);
+        for (int i = 0; i < 240; i++){
+            if ((i / 12) % 2 == 0)
+                fs.removeNode("/files/f" + i);
+        }
+        fs.reclaimAll();
+        return fs;
+    }
+
+    private static void __assertEntry(FileSystem fs, Node node, DirectoryEntry entry) throws Exception{
+        Assertions.assertSame(node, entry.node);
+        if (node.isDirectory())
+            Assertions.assertNull(entry.iNode);
+        else
+            __assertINodeEquals(fs.getINode(node), entry.iNode);
+    }
+
+    private static void __assertINodeEquals(INode expected, INode actual){
+        Assertions.assertEquals(expected.getiNodeSize(), actual.getiNodeSize());
+        Assertions.assertEquals(expected.getFlags(), actual.getFlags());
+        Assertions.assertEquals(expected.getCreationTime(), actual.getCreationTime());
+        Assertions.assertEquals(expected.getLastModifiedTime(), actual.getLastModifiedTime());
+        Assertions.assertEquals(expected.getExtentStoreAddress(), actual.getExtentStoreAddress());
+        Assertions.assertEquals(expected.getExtentCount(), actual.getExtentCount());
+        Assertions.assertEquals(expected.getThumbnailStoreAddress(), actual.getThumbnailStoreAddress());
+        Assertions.assertEquals(expected.isInline(), actual.isInline());
+        Assertions.assertArrayEquals(expected.getInlineData(), actual.getInlineData());
+    }
+}
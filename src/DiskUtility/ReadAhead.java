@@ -0,0 +1,176 @@
+package DiskUtility;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class reads and decrypts the blocks of a stream ahead of the reader. It is used by CustomInputStream.
+ * While the stream is read sequentially, the blocks that follow the current block are read by a shared pool of
+ * background threads into a ring of at most MAX_WINDOW blocks, in the order of the file. The window starts at
+ * INITIAL_WINDOW blocks and is doubled every time a block is found in the ring. A block that is not in the ring is read
+ * by the reader itself. The window is halved every time the stream is repositioned, and the blocks of the ring that
+ * were passed over are dropped.
+ * While direct I/O is enabled for the store, every read goes to the device instead of the page cache, so consecutive
+ * blocks of the window are read together, up to MAX_RUN blocks per read, and the ring is refilled once there is room for
+ * a whole run.
+ * An instance is used by a single stream and is not safe for use by several threads.
+ */
+class ReadAhead {
+    public static final int INITIAL_WINDOW = 2;
+    public static final int MAX_WINDOW = 16;
+    public static final int MAX_RUN = 8;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread thread = new Thread(runnable, "read-ahead-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final DataStoreGateway dataStore;
+    private final ArrayDeque<Prefetch> ring = new ArrayDeque<Prefetch>();
+    private int window;
+    private long hits;
+    private long misses;
+
+    /**
+     * Provides the indices of the blocks that follow the current block of the stream.
+     */
+    interface NextBlocks {
+        /**
+         * @param count Maximum number of blocks
+         * @return The indices of up to count blocks that follow the current block, in the order of the file.
+         */
+        long[] get(int count);
+    }
+
+    private static class Prefetch {
+        final long blockIndex;
+        /**
+         * Reads the run of blocks the block belongs to. The future is shared by the Prefetches of the run.
+         */
+        final Future<byte[][]> future;
+        /**
+         * Index of the block within its run.
+         */
+        final int runIndex;
+        Prefetch(long blockIndex, Future<byte[][]> future, int runIndex){
+            this.blockIndex = blockIndex;
+            this.future = future;
+            this.runIndex = runIndex;
+        }
+    }
+
+    ReadAhead(DataStoreGateway dataStore){
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Returns a decrypted block and starts reading the blocks that follow it.
+     * @param blockIndex Index of the block
+     * @param sequential Set if the block follows the last block that was returned without the stream having been
+     *                   repositioned.
+     * @param nextBlocks The blocks that follow the block
+     * @return The decrypted block
+     */
+    byte[] getBlock(long blockIndex, boolean sequential, NextBlocks nextBlocks) throws IOException {
+        // The ring is in the order of the file, so the blocks before the requested block are not going to be read.
+        while (!ring.isEmpty() && ring.peekFirst().blockIndex != blockIndex){
+            Prefetch prefetch = ring.pollFirst();
+            if (ring.isEmpty() || ring.peekFirst().future != prefetch.future)
+                prefetch.future.cancel(false);
+        }
+        byte[] dataBlock = null;
+        if (!ring.isEmpty()){
+            dataBlock = __await(ring.pollFirst());
+            if (dataBlock != null)
+                hits++;
+        }
+        if (!sequential)
+            window /= 2;
+        else if (dataBlock != null)
+            window = Math.min(Math.max(window * 2, INITIAL_WINDOW), MAX_WINDOW);
+        else
+            window = Math.max(window, INITIAL_WINDOW);
+        if (dataBlock == null){
+            misses++;
+            try {
+                dataBlock = dataStore.__getDataBlock(blockIndex);
+            } catch (Exception e){
+                throw new IOException("Unable to get bytes from the dataBlock: " + e.getMessage());
+            }
+        }
+        __fill(nextBlocks);
+        return dataBlock;
+    }
+
+    /**
+     * Starts reading the blocks of the window that are not in the ring yet, and drops the blocks beyond the window.
+     */
+    private void __fill(NextBlocks nextBlocks){
+        while (ring.size() > window){
+            Prefetch prefetch = ring.pollLast();
+            // The rest of the run is still in the ring.
+            if (ring.isEmpty() || ring.peekLast().future != prefetch.future)
+                prefetch.future.cancel(false);
+        }
+        int maxRun = dataStore.isDirectIO() ? MAX_RUN : 1;
+        // Waits for room for a whole run, so that the ring is not refilled one block at a time.
+        if (ring.size() > window - Math.min(maxRun, window))
+            return;
+        long[] blocks = nextBlocks.get(window);
+        int i = ring.size();
+        while (i < blocks.length){
+            long first = blocks[i];
+            int count = 1;
+            while (count < maxRun && i + count < blocks.length && blocks[i + count] == first + count)
+                count++;
+            int runLength = count;
+            Future<byte[][]> future = executor.submit(() -> runLength == 1 ?
+                    new byte[][]{dataStore.__getDataBlock(first)} : dataStore.__getDataBlocks(first, runLength));
+            for (int j = 0; j < count; j++)
+                ring.addLast(new Prefetch(first + j, future, j));
+            i += count;
+        }
+    }
+
+    /**
+     * @return The block read by the background thread, or null if it could not be read.
+     */
+    private static byte[] __await(Prefetch prefetch) throws IOException {
+        try {
+            return prefetch.future.get()[prefetch.runIndex];
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a block");
+        } catch (ExecutionException e){
+            return null;
+        }
+    }
+
+    /**
+     * Stops the background reads of the stream.
+     */
+    void close(){
+        while (!ring.isEmpty())
+            ring.pollFirst().future.cancel(false);
+        window = 0;
+    }
+
+    int getWindow(){
+        return window;
+    }
+
+    long getHits(){
+        return hits;
+    }
+
+    long getMisses(){
+        return misses;
+    }
+}
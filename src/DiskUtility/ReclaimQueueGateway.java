@@ -0,0 +1,178 @@
+package DiskUtility;
+
+import Constants.RECLAIM_QUEUE_FRAME;
+import Constants.VALUES;
+import Utilities.BinaryUtilities;
+
+import javax.crypto.SecretKey;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * This class provides an interface to the reclaim-queue file. The queue holds the iNode addresses of files that have
+ * been removed from the directory tree but whose INodes, extents and data have not been freed yet.
+ * Records are appended to the end of the file and reclaimed from the head. Before a batch of records is reclaimed, the
+ * size of the batch is recorded in the header so that a batch interrupted by a crash is reclaimed again when the
+ * FileSystem is mounted. The file is truncated once every record has been reclaimed.
+ * Every write is synchronous.
+ */
+public class ReclaimQueueGateway {
+    private final RandomAccessFile file;
+    private final SecretKey key;
+    /**
+     * Number of records that have already been reclaimed.
+     */
+    private long head;
+    /**
+     * Total number of records, including the ones that have already been reclaimed.
+     */
+    private long recordCount;
+    private int inProgress;
+
+    public ReclaimQueueGateway(File baseFile, SecretKey key) throws Exception{
+        this.key = key;
+        File queueFile = new File(baseFile, RECLAIM_QUEUE_FRAME.FILE_NAME);
+        try {
+            this.file = new RandomAccessFile(queueFile, "rwd");
+            if (file.length() < RECLAIM_QUEUE_FRAME.HEADER_SIZE){
+                // New queue, or a queue whose header was never completely written.
+                file.setLength(0);
+                file.write(VALUES.MAGIC_VALUE_BYTES);
+                __writeHeader(0, 0);
+            } else {
+                byte[] header = new byte[RECLAIM_QUEUE_FRAME.HEADER_SIZE];
+                file.seek(0);
+                file.readFully(header);
+                if (BinaryUtilities.convertBytesToInt(header, RECLAIM_QUEUE_FRAME.MAGIC_VALUE_INDEX) != VALUES.MAGIC_VALUE)
+                    throw new Exception("Invalid Reclaim Queue. Magic Value does not match.");
+                head = BinaryUtilities.convertBytesToLong(header, RECLAIM_QUEUE_FRAME.HEAD_INDEX);
+                inProgress = BinaryUtilities.convertBytesToInt(header, RECLAIM_QUEUE_FRAME.IN_PROGRESS_INDEX);
+            }
+            // A record that was only partly appended before a crash is discarded. Its node was unlinked already, so
+            // the space it occupies is leaked rather than reused.
+            recordCount = (file.length() - RECLAIM_QUEUE_FRAME.HEADER_SIZE) / RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE;
+            file.setLength(RECLAIM_QUEUE_FRAME.HEADER_SIZE + recordCount * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE);
+            if (head >= recordCount){
+                // Either the queue is empty or it was truncated before the header was reset.
+                __truncate();
+            } else if (inProgress < 0 || head + inProgress > recordCount){
+                __writeHeader(head, 0);
+            }
+        } catch (IOException e){
+            throw new Exception("Unable to open Reclaim Queue: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends iNode addresses to the end of the queue with a single write.
+     * @param iNodeAddresses The iNode addresses of the files to be reclaimed
+     */
+    public synchronized void append(long[] iNodeAddresses) throws Exception{
+        if (iNodeAddresses.length == 0)
+            return;
+        byte[] byteArray = new byte[iNodeAddresses.length * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE];
+        for (int i = 0; i < iNodeAddresses.length; i++){
+            byte[] record = Crypto.encryptBlock(BinaryUtilities.convertLongToBytes(iNodeAddresses[i]), key, RECLAIM_QUEUE_FRAME.RECORD_SIZE);
+            System.arraycopy(record, 0, byteArray, i * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE, RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE);
+        }
+        try {
+            file.seek(RECLAIM_QUEUE_FRAME.HEADER_SIZE + recordCount * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE);
+            file.write(byteArray);
+        } catch (IOException e){
+            throw new Exception("Unable to append to Reclaim Queue: " + e.getMessage());
+        }
+        recordCount += iNodeAddresses.length;
+    }
+
+    /**
+     * Returns the iNode addresses at the head of the queue without removing them.
+     * @param max The maximum number of addresses
+     * @return The iNode addresses, oldest first
+     */
+    public synchronized long[] peek(int max) throws Exception{
+        int count = (int) Math.min(max, recordCount - head);
+        long[] iNodeAddresses = new long[count];
+        if (count == 0)
+            return iNodeAddresses;
+        byte[] byteArray = new byte[count * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE];
+        byte[] record = new byte[RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE];
+        try {
+            file.seek(RECLAIM_QUEUE_FRAME.HEADER_SIZE + head * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE);
+            file.readFully(byteArray);
+        } catch (IOException e){
+            throw new Exception("Unable to read Reclaim Queue: " + e.getMessage());
+        }
+        for (int i = 0; i < count; i++){
+            System.arraycopy(byteArray, i * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE, record, 0, RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE);
+            iNodeAddresses[i] = BinaryUtilities.convertBytesToLong(Crypto.decryptBlock(record, key, RECLAIM_QUEUE_FRAME.RECORD_SIZE), 0);
+        }
+        return iNodeAddresses;
+    }
+
+    /**
+     * Records that the first count entries of the queue are being reclaimed.
+     * @param count Number of entries
+     */
+    public synchronized void markInProgress(int count) throws Exception{
+        if (count < 0 || head + count > recordCount)
+            throw new IllegalArgumentException("Invalid number of entries: " + count);
+        __writeHeader(head, count);
+    }
+
+    /**
+     * Removes the first count entries from the queue once they have been reclaimed. The file is truncated once the
+     * queue is empty.
+     * @param count Number of entries
+     */
+    public synchronized void complete(int count) throws Exception{
+        if (count < 0 || head + count > recordCount)
+            throw new IllegalArgumentException("Invalid number of entries: " + count);
+        if (head + count == recordCount)
+            __truncate();
+        else
+            __writeHeader(head + count, 0);
+    }
+
+    /**
+     * @return Number of entries of an interrupted batch that must be reclaimed again.
+     */
+    public synchronized int getInProgress(){
+        return inProgress;
+    }
+
+    /**
+     * @return Number of entries waiting to be reclaimed
+     */
+    public synchronized long size(){
+        return recordCount - head;
+    }
+
+    public synchronized void close() throws Exception{
+        try {
+            file.close();
+        } catch (IOException e){
+            throw new Exception("Unable to close Reclaim Queue: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes every record. The file is truncated before the header is reset so that a crash in between leaves a head
+     * that is past the end of the queue, which is treated as an empty queue.
+     */
+    private void __truncate() throws IOException{
+        file.setLength(RECLAIM_QUEUE_FRAME.HEADER_SIZE);
+        recordCount = 0;
+        __writeHeader(0, 0);
+    }
+
+    private void __writeHeader(long head, int inProgress) throws IOException{
+        byte[] byteArray = new byte[RECLAIM_QUEUE_FRAME.HEADER_SIZE - RECLAIM_QUEUE_FRAME.HEAD_INDEX];
+        System.arraycopy(BinaryUtilities.convertLongToBytes(head), 0, byteArray, 0, 8);
+        System.arraycopy(BinaryUtilities.convertIntToBytes(inProgress), 0, byteArray, RECLAIM_QUEUE_FRAME.IN_PROGRESS_INDEX - RECLAIM_QUEUE_FRAME.HEAD_INDEX, 4);
+        file.seek(RECLAIM_QUEUE_FRAME.HEAD_INDEX);
+        file.write(byteArray);
+        this.head = head;
+        this.inProgress = inProgress;
+    }
+}
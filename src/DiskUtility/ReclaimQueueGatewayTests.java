@@ -0,0 +1,172 @@
+package DiskUtility;
+
+import Constants.RECLAIM_QUEUE_FRAME;
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+import Utilities.BinaryUtilities;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ReclaimQueueGatewayTests {
+    private static SecretKey __getKey() throws Exception{
+        Crypto.init();
+        return Crypto.deriveKeyFromPassword("password", new byte[16]);
+    }
+
+    @Test
+    @DisplayName("complete -> The file is truncated once every record has been reclaimed")
+    public void truncateAfterDrain() throws Exception{
+        Path base = Files.createTempDirectory("reclaim-queue");
+        try {
+            SecretKey key = __getKey();
+            Path queueFile = base.resolve(RECLAIM_QUEUE_FRAME.FILE_NAME);
+            ReclaimQueueGateway queue = new ReclaimQueueGateway(base.toFile(), key);
+            queue.append(new long[]{11, 12, 13});
+            queue.append(new long[]{14, 15});
+            Assertions.assertEquals(5, queue.size());
+            Assertions.assertArrayEquals(new long[]{11, 12, 13}, queue.peek(3));
+            queue.markInProgress(3);
+            queue.complete(3);
+            Assertions.assertEquals(2, queue.size());
+            Assertions.assertArrayEquals(new long[]{14, 15}, queue.peek(64));
+            Assertions.assertEquals(RECLAIM_QUEUE_FRAME.HEADER_SIZE + 5L * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE, Files.size(queueFile));
+            queue.markInProgress(2);
+            queue.complete(2);
+            Assertions.assertEquals(0, queue.size());
+            Assertions.assertEquals(0, queue.peek(64).length);
+            Assertions.assertEquals(RECLAIM_QUEUE_FRAME.HEADER_SIZE, Files.size(queueFile));
+            // Records appended after the drain start from the beginning of the file.
+            queue.append(new long[]{16});
+            queue.close();
+            queue = new ReclaimQueueGateway(base.toFile(), key);
+            Assertions.assertEquals(0, queue.getInProgress());
+            Assertions.assertArrayEquals(new long[]{16}, queue.peek(64));
+            queue.close();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("ReclaimQueueGateway -> A batch that was in progress is reported again when the queue is opened")
+    public void inProgressAfterReopen() throws Exception{
+        Path base = Files.createTempDirectory("reclaim-queue");
+        try {
+            SecretKey key = __getKey();
+            ReclaimQueueGateway queue = new ReclaimQueueGateway(base.toFile(), key);
+            queue.append(new long[]{21, 22, 23, 24});
+            queue.markInProgress(1);
+            queue.complete(1);
+            queue.markInProgress(2);
+            // The queue is closed without completing the batch, as if the process had stopped.
+            queue.close();
+            queue = new ReclaimQueueGateway(base.toFile(), key);
+            Assertions.assertEquals(2, queue.getInProgress());
+            Assertions.assertEquals(3, queue.size());
+            Assertions.assertArrayEquals(new long[]{22, 23}, queue.peek(queue.getInProgress()));
+            queue.complete(2);
+            Assertions.assertEquals(0, queue.getInProgress());
+            Assertions.assertArrayEquals(new long[]{24}, queue.peek(64));
+            queue.close();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("ReclaimQueueGateway -> A record that was only partly appended is discarded")
+    public void tornRecord() throws Exception{
+        Path base = Files.createTempDirectory("reclaim-queue");
+        try {
+            SecretKey key = __getKey();
+            Path queueFile = base.resolve(RECLAIM_QUEUE_FRAME.FILE_NAME);
+            ReclaimQueueGateway queue = new ReclaimQueueGateway(base.toFile(), key);
+            queue.append(new long[]{31, 32});
+            queue.close();
+            byte[] tornRecord = new byte[RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE - 5];
+            Files.write(queueFile, tornRecord, java.nio.file.StandardOpenOption.APPEND);
+            queue = new ReclaimQueueGateway(base.toFile(), key);
+            Assertions.assertEquals(2, queue.size());
+            Assertions.assertEquals(RECLAIM_QUEUE_FRAME.HEADER_SIZE + 2L * RECLAIM_QUEUE_FRAME.RECORD_FULL_SIZE, Files.size(queueFile));
+            // The next record takes the place of the torn one.
+            queue.append(new long[]{33});
+            Assertions.assertArrayEquals(new long[]{31, 32, 33}, queue.peek(64));
+            queue.close();
+
+            // A header that was never completely written is replaced by an empty queue.
+            Files.write(queueFile, new byte[RECLAIM_QUEUE_FRAME.HEADER_SIZE - 1]);
+            queue = new ReclaimQueueGateway(base.toFile(), key);
+            Assertions.assertEquals(0, queue.size());
+            queue.close();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("mount -> An interrupted batch is reclaimed again on mount, including files it had already freed")
+    public void replayOnMount() throws Exception{
+        Path base = Files.createTempDirectory("reclaim-queue");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            Path dataStore = base.resolve("fs").resolve(Store.DataStore.fileName);
+            Path queueFile = base.resolve("fs").resolve(RECLAIM_QUEUE_FRAME.FILE_NAME);
+            byte[] kept = TestUtilities.getContents(20000, 0);
+            fs.addFile(new InputFile("keep", "/", kept.length, 0, 0, new ByteArrayInputStream(kept)));
+            for (int i = 0; i < 3; i++){
+                byte[] contents = TestUtilities.getContents(20000, i + 1);
+                fs.addFile(new InputFile("f" + i, "/", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            }
+            long length = Files.size(dataStore);
+            fs.getGateway().getReclaimer().stop();
+            for (int i = 0; i < 3; i++)
+                fs.removeNode("/f" + i);
+            fs.unmount();
+            // The process stopped after the batch was recorded in the header but before it was completed.
+            __setInProgress(queueFile, 3);
+            byte[] interruptedQueue = Files.readAllBytes(queueFile);
+            FileSystem mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            Assertions.assertEquals(0, mounted.getPendingReclaims());
+            Assertions.assertEquals(RECLAIM_QUEUE_FRAME.HEADER_SIZE, Files.size(queueFile));
+            mounted.unmount();
+
+            // The batch is reclaimed once more if the process stopped after freeing the files but before completing it.
+            // Files whose INodes are free already are skipped.
+            Files.write(queueFile, interruptedQueue);
+            mounted = FileSystem.mount(base.resolve("fs").toFile(), "password");
+            Assertions.assertEquals(0, mounted.getPendingReclaims());
+            for (int i = 0; i < 3; i++){
+                byte[] contents = TestUtilities.getContents(20000, i + 10);
+                mounted.addFile(new InputFile("g" + i, "/", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+            }
+            Assertions.assertEquals(length, Files.size(dataStore));
+            __assertContents(mounted, "/keep", kept);
+            for (int i = 0; i < 3; i++)
+                __assertContents(mounted, "/g" + i, TestUtilities.getContents(20000, i + 10));
+            mounted.unmount();
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static void __setInProgress(Path queueFile, int count) throws Exception{
+        try (RandomAccessFile file = new RandomAccessFile(queueFile.toFile(), "rw")){
+            file.seek(RECLAIM_QUEUE_FRAME.IN_PROGRESS_INDEX);
+            file.write(BinaryUtilities.convertIntToBytes(count));
+        }
+    }
+
+    private static void __assertContents(FileSystem fs, String path, byte[] contents) throws Exception{
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            Assertions.assertArrayEquals(contents, inputStream.readAllBytes());
+        }
+    }
+}
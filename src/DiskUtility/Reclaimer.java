@@ -0,0 +1,138 @@
+package DiskUtility;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * This class runs the background thread that frees the files waiting in the reclaim queue of a Gateway. Entries are
+ * reclaimed in batches of BATCH_SIZE, with a pause between batches so that the reclaimer does not compete with the
+ * FileSystem for the disk. The thread sleeps while the queue is empty and is woken when files are removed.
+ * Only one Reclaimer runs for a FileSystem directory within the JVM. Starting a Reclaimer stops the one that was started
+ * for the same directory by an earlier mount.
+ */
+public class Reclaimer implements Runnable {
+    public static final int BATCH_SIZE = 64;
+    public static final long DEFAULT_PAUSE_MILLIS = 10;
+    private static final HashMap<String, Reclaimer> reclaimers = new HashMap<String, Reclaimer>();
+    private final Gateway gateway;
+    private final Thread thread;
+    private volatile long pauseMillis = DEFAULT_PAUSE_MILLIS;
+    private volatile Exception lastError;
+    private boolean stopped;
+    private boolean woken;
+
+    private Reclaimer(Gateway gateway, String name){
+        this.gateway = gateway;
+        this.thread = new Thread(this, "reclaimer-" + name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts a Reclaimer for the Gateway of a FileSystem directory.
+     * @param baseFile The root directory of the FileSystem
+     * @param gateway The Gateway whose reclaim queue is processed
+     * @return The Reclaimer
+     */
+    static Reclaimer start(File baseFile, Gateway gateway) throws Exception{
+        stop(baseFile);
+        Reclaimer reclaimer = new Reclaimer(gateway, baseFile.getName());
+        synchronized (reclaimers){
+            reclaimers.put(__getKey(baseFile), reclaimer);
+        }
+        reclaimer.thread.start();
+        return reclaimer;
+    }
+
+    /**
+     * Stops the Reclaimer of a FileSystem directory, if there is one, and waits for the batch it is reclaiming.
+     * @param baseFile The root directory of the FileSystem
+     */
+    static void stop(File baseFile) throws Exception{
+        Reclaimer reclaimer;
+        synchronized (reclaimers){
+            reclaimer = reclaimers.remove(__getKey(baseFile));
+        }
+        if (reclaimer != null)
+            reclaimer.stop();
+    }
+
+    private static String __getKey(File baseFile) throws Exception{
+        try {
+            return baseFile.getCanonicalPath();
+        } catch (IOException e){
+            throw new Exception("Unable to resolve FileSystem directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the thread and waits for the batch it is reclaiming.
+     */
+    void stop() throws InterruptedException{
+        synchronized (this){
+            stopped = true;
+            notifyAll();
+        }
+        if (Thread.currentThread() != thread)
+            thread.join();
+    }
+
+    /**
+     * Wakes the thread if it is waiting for entries.
+     */
+    synchronized void wake(){
+        woken = true;
+        notifyAll();
+    }
+
+    @Override
+    public void run(){
+        while (true){
+            int reclaimed;
+            try {
+                reclaimed = gateway.reclaim(BATCH_SIZE);
+            } catch (Exception e){
+                // The Gateway refuses to reclaim after a failed batch. The batch is retried after the next mount.
+                lastError = e;
+                return;
+            }
+            synchronized (this){
+                try {
+                    if (reclaimed == 0){
+                        // The queue is empty. Wait until files are removed.
+                        while (!woken && !stopped)
+                            wait();
+                    } else if (pauseMillis > 0 && !stopped){
+                        wait(pauseMillis);
+                    }
+                } catch (InterruptedException e){
+                    return;
+                }
+                woken = false;
+                if (stopped)
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Sets the pause between two batches.
+     * @param millis The pause in milliseconds. 0 reclaims the queue without pausing.
+     */
+    public void setPauseMillis(long millis){
+        if (millis < 0)
+            throw new IllegalArgumentException("Pause cannot be negative");
+        this.pauseMillis = millis;
+    }
+
+    public long getPauseMillis(){
+        return pauseMillis;
+    }
+
+    /**
+     * @return The error that stopped the Reclaimer, or null if it has not failed.
+     */
+    public Exception getLastError(){
+        return lastError;
+    }
+}
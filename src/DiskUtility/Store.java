@@ -2,10 +2,12 @@ package DiskUtility;
 
 public enum Store {
     DirectoryStore("directory-store", BitmapType.Singular),
+    DirectoryPageStore("directory-page-store", BitmapType.Singular),
     INodeStore("inode-store", BitmapType.Singular),
     ExtentStore("extent-store", BitmapType.Singular),
     DataStore("data-store", BitmapType.Half),
-    ThumbnailStore("thumbnail-store", BitmapType.Half);
+    ThumbnailStore("thumbnail-store", BitmapType.Half),
+    InlineINodeStore("inline-inode-store", BitmapType.Singular);
 
     public final String fileName;
     public final BitmapType bitmapType;
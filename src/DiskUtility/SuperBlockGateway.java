@@ -22,7 +22,10 @@ import javax.crypto.SecretKey;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 
 /**
@@ -85,6 +88,18 @@ public abstract class SuperBlockGateway{
                 byteArray,
                 SUPER_BLOCK_BASE_FRAME.SALT_VALUE_INDEX,
                 16);
+        // GENERATION
+        System.arraycopy(superBlock.getFieldBytes("GENERATION"),
+                0,
+                byteArray,
+                SUPER_BLOCK_BASE_FRAME.GENERATION_INDEX,
+                8);
+        // BLOCK_SIZE
+        System.arraycopy(superBlock.getFieldBytes("BLOCK_SIZE"),
+                0,
+                byteArray,
+                SUPER_BLOCK_BASE_FRAME.BLOCK_SIZE_INDEX,
+                4);
         return byteArray;
     }
     /**
@@ -105,7 +120,12 @@ public abstract class SuperBlockGateway{
         } catch (FileNotFoundException e){
             throw new Exception("Could Not Retrieve SuperBlock. SuperBlock File Not Found.\n" + e.getMessage());
         }
-        byteArray = Crypto.decryptBlock(byteArray, key, SUPER_BLOCK_BASE_FRAME.SIZE);
+        // SuperBlocks written before the generation or the block size were added are shorter.
+        int size = byteArray.length - VALUES.IV_SIZE - VALUES.TAG_SIZE;
+        if (size != SUPER_BLOCK_BASE_FRAME.SIZE && size != SUPER_BLOCK_BASE_FRAME.BLOCK_SIZE_INDEX
+                && size != SUPER_BLOCK_BASE_FRAME.GENERATION_INDEX)
+            throw new Exception("Could Not Retrieve SuperBlock. Invalid SuperBlock Size.");
+        byteArray = Crypto.decryptBlock(byteArray, key, size);
         String fileSystemName = BinaryUtilities.convertBytesToUTF8String(byteArray, SUPER_BLOCK_BASE_FRAME.FILE_SYSTEM_NAME_INDEX, 256).trim();
         long directoryStores = BinaryUtilities.convertBytesToLong(byteArray, SUPER_BLOCK_BASE_FRAME.DIRECTORY_STORES_INDEX);
         long iNodeStores = BinaryUtilities.convertBytesToLong(byteArray, SUPER_BLOCK_BASE_FRAME.INODE_STORES_INDEX);
@@ -115,7 +135,36 @@ public abstract class SuperBlockGateway{
         long dataStores = BinaryUtilities.convertBytesToLong(byteArray, SUPER_BLOCK_BASE_FRAME.DATA_STORES_INDEX);
         long attributeStores = BinaryUtilities.convertBytesToLong(byteArray, SUPER_BLOCK_BASE_FRAME.ATTRIBUTE_STORES_INDEX);
         byte[] salt = Arrays.copyOfRange(byteArray, SUPER_BLOCK_BASE_FRAME.SALT_VALUE_INDEX, SUPER_BLOCK_BASE_FRAME.SALT_VALUE_INDEX + VALUES.SALT_SIZE);
-        return new SuperBlock(fileSystemName, directoryStores, iNodeStores, extentStores, flags, thumbnailStores,
-                dataStores, attributeStores, salt);
+        SuperBlock superBlock = new SuperBlock(fileSystemName, directoryStores, iNodeStores, extentStores, flags,
+                thumbnailStores, dataStores, attributeStores, salt);
+        if (size > SUPER_BLOCK_BASE_FRAME.GENERATION_INDEX)
+            superBlock.setGeneration(BinaryUtilities.convertBytesToLong(byteArray, SUPER_BLOCK_BASE_FRAME.GENERATION_INDEX));
+        if (size > SUPER_BLOCK_BASE_FRAME.BLOCK_SIZE_INDEX){
+            try {
+                superBlock.setBlockSize(BinaryUtilities.convertBytesToInt(byteArray, SUPER_BLOCK_BASE_FRAME.BLOCK_SIZE_INDEX));
+            } catch (IllegalArgumentException e){
+                throw new Exception("Could Not Retrieve SuperBlock. " + e.getMessage());
+            }
+        }
+        return superBlock;
+    }
+
+    /**
+     * This method writes the SuperBlock to the file on disk. The SuperBlock is first written to a temporary file which
+     * then replaces the existing file, so that the existing SuperBlock is left intact if the write fails.
+     * @param baseFile The path to the FileSystem.
+     * @param superBlock The SuperBlock to be written
+     * @param key The key used to encrypt the SuperBlock
+     */
+    protected static void writeSuperBlock(File baseFile, SuperBlock superBlock, SecretKey key) throws Exception{
+        byte[] byteArray = Crypto.encryptBlock(getBytes(superBlock), key, SUPER_BLOCK_BASE_FRAME.SIZE);
+        File file = new File(baseFile, "super-block");
+        File temporaryFile = new File(baseFile, "super-block.tmp");
+        try {
+            Files.write(temporaryFile.toPath(), byteArray);
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            throw new Exception("Unable to Write SuperBlock: " + e.getMessage());
+        }
     }
 }
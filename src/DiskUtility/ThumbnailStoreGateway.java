@@ -1,5 +1,6 @@
 package DiskUtility;
 
+import Constants.DATA_STORE_BLOCK_FRAME;
 import Constants.FLAGS;
 import Constants.VALUES;
 import FileSystem.InputFile;
@@ -11,9 +12,10 @@ import java.nio.file.Path;
 
 /**
  * This class provides an interface between the ThumbnailStore files and the rest of the filesystem.
+ * Thumbnails are small, so the thumbnail-store always has blocks of the default size.
  */
 public class ThumbnailStoreGateway extends DataStoreGateway{
     public ThumbnailStoreGateway(File baseFile, BitMapUtility bitMapUtility, SecretKey key) throws Exception{
-        super(baseFile, bitMapUtility, key, Store.ThumbnailStore);
+        super(baseFile, bitMapUtility, key, Store.ThumbnailStore, DATA_STORE_BLOCK_FRAME.Layout.DEFAULT);
     }
 }
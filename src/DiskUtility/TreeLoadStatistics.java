@@ -0,0 +1,34 @@
+package DiskUtility;
+
+/**
+ * This class holds the throughput of an eager load of the directory tree.
+ */
+public class TreeLoadStatistics {
+    /**
+     * Number of occupied DirectoryFrames that were decrypted.
+     */
+    public final long frameCount;
+    /**
+     * Number of bytes read from the directory-store file.
+     */
+    public final long byteCount;
+    public final long elapsedNanos;
+
+    public TreeLoadStatistics(long frameCount, long byteCount, long elapsedNanos){
+        this.frameCount = frameCount;
+        this.byteCount = byteCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public double getFramesPerSecond(){
+        if (elapsedNanos == 0)
+            return 0;
+        return frameCount * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%d frames (%d bytes) in %.1f ms, %.0f frames/s", frameCount, byteCount,
+                elapsedNanos / 1_000_000.0, getFramesPerSecond());
+    }
+}
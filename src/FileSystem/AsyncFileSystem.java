@@ -0,0 +1,163 @@
+package FileSystem;
+
+import DiskUtility.CustomInputStream;
+import DiskUtility.Store;
+
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This class provides an asynchronous interface to a FileSystem. Every method returns a CompletableFuture that is
+ * completed with the result of the corresponding FileSystem method, or completed exceptionally with the exception it
+ * throws. The operations run on virtual threads, so a blocked operation does not hold a platform thread.
+ * The number of operations that run at once is limited per store. Each operation takes a permit of the store it mostly
+ * uses: the DataStore for operations that read or write the contents of files, and the DirectoryStore for operations
+ * that only read or change the directory tree. Operations that wait for a permit do not hold a platform thread either.
+ * Directories are copied by the workers of a CopyTask, whose number is the limit of the DataStore. The copy is
+ * cancelled if its future is cancelled.
+ */
+public class AsyncFileSystem implements AutoCloseable {
+    public static final int DEFAULT_LIMIT = 4 * Runtime.getRuntime().availableProcessors();
+    private final FileSystem fs;
+    private final ExecutorService executor;
+    private final EnumMap<Store, Semaphore> permits = new EnumMap<Store, Semaphore>(Store.class);
+    private final EnumMap<Store, Integer> limits = new EnumMap<Store, Integer>(Store.class);
+
+    public AsyncFileSystem(FileSystem fs){
+        this(fs, new EnumMap<Store, Integer>(Store.class));
+    }
+
+    /**
+     * @param fs The FileSystem
+     * @param limits The maximum number of operations that run at once, by store. Stores that are not provided are
+     *               limited to DEFAULT_LIMIT.
+     */
+    public AsyncFileSystem(FileSystem fs, Map<Store, Integer> limits){
+        this.fs = fs;
+        for (Store store: Store.values()){
+            int limit = limits.getOrDefault(store, DEFAULT_LIMIT);
+            if (limit < 1)
+                throw new IllegalArgumentException("Limit of " + store + " must be positive");
+            this.limits.put(store, limit);
+            this.permits.put(store, new Semaphore(limit));
+        }
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fs-async-", 0).factory());
+    }
+
+    public CompletableFuture<Void> addFile(InputFile file){
+        return __submit(Store.DataStore, () -> {
+            fs.addFile(file);
+            return null;
+        });
+    }
+
+    /**
+     * Opens a file. The contents are read by the caller from the returned stream.
+     * @param path The path of the file
+     */
+    public CompletableFuture<CustomInputStream> openFile(String path){
+        return __submit(Store.DirectoryStore, () -> fs.openFile(path));
+    }
+
+    /**
+     * Reads the entire contents of a file.
+     * @param path The path of the file
+     */
+    public CompletableFuture<byte[]> readFile(String path){
+        return __submit(Store.DataStore, () -> {
+            try (CustomInputStream inputStream = fs.openFile(path)){
+                return inputStream.readAllBytes();
+            }
+        });
+    }
+
+    public CompletableFuture<Void> removeNode(String path, boolean recursive){
+        return __submit(Store.DirectoryStore, () -> {
+            fs.removeNode(path, recursive);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> moveNode(String path, String targetPath){
+        return __submit(Store.DirectoryStore, () -> fs.moveNode(path, targetPath));
+    }
+
+    /**
+     * Copies a file or a directory along with everything within it.
+     * @param path The path of the node to be copied
+     * @param targetPath The path of the directory the copy is placed in
+     * @return A future that is completed with true once the copy has finished. Cancelling the future cancels the copy
+     * of a directory.
+     */
+    public CompletableFuture<Boolean> copyNode(String path, String targetPath){
+        CompletableFuture<CopyTask> started = new CompletableFuture<CopyTask>();
+        CompletableFuture<Boolean> future = __submit(Store.DataStore, () -> {
+            Node node = fs.getNode(path);
+            if (!node.isDirectory())
+                return fs.copyNode(path, targetPath);
+            CopyTask task = fs.copyTree(path, targetPath, limits.get(Store.DataStore));
+            started.complete(task);
+            return task.await();
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled())
+                started.thenAccept(CopyTask::cancel);
+        });
+        return future;
+    }
+
+    public CompletableFuture<LinkedList<Node>> openDirectory(String path){
+        return __submit(Store.DirectoryStore, () -> fs.openDirectory(path));
+    }
+
+    /**
+     * @return The FileSystem the operations are run on
+     */
+    public FileSystem getFileSystem(){
+        return fs;
+    }
+
+    /**
+     * Waits for the operations that have been submitted and stops accepting new ones.
+     */
+    @Override
+    public void close(){
+        executor.close();
+    }
+
+    /**
+     * Runs an operation on a virtual thread once a permit of the store is available.
+     * @param store The store whose permit is taken
+     * @param operation The operation
+     * @return The future of the operation
+     */
+    private <T> CompletableFuture<T> __submit(Store store, Callable<T> operation){
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        Semaphore semaphore = permits.get(store);
+        executor.execute(() -> {
+            if (future.isDone())
+                return;
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e){
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                if (!future.isDone())
+                    future.complete(operation.call());
+            } catch (Throwable e){
+                future.completeExceptionally(e);
+            } finally {
+                semaphore.release();
+            }
+        });
+        return future;
+    }
+}
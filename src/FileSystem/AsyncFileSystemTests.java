@@ -0,0 +1,74 @@
+package FileSystem;
+
+import DiskUtility.Store;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class AsyncFileSystemTests {
+    private static final int FILES = 40;
+
+    @Test
+    @DisplayName("AsyncFileSystem -> Concurrent operations complete with the results of the FileSystem")
+    public void operations() throws Exception{
+        Path base = Files.createTempDirectory("fs-async");
+        EnumMap<Store, Integer> limits = new EnumMap<Store, Integer>(Store.class);
+        limits.put(Store.DataStore, 3);
+        limits.put(Store.DirectoryStore, 1);
+        try (AsyncFileSystem fs = new AsyncFileSystem(FileSystem.createFileSystem(base.toFile(), "fs", "password"),
+                limits)){
+            fs.getFileSystem().createDirectory("/", "a");
+            fs.getFileSystem().createDirectory("/", "b");
+            ArrayList<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < FILES; i++){
+                byte[] contents = __getContents(i);
+                futures.add(fs.addFile(new InputFile("f" + i, "/a", contents.length, i, i,
+                        new ByteArrayInputStream(contents))));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            Assertions.assertEquals(FILES, fs.openDirectory("/a").join().size());
+            for (int i = 0; i < FILES; i++)
+                Assertions.assertArrayEquals(__getContents(i), fs.readFile("/a/f" + i).join());
+            Assertions.assertTrue(fs.copyNode("/a", "/b").join());
+            Assertions.assertTrue(fs.moveNode("/a/f0", "/b").join());
+            fs.removeNode("/a/f1", false).join();
+            Assertions.assertEquals(FILES - 2, fs.openDirectory("/a").join().size());
+            Assertions.assertEquals(2, fs.openDirectory("/b").join().size());
+            for (int i = 0; i < FILES; i++)
+                Assertions.assertArrayEquals(__getContents(i), fs.readFile("/b/a/f" + i).join());
+            Assertions.assertArrayEquals(__getContents(0), fs.openFile("/b/f0").join().readAllBytes());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("AsyncFileSystem -> A failed operation completes its future exceptionally")
+    public void failure() throws Exception{
+        Path base = Files.createTempDirectory("fs-async");
+        try (AsyncFileSystem fs = new AsyncFileSystem(FileSystem.createFileSystem(base.toFile(), "fs", "password"))){
+            CompletableFuture<byte[]> future = fs.readFile("/missing");
+            Assertions.assertThrows(CompletionException.class, future::join);
+            Assertions.assertTrue(future.isCompletedExceptionally());
+            Assertions.assertThrows(CompletionException.class, () -> fs.removeNode("/missing", true).join());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static byte[] __getContents(int seed){
+        byte[] contents = new byte[(seed * 1031) % 9000 + 1];
+        for (int i = 0; i < contents.length; i++)
+            contents[i] = (byte)(seed * 13 + i);
+        return contents;
+    }
+}
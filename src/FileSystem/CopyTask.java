@@ -0,0 +1,271 @@
+package FileSystem;
+
+import DiskUtility.CustomInputStream;
+import DiskUtility.Gateway;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class copies a directory tree within a FileSystem. It is created by FileSystem.copyTree.
+ * The source subtree is walked once and the directories of the copy are created and written as a single batch. The
+ * contents of the files are then copied by a fixed number of worker threads. Each worker reads and decrypts a source
+ * file on its own and then writes the copy through the Gateway. Files may finish in any order, but their Nodes are added
+ * to the directory tree in the order of the source subtree, so an interrupted copy is always a prefix of the source.
+ * A copy can be cancelled. Files that have been written but not added to the directory tree when the copy stops are
+ * freed by the Reclaimer. The directories of the copy are not removed.
+ * Other threads may use the FileSystem while the copy is running. The copy fails if its directories are removed.
+ */
+public class CopyTask {
+    /**
+     * Files up to this size are read into memory before they are written, so that reading the source does not hold up
+     * the other workers. Larger files are streamed.
+     */
+    public static final long MAX_BUFFERED_FILE_SIZE = 16 * 1024 * 1024;
+    /**
+     * Maximum number of copied Nodes that are added to the directory tree before they are written.
+     */
+    private static final int COMMIT_BATCH_SIZE = 256;
+    private static final INode SKIPPED = new INode();
+    private final FileSystem fs;
+    private final Gateway gateway;
+    private final Node root;
+    private final ArrayList<Node> sourceFiles;
+    private final INode[] sourceINodes;
+    private final Node[] targetParents;
+    /**
+     * INodes of the copies, by position within sourceFiles. SKIPPED if the file was not copied.
+     */
+    private final INode[] results;
+    private final long bytesTotal;
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final ExecutorService executor;
+    private final ArrayList<Long> discardedINodes = new ArrayList<Long>();
+    private int nextCommit;
+    private int uncommittedNodes;
+    private int filesCopied;
+    private volatile boolean cancelled;
+    private volatile Exception error;
+
+    /**
+     * Creates the directories of the copy and starts the workers.
+     * @param fs The FileSystem
+     * @param gateway The Gateway of the FileSystem
+     * @param node The directory to be copied
+     * @param targetNode The directory the copy is placed in
+     * @param threads Number of worker threads
+     */
+    CopyTask(FileSystem fs, Gateway gateway, Node node, Node targetNode, int threads) throws Exception{
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        if (!node.isDirectory())
+            throw new Exception("Node is not a directory.");
+        for (Node runningNode = targetNode; runningNode != null; runningNode = runningNode.getParentNode()){
+            if (runningNode == node)
+                throw new Exception("Cannot copy a directory into itself.");
+        }
+        this.fs = fs;
+        this.gateway = gateway;
+        List<Node> subtree = gateway.getDirectoryStoreGateway().getSubtree(node);
+        IdentityHashMap<Node, Node> copies = new IdentityHashMap<Node, Node>();
+        this.sourceFiles = new ArrayList<Node>();
+        // The subtree is in breadth first order, so the copy of a parent always exists before its children are reached.
+        this.root = fs.__addDirectoryNode(targetNode, node.getName());
+        copies.put(node, root);
+        for (Node sourceNode: subtree){
+            if (sourceNode == node)
+                continue;
+            Node parentCopy = copies.get(sourceNode.getParentNode());
+            if (sourceNode.isDirectory())
+                copies.put(sourceNode, fs.__addDirectoryNode(parentCopy, sourceNode.getName()));
+            else
+                sourceFiles.add(sourceNode);
+        }
+        fs.__writeDirtyNodes();
+        this.targetParents = new Node[sourceFiles.size()];
+        for (int i = 0; i < targetParents.length; i++)
+            targetParents[i] = copies.get(sourceFiles.get(i).getParentNode());
+        this.sourceINodes = gateway.getINodes(sourceFiles);
+        long total = 0;
+        for (INode iNode: sourceINodes)
+            total += iNode.getiNodeSize();
+        this.bytesTotal = total;
+        this.results = new INode[sourceFiles.size()];
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "copy-" + node.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (sourceFiles.isEmpty()){
+            __finish();
+            return;
+        }
+        for (int i = 0; i < sourceFiles.size(); i++){
+            int index = i;
+            executor.execute(() -> __copyFile(index));
+        }
+        executor.shutdown();
+    }
+
+    private void __copyFile(int index){
+        INode result = SKIPPED;
+        if (!cancelled){
+            try {
+                result = gateway.addFile(__getInputFile(index));
+                bytesCopied.addAndGet(sourceINodes[index].getiNodeSize());
+            } catch (Exception e){
+                __fail(e);
+            }
+        }
+        __commit(index, result);
+    }
+
+    private InputFile __getInputFile(int index) throws Exception{
+        Node node = sourceFiles.get(index);
+        INode iNode = sourceINodes[index];
+        String parentPath = targetParents[index].getPath();
+        InputStream fileInputStream = __getInputStream(new CustomInputStream(gateway, iNode), iNode.getiNodeSize());
+        if (iNode.getThumbnailStoreAddress() == -1)
+            return new InputFile(node.getName(), parentPath, iNode.getiNodeSize(), iNode.getCreationTime(),
+                    iNode.getLastModifiedTime(), fileInputStream);
+        INode thumbnailINode = gateway.getINode(iNode.getThumbnailStoreAddress());
+        InputStream thumbnailInputStream = __getInputStream(new CustomInputStream(gateway, thumbnailINode, true), thumbnailINode.getiNodeSize());
+        return new InputFile(node.getName(), parentPath, iNode.getiNodeSize(), iNode.getCreationTime(),
+                iNode.getLastModifiedTime(), fileInputStream, thumbnailInputStream, thumbnailINode.getiNodeSize());
+    }
+
+    private static InputStream __getInputStream(CustomInputStream inputStream, long size) throws Exception{
+        if (size > MAX_BUFFERED_FILE_SIZE)
+            return inputStream;
+        try (inputStream){
+            return new ByteArrayInputStream(inputStream.readNBytes((int) size));
+        }
+    }
+
+    /**
+     * Records the result of a file and adds every file whose predecessors have all finished to the directory tree.
+     * @param index Position of the file within sourceFiles
+     * @param result The INode of the copy, or SKIPPED
+     */
+    private synchronized void __commit(int index, INode result){
+        results[index] = result;
+        try {
+            while (nextCommit < results.length && results[nextCommit] != null){
+                INode iNode = results[nextCommit];
+                if (iNode != SKIPPED){
+                    if (cancelled){
+                        discardedINodes.add(iNode.getiNodeAddress());
+                    } else {
+                        try {
+                            fs.__addFileNode(targetParents[nextCommit], sourceFiles.get(nextCommit).getName(), iNode);
+                            uncommittedNodes++;
+                            filesCopied++;
+                        } catch (Exception e){
+                            // e.g. the target directory has been removed by another thread.
+                            __fail(e);
+                            discardedINodes.add(iNode.getiNodeAddress());
+                        }
+                    }
+                }
+                nextCommit++;
+                if (uncommittedNodes >= COMMIT_BATCH_SIZE){
+                    fs.__writeDirtyNodes();
+                    uncommittedNodes = 0;
+                }
+            }
+        } catch (Exception e){
+            __fail(e);
+        }
+        if (nextCommit == results.length)
+            __finish();
+    }
+
+    /**
+     * Writes the remaining Nodes and queues the files that were copied but not added to the directory tree.
+     */
+    private void __finish(){
+        try {
+            fs.__writeDirtyNodes();
+        } catch (Exception e){
+            __fail(e);
+        }
+        try {
+            gateway.discardFiles(discardedINodes.stream().mapToLong(Long::longValue).toArray());
+        } catch (Exception e){
+            __fail(e);
+        }
+        executor.shutdown();
+        finished.countDown();
+    }
+
+    private void __fail(Exception e){
+        if (error == null)
+            error = e;
+        cancelled = true;
+    }
+
+    /**
+     * Stops the copy. Files that are being copied are finished but not added to the directory tree.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * Waits for the copy to finish.
+     * @return true if every file was copied, false if the copy was cancelled.
+     * @throws Exception If a file could not be copied.
+     */
+    public boolean await() throws Exception{
+        finished.await();
+        if (error != null)
+            throw new Exception("Unable to Copy " + root.getPath() + ": " + error.getMessage());
+        return !cancelled;
+    }
+
+    public boolean isDone(){
+        return finished.getCount() == 0;
+    }
+
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * @return The root of the copy
+     */
+    public Node getRoot(){
+        return root;
+    }
+
+    public int getFilesTotal(){
+        return sourceFiles.size();
+    }
+
+    /**
+     * @return Number of files that have been added to the directory tree
+     */
+    public synchronized int getFilesCopied(){
+        return filesCopied;
+    }
+
+    public long getBytesTotal(){
+        return bytesTotal;
+    }
+
+    /**
+     * @return Number of bytes of file contents that have been written, including files not yet added to the directory
+     * tree.
+     */
+    public long getBytesCopied(){
+        return bytesCopied.get();
+    }
+}
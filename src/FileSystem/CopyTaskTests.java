@@ -0,0 +1,171 @@
+package FileSystem;
+
+import DiskUtility.CustomInputStream;
+import DiskUtility.Store;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+public class CopyTaskTests {
+    private static final int FILES = 150;
+
+    @Test
+    @DisplayName("copyTree -> Every file is copied with its thumbnail and the counters add up")
+    public void copyTree() throws Exception{
+        Path base = Files.createTempDirectory("fs-copy");
+        try {
+            FileSystem fs = __createFileSystem(base);
+            long bytesTotal = 0;
+            for (int i = 0; i < FILES; i++)
+                bytesTotal += __getContents(i).length;
+            fs.createDirectory("/", "copy");
+            CopyTask task = fs.copyTree("/src", "/copy", 4);
+            Assertions.assertTrue(task.await());
+            Assertions.assertTrue(task.isDone());
+            Assertions.assertEquals(FILES, task.getFilesTotal());
+            Assertions.assertEquals(FILES, task.getFilesCopied());
+            Assertions.assertEquals(bytesTotal, task.getBytesTotal());
+            Assertions.assertEquals(bytesTotal, task.getBytesCopied());
+            Assertions.assertSame(fs.getNode("/copy/src"), task.getRoot());
+            fs.unmount();
+            FileSystem mounted = FileSystem.mount(new File(base.toFile(), "fs"), "password");
+            for (int i = 0; i < FILES; i++)
+                __assertContents(mounted, "/copy/src" + __getPath(i), i);
+            Assertions.assertEquals(FILES / 3 + 1, mounted.openDirectory("/copy/src").size());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("cancel -> A cancelled copy is a prefix of the source and the files it did not add are freed")
+    public void cancel() throws Exception{
+        Path base = Files.createTempDirectory("fs-copy");
+        try {
+            FileSystem fs = __createFileSystem(base);
+            Path iNodeStore = base.resolve("fs").resolve(Store.INodeStore.fileName);
+            fs.createDirectory("/", "full");
+            Assertions.assertTrue(fs.copyTree("/src", "/full", 4).await());
+            long length = Files.size(iNodeStore);
+            fs.removeNode("/full", true);
+            fs.reclaimAll();
+
+            fs.createDirectory("/", "partial");
+            CopyTask task = fs.copyTree("/src", "/partial", 4);
+            task.cancel();
+            Assertions.assertFalse(task.await());
+            Assertions.assertTrue(task.isCancelled());
+            Assertions.assertTrue(task.getFilesCopied() < FILES);
+            // The files are added in the order of the source subtree, so the copied files are its first files.
+            ArrayList<Node> sourceFiles = new ArrayList<Node>();
+            for (Node node: fs.getGateway().getDirectoryStoreGateway().getSubtree(fs.getNode("/src"))){
+                if (!node.isDirectory())
+                    sourceFiles.add(node);
+            }
+            int filesCopied = 0;
+            for (int i = 0; i < sourceFiles.size(); i++){
+                String path = "/partial" + sourceFiles.get(i).getPath();
+                boolean copied = __exists(fs, path);
+                Assertions.assertEquals(i < task.getFilesCopied(), copied, path);
+                if (copied){
+                    Assertions.assertArrayEquals(__readAll(fs, sourceFiles.get(i).getPath()), __readAll(fs, path));
+                    filesCopied++;
+                }
+            }
+            Assertions.assertEquals(task.getFilesCopied(), filesCopied);
+
+            // Once the copied files are removed as well, nothing written by the cancelled copy remains, so a full copy
+            // takes the same INodes as the first one.
+            fs.removeNode("/partial", true);
+            fs.reclaimAll();
+            fs.createDirectory("/", "full");
+            Assertions.assertTrue(fs.copyTree("/src", "/full", 4).await());
+            Assertions.assertEquals(length, Files.size(iNodeStore));
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("copyTree -> A directory cannot be copied into itself or into one of its descendants")
+    public void copyTreeIntoItself() throws Exception{
+        Path base = Files.createTempDirectory("fs-copy");
+        try {
+            FileSystem fs = __createFileSystem(base);
+            Assertions.assertThrows(Exception.class, () -> fs.copyTree("/src", "/src", 2));
+            Assertions.assertThrows(Exception.class, () -> fs.copyTree("/src", "/src/a", 2));
+            Assertions.assertThrows(Exception.class, () -> fs.copyTree("/src", "/src/a/b", 2));
+            Assertions.assertThrows(Exception.class, () -> fs.copyTree("/src/a/f1", "/", 2));
+            Assertions.assertEquals(FILES / 3 + 1, fs.openDirectory("/src").size());
+            Assertions.assertEquals(FILES / 3 + 1, fs.openDirectory("/src/a").size());
+            Assertions.assertEquals(FILES / 3, fs.openDirectory("/src/a/b").size());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    /**
+     * Creates a FileSystem with a tree at /src of three levels. Every seventh file has a thumbnail.
+     */
+    private static FileSystem __createFileSystem(Path base) throws Exception{
+        FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+        for (int i = 0; i < FILES; i++){
+            byte[] contents = __getContents(i);
+            String path = __getPath(i);
+            String parentPath = "/src" + path.substring(0, path.lastIndexOf('/'));
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            if (i % 7 != 0){
+                fs.addFile(new InputFile(name, parentPath, contents.length, i, i, new ByteArrayInputStream(contents)));
+            } else {
+                byte[] thumbnail = __getContents(i + 1000);
+                fs.addFile(new InputFile(name, parentPath, contents.length, i, i, new ByteArrayInputStream(contents),
+                        new ByteArrayInputStream(thumbnail), thumbnail.length));
+            }
+        }
+        return fs;
+    }
+
+    /**
+     * @return The path of a file relative to /src
+     */
+    private static String __getPath(int seed){
+        String[] directories = {"", "/a", "/a/b"};
+        return directories[seed % 3] + "/f" + seed;
+    }
+
+    private static byte[] __getContents(int seed){
+        // Larger than the inline threshold, so that every file has an INode in the inode-store.
+        return TestUtilities.getContents(5000 + (seed * 1031) % 30000, seed);
+    }
+
+    private static boolean __exists(FileSystem fs, String path){
+        try {
+            fs.getNode(path);
+            return true;
+        } catch (Exception e){
+            return false;
+        }
+    }
+
+    private static byte[] __readAll(FileSystem fs, String path) throws Exception{
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static void __assertContents(FileSystem fs, String path, int seed) throws Exception{
+        Assertions.assertArrayEquals(__getContents(seed), __readAll(fs, path), path);
+        if (seed % 7 == 0){
+            try (CustomInputStream inputStream = fs.openThumbnail(path)){
+                Assertions.assertArrayEquals(__getContents(seed + 1000), inputStream.readAllBytes(), path);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package FileSystem;
+
+/**
+ * This class pairs a Node within a directory with its INode. It is returned by the FileSystem when a directory is
+ * listed along with the details (size, timestamps) of its children.
+ */
+public class DirectoryEntry {
+    public final Node node;
+    /**
+     * The INode of the node. Set to null in case the node is a directory as directories do not have INodes.
+     */
+    public final INode iNode;
+
+    public DirectoryEntry(Node node, INode iNode){
+        this.node = node;
+        this.iNode = iNode;
+    }
+}
@@ -0,0 +1,331 @@
+package FileSystem;
+
+import Constants.DATA_STORE_BLOCK_FRAME;
+import DiskUtility.Gateway;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class exports a file or a directory tree of a FileSystem to the host. It is created by FileSystem.exportTree.
+ * The INodes and extents of every file are resolved before the export starts, and the directories are created on the
+ * host. The block segments of all the files are then sorted by their address within the data-store and divided into
+ * batches of blocks that are close together. A fixed number of workers take the batches in order. Each batch is read
+ * with a single read and its blocks are decrypted by the worker, so the data-store is read almost sequentially while
+ * the blocks are decrypted in parallel. A block that holds several small files is only decrypted once.
+ * The segments are written to the host files through FileChannels at their position within the file, so the bytes of a
+ * file may be written in any order. A host file is opened when its first segment is written and closed once all of its
+ * bytes have been written.
+ * Inline files are written to the host before the workers start, as their contents are read along with their INodes.
+ * The holes of sparse files are not written. A host file is extended to its full size when it is closed, which leaves
+ * the holes as holes of the host file where the host filesystem supports them.
+ * Other threads may use the FileSystem while the export is running. The export fails if its files are removed.
+ */
+public class ExportTask {
+    /**
+     * Maximum number of blocks spanned by a batch, for blocks of the default size. The limit is scaled down for larger
+     * blocks so that a batch reads about as many bytes.
+     */
+    public static final int MAX_BATCH_SPAN = 64;
+    /**
+     * Maximum number of unrequested blocks between two blocks of a batch, for blocks of the default size. Reading a few
+     * blocks that are not needed is cheaper than a separate read. Scaled like MAX_BATCH_SPAN.
+     */
+    public static final int MAX_BATCH_GAP = 8;
+    private final Gateway gateway;
+    private final ArrayList<HostFile> hostFiles = new ArrayList<HostFile>();
+    private final ArrayList<Batch> batches = new ArrayList<Batch>();
+    private final AtomicInteger nextBatch = new AtomicInteger();
+    private final AtomicInteger filesExported = new AtomicInteger();
+    private final AtomicLong bytesExported = new AtomicLong();
+    private final AtomicInteger runningWorkers;
+    private final long bytesTotal;
+    private final long startTime = System.nanoTime();
+    private volatile long finishTime;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final ExecutorService executor;
+    private volatile boolean cancelled;
+    private volatile Exception error;
+
+    private static class HostFile {
+        final Path path;
+        final INode iNode;
+        final AtomicLong remainingBytes;
+        FileChannel channel;
+        boolean closed;
+        HostFile(Path path, INode iNode){
+            this.path = path;
+            this.iNode = iNode;
+            this.remainingBytes = new AtomicLong(iNode.getiNodeSize());
+        }
+    }
+
+    private static class Segment {
+        final HostFile file;
+        final Gateway.BlockSegment blockSegment;
+        Segment(HostFile file, Gateway.BlockSegment blockSegment){
+            this.file = file;
+            this.blockSegment = blockSegment;
+        }
+    }
+
+    /**
+     * Blocks that are read together, along with the segments stored within them.
+     */
+    private static class Batch {
+        final ArrayList<Long> blockIndices = new ArrayList<Long>();
+        final ArrayList<Segment> segments = new ArrayList<Segment>();
+    }
+
+    /**
+     * Creates the directories of the export and starts the workers.
+     * @param gateway The Gateway of the FileSystem
+     * @param node The file or directory to be exported
+     * @param hostDir The directory of the host the export is placed in
+     * @param threads Number of worker threads
+     */
+    ExportTask(Gateway gateway, Node node, Path hostDir, int threads) throws Exception{
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        if (!Files.isDirectory(hostDir))
+            throw new Exception("Host directory does not exist: " + hostDir);
+        this.gateway = gateway;
+        List<Node> subtree = node.isDirectory() ? gateway.getDirectoryStoreGateway().getSubtree(node) : List.of(node);
+        IdentityHashMap<Node, Path> hostPaths = new IdentityHashMap<Node, Path>();
+        ArrayList<Node> files = new ArrayList<Node>();
+        // The subtree is in breadth first order, so the path of a parent is always known before its children are reached.
+        for (Node subtreeNode: subtree){
+            Path hostPath;
+            if (subtreeNode == node)
+                hostPath = node.getParentNode() == null ? hostDir : hostDir.resolve(node.getName());
+            else
+                hostPath = hostPaths.get(subtreeNode.getParentNode()).resolve(subtreeNode.getName());
+            hostPaths.put(subtreeNode, hostPath);
+            if (subtreeNode.isDirectory())
+                Files.createDirectories(hostPath);
+            else
+                files.add(subtreeNode);
+        }
+        INode[] iNodes = gateway.getINodes(files);
+        ArrayList<Segment> segments = new ArrayList<Segment>();
+        long total = 0;
+        for (int i = 0; i < files.size(); i++){
+            HostFile file = new HostFile(hostPaths.get(files.get(i)), iNodes[i]);
+            hostFiles.add(file);
+            total += iNodes[i].getiNodeSize();
+            if (iNodes[i].isInline()){
+                Files.write(file.path, iNodes[i].getInlineData());
+                file.remainingBytes.set(0);
+                file.closed = true;
+                Files.setLastModifiedTime(file.path, FileTime.fromMillis(iNodes[i].getLastModifiedTime()));
+                bytesExported.addAndGet(iNodes[i].getiNodeSize());
+                filesExported.incrementAndGet();
+                continue;
+            }
+            long segmentBytes = 0;
+            for (Gateway.BlockSegment blockSegment: gateway.getBlockSegments(iNodes[i])){
+                segments.add(new Segment(file, blockSegment));
+                segmentBytes += blockSegment.length;
+            }
+            long holeBytes = iNodes[i].getiNodeSize() - segmentBytes;
+            if (holeBytes > 0){
+                bytesExported.addAndGet(holeBytes);
+                if (file.remainingBytes.addAndGet(-holeBytes) == 0){
+                    __openFile(file);
+                    __closeFile(file);
+                }
+            }
+        }
+        this.bytesTotal = total;
+        segments.sort(Comparator.comparingLong((Segment segment) -> segment.blockSegment.blockIndex));
+        __createBatches(segments);
+        this.runningWorkers = new AtomicInteger(threads);
+        AtomicInteger workerCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "export-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++)
+            executor.execute(this::__export);
+        executor.shutdown();
+    }
+
+    /**
+     * Divides the sorted segments into batches of blocks that are close together.
+     * @param segments The segments, sorted by block index
+     */
+    private void __createBatches(List<Segment> segments){
+        int scale = gateway.getBlockSize() / DATA_STORE_BLOCK_FRAME.DEFAULT_BLOCK_SIZE;
+        int maxSpan = Math.max(MAX_BATCH_SPAN / scale, 1);
+        int maxGap = MAX_BATCH_GAP / scale;
+        Batch batch = null;
+        long firstBlock = 0;
+        long lastBlock = 0;
+        for (Segment segment: segments){
+            long blockIndex = segment.blockSegment.blockIndex;
+            if (batch == null || blockIndex - lastBlock > maxGap + 1 || blockIndex - firstBlock >= maxSpan){
+                batch = new Batch();
+                batches.add(batch);
+                firstBlock = blockIndex;
+                batch.blockIndices.add(blockIndex);
+            } else if (blockIndex != lastBlock){
+                batch.blockIndices.add(blockIndex);
+            }
+            lastBlock = blockIndex;
+            batch.segments.add(segment);
+        }
+    }
+
+    /**
+     * Reads, decrypts and writes batches in the order of the data-store until none are left.
+     */
+    private void __export(){
+        try {
+            int index;
+            while (!cancelled && (index = nextBatch.getAndIncrement()) < batches.size())
+                __exportBatch(batches.get(index));
+        } catch (Exception e){
+            __fail(e);
+        }
+        if (runningWorkers.decrementAndGet() == 0)
+            __finish();
+    }
+
+    private void __exportBatch(Batch batch) throws Exception{
+        long[] blockIndices = batch.blockIndices.stream().mapToLong(Long::longValue).toArray();
+        byte[][] dataBlocks = gateway.readDataBlocks(blockIndices);
+        int block = 0;
+        for (Segment segment: batch.segments){
+            Gateway.BlockSegment blockSegment = segment.blockSegment;
+            while (blockIndices[block] != blockSegment.blockIndex)
+                block++;
+            ByteBuffer buffer = ByteBuffer.wrap(dataBlocks[block], blockSegment.blockOffset, blockSegment.length);
+            FileChannel channel = __openFile(segment.file);
+            long position = blockSegment.fileOffset;
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+            bytesExported.addAndGet(blockSegment.length);
+            if (segment.file.remainingBytes.addAndGet(-blockSegment.length) == 0)
+                __closeFile(segment.file);
+        }
+    }
+
+    private FileChannel __openFile(HostFile file) throws IOException{
+        synchronized (file){
+            if (file.channel == null)
+                file.channel = FileChannel.open(file.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            return file.channel;
+        }
+    }
+
+    /**
+     * Closes a host file whose bytes have all been written and sets its modification time.
+     */
+    private void __closeFile(HostFile file) throws IOException{
+        synchronized (file){
+            long size = file.iNode.getiNodeSize();
+            if (file.channel.size() < size)
+                file.channel.write(ByteBuffer.allocate(1), size - 1);
+            file.channel.close();
+            file.closed = true;
+        }
+        Files.setLastModifiedTime(file.path, FileTime.fromMillis(file.iNode.getLastModifiedTime()));
+        filesExported.incrementAndGet();
+    }
+
+    /**
+     * Closes the host files that are still open after a failed or cancelled export.
+     */
+    private void __finish(){
+        for (HostFile file: hostFiles){
+            synchronized (file){
+                if (file.channel != null && !file.closed){
+                    try {
+                        file.channel.close();
+                    } catch (IOException e){
+                        __fail(e);
+                    }
+                }
+            }
+        }
+        finishTime = System.nanoTime();
+        finished.countDown();
+    }
+
+    private void __fail(Exception e){
+        if (error == null)
+            error = e;
+        cancelled = true;
+    }
+
+    /**
+     * Stops the export. Batches that are being written are finished. Host files that have not been written entirely
+     * are left as they are.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * Waits for the export to finish.
+     * @return true if every file was exported, false if the export was cancelled.
+     * @throws Exception If a file could not be exported.
+     */
+    public boolean await() throws Exception{
+        finished.await();
+        if (error != null)
+            throw new Exception("Unable to Export Files: " + error.getMessage());
+        return !cancelled;
+    }
+
+    public boolean isDone(){
+        return finished.getCount() == 0;
+    }
+
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    public int getFilesTotal(){
+        return hostFiles.size();
+    }
+
+    /**
+     * @return Number of host files that have been written entirely
+     */
+    public int getFilesExported(){
+        return filesExported.get();
+    }
+
+    public long getBytesTotal(){
+        return bytesTotal;
+    }
+
+    public long getBytesExported(){
+        return bytesExported.get();
+    }
+
+    /**
+     * @return Number of megabytes (2^20 bytes) written per second since the export started
+     */
+    public double getMegabytesPerSecond(){
+        long elapsed = (isDone() ? finishTime : System.nanoTime()) - startTime;
+        return getBytesExported() / (1024.0 * 1024.0) / (Math.max(elapsed, 1) / 1e9);
+    }
+}
@@ -0,0 +1,108 @@
+package FileSystem;
+
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ExportTaskTests {
+    private static final int FILES = 24;
+
+    @Test
+    @DisplayName("exportTree -> Every file of the subtree is written to the host, including fragmented files")
+    public void exportTree() throws Exception{
+        Path base = Files.createTempDirectory("fs-export");
+        try {
+            FileSystem fs = __createFileSystem(base);
+            Path host = Files.createDirectories(base.resolve("host"));
+            ExportTask task = fs.exportTree("/docs", host, 3);
+            Assertions.assertTrue(task.await());
+            Assertions.assertEquals(FILES, task.getFilesTotal());
+            Assertions.assertEquals(FILES, task.getFilesExported());
+            Assertions.assertEquals(task.getBytesTotal(), task.getBytesExported());
+            for (int i = 0; i < FILES; i++){
+                Path path = host.resolve("docs").resolve(String.valueOf(i % 3)).resolve("f" + i);
+                Assertions.assertArrayEquals(__getContents(i), Files.readAllBytes(path), path.toString());
+                Assertions.assertEquals(i, Files.getLastModifiedTime(path).toMillis());
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("exportTree -> A single file and the root directory are exported")
+    public void exportFileAndRoot() throws Exception{
+        Path base = Files.createTempDirectory("fs-export");
+        try {
+            FileSystem fs = __createFileSystem(base);
+            Path host = Files.createDirectories(base.resolve("host"));
+            Assertions.assertTrue(fs.exportTree("/docs/1/f7", host, 2).await());
+            Assertions.assertArrayEquals(__getContents(7), Files.readAllBytes(host.resolve("f7")));
+            Path rootHost = Files.createDirectories(base.resolve("root"));
+            Assertions.assertTrue(fs.exportTree("/", rootHost, 2).await());
+            Assertions.assertArrayEquals(__getContents(5), Files.readAllBytes(rootHost.resolve("docs/2/f5")));
+            Assertions.assertTrue(Files.isDirectory(rootHost.resolve("empty")));
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("exportTree -> Sparse files are exported with their holes as zeros")
+    public void exportSparse() throws Exception{
+        Path base = Files.createTempDirectory("fs-export");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            byte[] sparse = new byte[100000];
+            System.arraycopy(__getContents(5), 0, sparse, 40000, 13556);
+            byte[] zeros = new byte[50000];
+            fs.addFile(new InputFile("sparse", "/", sparse.length, 0, 0, new ByteArrayInputStream(sparse)));
+            fs.addFile(new InputFile("zeros", "/", zeros.length, 0, 0, new ByteArrayInputStream(zeros)));
+            Path host = Files.createDirectories(base.resolve("host"));
+            ExportTask task = fs.exportTree("/", host, 2);
+            Assertions.assertTrue(task.await());
+            Assertions.assertEquals(2, task.getFilesExported());
+            Assertions.assertEquals(task.getBytesTotal(), task.getBytesExported());
+            Assertions.assertArrayEquals(sparse, Files.readAllBytes(host.resolve("sparse")));
+            Assertions.assertArrayEquals(zeros, Files.readAllBytes(host.resolve("zeros")));
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    /**
+     * Creates a FileSystem whose files under /docs are interleaved with files that have been removed, so that the
+     * later files reuse the freed space.
+     */
+    private static FileSystem __createFileSystem(Path base) throws Exception{
+        FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+        fs.createDirectory("/", "empty");
+        fs.createDirectory("/", "tmp");
+        for (int i = 0; i < FILES; i++){
+            byte[] contents = __getContents(i + 100);
+            fs.addFile(new InputFile("t" + i, "/tmp", contents.length, i, i, new ByteArrayInputStream(contents)));
+        }
+        for (int i = 0; i < FILES; i += 2)
+            fs.removeNode("/tmp/t" + i);
+        fs.reclaimAll();
+        for (int i = 0; i < FILES; i++){
+            byte[] contents = __getContents(i);
+            fs.addFile(new InputFile("f" + i, "/docs/" + (i % 3), contents.length, i, i,
+                    new ByteArrayInputStream(contents)));
+        }
+        return fs;
+    }
+
+    private static byte[] __getContents(int seed){
+        // Includes files within a single block and files over several blocks.
+        byte[] contents = new byte[(seed * 2711) % 15000 + 1];
+        for (int i = 0; i < contents.length; i++)
+            contents[i] = (byte)(seed * 31 + i);
+        return contents;
+    }
+}
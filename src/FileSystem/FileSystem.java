@@ -1,22 +1,52 @@
 package FileSystem;
 
+import Constants.DATA_STORE_BLOCK_FRAME;
 import Constants.FLAGS;
 import DiskUtility.Crypto;
+import DiskUtility.CustomByteChannel;
 import DiskUtility.CustomInputStream;
+import DiskUtility.CustomOutputStream;
 import DiskUtility.Gateway;
+import DiskUtility.TreeLoadStatistics;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * This class encompasses the entire virtual filesystem.
+ * A FileSystem can be used by several threads at once. The contents of files are written and read in parallel. Changes
+ * to a directory take the write lock of the directory (Node.getLock), and changes that involve several directories take
+ * their write locks in the order of Node.getLockOrder. The dirty nodes are written by one thread at a time, in the
+ * order they were changed.
  */
 public class FileSystem {
+    /**
+     * Number of times a checkpoint is attempted while other threads keep adding nodes that have not been written yet.
+     */
+    private static final int CHECKPOINT_ATTEMPTS = 8;
     private NodeTree dir;
     private Gateway gateway;
     private byte flags;
+    /**
+     * Number of changes to the directory tree between automatic checkpoints. 0 disables automatic checkpoints.
+     */
+    private volatile int checkpointInterval;
+    private int operationsSinceCheckpoint;
+    /**
+     * Serializes the writes of the dirty nodes so that a parent is always written before its new children.
+     */
+    private final Object flushLock = new Object();
+    /**
+     * Serializes the moves of directories, so that the ancestors of a target are not moved while they are checked.
+     * Otherwise two moves could each place a directory within the other.
+     */
+    private final Object moveLock = new Object();
     /**
      * The constructor for the FileSystem in private. FileSystem can only be created by using the appropriate methods.
      */
@@ -30,9 +60,24 @@ public class FileSystem {
      * @return A FileSystem instance
      */
     public static FileSystem createFileSystem(File baseFile, String fileSystemName, String password) throws Exception {
+        return createFileSystem(baseFile, fileSystemName, password, DATA_STORE_BLOCK_FRAME.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new FileSystem whose data-store has blocks of the given size. Larger blocks hold more data bytes each, so
+     * large files take fewer blocks and fewer encryptions to write and read. Small files become slower, as a block that
+     * several files share is read and rewritten whole. The block size is recorded in the SuperBlock and cannot be
+     * changed.
+     * @param blockSize Size of a block of the data-store, a power of two between DATA_STORE_BLOCK_FRAME.MIN_BLOCK_SIZE
+     *                  and DATA_STORE_BLOCK_FRAME.MAX_BLOCK_SIZE
+     * @return A FileSystem instance
+     * @throws IllegalArgumentException If the block size is not valid
+     */
+    public static FileSystem createFileSystem(File baseFile, String fileSystemName, String password, int blockSize) throws Exception {
         FileSystem fs = new FileSystem();
         Crypto.init();
         SuperBlock superBlock = new SuperBlock(fileSystemName);
+        superBlock.setBlockSize(blockSize);
         if (!baseFile.isDirectory()){
             throw new Exception("FileSystem Creation Failed: Provided baseFile does not point to a directory");
         }
@@ -53,9 +98,21 @@ public class FileSystem {
      * @return true if and only if the init method was successful.
      */
     public static FileSystem mount(File baseFile, String password) throws Exception{
+        return mount(baseFile, password, false);
+    }
+
+    /**
+     * Mounts the filesystem. If eager is set, the whole directory-store is read and decrypted in parallel so that every
+     * Node is in memory once the method returns. The throughput of the load is available from getTreeLoadStatistics.
+     * @param eager true to read every Node of the FileSystem while mounting.
+     * @return A FileSystem instance
+     */
+    public static FileSystem mount(File baseFile, String password, boolean eager) throws Exception{
         Crypto.init();
-        FileSystem fs =  Gateway.mountFileSystem(new FileSystem(), baseFile, password);
-        fs.gateway.readChildren(fs.dir.getRoot());
+        FileSystem fs =  Gateway.mountFileSystem(new FileSystem(), baseFile, password, eager);
+        // The children of the root are already in memory if the NodeTree was read from a checkpoint.
+        if (fs.dir.getRoot().childrenNotRead())
+            fs.gateway.readChildren(fs.dir.getRoot());
         return fs;
     }
 
@@ -75,7 +132,7 @@ public class FileSystem {
     }
 
     public Node createDirectory(Node parentNode, String name) throws Exception{
-        Node node = dir.addNode(parentNode, name);
+        Node node = __addDirectoryNode(parentNode, name);
         __writeDirtyNodes();
         return node;
     }
@@ -115,11 +172,14 @@ public class FileSystem {
         String parentPath = file.parentPath;
         if (file.fileInputStream == null)
             throw new Exception("File Does Not Exist");
+        // The contents are written before any lock is taken so that files are written in parallel.
         INode iNode = gateway.addFile(file);
-        Node parentNode = dir.getOrCreatePath(parentPath, gateway.getDirectoryStoreGateway());
-        Node node = dir.addNode(parentNode, file.name, iNode.getiNodeAddress());
-        if (iNode.getThumbnailStoreAddress() != -1){
-            node.setFlag(Node.HAS_THUMBNAIL_FLAG_MASK, true);
+        try {
+            Node parentNode = dir.getOrCreatePath(parentPath, gateway.getDirectoryStoreGateway());
+            __addFileNode(parentNode, file.name, iNode);
+        } catch (Exception e){
+            gateway.discardFiles(new long[]{iNode.getiNodeAddress()});
+            throw e;
         }
         __writeDirtyNodes();
     }
@@ -128,13 +188,97 @@ public class FileSystem {
         if (file.fileInputStream == null)
             throw new Exception("File Does Not Exist");
         INode iNode = gateway.addFile(file);
-        Node node = dir.addNode(parentNode, file.name, iNode.getiNodeAddress());
-        if (iNode.getThumbnailStoreAddress() != -1){
-            node.setFlag(Node.HAS_THUMBNAIL_FLAG_MASK, true);
+        try {
+            __addFileNode(parentNode, file.name, iNode);
+        } catch (Exception e){
+            gateway.discardFiles(new long[]{iNode.getiNodeAddress()});
+            throw e;
         }
         __writeDirtyNodes();
     }
 
+    /**
+     * This method creates a file whose size is not known in advance. The contents are written to the returned stream,
+     * and blocks are allocated as they arrive. The file is added to the directory tree when the stream is closed, and
+     * any directory of the parent path that does not exist is created then. If the stream is aborted, or the file
+     * cannot be added, the blocks that have been written are freed.
+     * @param path The path of the new file
+     * @return An OutputStream for the contents of the file
+     */
+    public CustomOutputStream createFile(String path) throws Exception{
+        int separator = path.lastIndexOf('/');
+        if (separator == -1 || separator == path.length() - 1)
+            throw new Exception("Invalid Path: " + path);
+        String parentPath = separator == 0 ? "/" : path.substring(0, separator);
+        String name = path.substring(separator + 1);
+        // The name is checked before any block is written. It is checked again when the file is added.
+        boolean exists;
+        try {
+            dir.getNodeFromPath(path, gateway.getDirectoryStoreGateway());
+            exists = true;
+        } catch (IllegalArgumentException e){
+            exists = false;
+        }
+        if (exists)
+            throw new Exception("Unable to Create File: " + path + " already exists");
+        return new CustomOutputStream(gateway, name, parentPath, iNode -> {
+            __addFileNode(__getOrCreateDirectory(parentPath), name, iNode);
+            __writeDirtyNodes();
+        });
+    }
+
+    /**
+     * This method replaces a range of the contents of a file. Only the blocks of the range are written, and the change
+     * is committed with a single write of the INode. The file grows if the range extends beyond its end.
+     * @param path The path of the file
+     * @param position Index of the first byte to be replaced. Must not be after the end of the file.
+     * @param bytes The new bytes
+     */
+    public void writeFile(String path, long position, byte[] bytes) throws Exception{
+        Node node = dir.getNodeFromPath(path, gateway.getDirectoryStoreGateway());
+        writeFile(node, position, bytes);
+    }
+
+    public void writeFile(Node node, long position, byte[] bytes) throws Exception{
+        __changeFile(node, iNodeAddress -> gateway.writeFile(iNodeAddress, position, bytes, 0, bytes.length));
+    }
+
+    /**
+     * This method appends bytes to the end of a file. Only the new bytes are written, and the change is committed with
+     * a single write of the INode.
+     * @param path The path of the file
+     * @param bytes The new bytes
+     */
+    public void appendFile(String path, byte[] bytes) throws Exception{
+        Node node = dir.getNodeFromPath(path, gateway.getDirectoryStoreGateway());
+        appendFile(node, bytes);
+    }
+
+    public void appendFile(Node node, byte[] bytes) throws Exception{
+        __changeFile(node, iNodeAddress -> gateway.appendFile(iNodeAddress, bytes, 0, bytes.length));
+    }
+
+    private interface FileChange {
+        void apply(long iNodeAddress) throws Exception;
+    }
+
+    /**
+     * Changes the contents of a file while holding the read lock of its parent, so that the file is not removed in the
+     * meantime.
+     */
+    private static void __changeFile(Node node, FileChange change) throws Exception{
+        if (node.isDirectory())
+            throw new Exception("Node is a directory");
+        Node parentNode = __readLockParent(node);
+        try {
+            if (node.isRemoved())
+                throw new Exception("Unable to Write File: File has been removed.");
+            change.apply(node.getiNodeAddress());
+        } finally {
+            parentNode.getLock().readLock().unlock();
+        }
+    }
+
     /**
      * This method takes a path and deletes the directory the path is pointing to.
      * @param path The path of the directory
@@ -150,26 +294,78 @@ public class FileSystem {
 
 
     public void removeNode(Node node, boolean recursive) throws Exception{
-        LinkedList<Node> childNodes;
-        if (!node.isDirectory()){
-            // Node is a file.
-            gateway.removeNode(node);
-        } else {
-            childNodes = openDirectory(node);
-            if (childNodes.isEmpty()){
-                gateway.removeDirectory(node);
-            } else {
-                if (!recursive){
-                    throw new Exception("Cannot Delete Non Empty Directory Without Recursive Call.");
-                } else {
-                    LinkedList<Node> childNodesCopy = new LinkedList<Node>(childNodes);
-                    for (Node childNode: childNodesCopy){
-                        removeNode(childNode, true);
-                    }
-                    removeNode(node, true);
-                }
+        int count = 0;
+        boolean empty = true;
+        List<Node> lockedNodes = __lockWithParent(node, node.isDirectory() ? node : null);
+        try {
+            if (node.isRemoved())
+                throw new Exception("Unable to Remove Node: Node does not exist.");
+            if (node.isDirectory())
+                empty = openDirectory(node).isEmpty();
+            if (empty){
+                // The node may not have been written yet.
+                count = __flushDirtyNodes();
+                dir.invalidatePath(node);
+                if (node.isDirectory())
+                    gateway.removeDirectory(node);
+                else
+                    gateway.removeNode(node);
+                node.setRemoved();
+                count++;
+            } else if (!recursive){
+                throw new Exception("Cannot Delete Non Empty Directory Without Recursive Call.");
             }
+        } finally {
+            __unlockAll(lockedNodes);
         }
+        if (!empty){
+            // The whole subtree is removed at once so that the frees can be coalesced.
+            count = __removeTree(node);
+        }
+        __operationCompleted(count);
+    }
+
+    /**
+     * Removes a directory along with everything within it. The parent and every directory within the subtree are
+     * locked so that no node is added to the subtree while it is being removed.
+     * @return The number of nodes removed and written
+     */
+    private int __removeTree(Node node) throws Exception{
+        while (true){
+            Node parentNode = node.getParentNode();
+            if (parentNode == null)
+                throw new Exception("Cannot Remove Root");
+            List<Node> directories = __getSubtreeDirectories(node);
+            directories.add(parentNode);
+            List<Node> lockedNodes = __lockAll(directories);
+            try {
+                if (node.isRemoved() || node.getParentNode() != parentNode)
+                    throw new Exception("Unable to Remove Node: Node does not exist.");
+                List<Node> currentDirectories = __getSubtreeDirectories(node);
+                currentDirectories.add(parentNode);
+                // A directory may have been created within the subtree before it was locked.
+                if (!__sameNodes(lockedNodes, __sortByLockOrder(currentDirectories)))
+                    continue;
+                int count = __flushDirtyNodes();
+                dir.invalidatePath(node);
+                List<Node> subtree = gateway.getDirectoryStoreGateway().getSubtree(node);
+                count += gateway.removeTree(node);
+                for (Node removedNode: subtree)
+                    removedNode.setRemoved();
+                return count;
+            } finally {
+                __unlockAll(lockedNodes);
+            }
+        }
+    }
+
+    private ArrayList<Node> __getSubtreeDirectories(Node node) throws Exception{
+        ArrayList<Node> directories = new ArrayList<Node>();
+        for (Node subtreeNode: gateway.getDirectoryStoreGateway().getSubtree(node)){
+            if (subtreeNode.isDirectory())
+                directories.add(subtreeNode);
+        }
+        return directories;
     }
 
     /**
@@ -199,7 +395,40 @@ public class FileSystem {
     public CustomInputStream openFile(Node node) throws Exception{
         if (node.isDirectory())
             throw new Exception("Node is a directory");
-        return new CustomInputStream(gateway, gateway.getINode(node));
+        // The parent is read locked so that the file is not removed while its INode is read.
+        Node parentNode = __readLockParent(node);
+        try {
+            if (node.isRemoved())
+                throw new Exception("Unable to Open File: File has been removed.");
+            return new CustomInputStream(gateway, gateway.getINode(node));
+        } finally {
+            parentNode.getLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * This method provides a read-only channel for random access to the contents of a file. Positional reads of the
+     * channel may be used by several threads at once.
+     * @param path The path of the required file
+     * @return A SeekableByteChannel for the requested File.
+     */
+    public CustomByteChannel openChannel(String path) throws Exception{
+        Node node = dir.getNodeFromPath(path, gateway.getDirectoryStoreGateway());
+        return openChannel(node);
+    }
+
+    public CustomByteChannel openChannel(Node node) throws Exception{
+        if (node.isDirectory())
+            throw new Exception("Node is a directory");
+        // The parent is read locked so that the file is not removed while its INode is read.
+        Node parentNode = __readLockParent(node);
+        try {
+            if (node.isRemoved())
+                throw new Exception("Unable to Open File: File has been removed.");
+            return new CustomByteChannel(gateway, gateway.getINode(node));
+        } finally {
+            parentNode.getLock().readLock().unlock();
+        }
     }
 
     public CustomInputStream openThumbnail(String path) throws Exception{
@@ -210,12 +439,20 @@ public class FileSystem {
     public CustomInputStream openThumbnail(Node node) throws Exception{
         if (node.isDirectory())
             throw new Exception("Node is a directory");
-        INode iNode = gateway.getINode(node);
-        long thumbnailAddress = iNode.getThumbnailStoreAddress();
-        if (thumbnailAddress == -1){
-            return null;
+        // The parent is read locked so that the file is not removed while its INodes are read.
+        Node parentNode = __readLockParent(node);
+        try {
+            if (node.isRemoved())
+                throw new Exception("Unable to Open Thumbnail: File has been removed.");
+            INode iNode = gateway.getINode(node);
+            long thumbnailAddress = iNode.getThumbnailStoreAddress();
+            if (thumbnailAddress == -1){
+                return null;
+            }
+            return new CustomInputStream(gateway, gateway.getINode(thumbnailAddress), true);
+        } finally {
+            parentNode.getLock().readLock().unlock();
         }
-        return new CustomInputStream(gateway, gateway.getINode(thumbnailAddress), true);
     }
 
     /**
@@ -236,9 +473,76 @@ public class FileSystem {
         }
     }
 
+    /**
+     * This method lists a directory along with the INodes of its children. The INodes are read in a single batched
+     * read instead of one read per child.
+     * @param path The path of the required directory
+     * @return A LinkedList of DirectoryEntry objects. Directories within the directory have their iNode set to null.
+     */
+    public LinkedList<DirectoryEntry> openDirectoryWithINodes(String path) throws Exception{
+        Node node = dir.getNodeFromPath(path, gateway.getDirectoryStoreGateway());
+        return openDirectoryWithINodes(node);
+    }
+
+    public LinkedList<DirectoryEntry> openDirectoryWithINodes(Node node) throws Exception{
+        LinkedList<Node> childNodes = openDirectory(node);
+        INode[] iNodes = gateway.getINodes(childNodes);
+        LinkedList<DirectoryEntry> entries = new LinkedList<DirectoryEntry>();
+        int i = 0;
+        for (Node childNode: childNodes){
+            entries.add(new DirectoryEntry(childNode, iNodes[i++]));
+        }
+        return entries;
+    }
+
+    /**
+     * This method provides an Iterator over the children of a directory along with their INodes. The INodes are read
+     * lazily, batchSize children at a time, so that huge directories can be listed without holding every INode in
+     * memory.
+     * @param node The target directory
+     * @param batchSize Number of INodes read from disk at a time
+     * @return An Iterator of DirectoryEntry objects
+     * @throws RuntimeException From the Iterator, in case a batch of INodes cannot be read.
+     */
+    public Iterator<DirectoryEntry> streamDirectoryWithINodes(Node node, int batchSize) throws Exception{
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        ArrayList<Node> childNodes = new ArrayList<Node>(openDirectory(node));
+        return new Iterator<DirectoryEntry>() {
+            private int position = 0;
+            private INode[] batch = new INode[0];
+            private int batchStart = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < childNodes.size();
+            }
+
+            @Override
+            public DirectoryEntry next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                if (position == batchStart + batch.length){
+                    batchStart = position;
+                    int batchEnd = Math.min(position + batchSize, childNodes.size());
+                    try {
+                        batch = gateway.getINodes(childNodes.subList(position, batchEnd));
+                    } catch (Exception e){
+                        throw new RuntimeException("Unable to read INodes: " + e.getMessage());
+                    }
+                }
+                Node childNode = childNodes.get(position);
+                INode iNode = batch[position - batchStart];
+                position++;
+                return new DirectoryEntry(childNode, iNode);
+            }
+        };
+    }
+
     public Node getNode(String path) throws Exception{
         Node node =  dir.getNodeFromPath(path, gateway.getDirectoryStoreGateway());
-        gateway.readChildren(node);
+        if (node.childrenNotRead())
+            gateway.readChildren(node);
         return node;
     }
 
@@ -248,7 +552,8 @@ public class FileSystem {
      * @return Provided Node with all the children read.
      */
     public Node getNode(Node node) throws Exception{
-        gateway.readChildren(node);
+        if (node.childrenNotRead())
+            gateway.readChildren(node);
         return node;
     }
 
@@ -266,12 +571,22 @@ public class FileSystem {
     public boolean renameNode(Node node, String name) throws Exception{
         if (node == dir.getRoot())
             throw new Exception("Cannot Rename Root");
-        Node parentNode = node.parentNode;
-        if (dir.__nodeExists(parentNode, name)){
-            throw new Exception("Node by the name: "+ name +" already exists");
+        dir._validNodeName(name);
+        List<Node> lockedNodes = __lockWithParent(node, null);
+        Node parentNode = node.getParentNode();
+        try {
+            if (node.isRemoved())
+                throw new Exception("Unable to Rename Node: Node does not exist.");
+            if (dir.__nodeExists(parentNode, name)){
+                throw new Exception("Node by the name: "+ name +" already exists");
+            }
+            dir.invalidatePath(node);
+            node.setName(name);
+            dir.invalidatePath(node);
+            dir.markDirty(node);
+        } finally {
+            __unlockAll(lockedNodes);
         }
-        node.setName(name);
-        dir.getDirtyNodes().add(node);
         __writeDirtyNodes();
         return true;
     }
@@ -286,14 +601,36 @@ public class FileSystem {
         if (!targetNode.isDirectory()){
             throw new Exception("TargetNode is not a directory.");
         }
-        if (dir.__nodeExists(targetNode, node.getName())){
-            throw new Exception("Node by the name already exists in the target location");
+        if (node.isDirectory()){
+            synchronized (moveLock){
+                return __moveNode(node, targetNode);
+            }
         }
+        return __moveNode(node, targetNode);
+    }
+
+    private boolean __moveNode(Node node, Node targetNode) throws Exception{
+        List<Node> lockedNodes = __lockWithParent(node, targetNode);
         Node currentParentNode = node.getParentNode();
-        currentParentNode.childNodes.remove(node);
-        targetNode.childNodes.add(node);
-        node.parentNode = targetNode;
-        dir.getDirtyNodes().add(node);
+        try {
+            if (node.isRemoved() || targetNode.isRemoved())
+                throw new Exception("Unable to Move Node: Node does not exist.");
+            for (Node runningNode = targetNode; runningNode != null; runningNode = runningNode.getParentNode()){
+                if (runningNode == node)
+                    throw new Exception("Unable to Move Node: Cannot move a directory into itself.");
+            }
+            if (dir.__nodeExists(targetNode, node.getName())){
+                throw new Exception("Node by the name already exists in the target location");
+            }
+            dir.invalidatePath(node);
+            currentParentNode.removeChild(node);
+            targetNode.addChild(node);
+            node.parentNode = targetNode;
+            dir.invalidatePath(node);
+            dir.markDirty(node);
+        } finally {
+            __unlockAll(lockedNodes);
+        }
         __writeDirtyNodes();
         return true;
     }
@@ -313,11 +650,7 @@ public class FileSystem {
         }
         if (node.isDirectory()){
             // Node is a directory.
-            Node newNode = createDirectory(targetNode, node.getName());
-            LinkedList<Node> childNodes = openDirectory(node);
-            for (Node childNode: childNodes){
-                copyNode(childNode, newNode);
-            }
+            copyTree(node, targetNode, Runtime.getRuntime().availableProcessors()).await();
         } else {
             // Node is a file.
             InputFile file;
@@ -350,6 +683,89 @@ public class FileSystem {
         return true;
     }
 
+    /**
+     * Starts copying a directory along with everything within it. The directories of the copy are created before the
+     * method returns. The files are copied in the background by a fixed number of worker threads and are added to the
+     * copy in the order of the source directory.
+     * @param path The path of the directory to be copied
+     * @param targetPath The path of the directory the copy is placed in
+     * @param threads Number of worker threads
+     * @return The CopyTask, which reports the progress of the copy and allows it to be cancelled.
+     */
+    public CopyTask copyTree(String path, String targetPath, int threads) throws Exception{
+        Node node = dir.getNodeFromPath(path, gateway.getDirectoryStoreGateway());
+        Node targetNode = dir.getNodeFromPath(targetPath, gateway.getDirectoryStoreGateway());
+        return copyTree(node, targetNode, threads);
+    }
+
+    public CopyTask copyTree(Node node, Node targetNode, int threads) throws Exception{
+        if (!targetNode.isDirectory()){
+            throw new Exception("TargetNode is not a directory.");
+        }
+        if (dir.__nodeExists(targetNode, node.getName())){
+            throw new Exception("Node by the name already exists in the target location");
+        }
+        return new CopyTask(this, gateway, node, targetNode, threads);
+    }
+
+    /**
+     * Starts adding a batch of files. The files are read, written and added to the directory tree in the background by
+     * a pipeline of a reader thread and a fixed number of worker threads. The files are added to the directory tree in
+     * the order of the list and the directory-store is written in batches.
+     * @param files The files to be added. The parent directories of the files are created if they do not exist.
+     * @param threads Number of worker threads that write the files
+     * @return The IngestTask, which reports the progress of the ingest and allows it to be cancelled.
+     */
+    public IngestTask addFiles(List<InputFile> files, int threads){
+        return new IngestTask(this, gateway, files, threads);
+    }
+
+    /**
+     * Imports a directory of the host along with everything within it, using a thread per processor.
+     * @see #importTree(Path, String, int)
+     */
+    public ImportTask importTree(Path hostDir, String targetPath) throws Exception{
+        return importTree(hostDir, targetPath, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Starts importing a directory of the host along with everything within it. The host tree is walked and the
+     * directories of the import are created before the method returns. The files are added in the background, along
+     * with thumbnails generated for images. Files that have been imported by an earlier import of the same directory are
+     * skipped, so an interrupted import is resumed by starting it again. Files whose name is taken by a different file
+     * or a directory are skipped and reported as conflicts by the ImportTask. Empty files, and files and directories
+     * whose names are not valid names of Nodes, are skipped and reported as unsupported.
+     * @param hostDir The directory of the host to be imported
+     * @param targetPath The path of the directory the import is placed in. It is created if it does not exist.
+     * @param threads Number of threads that walk the host tree, generate thumbnails and write the files
+     * @return The ImportTask, which reports the progress of the import and allows it to be cancelled.
+     */
+    public ImportTask importTree(Path hostDir, String targetPath, int threads) throws Exception{
+        return new ImportTask(this, gateway, hostDir, targetPath, threads);
+    }
+
+    /**
+     * Exports a file or a directory along with everything within it to the host, using a thread per processor.
+     * @see #exportTree(String, Path, int)
+     */
+    public ExportTask exportTree(String path, Path hostDir) throws Exception{
+        return exportTree(path, hostDir, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Starts exporting a file or a directory along with everything within it to the host. The directories are created
+     * on the host before the method returns. The files are written in the background by a fixed number of worker
+     * threads, which read the data-store in the order of its addresses and decrypt the blocks in parallel.
+     * @param path The path of the file or directory to be exported. The root directory is exported into hostDir itself.
+     * @param hostDir The directory of the host the export is placed in
+     * @param threads Number of worker threads
+     * @return The ExportTask, which reports the progress of the export and allows it to be cancelled.
+     */
+    public ExportTask exportTree(String path, Path hostDir, int threads) throws Exception{
+        Node node = dir.getNodeFromPath(path, gateway.getDirectoryStoreGateway());
+        return new ExportTask(gateway, node, hostDir, threads);
+    }
+
     public INode getINode(Node node) throws Exception{
         if (node.isDirectory())
             return null;
@@ -404,16 +820,266 @@ public class FileSystem {
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // Public Auxiliary Methods
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Writes a checkpoint of the directory tree. The next mount reads the checkpoint instead of the DirectoryStore, as
+     * long as the directory tree is not changed in the meantime.
+     */
+    public void writeCheckpoint() throws Exception{
+        for (int attempt = 1; ; attempt++){
+            __flushDirtyNodes();
+            try {
+                gateway.writeCheckpoint(dir);
+                break;
+            } catch (IllegalStateException e){
+                // Another thread added a node after the dirty nodes were written.
+                if (attempt == CHECKPOINT_ATTEMPTS)
+                    throw e;
+            }
+        }
+        synchronized (this){
+            operationsSinceCheckpoint = 0;
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the directory tree so that the next mount is fast and stops the background reclamation of
+     * removed files. Files that have not been reclaimed yet are reclaimed after the next mount. The FileSystem should
+     * not be used after it has been unmounted.
+     */
+    public void unmount() throws Exception{
+        writeCheckpoint();
+        gateway.close();
+    }
+
+    /**
+     * Frees the space of every removed file before returning, instead of waiting for the background reclaimer.
+     * @return The number of files freed
+     */
+    public int reclaimAll() throws Exception{
+        return gateway.reclaimAll();
+    }
+
+    /**
+     * @return The number of removed files whose space has not been freed yet.
+     */
+    public long getPendingReclaims(){
+        return gateway.getPendingReclaims();
+    }
+
+    /**
+     * Sets the pause of the background reclaimer between two batches of removed files.
+     * @param millis The pause in milliseconds. 0 reclaims without pausing.
+     */
+    public void setReclaimPause(long millis){
+        gateway.getReclaimer().setPauseMillis(millis);
+    }
+
+    /**
+     * Sets the size up to which new files are stored within their INode, so that reading them takes a single read.
+     * The threshold is not stored with the FileSystem.
+     * @param bytes The size in bytes, at most INLINE_INODE_STORE_FRAME.DATA_SIZE. 0 disables inline files.
+     */
+    public void setInlineThreshold(int bytes){
+        gateway.setInlineThreshold(bytes);
+    }
+
+    public int getInlineThreshold(){
+        return gateway.getInlineThreshold();
+    }
+
+    /**
+     * @return Size of a block of the data-store, which was chosen when the FileSystem was created
+     */
+    public int getBlockSize(){
+        return gateway.getBlockSize();
+    }
+
+    /**
+     * Enables or disables direct I/O for the data-store. While it is enabled, the contents of files are read and written
+     * without passing through the page cache of the host, which is left to the directory, inode and extent stores. It
+     * suits large sequential reads and writes of media files. The setting is not stored with the FileSystem.
+     * @param enabled Set to enable direct I/O
+     * @throws Exception If the host filesystem does not support direct I/O. Direct I/O stays disabled in that case.
+     */
+    public void setDirectIO(boolean enabled) throws Exception{
+        gateway.setDirectIO(enabled);
+    }
+
+    public boolean isDirectIO(){
+        return gateway.isDirectIO();
+    }
+
+    /**
+     * Sets the number of changes to the directory tree after which a checkpoint is written automatically.
+     * @param operations The number of changes. 0 disables automatic checkpoints.
+     */
+    public void setCheckpointInterval(int operations){
+        if (operations < 0)
+            throw new IllegalArgumentException("Checkpoint interval cannot be negative");
+        this.checkpointInterval = operations;
+    }
+
+    public int getCheckpointInterval(){
+        return checkpointInterval;
+    }
+
+    /**
+     * @return The throughput of the eager load of the directory tree, or null if the FileSystem was mounted lazily.
+     */
+    public TreeLoadStatistics getTreeLoadStatistics(){
+        return gateway.getDirectoryStoreGateway().getLoadStatistics();
+    }
+
     public void printTree() throws Exception{
         __lsChildren(dir.getRoot(), 0);
     }
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // Private Auxiliary Methods
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    private void __writeDirtyNodes() throws Exception{
-        LinkedList<Node> dirtyNodes = dir.getDirtyNodes();
-        while (!dirtyNodes.isEmpty())
-            gateway.writeNode(dirtyNodes.pop());
+    void __writeDirtyNodes() throws Exception{
+        __operationCompleted(__flushDirtyNodes());
+    }
+
+    /**
+     * Writes the dirty nodes as a single batch so that a frame shared by several of them (e.g. the parent of several
+     * new nodes) is only written once.
+     * @return The number of nodes written
+     */
+    private int __flushDirtyNodes() throws Exception{
+        synchronized (flushLock){
+            int count = gateway.writeNodes(dir.getDirtyNodesCopy());
+            dir.removeDirtyNodes(count);
+            return count;
+        }
+    }
+
+    private void __operationCompleted(int count) throws Exception{
+        if (checkpointInterval == 0 || count == 0)
+            return;
+        synchronized (this){
+            operationsSinceCheckpoint += count;
+            if (operationsSinceCheckpoint < checkpointInterval)
+                return;
+        }
+        writeCheckpoint();
+    }
+
+    /**
+     * Adds a file to a directory while holding the write lock of the directory.
+     * @param parentNode The parent directory
+     * @param name The name of the file
+     * @param iNode The INode of the file
+     * @return The new Node
+     */
+    Node __addFileNode(Node parentNode, String name, INode iNode) throws Exception{
+        byte flags = FLAGS.DEFAULT_NODE_FILE;
+        if (iNode.getThumbnailStoreAddress() != -1)
+            flags = (byte)(flags | Node.HAS_THUMBNAIL_FLAG_MASK);
+        parentNode.getLock().writeLock().lock();
+        try {
+            return dir.addNode(parentNode, name, iNode.getiNodeAddress(), flags);
+        } finally {
+            parentNode.getLock().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the directory at a path, creating any directory of the path that does not exist.
+     * @param path The path of the directory
+     * @return The directory
+     */
+    Node __getOrCreateDirectory(String path) throws Exception{
+        return dir.getOrCreatePath(path, gateway.getDirectoryStoreGateway());
+    }
+
+    /**
+     * Adds a directory to a directory while holding the write lock of the parent.
+     * @param parentNode The parent directory
+     * @param name The name of the directory
+     * @return The new Node
+     */
+    Node __addDirectoryNode(Node parentNode, String name) throws Exception{
+        parentNode.getLock().writeLock().lock();
+        try {
+            return dir.addNode(parentNode, name);
+        } finally {
+            parentNode.getLock().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the read lock of the parent of a node. The parent is locked again if the node is moved by another thread in
+     * the meantime.
+     * @param node The target node
+     * @return The locked parent
+     */
+    private static Node __readLockParent(Node node) throws Exception{
+        while (true){
+            Node parentNode = node.getParentNode();
+            if (parentNode == null)
+                throw new Exception("Operation not permitted on Root");
+            parentNode.getLock().readLock().lock();
+            if (node.getParentNode() == parentNode)
+                return parentNode;
+            parentNode.getLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the write locks of the parent of a node and of another node, in lockOrder. The locks are taken again if the
+     * node is moved by another thread in the meantime, so the parent of the node does not change until they are
+     * released.
+     * @param node The target node
+     * @param otherNode Another node to be locked, or null
+     * @return The locked nodes
+     */
+    private static List<Node> __lockWithParent(Node node, Node otherNode) throws Exception{
+        while (true){
+            Node parentNode = node.getParentNode();
+            if (parentNode == null)
+                throw new Exception("Operation not permitted on Root");
+            List<Node> lockedNodes = __lockAll(otherNode == null ? List.of(parentNode) : List.of(parentNode, otherNode));
+            if (node.getParentNode() == parentNode)
+                return lockedNodes;
+            __unlockAll(lockedNodes);
+        }
+    }
+
+    /**
+     * Takes the write locks of several nodes in lockOrder. Each node is locked once.
+     * @return The locked nodes in the order they were locked
+     */
+    private static List<Node> __lockAll(List<Node> nodes){
+        List<Node> sortedNodes = __sortByLockOrder(nodes);
+        for (Node node: sortedNodes)
+            node.getLock().writeLock().lock();
+        return sortedNodes;
+    }
+
+    private static void __unlockAll(List<Node> lockedNodes){
+        for (int i = lockedNodes.size() - 1; i > -1; i--)
+            lockedNodes.get(i).getLock().writeLock().unlock();
+    }
+
+    private static boolean __sameNodes(List<Node> nodes, List<Node> otherNodes){
+        if (nodes.size() != otherNodes.size())
+            return false;
+        for (int i = 0; i < nodes.size(); i++){
+            if (nodes.get(i) != otherNodes.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static List<Node> __sortByLockOrder(List<Node> nodes){
+        ArrayList<Node> sortedNodes = new ArrayList<Node>(nodes);
+        sortedNodes.sort(Comparator.comparingLong(Node::getLockOrder));
+        ArrayList<Node> distinctNodes = new ArrayList<Node>(sortedNodes.size());
+        for (Node node: sortedNodes){
+            if (distinctNodes.isEmpty() || distinctNodes.getLast() != node)
+                distinctNodes.add(node);
+        }
+        return distinctNodes;
     }
 
     private void __lsChildren(Node node, int level) throws Exception{
@@ -0,0 +1,148 @@
+package FileSystem;
+
+import DiskUtility.CustomInputStream;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FileSystemConcurrencyTests {
+    private static final int THREADS = 8;
+    private static final int FILES_PER_THREAD = 40;
+
+    @Test
+    @DisplayName("Concurrent adds, reads and removes leave a consistent FileSystem")
+    public void concurrentOperations() throws Exception{
+        Path base = Files.createTempDirectory("fs-concurrency");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            fs.createDirectory("/", "shared");
+            // The expected contents of every file that has not been removed, keyed by path.
+            ConcurrentHashMap<String, Integer> expected = new ConcurrentHashMap<String, Integer>();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+                for (int t = 0; t < THREADS; t++){
+                    int thread = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < FILES_PER_THREAD; i++){
+                            int seed = thread * FILES_PER_THREAD + i;
+                            // Every thread creates the same directories so that their creation races as well.
+                            String ownPath = "/own" + (i % 4) + "/t" + thread;
+                            __addFile(fs, "/shared", "f" + seed, seed);
+                            __addFile(fs, ownPath, "f" + seed, seed);
+                            expected.put("/shared/f" + seed, seed);
+                            expected.put(ownPath + "/f" + seed, seed);
+                            __assertContents(fs, "/shared/f" + seed, seed);
+                            if (i % 3 == 0){
+                                fs.removeNode("/shared/f" + seed);
+                                expected.remove("/shared/f" + seed);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future: futures)
+                    future.get();
+            } finally {
+                executor.shutdownNow();
+            }
+            __assertFileSystem(fs, expected);
+            fs.reclaimAll();
+            fs.unmount();
+            __assertFileSystem(FileSystem.mount(new File(base.toFile(), "fs"), "password"), expected);
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("moveNode -> A directory cannot be moved into itself, even by two moves at once")
+    public void moveNodeIntoItself() throws Exception{
+        Path base = Files.createTempDirectory("fs-concurrency");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            fs.createDirectory("/", "p");
+            fs.createDirectory("/p", "q");
+            __addFile(fs, "/p/q", "f", 1);
+            Assertions.assertThrows(Exception.class, () -> fs.moveNode("/p", "/p"));
+            Assertions.assertThrows(Exception.class, () -> fs.moveNode("/p", "/p/q"));
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                for (int i = 0; i < 50; i++){
+                    fs.createDirectory("/", "a" + i);
+                    fs.createDirectory("/", "b" + i);
+                    String a = "/a" + i;
+                    String b = "/b" + i;
+                    Future<?> first = executor.submit(() -> fs.moveNode(a, b));
+                    Future<?> second = executor.submit(() -> fs.moveNode(b, a));
+                    int moved = 0;
+                    for (Future<?> future: new Future<?>[]{first, second}){
+                        try {
+                            future.get();
+                            moved++;
+                        } catch (ExecutionException e){
+                            // The other directory was moved first.
+                        }
+                    }
+                    Assertions.assertEquals(1, moved);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            fs.unmount();
+            FileSystem mounted = FileSystem.mount(new File(base.toFile(), "fs"), "password");
+            Assertions.assertEquals(51, mounted.openDirectory("/").size());
+            Assertions.assertEquals(1, mounted.openDirectory("/p").size());
+            __assertContents(mounted, "/p/q/f", 1);
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static void __addFile(FileSystem fs, String parentPath, String name, int seed) throws Exception{
+        byte[] contents = __getContents(seed);
+        fs.addFile(new InputFile(name, parentPath, contents.length, 0, 0, new ByteArrayInputStream(contents)));
+    }
+
+    private static byte[] __getContents(int seed){
+        byte[] contents = new byte[(seed * 997) % 9000 + 1];
+        for (int i = 0; i < contents.length; i++)
+            contents[i] = (byte)(seed * 31 + i);
+        return contents;
+    }
+
+    private static void __assertContents(FileSystem fs, String path, int seed) throws Exception{
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            Assertions.assertArrayEquals(__getContents(seed), inputStream.readAllBytes(), path);
+        }
+    }
+
+    private static void __assertFileSystem(FileSystem fs, ConcurrentHashMap<String, Integer> expected) throws Exception{
+        for (String path: expected.keySet())
+            __assertContents(fs, path, expected.get(path));
+        HashSet<String> shared = new HashSet<String>();
+        for (Node node: fs.openDirectory("/shared"))
+            shared.add("/shared/" + node.getName());
+        HashSet<String> expectedShared = new HashSet<String>();
+        for (String path: expected.keySet()){
+            if (path.startsWith("/shared/"))
+                expectedShared.add(path);
+        }
+        Assertions.assertEquals(expectedShared, shared);
+        for (int i = 0; i < 4; i++)
+            Assertions.assertEquals(THREADS, fs.openDirectory("/own" + i).size());
+    }
+}
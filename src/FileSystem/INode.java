@@ -26,6 +26,10 @@ import Constants.FLAGS;
  thumbnailStoreAddress       -       8 bytes                                 || Starting Index: 65
  Size: 73 bytes
 
+ INodes whose address has INLINE_INODE_STORE_FRAME.ADDRESS_FLAG set are stored in the inline-inode-store, where the
+ frame of the INode is followed by an area for the contents of the file. If FLAGS.INODE_INLINE is set, the contents are
+ held in that area (inlineData) and the INode has no extents.
+
  */
 public class INode {
     private long iNodeAddress;
@@ -36,6 +40,7 @@ public class INode {
     private long extentStoreAddress;
     private long extentCount;
     private long thumbnailStoreAddress;
+    private byte[] inlineData;
 
     public INode(){
         this.flags = FLAGS.DEFAULT_INODE;
@@ -133,6 +138,32 @@ public class INode {
         this.thumbnailStoreAddress = thumbnailStoreAddress;
     }
 
+    /**
+     * @return true if the contents of the file are held within the INode.
+     */
+    public boolean isInline() {
+        return (flags & FLAGS.INODE_INLINE) != 0;
+    }
+
+    /**
+     * @return The contents of the file if the INode is inline, otherwise null.
+     */
+    public byte[] getInlineData() {
+        return inlineData;
+    }
+
+    /**
+     * Sets the contents of an inline file and sets or clears FLAGS.INODE_INLINE.
+     * @param inlineData The contents of the file, or null if the contents are held in extents.
+     */
+    public void setInlineData(byte[] inlineData) {
+        this.inlineData = inlineData;
+        if (inlineData != null)
+            flags = (byte)(flags | FLAGS.INODE_INLINE);
+        else
+            flags = (byte)(flags & ~FLAGS.INODE_INLINE);
+    }
+
     public byte[] getMD5Hash() {
         // IMPLEMENT LATER
         return new byte[16];
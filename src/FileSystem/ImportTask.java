@@ -0,0 +1,421 @@
+package FileSystem;
+
+import DiskUtility.Gateway;
+import net.coobird.thumbnailator.Thumbnails;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class imports a directory tree of the host into a FileSystem. It is created by FileSystem.importTree.
+ * The host tree is walked in parallel, one task per directory, and the directories of the import are created and
+ * written as a single batch before the files are added. The files are then added by an IngestTask in the order of the
+ * walk: the files of a directory sorted by name, followed by its subdirectories sorted by name. Thumbnails of images
+ * are generated by a separate pool of workers, a few files ahead of the reader of the IngestTask.
+ * Files are added to the directory tree in order, so an interrupted import is always a prefix of the walk. An import
+ * is resumed by importing the same directory again: files that already exist with the same size and modification time
+ * are skipped. A file whose name is taken by a node of a different size or modification time, or by a directory, is a
+ * conflict. Conflicts are found before any file is written, and are skipped and reported rather than overwritten.
+ * Empty files, and files and directories whose names are not valid names of Nodes, cannot be stored by the FileSystem.
+ * They are skipped and reported in the same manner, along with everything within such a directory.
+ */
+public class ImportTask {
+    /**
+     * Maximum width and height of generated thumbnails.
+     */
+    public static final int THUMBNAIL_SIZE = 640;
+    public static final double THUMBNAIL_QUALITY = 0.5;
+    /**
+     * Extensions of the files that thumbnails are generated for.
+     */
+    public static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+    private final Gateway gateway;
+    private final ArrayList<HostFile> hostFiles = new ArrayList<HostFile>();
+    private final Future<?>[] thumbnails;
+    /**
+     * Number of files ahead of the reader that thumbnails are generated for.
+     */
+    private final int thumbnailWindow;
+    private final ExecutorService thumbnailExecutor;
+    private final IngestTask ingest;
+    private int nextThumbnail;
+    private int directoriesCreated;
+    private int filesSkipped;
+    private long bytesSkipped;
+    private final ArrayList<Path> conflicts = new ArrayList<Path>();
+    private final ArrayList<Path> unsupported = new ArrayList<Path>();
+
+    private static class HostFile {
+        final Path path;
+        final String parentPath;
+        final BasicFileAttributes attributes;
+        HostFile(Path path, String parentPath, BasicFileAttributes attributes){
+            this.path = path;
+            this.parentPath = parentPath;
+            this.attributes = attributes;
+        }
+    }
+
+    private static class HostDirectory {
+        final Path hostPath;
+        final String path;
+        final ArrayList<HostFile> files = new ArrayList<HostFile>();
+        final ArrayList<HostDirectory> directories = new ArrayList<HostDirectory>();
+        HostDirectory(Path hostPath, String path){
+            this.hostPath = hostPath;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Lists a directory of the host and walks its subdirectories in parallel.
+     */
+    private static class Walk extends RecursiveTask<HostDirectory> {
+        private static final long serialVersionUID = 1L;
+        private final Path hostPath;
+        private final String path;
+        Walk(Path hostPath, String path){
+            this.hostPath = hostPath;
+            this.path = path;
+        }
+
+        @Override
+        protected HostDirectory compute(){
+            HostDirectory directory = new HostDirectory(hostPath, path);
+            ArrayList<Walk> walks = new ArrayList<Walk>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(hostPath)){
+                for (Path entry: entries){
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    String name = entry.getFileName().toString();
+                    // Links and special files are not imported.
+                    if (attributes.isDirectory())
+                        walks.add(new Walk(entry, __join(path, name)));
+                    else if (attributes.isRegularFile())
+                        directory.files.add(new HostFile(entry, path, attributes));
+                }
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(walks);
+            for (Walk walk: walks)
+                directory.directories.add(walk.join());
+            directory.files.sort(Comparator.comparing(file -> file.path.getFileName().toString()));
+            directory.directories.sort(Comparator.comparing(subdirectory -> subdirectory.path));
+            return directory;
+        }
+    }
+
+    /**
+     * Walks the host tree, creates the directories of the import and starts adding the files.
+     * @param fs The FileSystem
+     * @param gateway The Gateway of the FileSystem
+     * @param hostDir The directory of the host to be imported
+     * @param targetPath The path of the directory the import is placed in
+     * @param threads Number of threads that walk the host tree, generate thumbnails and write the files
+     */
+    ImportTask(FileSystem fs, Gateway gateway, Path hostDir, String targetPath, int threads) throws Exception{
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        if (!Files.isDirectory(hostDir))
+            throw new Exception("Host directory does not exist: " + hostDir);
+        this.gateway = gateway;
+        HostDirectory root;
+        ForkJoinPool walkPool = new ForkJoinPool(threads);
+        try {
+            Path name = hostDir.toAbsolutePath().normalize().getFileName();
+            root = walkPool.invoke(new Walk(hostDir, __join(targetPath, name == null ? "" : name.toString())));
+        } catch (UncheckedIOException e){
+            throw new Exception("Unable to Walk Host Directory: " + e.getCause().getMessage());
+        } finally {
+            walkPool.shutdown();
+        }
+        __prepare(fs, root);
+        long bytesTotal = 0;
+        for (HostFile file: hostFiles)
+            bytesTotal += file.attributes.size();
+        fs.__writeDirtyNodes();
+        this.thumbnails = new Future<?>[hostFiles.size()];
+        this.thumbnailWindow = threads * 4;
+        AtomicInteger workerCount = new AtomicInteger();
+        this.thumbnailExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "import-thumbnail-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayList<IngestTask.Source> sources = new ArrayList<IngestTask.Source>(hostFiles.size());
+        for (int i = 0; i < hostFiles.size(); i++){
+            int index = i;
+            sources.add(new IngestTask.Source() {
+                @Override
+                public InputFile open() throws Exception{
+                    return __open(index);
+                }
+
+                @Override
+                public void skip(){
+                    __release(index);
+                }
+            });
+        }
+        if (hostFiles.isEmpty())
+            thumbnailExecutor.shutdown();
+        this.ingest = new IngestTask(fs, gateway, sources, bytesTotal, threads);
+    }
+
+    /**
+     * Creates a directory of the import and its subdirectories, and collects the files that have not been imported yet.
+     * The files are collected in the order of a depth first walk, so the files of a directory are written together.
+     * Files whose name is taken by a different node are collected as conflicts instead. Files and subdirectories that
+     * cannot be stored by the FileSystem are collected as unsupported.
+     * @param fs The FileSystem
+     * @param directory The directory of the walk
+     */
+    private void __prepare(FileSystem fs, HostDirectory directory) throws Exception{
+        Node node = fs.__getOrCreateDirectory(directory.path);
+        directoriesCreated++;
+        HashMap<String, Node> existingNodes = new HashMap<String, Node>();
+        for (Node child: fs.openDirectory(node))
+            existingNodes.put(child.getName(), child);
+        for (HostFile file: directory.files){
+            String name = file.path.getFileName().toString();
+            Node existingNode = existingNodes.get(name);
+            if (file.attributes.size() == 0 || fs.getDir().__validNodeName(name) != 0){
+                unsupported.add(file.path);
+            } else if (existingNode == null){
+                hostFiles.add(file);
+            } else if (__isImported(existingNode, file)){
+                filesSkipped++;
+                bytesSkipped += file.attributes.size();
+            } else {
+                conflicts.add(file.path);
+            }
+        }
+        for (HostDirectory subdirectory: directory.directories){
+            if (fs.getDir().__validNodeName(subdirectory.hostPath.getFileName().toString()) != 0)
+                unsupported.add(subdirectory.hostPath);
+            else
+                __prepare(fs, subdirectory);
+        }
+    }
+
+    private boolean __isImported(Node node, HostFile file) throws Exception{
+        if (node.isDirectory())
+            return false;
+        INode iNode = gateway.getINode(node);
+        return iNode.getiNodeSize() == file.attributes.size() &&
+                iNode.getLastModifiedTime() == file.attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Opens a file for the reader of the IngestTask. The thumbnails of the next files are started first, so that they
+     * are generated while the current file is written.
+     * @param index Position of the file within hostFiles
+     */
+    private InputFile __open(int index) throws Exception{
+        for (; nextThumbnail < hostFiles.size() && nextThumbnail <= index + thumbnailWindow; nextThumbnail++){
+            HostFile file = hostFiles.get(nextThumbnail);
+            if (__isImage(file.path))
+                thumbnails[nextThumbnail] = thumbnailExecutor.submit(() -> __generateThumbnail(file.path));
+        }
+        HostFile file = hostFiles.get(index);
+        byte[] thumbnail = null;
+        try {
+            if (thumbnails[index] != null)
+                thumbnail = (byte[]) thumbnails[index].get();
+        } finally {
+            __release(index);
+        }
+        FileInputStream inputStream = new FileInputStream(file.path.toFile());
+        long creationTime = file.attributes.creationTime().toMillis();
+        long lastModifiedTime = file.attributes.lastModifiedTime().toMillis();
+        String name = file.path.getFileName().toString();
+        if (thumbnail == null)
+            return new InputFile(name, file.parentPath, file.attributes.size(), creationTime, lastModifiedTime, inputStream);
+        return new InputFile(name, file.parentPath, file.attributes.size(), creationTime, lastModifiedTime, inputStream,
+                new ByteArrayInputStream(thumbnail), thumbnail.length);
+    }
+
+    /**
+     * Drops the thumbnail of a file that has been opened or skipped, and stops the thumbnail workers after the last
+     * file.
+     * @param index Position of the file within hostFiles
+     */
+    private void __release(int index){
+        if (thumbnails[index] != null){
+            thumbnails[index].cancel(true);
+            thumbnails[index] = null;
+        }
+        if (index == hostFiles.size() - 1)
+            thumbnailExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The thumbnail of an image, or null if the file cannot be read as an image. Such a file is imported
+     * without a thumbnail.
+     */
+    private static byte[] __generateThumbnail(Path path){
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            Thumbnails.of(path.toFile())
+                    .size(THUMBNAIL_SIZE, THUMBNAIL_SIZE)
+                    .outputQuality(THUMBNAIL_QUALITY)
+                    .outputFormat("jpg")
+                    .toOutputStream(outputStream);
+        } catch (Exception e){
+            return null;
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static boolean __isImage(Path path){
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot != -1 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static String __join(String path, String name){
+        if (name.isEmpty())
+            return path;
+        return path.endsWith("/") ? path + name : path + "/" + name;
+    }
+
+    /**
+     * Stops the import. Files that are being written are finished but not added to the directory tree. The import can
+     * be resumed later.
+     */
+    public void cancel(){
+        ingest.cancel();
+    }
+
+    /**
+     * Waits for the import to finish.
+     * @return true if every file was imported, false if the import was cancelled.
+     * @throws Exception If a file could not be imported.
+     */
+    public boolean await() throws Exception{
+        return ingest.await();
+    }
+
+    public boolean isDone(){
+        return ingest.isDone();
+    }
+
+    public boolean isCancelled(){
+        return ingest.isCancelled();
+    }
+
+    /**
+     * @return Number of directories of the import, including the directories that existed already
+     */
+    public int getDirectoriesCreated(){
+        return directoriesCreated;
+    }
+
+    /**
+     * @return Number of files to be imported, excluding the files that had been imported already
+     */
+    public int getFilesTotal(){
+        return ingest.getFilesTotal();
+    }
+
+    public int getFilesImported(){
+        return ingest.getFilesAdded();
+    }
+
+    /**
+     * @return Number of files that were skipped because they had been imported already
+     */
+    public int getFilesSkipped(){
+        return filesSkipped;
+    }
+
+    /**
+     * @return Number of files that were skipped because their name is taken by a different file or a directory
+     */
+    public int getFilesConflicting(){
+        return conflicts.size();
+    }
+
+    /**
+     * @return Host paths of the files that were skipped because their name is taken by a different file or a directory
+     */
+    public List<Path> getConflicts(){
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * @return Number of files and directories that were skipped because the FileSystem cannot store them
+     */
+    public int getFilesUnsupported(){
+        return unsupported.size();
+    }
+
+    /**
+     * @return Host paths of the empty files, and of the files and directories whose names are not valid names of Nodes.
+     * The files within such a directory are not listed.
+     */
+    public List<Path> getUnsupported(){
+        return Collections.unmodifiableList(unsupported);
+    }
+
+    public long getBytesTotal(){
+        return ingest.getBytesTotal();
+    }
+
+    public long getBytesWritten(){
+        return ingest.getBytesWritten();
+    }
+
+    public long getBytesSkipped(){
+        return bytesSkipped;
+    }
+
+    /**
+     * @return Number of files imported per second since the import started
+     */
+    public double getFilesPerSecond(){
+        return getFilesImported() / __getElapsedSeconds();
+    }
+
+    /**
+     * @return Number of megabytes (2^20 bytes) written per second since the import started
+     */
+    public double getMegabytesPerSecond(){
+        return getBytesWritten() / (1024.0 * 1024.0) / __getElapsedSeconds();
+    }
+
+    private double __getElapsedSeconds(){
+        return Math.max(ingest.getElapsedNanos(), 1) / 1e9;
+    }
+
+    @Override
+    public String toString(){
+        return String.format(Locale.ROOT, "%d/%d files, %.1f/%.1f MB, %.1f files/s, %.1f MB/s, %d skipped, " +
+                "%d conflicting, %d unsupported",
+                getFilesImported(), getFilesTotal(), getBytesWritten() / (1024.0 * 1024.0),
+                getBytesTotal() / (1024.0 * 1024.0), getFilesPerSecond(), getMegabytesPerSecond(), filesSkipped,
+                conflicts.size(), unsupported.size());
+    }
+}
@@ -0,0 +1,148 @@
+package FileSystem;
+
+import DiskUtility.CustomInputStream;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ImportTaskTests {
+    private static final int FILES = 10;
+
+    @Test
+    @DisplayName("importTree -> The host tree is imported along with thumbnails of images")
+    public void importTree() throws Exception{
+        Path base = Files.createTempDirectory("fs-import");
+        try {
+            Path host = __createHostTree(base.resolve("photos"));
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            ImportTask task = fs.importTree(host, "/library", 3);
+            Assertions.assertTrue(task.await());
+            Assertions.assertEquals(3 * FILES + 1, task.getFilesImported());
+            Assertions.assertEquals(4, task.getDirectoriesCreated());
+            Assertions.assertEquals(task.getBytesTotal(), task.getBytesWritten());
+            Assertions.assertTrue(task.getFilesPerSecond() > 0);
+            fs.unmount();
+            fs = FileSystem.mount(new File(base.toFile(), "fs"), "password");
+            for (String directory: new String[]{"a", "a/b", "c"}){
+                for (int i = 0; i < FILES; i++){
+                    try (CustomInputStream inputStream = fs.openFile("/library/photos/" + directory + "/f" + i)){
+                        Assertions.assertArrayEquals(Files.readAllBytes(host.resolve(directory).resolve("f" + i)),
+                                inputStream.readAllBytes());
+                    }
+                }
+            }
+            try (CustomInputStream inputStream = fs.openThumbnail("/library/photos/image.png")){
+                Assertions.assertNotNull(inputStream);
+                Assertions.assertNotNull(ImageIO.read(inputStream));
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("importTree -> Importing the same tree again only adds the files that are missing")
+    public void importTreeResume() throws Exception{
+        Path base = Files.createTempDirectory("fs-import");
+        try {
+            Path host = __createHostTree(base.resolve("photos"));
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            Assertions.assertTrue(fs.importTree(host, "/", 2).await());
+            fs.removeNode("/photos/a/b/f3");
+            fs.removeNode("/photos/c/f7");
+            ImportTask task = fs.importTree(host, "/", 2);
+            Assertions.assertTrue(task.await());
+            Assertions.assertEquals(2, task.getFilesImported());
+            Assertions.assertEquals(3 * FILES - 1, task.getFilesSkipped());
+            try (CustomInputStream inputStream = fs.openFile("/photos/c/f7")){
+                Assertions.assertArrayEquals(Files.readAllBytes(host.resolve("c/f7")), inputStream.readAllBytes());
+            }
+            Assertions.assertEquals(FILES, fs.openDirectory("/photos/a/b").size());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("importTree -> Files that changed since the last import are reported as conflicts and the rest is imported")
+    public void importTreeConflicts() throws Exception{
+        Path base = Files.createTempDirectory("fs-import");
+        try {
+            Path host = __createHostTree(base.resolve("photos"));
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            Assertions.assertTrue(fs.importTree(host, "/", 2).await());
+            byte[] original = Files.readAllBytes(host.resolve("a/f2"));
+            Files.write(host.resolve("a/f2"), new byte[]{1, 2, 3});
+            Files.write(host.resolve("c/f10"), new byte[]{4, 5, 6});
+            fs.removeNode("/photos/c/f7");
+            ImportTask task = fs.importTree(host, "/", 2);
+            Assertions.assertEquals(1, task.getFilesConflicting());
+            Assertions.assertEquals(host.resolve("a/f2"), task.getConflicts().get(0));
+            Assertions.assertTrue(task.await());
+            Assertions.assertEquals(2, task.getFilesImported());
+            Assertions.assertEquals(3 * FILES - 1, task.getFilesSkipped());
+            try (CustomInputStream inputStream = fs.openFile("/photos/a/f2")){
+                Assertions.assertArrayEquals(original, inputStream.readAllBytes());
+            }
+            try (CustomInputStream inputStream = fs.openFile("/photos/c/f10")){
+                Assertions.assertArrayEquals(new byte[]{4, 5, 6}, inputStream.readAllBytes());
+            }
+            try (CustomInputStream inputStream = fs.openFile("/photos/c/f7")){
+                Assertions.assertArrayEquals(Files.readAllBytes(host.resolve("c/f7")), inputStream.readAllBytes());
+            }
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("importTree -> Empty files and names that are not valid are reported as unsupported and the rest is imported")
+    public void importTreeUnsupported() throws Exception{
+        Path base = Files.createTempDirectory("fs-import");
+        try {
+            Path host = __createHostTree(base.resolve("photos"));
+            Files.write(host.resolve("a/empty"), new byte[0]);
+            Files.write(host.resolve("c/back\\slash"), new byte[]{1, 2, 3});
+            Path invalidDirectory = Files.createDirectories(host.resolve("a/b/back\\slash"));
+            Files.write(invalidDirectory.resolve("f0"), new byte[]{4, 5, 6});
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            ImportTask task = fs.importTree(host, "/", 2);
+            Assertions.assertEquals(3, task.getFilesUnsupported());
+            Assertions.assertTrue(task.getUnsupported().containsAll(List.of(host.resolve("a/empty"),
+                    host.resolve("c/back\\slash"), invalidDirectory)));
+            Assertions.assertTrue(task.await());
+            Assertions.assertEquals(3 * FILES + 1, task.getFilesImported());
+            Assertions.assertEquals(4, task.getDirectoriesCreated());
+            Assertions.assertEquals(FILES + 1, fs.openDirectory("/photos/a").size());
+            Assertions.assertEquals(FILES, fs.openDirectory("/photos/a/b").size());
+            Assertions.assertEquals(FILES, fs.openDirectory("/photos/c").size());
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static Path __createHostTree(Path host) throws Exception{
+        for (String directory: new String[]{"a", "a/b", "c"}){
+            Path path = Files.createDirectories(host.resolve(directory));
+            for (int i = 0; i < FILES; i++){
+                byte[] contents = new byte[(i * 2053 + directory.length() * 311) % 9000];
+                for (int j = 0; j < contents.length; j++)
+                    contents[j] = (byte)(i * 7 + j + directory.length());
+                Files.write(path.resolve("f" + i), contents);
+            }
+        }
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++)
+            image.setRGB(x, x % image.getHeight(), 0xFF8800);
+        ImageIO.write(image, "png", host.resolve("image.png").toFile());
+        return host;
+    }
+}
@@ -0,0 +1,409 @@
+package FileSystem;
+
+import DiskUtility.Gateway;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class adds a batch of files to a FileSystem. It is created by FileSystem.addFiles.
+ * The files pass through three stages that run at the same time. A reader thread reads the input streams into memory,
+ * in the order the files were provided. A fixed number of workers then encrypt and write the buffered files. Each
+ * worker takes its blocks from its own region of the store, so the writes of a worker are sequential. Finally, the
+ * files are added to the directory tree in the order they were provided, and the directory-store is written in
+ * batches instead of once per file.
+ * The reader and the workers are connected by a bounded queue, and the reader does not hold more than
+ * MAX_BUFFERED_BYTES of file contents at once, so a slow disk holds up the reader instead of filling the memory. Files
+ * larger than MAX_BUFFERED_FILE_SIZE are not buffered and are streamed by the worker.
+ * An ingest can be cancelled. Files that have been written but not added to the directory tree when the ingest stops
+ * are freed by the Reclaimer.
+ */
+public class IngestTask {
+    public static final long MAX_BUFFERED_FILE_SIZE = 16 * 1024 * 1024;
+    /**
+     * Maximum number of bytes of file contents that have been read but not written yet.
+     */
+    public static final int MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+    /**
+     * Maximum number of added Nodes that are added to the directory tree before they are written.
+     */
+    private static final int COMMIT_BATCH_SIZE = 256;
+    private static final INode SKIPPED = new INode();
+    /**
+     * Placed in the queue once for every worker after the last file.
+     */
+    private static final BufferedFile END = new BufferedFile(-1, null, 0);
+    private final FileSystem fs;
+    private final Gateway gateway;
+    private final List<Source> sources;
+    /**
+     * The files that have been opened, by position within sources.
+     */
+    private final InputFile[] files;
+    private final int threads;
+    /**
+     * INodes of the added files, by position within files. SKIPPED if the file was not added.
+     */
+    private final INode[] results;
+    private final BlockingQueue<BufferedFile> queue;
+    private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+    private final long bytesTotal;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final long startTime = System.nanoTime();
+    private volatile long finishTime;
+    private final ExecutorService executor;
+    private final ArrayList<Long> discardedINodes = new ArrayList<Long>();
+    /**
+     * The parent directories that have been looked up, by path.
+     */
+    private final HashMap<String, Node> parents = new HashMap<String, Node>();
+    private int nextCommit;
+    private int uncommittedNodes;
+    private int filesAdded;
+    private volatile boolean cancelled;
+    private volatile Exception error;
+
+    /**
+     * Provides a file of the ingest. Files are opened by the reader, one at a time and in order, so a file does not
+     * hold any resources until it is reached.
+     */
+    interface Source {
+        InputFile open() throws Exception;
+
+        /**
+         * Called instead of open if the ingest stops before the file is reached.
+         */
+        default void skip(){
+        }
+    }
+
+    private static class BufferedFile {
+        final int index;
+        final InputFile file;
+        /**
+         * Number of bytes taken from bufferedBytes.
+         */
+        final int permits;
+        BufferedFile(int index, InputFile file, int permits){
+            this.index = index;
+            this.file = file;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * Starts the reader and the workers.
+     * @param fs The FileSystem
+     * @param gateway The Gateway of the FileSystem
+     * @param files The files to be added, along with the paths of their parent directories. Missing directories are
+     *              created.
+     * @param threads Number of worker threads
+     */
+    IngestTask(FileSystem fs, Gateway gateway, List<InputFile> files, int threads){
+        this(fs, gateway, __getSources(files), files.stream().mapToLong(file -> file.size).sum(), threads);
+    }
+
+    /**
+     * Starts the reader and the workers.
+     * @param fs The FileSystem
+     * @param gateway The Gateway of the FileSystem
+     * @param sources The sources of the files to be added
+     * @param bytesTotal Total size of the files
+     * @param threads Number of worker threads
+     */
+    IngestTask(FileSystem fs, Gateway gateway, List<Source> sources, long bytesTotal, int threads){
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        this.fs = fs;
+        this.gateway = gateway;
+        this.sources = new ArrayList<Source>(sources);
+        this.files = new InputFile[this.sources.size()];
+        this.threads = threads;
+        this.results = new INode[this.files.length];
+        this.queue = new ArrayBlockingQueue<BufferedFile>(threads * 2);
+        this.bytesTotal = bytesTotal;
+        AtomicInteger workerCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ingest-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (this.files.length == 0){
+            __finish();
+            return;
+        }
+        for (int i = 0; i < threads; i++)
+            executor.execute(this::__write);
+        executor.shutdown();
+        Thread reader = new Thread(this::__read, "ingest-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Stage 1. Reads the files into memory and passes them to the workers.
+     */
+    private void __read(){
+        int index = 0;
+        try {
+            for (; index < files.length && !cancelled; index++){
+                files[index] = sources.get(index).open();
+                queue.put(__buffer(index, files[index]));
+            }
+        } catch (Exception e){
+            __fail(e);
+        }
+        // The files that have not been read are skipped.
+        for (; index < files.length; index++){
+            if (files[index] != null)
+                __close(files[index]);
+            else
+                sources.get(index).skip();
+            __commit(index, SKIPPED);
+        }
+        for (int i = 0; i < threads; i++){
+            try {
+                queue.put(END);
+            } catch (InterruptedException e){
+                // The workers only wait for the queue, so they are always able to take the remaining entries.
+                i--;
+            }
+        }
+    }
+
+    private BufferedFile __buffer(int index, InputFile file) throws Exception{
+        if (file.fileInputStream == null)
+            throw new Exception("File Does Not Exist: " + file.parentPath + "/" + file.name);
+        if (file.size > MAX_BUFFERED_FILE_SIZE)
+            return new BufferedFile(index, file, 0);
+        long thumbnailSize = file.thumbnailInputStream == null ? 0 : file.thumbnailSize;
+        int permits = (int) Math.min(file.size + thumbnailSize, MAX_BUFFERED_BYTES);
+        bufferedBytes.acquire(permits);
+        try {
+            byte[] contents = file.fileInputStream.readNBytes((int) file.size);
+            InputFile bufferedFile;
+            if (file.thumbnailInputStream == null){
+                bufferedFile = new InputFile(file.name, file.parentPath, file.size, file.creationTime,
+                        file.lastModifiedTime, new ByteArrayInputStream(contents));
+            } else {
+                byte[] thumbnail = file.thumbnailInputStream.readNBytes((int) file.thumbnailSize);
+                bufferedFile = new InputFile(file.name, file.parentPath, file.size, file.creationTime,
+                        file.lastModifiedTime, new ByteArrayInputStream(contents), new ByteArrayInputStream(thumbnail),
+                        file.thumbnailSize);
+            }
+            file.close();
+            bytesRead.addAndGet(file.size);
+            return new BufferedFile(index, bufferedFile, permits);
+        } catch (Exception e){
+            bufferedBytes.release(permits);
+            throw e;
+        }
+    }
+
+    /**
+     * Stage 2. Encrypts and writes the files taken from the queue until the reader has finished.
+     */
+    private void __write(){
+        while (true){
+            BufferedFile bufferedFile;
+            try {
+                bufferedFile = queue.take();
+            } catch (InterruptedException e){
+                return;
+            }
+            if (bufferedFile == END)
+                return;
+            INode result = SKIPPED;
+            try {
+                if (!cancelled){
+                    result = gateway.addFile(bufferedFile.file);
+                    bytesWritten.addAndGet(bufferedFile.file.size);
+                }
+            } catch (Exception e){
+                __fail(e);
+            } finally {
+                bufferedBytes.release(bufferedFile.permits);
+            }
+            if (result == SKIPPED)
+                __close(bufferedFile.file);
+            __commit(bufferedFile.index, result);
+        }
+    }
+
+    /**
+     * Stage 3. Records the result of a file and adds every file whose predecessors have all finished to the directory
+     * tree.
+     * @param index Position of the file within files
+     * @param result The INode of the file, or SKIPPED
+     */
+    private synchronized void __commit(int index, INode result){
+        results[index] = result;
+        try {
+            while (nextCommit < results.length && results[nextCommit] != null){
+                INode iNode = results[nextCommit];
+                if (iNode != SKIPPED){
+                    if (cancelled){
+                        discardedINodes.add(iNode.getiNodeAddress());
+                    } else {
+                        InputFile file = files[nextCommit];
+                        try {
+                            fs.__addFileNode(__getParent(file.parentPath), file.name, iNode);
+                            uncommittedNodes++;
+                            filesAdded++;
+                        } catch (Exception e){
+                            // e.g. a file by the same name exists already.
+                            __fail(e);
+                            discardedINodes.add(iNode.getiNodeAddress());
+                        }
+                    }
+                }
+                nextCommit++;
+                if (uncommittedNodes >= COMMIT_BATCH_SIZE){
+                    fs.__writeDirtyNodes();
+                    uncommittedNodes = 0;
+                }
+            }
+        } catch (Exception e){
+            __fail(e);
+        }
+        if (nextCommit == results.length)
+            __finish();
+    }
+
+    private Node __getParent(String path) throws Exception{
+        Node parent = parents.get(path);
+        // The directory may have been removed by another thread.
+        if (parent == null || parent.isRemoved()){
+            parent = fs.__getOrCreateDirectory(path);
+            parents.put(path, parent);
+        }
+        return parent;
+    }
+
+    /**
+     * Writes the remaining Nodes and queues the files that were written but not added to the directory tree.
+     */
+    private void __finish(){
+        try {
+            fs.__writeDirtyNodes();
+        } catch (Exception e){
+            __fail(e);
+        }
+        try {
+            gateway.discardFiles(discardedINodes.stream().mapToLong(Long::longValue).toArray());
+        } catch (Exception e){
+            __fail(e);
+        }
+        executor.shutdown();
+        finishTime = System.nanoTime();
+        finished.countDown();
+    }
+
+    private void __fail(Exception e){
+        if (error == null)
+            error = e;
+        cancelled = true;
+    }
+
+    private static List<Source> __getSources(List<InputFile> files){
+        ArrayList<Source> sources = new ArrayList<Source>(files.size());
+        for (InputFile file: files){
+            sources.add(new Source() {
+                @Override
+                public InputFile open(){
+                    return file;
+                }
+
+                @Override
+                public void skip(){
+                    __close(file);
+                }
+            });
+        }
+        return sources;
+    }
+
+    private static void __close(InputFile file){
+        try {
+            file.close();
+        } catch (Exception e){
+            // The file is skipped either way.
+        }
+    }
+
+    /**
+     * Stops the ingest. Files that are being written are finished but not added to the directory tree.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * Waits for the ingest to finish.
+     * @return true if every file was added, false if the ingest was cancelled.
+     * @throws Exception If a file could not be added.
+     */
+    public boolean await() throws Exception{
+        finished.await();
+        if (error != null)
+            throw new Exception("Unable to Add Files: " + error.getMessage());
+        return !cancelled;
+    }
+
+    public boolean isDone(){
+        return finished.getCount() == 0;
+    }
+
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    public int getFilesTotal(){
+        return files.length;
+    }
+
+    /**
+     * @return Number of files that have been added to the directory tree
+     */
+    public synchronized int getFilesAdded(){
+        return filesAdded;
+    }
+
+    public long getBytesTotal(){
+        return bytesTotal;
+    }
+
+    /**
+     * @return Number of bytes of file contents that have been read into memory. Streamed files are not included.
+     */
+    public long getBytesRead(){
+        return bytesRead.get();
+    }
+
+    /**
+     * @return Number of bytes of file contents that have been written, including files not yet added to the directory
+     * tree.
+     */
+    public long getBytesWritten(){
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return Time since the ingest was started, or the duration of the ingest once it has finished, in nanoseconds.
+     */
+    public long getElapsedNanos(){
+        return (isDone() ? finishTime : System.nanoTime()) - startTime;
+    }
+}
@@ -0,0 +1,99 @@
+package FileSystem;
+
+import DiskUtility.CustomInputStream;
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+public class IngestTaskTests {
+    private static final int FILES = 120;
+
+    @Test
+    @DisplayName("addFiles -> Every file is added in order and survives a remount")
+    public void addFiles() throws Exception{
+        Path base = Files.createTempDirectory("fs-ingest");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            ArrayList<InputFile> files = new ArrayList<InputFile>();
+            for (int i = 0; i < FILES; i++)
+                files.add(__getInputFile(i));
+            IngestTask task = fs.addFiles(files, 4);
+            Assertions.assertTrue(task.await());
+            Assertions.assertEquals(FILES, task.getFilesAdded());
+            Assertions.assertEquals(task.getBytesTotal(), task.getBytesWritten());
+            __assertFiles(fs);
+            fs.unmount();
+            __assertFiles(FileSystem.mount(new File(base.toFile(), "fs"), "password"));
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    @Test
+    @DisplayName("addFiles -> A failed file stops the ingest and the files before it are kept")
+    public void addFilesFailure() throws Exception{
+        Path base = Files.createTempDirectory("fs-ingest");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            ArrayList<InputFile> files = new ArrayList<InputFile>();
+            for (int i = 0; i < 10; i++)
+                files.add(__getInputFile(i));
+            // A second file by the same name cannot be added to the directory tree.
+            files.add(__getInputFile(0));
+            IngestTask task = fs.addFiles(files, 2);
+            Assertions.assertThrows(Exception.class, task::await);
+            Assertions.assertEquals(10, task.getFilesAdded());
+            fs.reclaimAll();
+            for (int i = 0; i < 10; i++)
+                __assertContents(fs, i);
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static InputFile __getInputFile(int seed){
+        byte[] contents = __getContents(seed);
+        String parentPath = "/roll/" + (seed % 3);
+        if (seed % 5 != 0)
+            return new InputFile("f" + seed, parentPath, contents.length, seed, seed, new ByteArrayInputStream(contents));
+        byte[] thumbnail = __getContents(seed + 1000);
+        return new InputFile("f" + seed, parentPath, contents.length, seed, seed, new ByteArrayInputStream(contents),
+                new ByteArrayInputStream(thumbnail), thumbnail.length);
+    }
+
+    private static byte[] __getContents(int seed){
+        byte[] contents = new byte[(seed * 1031) % 12000 + 1];
+        for (int i = 0; i < contents.length; i++)
+            contents[i] = (byte)(seed * 17 + i);
+        return contents;
+    }
+
+    private static void __assertContents(FileSystem fs, int seed) throws Exception{
+        String path = "/roll/" + (seed % 3) + "/f" + seed;
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            Assertions.assertArrayEquals(__getContents(seed), inputStream.readAllBytes(), path);
+        }
+        if (seed % 5 == 0){
+            try (CustomInputStream inputStream = fs.openThumbnail(path)){
+                Assertions.assertArrayEquals(__getContents(seed + 1000), inputStream.readAllBytes(), path);
+            }
+        }
+    }
+
+    private static void __assertFiles(FileSystem fs) throws Exception{
+        for (int i = 0; i < FILES; i++)
+            __assertContents(fs, i);
+        for (int i = 0; i < 3; i++){
+            LinkedList<Node> nodes = fs.openDirectory("/roll/" + i);
+            Assertions.assertEquals(FILES / 3, nodes.size());
+        }
+    }
+}
@@ -4,20 +4,34 @@ import Constants.FLAGS;
 import DiskUtility.DirectoryStoreGateway;
 
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This class represents a Node in the FileSystem.
+ * The children of a node are guarded by the monitor of the childNodes map, which is never held while another lock is
+ * taken. The FileSystem takes the read lock of a directory while using its children and the write lock while changing
+ * them. Several directories are always locked in the order of their lockOrder.
  */
 public class Node {
     public static final byte CNR_FLAG_MASK = 0b00000001;
     public static final byte DIRECTORY_FLAG_MASK = (byte)0b10000000;
     public static final byte HAS_THUMBNAIL_FLAG_MASK = (byte) 0b00000010;
+    /**
+     * Set on directories whose children are stored in DirectoryPages instead of a chain of sibling frames.
+     */
+    public static final byte PAGED_FLAG_MASK = (byte) 0b00000100;
+    /**
+     * Set on paged directories whose DirectoryPages are partitioned by the hash of the entry names.
+     */
+    public static final byte HASH_INDEXED_FLAG_MASK = (byte) 0b00001000;
     /**
      * Contains the name of the Node. Maximum 256 bytes.
      */
-    private String name;
+    private volatile String name;
     /**
      * Points to the iNode reference within the iNodeStore.
      */
@@ -25,19 +39,32 @@ public class Node {
     /**
      * Contains a reference to the parentNode. Value set to null only in case of the root node.
      */
-    Node parentNode;
+    volatile Node parentNode;
     /**
-     * A LinkedList of child Node references.
+     * The child Node references keyed by their names.
      */
-    LinkedList<Node> childNodes = new LinkedList<Node>();
+    LinkedHashMap<String, Node> childNodes = new LinkedHashMap<String, Node>();
     /**
      * Flags that are stored on disk.
      */
-    byte flags;
+    volatile byte flags;
     /**
      * The index of the node within the file system.
      */
-    long index = -1;
+    volatile long index = -1;
+    private static final AtomicLong lockOrderSequence = new AtomicLong();
+    /**
+     * Guards the children of a directory against concurrent changes by the FileSystem.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Unique for every node. Locks of several nodes are taken in ascending lockOrder.
+     */
+    private final long lockOrder = lockOrderSequence.getAndIncrement();
+    /**
+     * Set once the node has been removed from the directory tree. Nodes are not added to removed directories.
+     */
+    private volatile boolean removed;
 
 
     /**
@@ -56,7 +83,7 @@ public class Node {
         this.parentNode = parentNode;
         this.flags = flags;
         if (this.isDirectory())
-            this.childNodes = new LinkedList<Node>();
+            this.childNodes = new LinkedHashMap<String, Node>();
         else
             this.iNodeAddress = iNodeAddress;
     }
@@ -93,12 +120,9 @@ public class Node {
     public Node getChildNode(String name){
         if (!isDirectory())
             return null;
-        for (int i = 0; i < childNodes.size(); i++){
-            Node node = childNodes.get(i);
-            if (node.getName().equals(name))
-                return node;
+        synchronized (childNodes){
+            return childNodes.get(name);
         }
-        return null;
     }
 
     @Override
@@ -115,7 +139,7 @@ public class Node {
         return (flagMask & flags) != 0;
     }
 
-    public void setFlag(byte flagMask, boolean value){
+    public synchronized void setFlag(byte flagMask, boolean value){
         if (value)
             flags = (byte) (flags | flagMask);
         else
@@ -125,12 +149,35 @@ public class Node {
     public void addChild(Node child){
         if (!isDirectory())
             throw new RuntimeException("Cannot Add Child. Parent Node is not a directory.");
-        childNodes.removeIf(node -> node.name.equals(child.name));
-        childNodes.add(child);
-        child.parentNode = this;
+        synchronized (childNodes){
+            childNodes.put(child.name, child);
+            child.parentNode = this;
+        }
+    }
+
+    public void removeChild(Node child){
+        synchronized (childNodes){
+            childNodes.remove(child.name);
+        }
     }
 
-    protected void setName(String name) {this.name = name;}
+    /**
+     * Changes the name of the node. The node is moved to the new name within the childNodes of its parent.
+     * @param name The new name
+     */
+    protected void setName(String name) {
+        if (parentNode == null){
+            this.name = name;
+            return;
+        }
+        synchronized (parentNode.childNodes){
+            if (parentNode.childNodes.get(this.name) == this){
+                parentNode.childNodes.remove(this.name);
+                parentNode.childNodes.put(name, this);
+            }
+            this.name = name;
+        }
+    }
 
     public String getName(){
         return name;
@@ -150,14 +197,20 @@ public class Node {
 
     public byte getFlags(){return this.flags;}
 
+    /**
+     * Returns the child nodes after reading them from the DirectoryStore if required. The returned list is a copy.
+     * Modifying it does not change the children of the node.
+     */
     public LinkedList<Node> getChildNodes(DirectoryStoreGateway gateway) throws Exception{
         if (checkFlag(CNR_FLAG_MASK))
             gateway.readChildren(this);
-        return this.childNodes;
+        return getChildNodes();
     }
 
     public LinkedList<Node> getChildNodes(){
-        return this.childNodes;
+        synchronized (childNodes){
+            return new LinkedList<Node>(this.childNodes.values());
+        }
     }
 
     public void setIndex(long index) {
@@ -167,4 +220,23 @@ public class Node {
     public void setFlags(byte flags) {
         this.flags = flags;
     }
+
+    public ReentrantReadWriteLock getLock(){
+        return lock;
+    }
+
+    public long getLockOrder(){
+        return lockOrder;
+    }
+
+    public boolean isRemoved(){
+        return removed;
+    }
+
+    /**
+     * Marks the node as removed from the directory tree.
+     */
+    void setRemoved(){
+        removed = true;
+    }
 }
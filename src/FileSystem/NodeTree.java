@@ -18,9 +18,11 @@ import java.util.LinkedList;
 
 /**
  * This class is a NodeTree that contains the overall structure of the DirectoryStore within the filesystem.
- * It starts from the root note. Each node has a LinkedList of childNodes (of the class INode).
+ * It starts from the root note. Each node has a map of childNodes keyed by name (of the class Node).
  * It provides address parsing functionalities (to go to a particular node using an address e.g. /test.txt)
  * All paths start from '/'. '/' is considered as the root.
+ * Nodes can be added and looked up by several threads at once. A node is checked and added to its parent while holding
+ * the monitor of the children of the parent, and nodes are never added to a directory that has been removed.
  *
  * @see INode
  */
@@ -28,6 +30,10 @@ public class NodeTree {
 
     private Node root;
     private final LinkedList<Node> dirtyNodes;
+    /**
+     * Caches the results of getNodeFromPath.
+     */
+    private final PathCache pathCache = new PathCache();
     /**
      * At the initialization of the NodeTree, a reference is created to the rootNode.
      */
@@ -46,23 +52,36 @@ public class NodeTree {
     }
 
     /**
-     * This method parses a path to get a Node.
+     * This method parses a path to get a Node. The result is looked up in the PathCache first and is cached, whether
+     * the path exists or not.
      * @param path The path of the requested Node in the FileSystem (e.g. /files/img1.jpeg)
      * @return  The requested node
      * @throws IllegalArgumentException In case the path is invalid.
      */
     public Node getNodeFromPath(String path, DirectoryStoreGateway gateway) throws IllegalArgumentException, Exception {
-        String[] nodes = path.split("/");
+        String normalizedPath = PathCache.normalize(path);
+        long generation = pathCache.getGeneration();
+        Node cachedNode = pathCache.get(normalizedPath);
+        if (cachedNode == PathCache.NEGATIVE)
+            throw new IllegalArgumentException("Unable to getNodeFromPath: Invalid Path");
+        if (cachedNode != null)
+            return cachedNode;
+        String[] nodes = normalizedPath.split("/");
         Node n = root;
         for (int i = 0; i < nodes.length; i++){
             if (nodes[i].isEmpty())
                 continue;
-            if (n.checkFlag(Node.CNR_FLAG_MASK))
-                gateway.readChildren(n);
-            n = n.getChildNode(nodes[i]);
+            Node childNode = n.getChildNode(nodes[i]);
+            // Look up the single child instead of reading every child of a directory that has not been read yet.
+            if (childNode == null && n.checkFlag(Node.CNR_FLAG_MASK))
+                childNode = gateway.lookupChild(n, nodes[i]);
+            if (childNode == null){
+                pathCache.put(normalizedPath, PathCache.NEGATIVE, generation);
+                throw new IllegalArgumentException("Unable to getNodeFromPath: Invalid Path");
+            }
+            n = childNode;
         }
-        if (n == null)
-            throw new IllegalArgumentException("Unable to getNodeFromPath: Invalid Path");
+        pathCache.put(normalizedPath, n, generation);
         return n;
     }
 
@@ -77,7 +96,7 @@ public class NodeTree {
         if (node.checkFlag(Node.CNR_FLAG_MASK))
             gateway.readChildren(node);
         if (node.isDirectory())
-            return node.childNodes;
+            return node.getChildNodes();
         return null;
     }
 
@@ -93,27 +112,27 @@ public class NodeTree {
     public Node addNode(String path, String name, long iNodeAddress, DirectoryStoreGateway gateway) throws Exception{
         __nodeCanBeAdded(path, name, gateway);
         Node parentNode = getNodeFromPath(path, gateway);
-        if (!parentNode.isDirectory())
-            throw new IllegalArgumentException("Path does not point to a directory");
-        if (parentNode.getChildNode(name) != null)
-            throw new IllegalArgumentException("Node with the same name exists");
-        Node node = new Node(name, parentNode, iNodeAddress, FLAGS.DEFAULT_NODE_FILE);
-        node.parentNode = node;
-        parentNode.childNodes.add(node);
-        dirtyNodes.add(node);
-        return node;
+        return addNode(parentNode, name, iNodeAddress);
     }
 
     public Node addNode(Node parentNode, String name, long iNodeAddress) throws Exception{
+        return addNode(parentNode, name, iNodeAddress, FLAGS.DEFAULT_NODE_FILE);
+    }
+
+    /**
+     * Adds a file with the provided flags. The flags are set before the node becomes visible to other threads.
+     * @param parentNode The parent directory
+     * @param name The name of the node (<= 256 bytes)
+     * @param iNodeAddress The iNode address of the file
+     * @param flags The flags of the node
+     * @return The newly created Node
+     */
+    public Node addNode(Node parentNode, String name, long iNodeAddress, byte flags) throws Exception{
         __nodeCanBeAdded(parentNode, name);
         if (!parentNode.isDirectory())
             throw new IllegalArgumentException("Path does not point to a directory");
-        if (parentNode.getChildNode(name) != null)
-            throw new IllegalArgumentException("Node with the same name exists");
-        Node node = new Node(name, parentNode, iNodeAddress, FLAGS.DEFAULT_NODE_FILE);
-        node.parentNode = parentNode;
-        parentNode.childNodes.add(node);
-        dirtyNodes.add(node);
+        Node node = new Node(name, parentNode, iNodeAddress, flags);
+        __addChild(parentNode, node);
         return node;
     }
 
@@ -122,18 +141,14 @@ public class NodeTree {
     public Node addNode(String path, String name, DirectoryStoreGateway gateway) throws Exception{
         __nodeCanBeAdded(path, name, gateway);
         Node parentNode = getNodeFromPath(path, gateway);
-        Node node = new Node(name, parentNode);
-        parentNode.childNodes.add(node);
-        dirtyNodes.add(node);
-        return node;
+        return addNode(parentNode, name);
     }
 
     // DIRECTORY
     public Node addNode(Node parentNode, String name) throws Exception{
         __nodeCanBeAdded(parentNode, name);
         Node node = new Node(name, parentNode);
-        parentNode.childNodes.add(node);
-        dirtyNodes.add(node);
+        __addChild(parentNode, node);
         return node;
     }
 
@@ -163,9 +178,20 @@ public class NodeTree {
         // In case the entire path is available within the directory structure, return the requisite node
         if (i == nodes.length)
             return node;
-        // In case the entire path is not available, create new nodes to fulfill the path requirement.
+        // In case the entire path is not available, create new nodes to fulfill the path requirement. A directory
+        // created by another thread in the meantime is used instead.
         for (; i < nodes.length; i++){
-            node = addNode(node, nodes[i]);
+            if (nodes[i].isEmpty())
+                continue;
+            Node childNode;
+            try {
+                childNode = addNode(node, nodes[i]);
+            } catch (Exception e){
+                childNode = node.getChildNode(nodes[i]);
+                if (childNode == null || !childNode.isDirectory())
+                    throw e;
+            }
+            node = childNode;
         }
         return node;
     }
@@ -236,12 +262,44 @@ public class NodeTree {
     }
 
     public boolean __nodeExists(Node parentNode, String name){
-        for (Node node: parentNode.childNodes){
-            if (node.getName().equals(name)){
-                return true;
-            }
+        return parentNode.getChildNode(name) != null;
+    }
+
+    /**
+     * Removes the cached results of the path of a node, and of every path below it if the node is a directory. Must be
+     * called before a node is renamed, moved or removed, and again after it has been renamed or moved.
+     * @param node The target node
+     */
+    public void invalidatePath(Node node){
+        String path = PathCache.normalize(node.getPath());
+        if (node.isDirectory())
+            pathCache.invalidateTree(path);
+        else
+            pathCache.invalidate(path);
+    }
+
+    /**
+     * Adds a node to its parent unless the parent has been removed or already has a child by the same name.
+     */
+    private void __addChild(Node parentNode, Node node) throws Exception{
+        synchronized (parentNode.childNodes){
+            if (parentNode.isRemoved())
+                throw new Exception("Unable to Add Node. Parent directory has been removed.");
+            if (parentNode.getChildNode(node.getName()) != null)
+                throw new Exception("Unable to Add Node. Node already Exists.");
+            parentNode.addChild(node);
         }
-        return false;
+        __nodeAdded(node);
+    }
+
+    private void __nodeAdded(Node node){
+        markDirty(node);
+        // A negative entry may exist for the path of the new node.
+        pathCache.invalidate(PathCache.normalize(node.getPath()));
+    }
+
+    public PathCache getPathCache(){
+        return pathCache;
     }
 
     public void setRoot(Node root) {
@@ -250,4 +308,35 @@ public class NodeTree {
     public LinkedList<Node> getDirtyNodes(){
         return this.dirtyNodes;
     }
+
+    /**
+     * Adds a node to the nodes that need to be written to the DirectoryStore.
+     * @param node The changed node
+     */
+    public void markDirty(Node node){
+        synchronized (dirtyNodes){
+            dirtyNodes.add(node);
+        }
+    }
+
+    /**
+     * @return A copy of the nodes that need to be written, in the order they were changed.
+     */
+    public LinkedList<Node> getDirtyNodesCopy(){
+        synchronized (dirtyNodes){
+            return new LinkedList<Node>(dirtyNodes);
+        }
+    }
+
+    /**
+     * Removes the first nodes that need to be written once they have been written. Nodes changed in the meantime stay
+     * behind them.
+     * @param count The number of nodes written
+     */
+    public void removeDirtyNodes(int count){
+        synchronized (dirtyNodes){
+            for (int i = 0; i < count; i++)
+                dirtyNodes.removeFirst();
+        }
+    }
 }
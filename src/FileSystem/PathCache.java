@@ -0,0 +1,183 @@
+package FileSystem;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class caches the results of path resolution within a NodeTree, in the same manner as the dentry cache of a UNIX
+ * kernel. Paths that resolve to a Node are mapped to the Node. Paths that do not exist are mapped to NEGATIVE so that
+ * repeated lookups of missing paths do not walk the tree either.
+ * The cache is bounded by the number of entries. The least recently used entry is evicted first. All methods are
+ * synchronized so that the cache can be shared between threads.
+ * Entries are invalidated by the NodeTree whenever a node is added, renamed, moved or removed. Every invalidation
+ * increments the generation of the cache. A path resolved while the tree was being changed is only cached if the
+ * generation has not changed since the resolution started, so that a stale result is never cached.
+ */
+public class PathCache {
+    public static final int DEFAULT_CAPACITY = 8192;
+    /**
+     * Returned by get for paths that are known not to exist.
+     */
+    public static final Node NEGATIVE = new Node("negative", null, -1);
+    private final LinkedHashMap<String, Node> entries;
+    private int capacity;
+    private long hits;
+    private long misses;
+    private long generation;
+
+    public PathCache(int capacity){
+        if (capacity < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Node>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Node> eldest){
+                return size() > PathCache.this.capacity;
+            }
+        };
+    }
+
+    public PathCache(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the cached result for a normalized path.
+     * @param path The normalized path
+     * @return The Node at the path, NEGATIVE if the path is known not to exist, or null if the path is not cached.
+     */
+    public synchronized Node get(String path){
+        Node node = entries.get(path);
+        if (node == null)
+            misses++;
+        else
+            hits++;
+        return node;
+    }
+
+    public synchronized void put(String path, Node node){
+        if (capacity == 0)
+            return;
+        entries.put(path, node);
+    }
+
+    public synchronized void putNegative(String path){
+        put(path, NEGATIVE);
+    }
+
+    /**
+     * Caches the result of a path resolution unless an entry has been invalidated since the resolution started.
+     * @param path The normalized path
+     * @param node The Node at the path, or NEGATIVE
+     * @param generation The generation of the cache when the resolution started
+     */
+    public synchronized void put(String path, Node node, long generation){
+        if (generation == this.generation)
+            put(path, node);
+    }
+
+    /**
+     * @return The number of invalidations since the cache was created.
+     */
+    public synchronized long getGeneration(){
+        return generation;
+    }
+
+    /**
+     * Removes the entry of a normalized path.
+     * @param path The normalized path
+     */
+    public synchronized void invalidate(String path){
+        generation++;
+        entries.remove(path);
+    }
+
+    /**
+     * Removes the entry of a normalized path along with the entries of every path below it.
+     * @param path The normalized path
+     */
+    public synchronized void invalidateTree(String path){
+        generation++;
+        if (path.equals("/")){
+            entries.clear();
+            return;
+        }
+        String prefix = path + "/";
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()){
+            String key = iterator.next();
+            if (key.startsWith(path) && (key.length() == path.length() || key.startsWith(prefix)))
+                iterator.remove();
+        }
+    }
+
+    public synchronized void clear(){
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Changes the maximum number of entries. The least recently used entries are evicted if the cache is larger than
+     * the new capacity. A capacity of 0 disables the cache.
+     * @param capacity The maximum number of entries
+     */
+    public synchronized void setCapacity(int capacity){
+        if (capacity < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        this.capacity = capacity;
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > capacity && iterator.hasNext()){
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public synchronized int getCapacity(){
+        return capacity;
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    /**
+     * Converts a path into the form used as a key within the cache. Empty components are removed and the path always
+     * starts with '/' and never ends with '/', except for the root itself.
+     * e.g. "//files/images/" -> "/files/images"
+     * @param path The path to be normalized
+     * @return The normalized path
+     */
+    public static String normalize(String path){
+        if (isNormalized(path))
+            return path;
+        StringBuilder builder = new StringBuilder(path.length() + 1);
+        for (String component: path.split("/")){
+            if (component.isEmpty())
+                continue;
+            builder.append('/').append(component);
+        }
+        if (builder.isEmpty())
+            return "/";
+        return builder.toString();
+    }
+
+    private static boolean isNormalized(String path){
+        int length = path.length();
+        if (length == 0 || path.charAt(0) != '/')
+            return false;
+        if (length == 1)
+            return true;
+        if (path.charAt(length - 1) == '/')
+            return false;
+        return !path.contains("//");
+    }
+}
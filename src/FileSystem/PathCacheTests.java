@@ -0,0 +1,153 @@
+package FileSystem;
+
+import Utilities.TestUtilities;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PathCacheTests {
+    @Test
+    @DisplayName("normalize -> Empty components and trailing slashes are removed")
+    public void normalize(){
+        Assertions.assertEquals("/", PathCache.normalize(""));
+        Assertions.assertEquals("/", PathCache.normalize("/"));
+        Assertions.assertEquals("/", PathCache.normalize("///"));
+        Assertions.assertEquals("/files/images", PathCache.normalize("/files/images"));
+        Assertions.assertEquals("/files/images", PathCache.normalize("//files/images/"));
+        Assertions.assertEquals("/files/images", PathCache.normalize("files//images"));
+    }
+
+    @Test
+    @DisplayName("get -> Positive and negative entries")
+    public void get(){
+        PathCache cache = new PathCache();
+        Node node = new Node("a", null);
+        cache.put("/a", node);
+        cache.putNegative("/b");
+        Assertions.assertSame(node, cache.get("/a"));
+        Assertions.assertSame(PathCache.NEGATIVE, cache.get("/b"));
+        Assertions.assertNull(cache.get("/c"));
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("put -> Least recently used entry is evicted")
+    public void eviction(){
+        PathCache cache = new PathCache(2);
+        cache.putNegative("/a");
+        cache.putNegative("/b");
+        cache.get("/a");
+        cache.putNegative("/c");
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertNotNull(cache.get("/a"));
+        Assertions.assertNull(cache.get("/b"));
+        cache.setCapacity(0);
+        cache.putNegative("/d");
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("invalidateTree -> Removes the path and the paths below it only")
+    public void invalidateTree(){
+        PathCache cache = new PathCache();
+        cache.putNegative("/a");
+        cache.putNegative("/a/b");
+        cache.putNegative("/a/b/c");
+        cache.putNegative("/ab");
+        cache.invalidateTree("/a");
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertNotNull(cache.get("/ab"));
+        cache.invalidateTree("/");
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("FileSystem -> Rename, move and remove invalidate the positive and negative entries they affect")
+    public void fileSystemInvalidation() throws Exception{
+        Path base = Files.createTempDirectory("path-cache");
+        try {
+            FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+            PathCache cache = fs.getDir().getPathCache();
+            Node f = __addFile(fs, "/a/b", "f");
+            Node g = __addFile(fs, "/a", "g");
+            fs.createDirectory("/", "c");
+
+            // Rename: the old path of the node and a negative entry for its new path.
+            __assertCached(fs, "/a/g", g);
+            __assertNegative(fs, "/a/h");
+            fs.renameNode("/a/g", "h");
+            Assertions.assertSame(g, fs.getNode("/a/h"));
+            __assertNotFound(fs, "/a/g");
+
+            // Move: every cached path below the directory and negative entries below the target.
+            Node b = fs.getNode("/a/b");
+            __assertCached(fs, "/a/b", b);
+            __assertCached(fs, "/a/b/f", f);
+            __assertNegative(fs, "/c/b");
+            __assertNegative(fs, "/c/b/f");
+            fs.moveNode("/a/b", "/c");
+            Assertions.assertSame(b, fs.getNode("/c/b"));
+            Assertions.assertSame(f, fs.getNode("/c/b/f"));
+            __assertNotFound(fs, "/a/b");
+            __assertNotFound(fs, "/a/b/f");
+
+            // Renaming a directory changes the paths of its descendants as well.
+            __assertCached(fs, "/c/b/f", f);
+            __assertNegative(fs, "/d/b/f");
+            fs.renameNode("/c", "d");
+            Assertions.assertSame(f, fs.getNode("/d/b/f"));
+            __assertNotFound(fs, "/c/b/f");
+
+            // Remove: cached paths below the removed directory, and negative entries once a node of the same path is
+            // added again.
+            __assertCached(fs, "/d/b", b);
+            __assertCached(fs, "/d/b/f", f);
+            fs.removeNode("/d/b", true);
+            __assertNotFound(fs, "/d/b");
+            __assertNotFound(fs, "/d/b/f");
+            Assertions.assertSame(PathCache.NEGATIVE, cache.get("/d/b/f"));
+            Node added = __addFile(fs, "/d/b", "f");
+            Assertions.assertNotSame(f, added);
+            Assertions.assertSame(added, fs.getNode("/d/b/f"));
+            Assertions.assertNotSame(b, fs.getNode("/d/b"));
+
+            // Removing a file.
+            __assertCached(fs, "/a/h", g);
+            fs.removeNode("/a/h");
+            __assertNotFound(fs, "/a/h");
+        } finally {
+            TestUtilities.deleteRecursively(base);
+        }
+    }
+
+    private static Node __addFile(FileSystem fs, String parentPath, String name) throws Exception{
+        byte[] contents = TestUtilities.getContents(3000, name.length());
+        fs.addFile(new InputFile(name, parentPath, contents.length, 0, 0, new ByteArrayInputStream(contents)));
+        return fs.getNode(parentPath + "/" + name);
+    }
+
+    /**
+     * Looks a node up and checks that its path is cached.
+     */
+    private static void __assertCached(FileSystem fs, String path, Node node) throws Exception{
+        Assertions.assertSame(node, fs.getNode(path));
+        Assertions.assertSame(node, fs.getDir().getPathCache().get(path), path);
+    }
+
+    /**
+     * Looks up a path that does not exist and checks that the miss is cached.
+     */
+    private static void __assertNegative(FileSystem fs, String path){
+        __assertNotFound(fs, path);
+        Assertions.assertSame(PathCache.NEGATIVE, fs.getDir().getPathCache().get(path), path);
+    }
+
+    private static void __assertNotFound(FileSystem fs, String path){
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fs.getNode(path), path);
+    }
+}
@@ -1,5 +1,6 @@
 package FileSystem;
 
+import Constants.DATA_STORE_BLOCK_FRAME;
 import Constants.FLAGS;
 import Constants.VALUES;
 import Utilities.BinaryUtilities;
@@ -18,6 +19,15 @@ public class SuperBlock {
     private long dataStores;
     private long attributeStores;
     private byte[] salt;
+    /**
+     * Incremented whenever the directory tree on disk changes after a checkpoint of the tree has been written. A
+     * checkpoint is only valid if it was written with the current generation.
+     */
+    private long generation;
+    /**
+     * Size of a block of the data-store, IV and TAG included. Chosen when the FileSystem is created and never changed.
+     */
+    private int blockSize = DATA_STORE_BLOCK_FRAME.DEFAULT_BLOCK_SIZE;
 
 
     /**
@@ -72,6 +82,9 @@ public class SuperBlock {
      *              THUMBNAIL_STORES
      *              DATA_STORES
      *              ATTRIBUTE_STORES
+     *              SALT
+     *              GENERATION
+     *              BLOCK_SIZE
      * @return A byte array containing the desired field
      */
     public byte[] getFieldBytes(String field){
@@ -84,6 +97,8 @@ public class SuperBlock {
             case "DATA_STORES" -> BinaryUtilities.convertLongToBytes(dataStores);
             case "ATTRIBUTE_STORES" -> BinaryUtilities.convertLongToBytes(attributeStores);
             case "SALT" -> this.salt;
+            case "GENERATION" -> BinaryUtilities.convertLongToBytes(generation);
+            case "BLOCK_SIZE" -> BinaryUtilities.convertIntToBytes(blockSize);
             case "FLAGS" -> new byte[]{flags};
             default -> throw new IllegalArgumentException("No such field exists");
         };
@@ -154,4 +169,16 @@ public class SuperBlock {
     }
     public void setSalt(byte[] salt){this.salt = salt;}
     public byte[] getSalt(){return this.salt;}
+    public long getGeneration(){return this.generation;}
+    public void setGeneration(long generation){this.generation = generation;}
+    public int getBlockSize(){return this.blockSize;}
+
+    /**
+     * @param blockSize A power of two between DATA_STORE_BLOCK_FRAME.MIN_BLOCK_SIZE and MAX_BLOCK_SIZE
+     * @throws IllegalArgumentException If the block size is not valid
+     */
+    public void setBlockSize(int blockSize){
+        DATA_STORE_BLOCK_FRAME.Layout.of(blockSize);
+        this.blockSize = blockSize;
+    }
 }
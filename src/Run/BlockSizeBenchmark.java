@@ -0,0 +1,76 @@
+package Run;
+
+import DiskUtility.CustomInputStream;
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Measures the throughput of adding and reading files, along with the space taken by their blocks, for every block size
+ * of the data-store. Each FileSystem holds one large file and a number of small files of random sizes. The space
+ * efficiency is the number of bytes of the files divided by the size of the data-store.
+ * Usage: BlockSizeBenchmark [megabytes of the large file] [number of small files] [iterations]
+ */
+public class BlockSizeBenchmark {
+    public static void main(String[] args) throws Exception{
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int smallFiles = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        Random random = new Random(1);
+        byte[] large = new byte[megabytes * 1024 * 1024];
+        random.nextBytes(large);
+        byte[][] small = new byte[smallFiles][];
+        long smallBytes = 0;
+        for (int i = 0; i < smallFiles; i++){
+            // Larger than an inline file, so that every file is stored in the data-store.
+            small[i] = new byte[1024 + random.nextInt(32 * 1024)];
+            random.nextBytes(small[i]);
+            smallBytes += small[i].length;
+        }
+        for (int i = 0; i < iterations; i++){
+            for (int blockSize: new int[]{4096, 64 * 1024, 1024 * 1024}){
+                File baseDirectory = Files.createTempDirectory("block-size-benchmark").toFile();
+                FileSystem fs = FileSystem.createFileSystem(baseDirectory, "Benchmark", "benchmark", blockSize);
+                long start = System.nanoTime();
+                fs.addFile(new InputFile("large", "/", large.length, 0L, 0L, new ByteArrayInputStream(large)));
+                double largeAddSeconds = __seconds(start);
+                start = System.nanoTime();
+                for (int j = 0; j < smallFiles; j++)
+                    fs.addFile(new InputFile("small" + j, "/", small[j].length, 0L, 0L, new ByteArrayInputStream(small[j])));
+                double smallAddSeconds = __seconds(start);
+                start = System.nanoTime();
+                long bytes = __read(fs, "/large");
+                double largeReadSeconds = __seconds(start);
+                start = System.nanoTime();
+                for (int j = 0; j < smallFiles; j++)
+                    __read(fs, "/small" + j);
+                double smallReadSeconds = __seconds(start);
+                long storeBytes = new File(new File(baseDirectory, "Benchmark"), "data-store").length();
+                System.out.printf("block %7d  large add %6.1f MB/s  read %6.1f MB/s  small add %6.1f MB/s  read %6.1f MB/s  efficiency %5.1f%%%n",
+                        blockSize, __megabytes(large.length) / largeAddSeconds, __megabytes(bytes) / largeReadSeconds,
+                        __megabytes(smallBytes) / smallAddSeconds, __megabytes(smallBytes) / smallReadSeconds,
+                        100.0 * (large.length + smallBytes) / storeBytes);
+                fs.unmount();
+            }
+        }
+    }
+
+    private static long __read(FileSystem fs, String path) throws Exception{
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            return inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static double __seconds(long start){
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private static double __megabytes(long bytes){
+        return bytes / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,76 @@
+package Run;
+
+import DiskUtility.CustomInputStream;
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares reads and writes of a large file through the page cache with direct I/O. Every read is measured with a cold
+ * and a warm cache. The cache is dropped through /proc/sys/vm/drop_caches, which requires Linux and root; the cold runs
+ * are skipped otherwise.
+ * Usage: DirectIOBenchmark [megabytes] [iterations]
+ */
+public class DirectIOBenchmark {
+    public static void main(String[] args) throws Exception{
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        File baseDirectory = Files.createTempDirectory("direct-benchmark").toFile();
+        FileSystem fs = FileSystem.createFileSystem(baseDirectory, "Benchmark", "benchmark");
+        byte[] data = new byte[megabytes * 1024 * 1024];
+        new Random(1).nextBytes(data);
+        boolean canDropCaches = dropCaches();
+        if (!canDropCaches)
+            System.out.println("Unable to drop the page cache. Cold runs are skipped.");
+        for (int i = 0; i < iterations; i++){
+            for (boolean direct: new boolean[]{false, true}){
+                fs.setDirectIO(direct);
+                String mode = direct ? "direct" : "buffered";
+                String name = mode + i;
+                long start = System.nanoTime();
+                fs.addFile(new InputFile(name, "/", data.length, 0L, 0L, new ByteArrayInputStream(data)));
+                print(mode, "add", data.length, start);
+                if (canDropCaches){
+                    dropCaches();
+                    start = System.nanoTime();
+                    print(mode, "cold read", read(fs, "/" + name), start);
+                }
+                start = System.nanoTime();
+                print(mode, "warm read", read(fs, "/" + name), start);
+            }
+        }
+        fs.setDirectIO(false);
+    }
+
+    private static long read(FileSystem fs, String path) throws Exception{
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            return inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static void print(String mode, String operation, long bytes, long start){
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-9s %-10s %8.1f MB/s%n", mode, operation, bytes / (1024.0 * 1024.0) / seconds);
+    }
+
+    /**
+     * @return true if the page cache has been dropped
+     */
+    private static boolean dropCaches(){
+        try {
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            try (FileWriter writer = new FileWriter("/proc/sys/vm/drop_caches")){
+                writer.write("3");
+            }
+            return true;
+        } catch (Exception e){
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package Run;
+
+import FileSystem.FileSystem;
+import FileSystem.NodeTree;
+import FileSystem.PathCache;
+import FileSystem.InputFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Measures the latency of resolving deep paths with and without the PathCache.
+ * Usage: PathResolutionBenchmark [depth] [iterations]
+ */
+public class PathResolutionBenchmark {
+    public static void main(String[] args) throws Exception{
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        File baseDirectory = Files.createTempDirectory("path-benchmark").toFile();
+        FileSystem fs = FileSystem.createFileSystem(baseDirectory, "Benchmark", "benchmark");
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            path.append("/directory-").append(i);
+        byte[] data = {1};
+        fs.addFile(new InputFile("file", path.toString(), data.length, 0L, 0L, new ByteArrayInputStream(data)));
+        String filePath = path + "/file";
+        String missingPath = path + "/missing";
+        fs = FileSystem.mount(new File(baseDirectory, "Benchmark"), "benchmark");
+        NodeTree tree = fs.getDir();
+        PathCache cache = tree.getPathCache();
+        // Load every directory along the path once so that both runs measure in-memory resolution.
+        fs.getNode(filePath);
+        cache.setCapacity(0);
+        run("Uncached", fs, filePath, missingPath, iterations);
+        cache.setCapacity(PathCache.DEFAULT_CAPACITY);
+        run("Cached", fs, filePath, missingPath, iterations);
+        System.out.println("Cache hits: " + cache.getHits() + ", misses: " + cache.getMisses());
+    }
+
+    private static void run(String label, FileSystem fs, String filePath, String missingPath, int iterations) throws Exception{
+        NodeTree tree = fs.getDir();
+        // Warm up
+        for (int i = 0; i < iterations / 10; i++)
+            resolve(fs, tree, filePath, missingPath);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            tree.getNodeFromPath(filePath, fs.getGateway().getDirectoryStoreGateway());
+        long existing = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++){
+            try {
+                tree.getNodeFromPath(missingPath, fs.getGateway().getDirectoryStoreGateway());
+            } catch (IllegalArgumentException ignored){}
+        }
+        long missing = System.nanoTime() - start;
+        System.out.printf("%s: existing path %.1f ns/op, missing path %.1f ns/op%n", label,
+                (double) existing / iterations, (double) missing / iterations);
+    }
+
+    private static void resolve(FileSystem fs, NodeTree tree, String filePath, String missingPath) throws Exception{
+        tree.getNodeFromPath(filePath, fs.getGateway().getDirectoryStoreGateway());
+        try {
+            tree.getNodeFromPath(missingPath, fs.getGateway().getDirectoryStoreGateway());
+        } catch (IllegalArgumentException ignored){}
+    }
+}
@@ -0,0 +1,49 @@
+package Run;
+
+import DiskUtility.CustomInputStream;
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Measures the space used by a file that is mostly zeros, like a VM image or a preallocated container, along with the
+ * throughput of adding and reading it. Every megabyte of the file holds a run of random bytes and zeros after it.
+ * Usage: SparseFileBenchmark [megabytes] [percentage of random bytes] [iterations]
+ */
+public class SparseFileBenchmark {
+    public static void main(String[] args) throws Exception{
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int percentage = args.length > 1 ? Integer.parseInt(args[1]) : 25;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        byte[] data = new byte[megabytes * 1024 * 1024];
+        Random random = new Random(1);
+        byte[] run = new byte[1024 * 1024 * percentage / 100];
+        for (int i = 0; i < megabytes; i++){
+            random.nextBytes(run);
+            System.arraycopy(run, 0, data, i * 1024 * 1024, run.length);
+        }
+        for (int i = 0; i < iterations; i++){
+            File baseDirectory = Files.createTempDirectory("sparse-benchmark").toFile();
+            FileSystem fs = FileSystem.createFileSystem(baseDirectory, "Benchmark", "benchmark");
+            long start = System.nanoTime();
+            fs.addFile(new InputFile("file", "/", data.length, 0L, 0L, new ByteArrayInputStream(data)));
+            double addSeconds = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            long bytes;
+            try (CustomInputStream inputStream = fs.openFile("/file")){
+                bytes = inputStream.transferTo(OutputStream.nullOutputStream());
+            }
+            double readSeconds = (System.nanoTime() - start) / 1e9;
+            long storeBytes = new File(new File(baseDirectory, "Benchmark"), "data-store").length();
+            System.out.printf("file %d MB, data-store %.1f MB, add %.1f MB/s, read %.1f MB/s%n", megabytes,
+                    storeBytes / (1024.0 * 1024.0), data.length / (1024.0 * 1024.0) / addSeconds,
+                    bytes / (1024.0 * 1024.0) / readSeconds);
+            fs.unmount();
+        }
+    }
+}
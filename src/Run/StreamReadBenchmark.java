@@ -0,0 +1,73 @@
+package Run;
+
+import DiskUtility.CustomInputStream;
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Measures the read throughput of CustomInputStream. The single byte loop is the path InputStream.read(byte[]) took
+ * before the stream copied out of its blocks in bulk.
+ * Usage: StreamReadBenchmark [megabytes] [iterations]
+ */
+public class StreamReadBenchmark {
+    public static void main(String[] args) throws Exception{
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        File baseDirectory = Files.createTempDirectory("stream-benchmark").toFile();
+        FileSystem fs = FileSystem.createFileSystem(baseDirectory, "Benchmark", "benchmark");
+        byte[] data = new byte[megabytes * 1024 * 1024];
+        new Random(1).nextBytes(data);
+        fs.addFile(new InputFile("file", "/", data.length, 0L, 0L, new ByteArrayInputStream(data)));
+        // Warm up
+        run(fs, "/file", Mode.BULK);
+        for (int i = 0; i < iterations; i++){
+            for (Mode mode: Mode.values()){
+                long start = System.nanoTime();
+                long bytes = run(fs, "/file", mode);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-12s %8.1f MB/s%n", mode, bytes / (1024.0 * 1024.0) / seconds);
+            }
+        }
+    }
+
+    private enum Mode {
+        SINGLE_BYTE,
+        BULK,
+        TRANSFER_TO,
+        SKIP
+    }
+
+    private static long run(FileSystem fs, String path, Mode mode) throws Exception{
+        try (CustomInputStream inputStream = fs.openFile(path)){
+            long bytes = 0;
+            switch (mode){
+                case SINGLE_BYTE:
+                    while (inputStream.read() != -1)
+                        bytes++;
+                    break;
+                case BULK:
+                    byte[] buffer = new byte[64 * 1024];
+                    int count;
+                    while ((count = inputStream.read(buffer, 0, buffer.length)) != -1)
+                        bytes += count;
+                    break;
+                case TRANSFER_TO:
+                    bytes = inputStream.transferTo(OutputStream.nullOutputStream());
+                    break;
+                case SKIP:
+                    // Skips most of the file and reads the last byte.
+                    bytes = inputStream.skip(inputStream.available() - 1L);
+                    inputStream.read();
+                    bytes++;
+                    break;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package Run;
+
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+import FileSystem.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Measures the time taken to read the whole directory tree into memory, lazily one directory at a time and eagerly with
+ * FileSystem.mount(baseFile, password, true).
+ * Usage: TreeLoadBenchmark [directories] [filesPerDirectory]
+ */
+public class TreeLoadBenchmark {
+    public static void main(String[] args) throws Exception{
+        int directories = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int filesPerDirectory = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        File baseDirectory = Files.createTempDirectory("tree-load-benchmark").toFile();
+        FileSystem fs = FileSystem.createFileSystem(baseDirectory, "Benchmark", "benchmark");
+        byte[] data = {1};
+        for (int i = 0; i < directories; i++){
+            for (int j = 0; j < filesPerDirectory; j++)
+                fs.addFile(new InputFile("file-" + j, "/directory-" + i, data.length, 0L, 0L, new ByteArrayInputStream(data)));
+        }
+        File fileSystemBaseFile = new File(baseDirectory, "Benchmark");
+        // Key derivation dominates the time taken to mount, so only the time taken to read the tree is measured.
+        fs = FileSystem.mount(fileSystemBaseFile, "benchmark");
+        long start = System.nanoTime();
+        int lazyCount = count(fs, fs.getNode("/"));
+        long lazy = System.nanoTime() - start;
+        System.out.printf("Lazy load: %d nodes in %.1f ms, %.0f nodes/s%n", lazyCount, lazy / 1_000_000.0,
+                lazyCount * 1_000_000_000.0 / lazy);
+        fs = FileSystem.mount(fileSystemBaseFile, "benchmark", true);
+        System.out.println("Eager load: " + fs.getTreeLoadStatistics());
+    }
+
+    private static int count(FileSystem fs, Node node) throws Exception{
+        int count = 1;
+        if (node.isDirectory()){
+            for (Node childNode: fs.openDirectory(node))
+                count += count(fs, childNode);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,63 @@
+package Utilities;
+
+import FileSystem.FileSystem;
+import FileSystem.InputFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * This class contains the fixtures shared by the tests of the FileSystem. It is not used outside the tests.
+ */
+public class TestUtilities {
+    /**
+     * Deletes a directory of the host along with everything within it.
+     * @param base The directory to be deleted
+     */
+    public static void deleteRecursively(Path base) throws Exception{
+        try (Stream<Path> paths = Files.walk(base)){
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Returns the contents of a test file. The bytes follow a pattern that does not repeat within a block, and that
+     * contains no chunk of zero bytes large enough to be elided as a hole.
+     * @param size Number of bytes
+     * @param seed Files with different seeds have different contents
+     * @return The contents of the file
+     */
+    public static byte[] getContents(int size, int seed){
+        byte[] contents = new byte[size];
+        for (int i = 0; i < size; i++)
+            contents[i] = (byte)(i * 7 + i / 251 + seed * 13);
+        return contents;
+    }
+
+    /**
+     * Creates a FileSystem with a file at /file that is written into the gaps left by removed files, so it has several
+     * extents that start within blocks.
+     * @param base The directory of the host the FileSystem is created in
+     * @param contents The contents of /file
+     * @return The mounted FileSystem
+     */
+    public static FileSystem createFragmentedFileSystem(Path base, byte[] contents) throws Exception{
+        FileSystem fs = FileSystem.createFileSystem(base.toFile(), "fs", "password");
+        for (int i = 0; i < 12; i++){
+            byte[] filler = new byte[1000 + i * 700];
+            // Zero bytes would be elided as holes, which would leave no gaps in the data-store.
+            Arrays.fill(filler, (byte) 1);
+            fs.addFile(new InputFile("t" + i, "/", filler.length, 0, 0, new ByteArrayInputStream(filler)));
+        }
+        for (int i = 0; i < 12; i += 2)
+            fs.removeNode("/t" + i);
+        fs.reclaimAll();
+        fs.addFile(new InputFile("file", "/", contents.length, 0, 0, new ByteArrayInputStream(contents)));
+        return fs;
+    }
+}